@@ -1,5 +1,6 @@
 package com.swp391.gr3.ev_management.config;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.task.ThreadPoolTaskExecutorBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -7,8 +8,10 @@ import org.springframework.context.annotation.Primary;
 import org.springframework.retry.annotation.EnableRetry;
 import org.springframework.scheduling.annotation.AsyncConfigurer;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 
 import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Configuration                     // 🔧 Đánh dấu đây là class cấu hình Spring
 @EnableAsync                       // 🚀 Bật hỗ trợ chạy bất đồng bộ (@Async)
@@ -41,4 +44,82 @@ public class AsyncConfig implements AsyncConfigurer {
                 .queueCapacity(100)         // 📌 Hàng đợi chứa 100 mail pending
                 .build();
     }
+
+    // ======================================================================
+    // ✅ Executor riêng cho job sinh slot theo horizon (mỗi SlotConfig 1 task)
+    // ======================================================================
+    @Bean(name = "slotGenExecutor")
+    public Executor slotGenExecutor(@Value("${app.slot-horizon.parallelism:4}") int parallelism) {
+        return new ThreadPoolTaskExecutorBuilder()
+                .threadNamePrefix("slot-gen-") // 🧵 Prefix để dễ debug log
+                .corePoolSize(parallelism)     // 🔹 Giới hạn số config chạy song song (tránh dồn kết nối DB)
+                .maxPoolSize(parallelism)
+                .build();                      // 📌 Hàng đợi không giới hạn: các config còn lại chờ lượt
+    }
+
+    // ======================================================================
+    // ✅ Executor riêng cho auto-stop phiên sạc (SessionDeadlineQueue)
+    // ======================================================================
+    @Bean(name = "autoStopExecutor")
+    public Executor autoStopExecutor(@Value("${app.session-deadline.parallelism:4}") int parallelism) {
+        return new ThreadPoolTaskExecutorBuilder()
+                .threadNamePrefix("auto-stop-")  // 🧵 Prefix để dễ debug log
+                .corePoolSize(parallelism)       // 🔹 Nhiều phiên hết giờ cùng lúc vẫn không dồn quá nhiều kết nối DB
+                .maxPoolSize(parallelism)
+                .build();                        // 📌 Hàng đợi không giới hạn: không bao giờ từ chối 1 lệnh auto-stop
+    }
+
+    // ======================================================================
+    // ✅ Executor gửi event SSE (SessionStatusHub) — 1 task / subscriber khi có event chờ
+    // ======================================================================
+    @Bean(name = "sseExecutor")
+    public Executor sseExecutor() {
+        return new ThreadPoolTaskExecutorBuilder()
+                .threadNamePrefix("sse-")   // 🧵 Prefix để dễ debug log
+                .corePoolSize(4)
+                .maxPoolSize(16)            // 🔼 Mở rộng khi nhiều client cùng nhận event
+                .queueCapacity(10_000)      // 📌 Mỗi subscriber tối đa 1 task chờ nên hàng đợi ít khi đầy
+                .build();
+    }
+
+    // ======================================================================
+    // ✅ Executor xử lý outbox (OutboxDispatcher) — mỗi task là các sự kiện của 1 user, chạy tuần tự
+    // ======================================================================
+    @Bean(name = "outboxExecutor")
+    public Executor outboxExecutor(@Value("${app.outbox.parallelism:4}") int parallelism,
+                                   @Value("${app.outbox.batch-size:200}") int batchSize) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutorBuilder()
+                .threadNamePrefix("outbox-")    // 🧵 Prefix để dễ debug log
+                .corePoolSize(parallelism)      // 🔹 Giới hạn số user xử lý song song (tránh dồn kết nối DB)
+                .maxPoolSize(parallelism)
+                .queueCapacity(batchSize)       // 📌 1 lô có tối đa batch-size key → hàng đợi không vượt quá 1 lô
+                .build();
+        // 🔁 Đầy (lô trước còn dở) → thread dispatcher tự chạy task: chậm lại thay vì làm rơi sự kiện
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        return executor;
+    }
+
+    // ======================================================================
+    // ✅ Executor chạy job tính lại hóa đơn (InvoiceRebillService) — mỗi lúc 1 job, phần tính giá song song ở ForkJoinPool riêng
+    // ======================================================================
+    @Bean(name = "rebillExecutor")
+    public Executor rebillExecutor() {
+        return new ThreadPoolTaskExecutorBuilder()
+                .threadNamePrefix("rebill-")    // 🧵 Prefix để dễ debug log
+                .corePoolSize(1)
+                .maxPoolSize(1)
+                .build();
+    }
+
+    // ======================================================================
+    // ✅ Executor làm mới nền các dashboard (DashboardCache) — mỗi màn hình tối đa 1 lần tính cùng lúc
+    // ======================================================================
+    @Bean(name = "dashboardExecutor")
+    public Executor dashboardExecutor() {
+        return new ThreadPoolTaskExecutorBuilder()
+                .threadNamePrefix("dashboard-") // 🧵 Prefix để dễ debug log
+                .corePoolSize(2)
+                .maxPoolSize(2)
+                .build();
+    }
 }
@@ -34,6 +34,7 @@ import io.swagger.v3.oas.models.Components;
 import io.swagger.v3.oas.models.OpenAPI;
 import io.swagger.v3.oas.models.security.SecurityRequirement;
 import io.swagger.v3.oas.models.security.SecurityScheme;
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletResponse;
 
 @Configuration // Đánh dấu đây là class cấu hình Spring chung (bean, security, ...)
@@ -199,8 +200,11 @@ public class SecurityConfig {
                                         // 👇 Cho phép xem điều khoản/chính sách (không cần đăng nhập)
                                         "/api/policies", "/api/policies/**"
                                 ).permitAll()
-                                // Actuator (health, metrics) public
-                                .requestMatchers("/actuator/**").permitAll()
+                                // Actuator: metrics chỉ cho ADMIN, health public (probe)
+                                .requestMatchers("/actuator/metrics", "/actuator/metrics/**").hasRole("ADMIN")
+                                .requestMatchers("/actuator/health", "/actuator/health/**").permitAll()
+                                // Async dispatch của SSE (request gốc đã được xác thực)
+                                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
                                 // Cho phép OPTIONS (preflight) cho mọi path
                                 .requestMatchers(org.springframework.http.HttpMethod.OPTIONS, "/**").permitAll()
 //                        .requestMatchers("/api/admin/**").hasRole("ADMIN") // ví dụ rule cho admin
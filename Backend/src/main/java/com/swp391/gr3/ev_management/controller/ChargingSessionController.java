@@ -1,11 +1,10 @@
 package com.swp391.gr3.ev_management.controller;
 
-import java.time.Duration;
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.stream.Collectors;
 
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -15,7 +14,9 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import com.swp391.gr3.ev_management.dto.request.MeterReadingRequest;
 import com.swp391.gr3.ev_management.dto.request.StartCharSessionRequest;
 import com.swp391.gr3.ev_management.dto.request.StopCharSessionRequest;
 import com.swp391.gr3.ev_management.dto.response.ActiveSessionView;
@@ -24,11 +25,12 @@ import com.swp391.gr3.ev_management.dto.response.ChargingStatusResponse;
 import com.swp391.gr3.ev_management.dto.response.CompletedSessionView;
 import com.swp391.gr3.ev_management.dto.response.StartCharSessionResponse;
 import com.swp391.gr3.ev_management.dto.response.StopCharSessionResponse;
+import com.swp391.gr3.ev_management.dto.response.TelemetryIngestResponse;
 import com.swp391.gr3.ev_management.dto.response.ViewCharSessionResponse;
-import com.swp391.gr3.ev_management.entity.ChargingSession;
-import com.swp391.gr3.ev_management.enums.ChargingSessionStatus;
 import com.swp391.gr3.ev_management.exception.ErrorException;
 import com.swp391.gr3.ev_management.service.ChargingSessionService;
+import com.swp391.gr3.ev_management.service.SessionStatusHub;
+import com.swp391.gr3.ev_management.service.TelemetryIngestService;
 import com.swp391.gr3.ev_management.service.TokenService;
 
 import io.swagger.v3.oas.annotations.Operation;
@@ -46,6 +48,8 @@ public class ChargingSessionController {
 
     private final ChargingSessionService chargingSessionService; // ✅ Service xử lý nghiệp vụ phiên sạc
     private final TokenService tokenService; // ✅ Service xử lý token để trích xuất userId
+    private final TelemetryIngestService telemetryIngestService; // ✅ Nhận telemetry (SoC/kW/kWh) từ trụ sạc
+    private final SessionStatusHub sessionStatusHub; // ✅ Stream trạng thái live (SSE)
 
     // =========================================================================
     // 1) STAFF/ADMIN: BẮT ĐẦU PHIÊN SẠC (START)
@@ -114,41 +118,18 @@ public class ChargingSessionController {
     }
 
     // =========================================================================
-    // 5) STAFF/ADMIN: LẤY TÌNH TRẠNG SẠC THEO THỜI GIAN THỰC (MÔ PHỎNG)
+    // 5) STAFF/ADMIN: LẤY TÌNH TRẠNG SẠC THEO THỜI GIAN THỰC
     // =========================================================================
     @PreAuthorize("hasRole('STAFF') or hasRole('ADMIN')") // 🔒 STAFF hoặc ADMIN
-    @GetMapping("/session/{sessionId}/status") // 🔗 GET /api/charging-sessions/session/{sessionId}/status?initialSoc=..&connectorType=AC|DC
+    @GetMapping("/session/{sessionId}/status") // 🔗 GET /api/charging-sessions/session/{sessionId}/status
     @Operation(summary = "Get charging status", description = "Get current charging status (SoC, energy delivered) of an ongoing session")
     public ChargingStatusResponse getChargingStatus(
             @PathVariable Long sessionId, // ✅ ID phiên sạc
-            @RequestParam int initialSoc, // ✅ SoC ban đầu (%), đầu vào để mô phỏng
-            @RequestParam String connectorType // ✅ Loại đầu nối: "DC" hoặc "AC" (ảnh hưởng tốc độ sạc)
+            @RequestParam(required = false) Integer initialSoc, // ⚠️ Giữ cho client cũ, không còn dùng (lấy từ phiên)
+            @RequestParam(required = false) String connectorType // ⚠️ Giữ cho client cũ, không còn dùng (lấy từ model xe)
     ) {
-        // 🟢 Tìm entity phiên sạc; nếu không có thì ném lỗi
-        ChargingSession session = chargingSessionService.findById(sessionId)
-                .orElseThrow(() -> new RuntimeException("Session not found"));
-
-        // 🟢 Tính số phút đã trôi qua từ lúc bắt đầu đến hiện tại
-        LocalDateTime start = session.getStartTime();
-        long minutes = Duration.between(start, LocalDateTime.now()).toMinutes();
-
-        // 🟢 Tốc độ sạc mô phỏng theo loại connector (đơn vị: % SoC / giờ)
-        double ratePerHour = connectorType.equalsIgnoreCase("DC") ? 25.0 : 10.0;
-        double ratePerMinute = ratePerHour / 60.0;
-
-        // 🟢 Tính SoC hiện tại (không vượt quá 100%)
-        double currentSoc = Math.min(100, initialSoc + minutes * ratePerMinute);
-
-        // 🟢 Mô phỏng năng lượng nạp được (kWh) từ chênh lệch SoC * hệ số (0.5 là giả định)
-        double energyKWh = (currentSoc - initialSoc) * 0.5;
-
-        // 🟢 Trả về DTO tình trạng sạc hiện tại
-        return ChargingStatusResponse.builder()
-                .sessionId(sessionId)
-                .currentSoc(currentSoc)
-                .energyKWh(energyKWh)
-                .minutesElapsed(minutes)
-                .build();
+        // 🟢 Telemetry mới nhất nếu có, không thì ước lượng theo đường cong sạc của model xe trên trụ đang dùng
+        return sessionStatusHub.currentStatus(sessionId);
     }
 
     // =========================================================================
@@ -209,22 +190,10 @@ public class ChargingSessionController {
         // 🟢 Lấy userId từ token
         Long userId = tokenService.extractUserIdFromRequest(httpReq);
 
-        // 🔎 Lấy tất cả phiên sạc (gợi ý tối ưu: tạo repo method chỉ lấy phiên đang IN_PROGRESS theo user)
-        List<ChargingSession> all = chargingSessionService.getAll();
-
-        // 🔎 Tìm phiên sạc đang hoạt động (IN_PROGRESS) thuộc về driver có userId tương ứng
-        ChargingSession current = all.stream()
-                .filter(s -> s.getStatus() == ChargingSessionStatus.IN_PROGRESS)
-                .filter(s -> s.getBooking() != null
-                        && s.getBooking().getVehicle() != null
-                        && s.getBooking().getVehicle().getDriver() != null
-                        && s.getBooking().getVehicle().getDriver().getUser().getUserId().equals(userId))
-                .findFirst()
+        // 🔎 1 query theo index (DriverUserID, Status, StartTime): phiên IN_PROGRESS mới nhất của driver
+        ViewCharSessionResponse res = chargingSessionService.findCurrentSessionByDriverUser(userId)
                 // ❌ Không có phiên sạc đang hoạt động -> ném ErrorException với thông điệp tiếng Việt
                 .orElseThrow(() -> new ErrorException("Bạn không có phiên sạc nào đang hoạt động."));
-
-        // 🟢 Dùng service để lấy DTO chi tiết theo sessionId tìm được
-        ViewCharSessionResponse res = chargingSessionService.getCharSessionById(current.getSessionId());
         return ResponseEntity.ok(res);
     }
 
@@ -253,4 +222,42 @@ public class ChargingSessionController {
         Long userId = tokenService.extractUserIdFromRequest(request);
         return ResponseEntity.ok(chargingSessionService.getCompletedSessionsCompactByStaff(userId));
     }
+
+    // =========================================================================
+    // 12) STAFF/ADMIN (TRỤ SẠC): GỬI TELEMETRY THEO LÔ
+    // =========================================================================
+    @PreAuthorize("hasRole('STAFF') or hasRole('ADMIN')")
+    @PostMapping("/telemetry") // 🔗 POST /api/charging-sessions/telemetry
+    @Operation(summary = "Ingest meter readings",
+            description = "Charger pushes a batch of meter readings (SoC, kW, kWh). Returns 429 when the ingest buffer is full")
+    public ResponseEntity<TelemetryIngestResponse> ingestTelemetry(
+            @RequestBody List<@Valid MeterReadingRequest> readings
+    ) {
+        TelemetryIngestResponse res = telemetryIngestService.ingest(readings);
+        // 🟢 202: đã nhận vào buffer (ghi DB bất đồng bộ); 429: buffer đầy / có reading bị từ chối → trụ gửi lại sau
+        HttpStatus status = res.getRejected() > 0 && res.getAccepted() == 0 && !readings.isEmpty()
+                ? HttpStatus.TOO_MANY_REQUESTS
+                : HttpStatus.ACCEPTED;
+        return ResponseEntity.status(status).body(res);
+    }
+
+    // =========================================================================
+    // 13) STAFF/ADMIN: STREAM TRẠNG THÁI SẠC LIVE (SSE) — THAY CHO POLLING /status
+    // =========================================================================
+    @PreAuthorize("hasRole('STAFF') or hasRole('ADMIN')")
+    @GetMapping(value = "/session/{sessionId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream charging status",
+            description = "Server-Sent Events: pushes the live status (SoC, energy, power) of a session until it stops")
+    public SseEmitter streamSessionStatus(@PathVariable Long sessionId) {
+        // 🟢 Event "status" mỗi tick; phiên kết thúc → event cuối rồi đóng stream
+        return sessionStatusHub.subscribeSession(sessionId);
+    }
+
+    @PreAuthorize("hasRole('STAFF') or hasRole('ADMIN')")
+    @GetMapping(value = "/stations/{stationId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "Stream station charging status",
+            description = "Server-Sent Events: pushes the live status of every running session at a station")
+    public SseEmitter streamStationStatus(@PathVariable Long stationId) {
+        return sessionStatusHub.subscribeStation(stationId);
+    }
 }
@@ -1,7 +1,9 @@
 package com.swp391.gr3.ev_management.controller;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
@@ -20,6 +22,7 @@ import com.swp391.gr3.ev_management.dto.request.DriverUpdateRequest;
 import com.swp391.gr3.ev_management.dto.request.UpdatePasswordRequest;
 import com.swp391.gr3.ev_management.dto.request.UpdateVehicleRequest;
 import com.swp391.gr3.ev_management.dto.response.ChargingSessionBriefResponse;
+import com.swp391.gr3.ev_management.dto.response.ChargingSessionHistoryPage;
 import com.swp391.gr3.ev_management.dto.response.DriverInvoiceDetail;
 import com.swp391.gr3.ev_management.dto.response.DriverResponse;
 import com.swp391.gr3.ev_management.dto.response.TransactionBriefResponse;
@@ -182,6 +185,23 @@ public class DriverController {
         return ResponseEntity.ok(result); // 🟢 Trả về danh sách các phiên sạc
     }
 
+    // =========================================================================
+    // ✅ 9b. DRIVER XEM LỊCH SỬ PHIÊN SẠC THEO TRANG (KEYSET)
+    // =========================================================================
+    @PreAuthorize("hasRole('DRIVER')") // 🔒 Chỉ DRIVER
+    @GetMapping("/sessions/history") // 🔗 GET /api/driver/sessions/history?limit=20&beforeStart=..&beforeId=..
+    @Operation(summary = "Get my charging session history (paged)",
+            description = "Keyset pagination: pass nextBeforeStart/nextBeforeId of the previous page to get the next one")
+    public ResponseEntity<ChargingSessionHistoryPage> mySessionHistory(
+            HttpServletRequest request,
+            @RequestParam(required = false) Integer limit, // 🟢 Số phiên / trang (mặc định 20, tối đa 100)
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime beforeStart, // 🟢 Mốc của trang trước
+            @RequestParam(required = false) Long beforeId
+    ) {
+        Long userId = tokenService.extractUserIdFromRequest(request); // 🟢 Lấy userId driver
+        return ResponseEntity.ok(driverService.getMyChargingSessionHistory(userId, beforeStart, beforeId, limit));
+    }
+
 
     // =========================================================================
     // ✅ 10. DRIVER XEM CHI TIẾT HÓA ĐƠN
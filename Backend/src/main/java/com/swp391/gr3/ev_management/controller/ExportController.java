@@ -0,0 +1,109 @@
+package com.swp391.gr3.ev_management.controller;
+
+import com.swp391.gr3.ev_management.service.CsvExportService;
+import com.swp391.gr3.ev_management.service.StationStaffService;
+import com.swp391.gr3.ev_management.service.TokenService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.time.LocalDate;
+
+@RestController // ✅ REST controller, ghi thẳng tệp CSV gzip ra response
+@RequestMapping("/api/exports") // ✅ Export dữ liệu cho staff / kế toán
+@Tag(name = "Exports", description = "Streaming gzip CSV exports of transactions, charging sessions and invoices")
+@RequiredArgsConstructor
+public class ExportController {
+
+    private static final String GZIP_CONTENT_TYPE = "application/gzip";
+
+    private final CsvExportService csvExportService;     // ✅ Đọc cursor + ghi CSV gzip
+    private final StationStaffService stationStaffService; // ✅ Trạm được phân công của staff
+    private final TokenService tokenService;             // ✅ Lấy userId từ JWT
+
+    // =========================================================================
+    // ✅ 1. GIAO DỊCH
+    // =========================================================================
+    @GetMapping("/transactions") // 🔗 GET /api/exports/transactions?from=2025-01-01&to=2025-01-31&stationId=1
+    @PreAuthorize("hasRole('ADMIN') or hasRole('STAFF')")
+    @SecurityRequirement(name = "bearerAuth")
+    @Operation(summary = "Export transactions",
+            description = "Gzip CSV of transactions created in [from, to]; staff only get their assigned station")
+    public void exportTransactions(
+            HttpServletRequest request, HttpServletResponse response,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Long stationId) throws IOException {
+        Long station = resolveStation(request, stationId);
+        csvExportService.validateRange(from, to);
+        prepare(response, "transactions", from, to);
+        csvExportService.exportTransactions(from, to, station, response.getOutputStream());
+    }
+
+    // =========================================================================
+    // ✅ 2. PHIÊN SẠC
+    // =========================================================================
+    @GetMapping("/sessions") // 🔗 GET /api/exports/sessions?from=...&to=...&stationId=...
+    @PreAuthorize("hasRole('ADMIN') or hasRole('STAFF')")
+    @SecurityRequirement(name = "bearerAuth")
+    @Operation(summary = "Export charging sessions",
+            description = "Gzip CSV of charging sessions started in [from, to]; staff only get their assigned station")
+    public void exportSessions(
+            HttpServletRequest request, HttpServletResponse response,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Long stationId) throws IOException {
+        Long station = resolveStation(request, stationId);
+        csvExportService.validateRange(from, to);
+        prepare(response, "sessions", from, to);
+        csvExportService.exportSessions(from, to, station, response.getOutputStream());
+    }
+
+    // =========================================================================
+    // ✅ 3. HÓA ĐƠN
+    // =========================================================================
+    @GetMapping("/invoices") // 🔗 GET /api/exports/invoices?from=...&to=...&stationId=...
+    @PreAuthorize("hasRole('ADMIN') or hasRole('STAFF')")
+    @SecurityRequirement(name = "bearerAuth")
+    @Operation(summary = "Export invoices",
+            description = "Gzip CSV of invoices issued in [from, to]; staff only get their assigned station")
+    public void exportInvoices(
+            HttpServletRequest request, HttpServletResponse response,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Long stationId) throws IOException {
+        Long station = resolveStation(request, stationId);
+        csvExportService.validateRange(from, to);
+        prepare(response, "invoices", from, to);
+        csvExportService.exportInvoices(from, to, station, response.getOutputStream());
+    }
+
+    // Admin: lọc theo stationId (null = mọi trạm); staff: luôn là trạm được phân công
+    Long resolveStation(HttpServletRequest request, Long stationId) {
+        if (request.isUserInRole("ADMIN")) return stationId;
+        Long userId = tokenService.extractUserIdFromRequest(request);
+        return stationStaffService.getStationIdByUserId(userId);
+    }
+
+    // Header tải tệp: <loại>_<from>_<to>.csv.gz
+    private static void prepare(HttpServletResponse response, String name, LocalDate from, LocalDate to) {
+        response.setContentType(GZIP_CONTENT_TYPE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(name + "_" + from + "_" + to + ".csv.gz")
+                .build()
+                .toString());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, "no-store");
+    }
+}
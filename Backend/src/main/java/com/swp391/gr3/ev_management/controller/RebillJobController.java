@@ -0,0 +1,90 @@
+package com.swp391.gr3.ev_management.controller;
+
+import com.swp391.gr3.ev_management.dto.request.RebillJobRequest;
+import com.swp391.gr3.ev_management.dto.response.RebillDiffResponse;
+import com.swp391.gr3.ev_management.dto.response.RebillJobResponse;
+import com.swp391.gr3.ev_management.service.InvoiceRebillService;
+import com.swp391.gr3.ev_management.service.TokenService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController // ✅ REST controller trả JSON
+@RequestMapping("/api/admin/rebill-jobs") // ✅ Job tính lại hóa đơn sau khi sửa tariff
+@Tag(name = "Rebill Jobs", description = "APIs for recomputing session costs / invoices after a tariff correction")
+@RequiredArgsConstructor
+public class RebillJobController {
+
+    private final InvoiceRebillService invoiceRebillService; // ✅ Chạy job nền + báo cáo chênh lệch
+    private final TokenService tokenService;                 // ✅ Lấy userId của admin tạo job
+
+    // =========================================================================
+    // ✅ 1. ADMIN: TẠO JOB TÍNH LẠI (mặc định dry-run: chỉ báo cáo chênh lệch)
+    // =========================================================================
+    @PostMapping // 🔗 POST /api/admin/rebill-jobs
+    @PreAuthorize("hasRole('ADMIN')")
+    @SecurityRequirement(name = "bearerAuth")
+    @Operation(summary = "Start rebill job",
+            description = "Admin only - Recompute costs of completed sessions overlapping [from, to); dryRun=false adjusts unpaid invoices")
+    public ResponseEntity<RebillJobResponse> start(@Valid @RequestBody RebillJobRequest body,
+                                                   HttpServletRequest request) {
+        Long userId = tokenService.extractUserIdFromRequest(request);
+        // 🟢 202: job chạy nền, theo dõi tiến độ qua GET /{jobId}
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(invoiceRebillService.start(body, userId));
+    }
+
+    // =========================================================================
+    // ✅ 2. ADMIN: CHẠY TIẾP JOB LỖI TỪ CHECKPOINT
+    // =========================================================================
+    @PostMapping("/{jobId}/resume") // 🔗 POST /api/admin/rebill-jobs/{jobId}/resume
+    @PreAuthorize("hasRole('ADMIN')")
+    @SecurityRequirement(name = "bearerAuth")
+    @Operation(summary = "Resume rebill job", description = "Admin only - Continue a failed / interrupted job from its checkpoint")
+    public ResponseEntity<RebillJobResponse> resume(@PathVariable Long jobId) {
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(invoiceRebillService.resume(jobId));
+    }
+
+    // =========================================================================
+    // ✅ 3. ADMIN: TIẾN ĐỘ / DANH SÁCH JOB
+    // =========================================================================
+    @GetMapping("/{jobId}") // 🔗 GET /api/admin/rebill-jobs/{jobId}
+    @PreAuthorize("hasRole('ADMIN')")
+    @SecurityRequirement(name = "bearerAuth")
+    @Operation(summary = "Get rebill job", description = "Admin only - Status, progress and throughput of a job")
+    public ResponseEntity<RebillJobResponse> get(@PathVariable Long jobId) {
+        return ResponseEntity.ok(invoiceRebillService.get(jobId));
+    }
+
+    @GetMapping // 🔗 GET /api/admin/rebill-jobs
+    @PreAuthorize("hasRole('ADMIN')")
+    @SecurityRequirement(name = "bearerAuth")
+    @Operation(summary = "List rebill jobs", description = "Admin only - 50 most recent jobs")
+    public ResponseEntity<List<RebillJobResponse>> recent() {
+        return ResponseEntity.ok(invoiceRebillService.recent());
+    }
+
+    // =========================================================================
+    // ✅ 4. ADMIN: BÁO CÁO CHÊNH LỆCH (cũ → mới) CỦA JOB
+    // =========================================================================
+    @GetMapping("/{jobId}/diff") // 🔗 GET /api/admin/rebill-jobs/{jobId}/diff?page=0&size=100
+    @PreAuthorize("hasRole('ADMIN')")
+    @SecurityRequirement(name = "bearerAuth")
+    @Operation(summary = "Rebill diff report", description = "Admin only - Sessions whose recomputed amount differs")
+    public ResponseEntity<Page<RebillDiffResponse>> diff(@PathVariable Long jobId,
+                                                         @RequestParam(defaultValue = "0") int page,
+                                                         @RequestParam(defaultValue = "100") int size) {
+        PageRequest pageable = PageRequest.of(Math.max(0, page), Math.min(Math.max(1, size), 1000));
+        return ResponseEntity.ok(invoiceRebillService.diff(jobId, pageable));
+    }
+}
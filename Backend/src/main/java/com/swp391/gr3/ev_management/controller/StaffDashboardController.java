@@ -5,6 +5,7 @@ import com.swp391.gr3.ev_management.entity.*;
 import com.swp391.gr3.ev_management.enums.*;
 import com.swp391.gr3.ev_management.service.*;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -18,7 +19,6 @@ import java.util.ArrayList;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/staff/dashboard")
@@ -30,10 +30,26 @@ public class StaffDashboardController {
     private final BookingService bookingService;
     private final TransactionService transactionService;
     private final ChargingPointService chargingPointService;
+    private final DashboardCache dashboardCache; // Trả kết quả đã tính, làm mới nền (header Age / X-Cache)
+    private final SessionHistogramService sessionHistogramService; // Histogram số phiên / kWh theo giờ đã tính sẵn
 
     @PreAuthorize("hasRole('STAFF') or hasRole('ADMIN')")
     @GetMapping("/stats")
     public ResponseEntity<StaffDashboardStatsResponse> getTodayStats() {
+        DashboardCache.Cached<StaffDashboardStatsResponse> stats =
+                dashboardCache.get(DashboardView.STAFF_STATS, this::computeTodayStats);
+        return ResponseEntity.ok().headers(stats.headers()).body(stats.value());
+    }
+
+    @GetMapping("/stations-status")
+    public ResponseEntity<List<StationStatusResponse>> getStationsStatus() {
+        DashboardCache.Cached<List<StationStatusResponse>> status =
+                dashboardCache.get(DashboardView.STAFF_STATIONS, this::computeStationsStatus);
+        return ResponseEntity.ok().headers(status.headers()).body(status.value());
+    }
+
+    // Tính lại (DashboardCache gọi ở thread nền, trong transaction read-only)
+    private StaffDashboardStatsResponse computeTodayStats() {
         // Count active stations
         long activeStations = chargingStationService.countByStatus(ChargingStationStatus.ACTIVE);
 
@@ -57,19 +73,20 @@ public class StaffDashboardController {
         Map<String, Long> pointStats = chargingPointService
                 .countGroupByStatus();
 
-        return ResponseEntity.ok(new StaffDashboardStatsResponse(
+        return new StaffDashboardStatsResponse(
                 activeStations,
                 activeSessions,
                 todayBookings,
                 todayRevenue,
                 pointStats
-        ));
+        );
     }
 
-    @GetMapping("/stations-status")
-    public ResponseEntity<List<StationStatusResponse>> getStationsStatus() {
+    private List<StationStatusResponse> computeStationsStatus() {
 
         List<ChargingStation> stations = chargingStationService.findAll();
+        // Số phiên đang chạy theo trạm (từ registry trong bộ nhớ)
+        Map<Long, Integer> activeByStation = chargingSessionService.countActiveSessionsByStation();
 
         List<StationStatusResponse> response = stations.stream().map(station -> {
             List<ChargingPoint> points = station.getPoints();
@@ -95,11 +112,12 @@ public class StaffDashboardController {
                     available,
                     inUse,
                     maintenance,
-                    station.getStatus().name()
+                    station.getStatus().name(),
+                    activeByStation.getOrDefault(station.getStationId(), 0)
             );
         }).toList();
 
-        return ResponseEntity.ok(response);
+        return response;
     }
 
     @GetMapping("/pending-bookings")
@@ -192,31 +210,15 @@ public class StaffDashboardController {
         return ResponseEntity.ok(sortedLimited);
     }
 
+    // Số phiên (theo giờ bắt đầu) / kWh (theo giờ kết thúc) theo khung giờ trong ngày, cộng qua các ngày [from, to]
     @GetMapping("/chart/sessions-per-hour")
-    public ResponseEntity<List<SessionsPerHourResponse>> getSessionsPerHour() {
-        LocalDateTime startOfDay = LocalDate.now().atStartOfDay();
-        LocalDateTime endOfDay = startOfDay.plusDays(1);
-
-        // Lấy tất cả phiên sạc bắt đầu trong hôm nay
-        List<ChargingSession> todaySessions = chargingSessionService
-                .findByStartTimeBetween(startOfDay, endOfDay);
-
-        // Group theo giờ (0–23) và đếm
-        Map<Integer, Long> sessionsByHour = todaySessions.stream()
-                .collect(Collectors.groupingBy(
-                        session -> session.getStartTime().getHour(),
-                        Collectors.counting()
-                ));
-
-        // Tạo dữ liệu theo từng khung 4 tiếng: 00:00, 04:00, 08:00, ...
-        List<SessionsPerHourResponse> response = new ArrayList<>();
-        for (int hour = 0; hour < 24; hour += 4) {
-            response.add(new SessionsPerHourResponse(
-                    String.format("%02d:00", hour),
-                    sessionsByHour.getOrDefault(hour, 0L)
-            ));
-        }
-
-        return ResponseEntity.ok(response);
+    public ResponseEntity<List<SessionsPerHourResponse>> getSessionsPerHour(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Long stationId,
+            @RequestParam(defaultValue = "4") int bucketHours
+    ) {
+        // Đọc histogram đã tính sẵn (không tải từng phiên), cộng theo khung bucketHours tiếng; mặc định hôm nay
+        return ResponseEntity.ok(sessionHistogramService.sessionsPerHour(from, to, stationId, bucketHours));
     }
 }
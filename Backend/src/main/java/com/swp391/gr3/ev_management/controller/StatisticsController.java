@@ -2,19 +2,30 @@
 package com.swp391.gr3.ev_management.controller;
 
 import com.swp391.gr3.ev_management.dto.response.DashboardStatsResponse;
+import com.swp391.gr3.ev_management.dto.response.StationUtilizationResponse;
 import com.swp391.gr3.ev_management.dto.response.UserTotalsResponse;
+import com.swp391.gr3.ev_management.dto.response.UtilizationRowDto;
+import com.swp391.gr3.ev_management.enums.DashboardView;
+import com.swp391.gr3.ev_management.service.DashboardCache;
 import com.swp391.gr3.ev_management.service.StatisticsService;
+import com.swp391.gr3.ev_management.service.UtilizationService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 @RestController // ✅ Đánh dấu đây là REST Controller — trả dữ liệu JSON thay vì view
 @RequestMapping("/api/statics") // ✅ Tất cả endpoint trong controller này bắt đầu bằng /api/statics
 @RequiredArgsConstructor // ✅ Lombok: tự động tạo constructor cho các field final (Dependency Injection)
 public class StatisticsController {
 
     private final StatisticsService statisticsService; // ✅ Service xử lý logic liên quan đến thống kê dữ liệu hệ thống
+    private final DashboardCache dashboardCache;       // ✅ Trả kết quả đã tính, làm mới nền (header Age / X-Cache)
+    private final UtilizationService utilizationService; // ✅ Mức sử dụng trụ / trạm từ khoảng phiên sạc thật
 
     // =========================================================================
     // ✅ 1. ADMIN: LẤY THỐNG KÊ TỔNG QUAN (DASHBOARD)
@@ -22,12 +33,13 @@ public class StatisticsController {
     @PreAuthorize("hasRole('ADMIN')") // 🔒 Chỉ người dùng có vai trò ADMIN mới được truy cập endpoint này
     @GetMapping("/dashboard") // 🔗 Endpoint: GET /api/statics/dashboard
     public ResponseEntity<DashboardStatsResponse> getDashboard() {
-        // 🟢 Gọi service để lấy dữ liệu thống kê tổng quan cho dashboard admin
+        // 🟢 Lấy dữ liệu thống kê tổng quan cho dashboard admin qua cache (tính lại nền tối đa 1 lần / chu kỳ)
         //    Ví dụ: số lượng người dùng, trạm, doanh thu, lượt sạc, ...
-        DashboardStatsResponse body = statisticsService.getDashboard();
+        DashboardCache.Cached<DashboardStatsResponse> body =
+                dashboardCache.get(DashboardView.ADMIN_DASHBOARD, statisticsService::getDashboard);
 
-        // 🟢 Trả về HTTP 200 (OK) cùng dữ liệu thống kê dạng JSON
-        return ResponseEntity.ok(body);
+        // 🟢 Trả về HTTP 200 (OK) cùng dữ liệu thống kê dạng JSON + tuổi của kết quả
+        return ResponseEntity.ok().headers(body.headers()).body(body.value());
     }
 
     // =========================================================================
@@ -36,10 +48,48 @@ public class StatisticsController {
     @PreAuthorize("hasRole('ADMIN')") // 🔒 Chỉ ADMIN có quyền xem tổng số người dùng
     @GetMapping("/totals") // 🔗 Endpoint: GET /api/statics/totals
     public ResponseEntity<UserTotalsResponse> getTotals() {
-        // 🟢 Gọi service để lấy tổng số liệu người dùng theo từng loại (admin, staff, driver, ...)
-        UserTotalsResponse response = statisticsService.getTotals();
+        // 🟢 Lấy tổng số liệu người dùng theo từng loại (admin, staff, driver, ...) qua cache
+        DashboardCache.Cached<UserTotalsResponse> response =
+                dashboardCache.get(DashboardView.ADMIN_TOTALS, statisticsService::getTotals);
+
+        // 🟢 Trả về HTTP 200 (OK) cùng dữ liệu tổng hợp + tuổi của kết quả
+        return ResponseEntity.ok().headers(response.headers()).body(response.value());
+    }
+
+    // =========================================================================
+    // ✅ 3. ADMIN: MỨC SỬ DỤNG CÁC TRẠM TRONG KHOẢNG [from, to)
+    // =========================================================================
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/utilization") // 🔗 GET /api/statics/utilization?from=2025-06-01T00:00:00&to=2025-07-01T00:00:00
+    public ResponseEntity<List<UtilizationRowDto>> getUtilization(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        // 🟢 Giờ trụ bị chiếm / giờ khả dụng của từng trạm (biên làm tròn ra giờ)
+        return ResponseEntity.ok(utilizationService.stations(from, to));
+    }
 
-        // 🟢 Trả về HTTP 200 (OK) cùng dữ liệu tổng hợp
-        return ResponseEntity.ok(response);
+    // =========================================================================
+    // ✅ 4. ADMIN: MỨC SỬ DỤNG 1 TRẠM — THEO TRỤ + ĐƯỜNG CONG GIỜ CAO ĐIỂM
+    // =========================================================================
+    @PreAuthorize("hasRole('ADMIN')")
+    @GetMapping("/utilization/stations/{stationId}") // 🔗 GET /api/statics/utilization/stations/{stationId}?from=...&to=...
+    public ResponseEntity<StationUtilizationResponse> getStationUtilization(
+            @PathVariable Long stationId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        return ResponseEntity.ok(utilizationService.station(stationId, from, to));
+    }
+
+    // =========================================================================
+    // ✅ 5. ADMIN: DỰNG LẠI BẢNG CHIẾM TRỤ THEO GIỜ (lịch sử / sau khi sửa dữ liệu phiên)
+    // =========================================================================
+    @PreAuthorize("hasRole('ADMIN')")
+    @PostMapping("/utilization/rebuild") // 🔗 POST /api/statics/utilization/rebuild?from=...&to=...
+    public ResponseEntity<Integer> rebuildUtilization(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        if (!from.isBefore(to)) throw new IllegalArgumentException("from must be before to");
+        // 🟢 Trả về số bucket (giờ × trụ) đã ghi
+        return ResponseEntity.ok(utilizationService.rebuild(from, to));
     }
 }
@@ -0,0 +1,54 @@
+package com.swp391.gr3.ev_management.controller;
+
+import com.swp391.gr3.ev_management.dto.response.StatsRollupBackfillResponse;
+import com.swp391.gr3.ev_management.dto.response.StatsRollupReconcileResponse;
+import com.swp391.gr3.ev_management.service.StatsRollupService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@RestController // ✅ REST controller trả JSON
+@RequestMapping("/api/admin/stats-rollups") // ✅ Bảng thống kê theo giờ của dashboard
+@Tag(name = "Stats Rollups", description = "APIs for rebuilding / reconciling the hourly dashboard rollups")
+@RequiredArgsConstructor
+public class StatsRollupController {
+
+    private final StatsRollupService statsRollupService; // ✅ Backfill + đối soát với bảng gốc
+
+    // =========================================================================
+    // ✅ 1. ADMIN: DỰNG LẠI BUCKET TỪ BẢNG GỐC
+    // =========================================================================
+    @PostMapping("/backfill") // 🔗 POST /api/admin/stats-rollups/backfill?from=2025-01-01&to=2025-01-31
+    @PreAuthorize("hasRole('ADMIN')")
+    @SecurityRequirement(name = "bearerAuth")
+    @Operation(summary = "Backfill rollups",
+            description = "Admin only - Rebuild hourly buckets of days [from, to] from invoices / sessions (default: all history)")
+    public ResponseEntity<StatsRollupBackfillResponse> backfill(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        return ResponseEntity.ok(statsRollupService.backfill(from, to));
+    }
+
+    // =========================================================================
+    // ✅ 2. ADMIN: ĐỐI SOÁT ROLLUP VỚI BẢNG GỐC
+    // =========================================================================
+    @GetMapping("/reconcile") // 🔗 GET /api/admin/stats-rollups/reconcile?from=...&to=...&repair=false
+    @PreAuthorize("hasRole('ADMIN')")
+    @SecurityRequirement(name = "bearerAuth")
+    @Operation(summary = "Reconcile rollups",
+            description = "Admin only - Compare daily rollup totals with raw invoices / sessions; repair=true rebuilds mismatched days")
+    public ResponseEntity<List<StatsRollupReconcileResponse>> reconcile(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "false") boolean repair) {
+        return ResponseEntity.ok(statsRollupService.reconcile(from, to, repair));
+    }
+}
@@ -0,0 +1,37 @@
+package com.swp391.gr3.ev_management.dto.request;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MeterReadingRequest {
+
+    @NotNull(message = "ID phiên sạc không được để trống")
+    @Positive(message = "ID phiên sạc phải là số dương")
+    private Long sessionId;
+
+    // Thời điểm đo (giờ VN); bỏ trống → lấy thời điểm server nhận
+    private LocalDateTime measuredAt;
+
+    @Min(value = 0, message = "SOC phải lớn hơn hoặc bằng 0")
+    @Max(value = 100, message = "SOC phải nhỏ hơn hoặc bằng 100")
+    private Integer soc;
+
+    @PositiveOrZero(message = "Công suất không được âm")
+    private Double powerKw;
+
+    @PositiveOrZero(message = "Điện năng không được âm")
+    private Double energyKwh;
+}
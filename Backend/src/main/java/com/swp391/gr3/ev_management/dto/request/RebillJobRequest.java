@@ -0,0 +1,31 @@
+package com.swp391.gr3.ev_management.dto.request;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class RebillJobRequest {
+
+    @NotNull(message = "Thời điểm bắt đầu không được để trống")
+    private LocalDateTime from;
+
+    @NotNull(message = "Thời điểm kết thúc không được để trống")
+    private LocalDateTime to;
+
+    // Chỉ tính lại phiên của loại đầu nối này (để trống = tất cả)
+    @Positive(message = "ID loại đầu nối phải là số dương")
+    private Long connectorTypeId;
+
+    // Mặc định chỉ xem chênh lệch, không sửa hóa đơn
+    @Builder.Default
+    private boolean dryRun = true;
+}
@@ -0,0 +1,19 @@
+package com.swp391.gr3.ev_management.dto.response;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 1 trang lịch sử phiên sạc của driver (phân trang keyset).
+ * Trang tiếp theo: gửi lại nextBeforeStart + nextBeforeId (null khi đã hết).
+ */
+@Getter @Setter @Builder
+@AllArgsConstructor @NoArgsConstructor
+public class ChargingSessionHistoryPage {
+    private List<ChargingSessionBriefResponse> items;
+    private boolean hasMore;
+    private LocalDateTime nextBeforeStart;
+    private Long nextBeforeId;
+}
@@ -1,5 +1,6 @@
 package com.swp391.gr3.ev_management.dto.response;
 
+import com.swp391.gr3.ev_management.enums.ChargingSessionStatus;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -14,4 +15,7 @@ public class ChargingStatusResponse {
     private double currentSoc; // mức pin hiện tại (%)
     private double energyKWh;  // điện năng đã nạp (tuỳ chọn)
     private long minutesElapsed;
+    private Long stationId;    // trạm của phiên (stream theo trạm)
+    private Double powerKw;    // công suất tức thời từ telemetry (null nếu chưa có)
+    private ChargingSessionStatus status;
 }
@@ -0,0 +1,10 @@
+package com.swp391.gr3.ev_management.dto.response;
+
+import lombok.*;
+
+/** 1 điểm của đường cong giờ cao điểm: % trụ bị chiếm trung bình trong giờ {@code hour} (0..23) của các ngày */
+@Data @Builder @NoArgsConstructor @AllArgsConstructor
+public class HourlyOccupancyDto {
+    private int hour;
+    private double occupancyPercent;
+}
@@ -0,0 +1,28 @@
+package com.swp391.gr3.ev_management.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 1 dòng chi tiết tính tiền phiên sạc: 1 khoảng thời gian liên tục cùng tariff + cùng khung giờ.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class PriceLineResponse {
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private Long tariffId;        // null = không có tariff hiệu lực (miễn phí)
+    private String band;          // khung giờ, VD "17:00-22:00" (null = không chia khung)
+    private double pricePerKWh;   // giá đã nhân hệ số khung giờ
+    private double pricePerMin;
+    private double energyKWh;
+    private double billedMinutes; // số phút chiếm chỗ bị tính tiền trong khoảng này
+    private double energyCost;
+    private double timeCost;
+}
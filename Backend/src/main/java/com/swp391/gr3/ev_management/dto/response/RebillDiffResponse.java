@@ -0,0 +1,21 @@
+package com.swp391.gr3.ev_management.dto.response;
+
+import com.swp391.gr3.ev_management.enums.InvoiceStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RebillDiffResponse {
+    private Long sessionId;
+    private Long invoiceId;
+    private InvoiceStatus invoiceStatus;
+    private double oldAmount;
+    private double newAmount;
+    private double delta;
+    private boolean applied;
+}
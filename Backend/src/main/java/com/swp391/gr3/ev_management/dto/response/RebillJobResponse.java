@@ -0,0 +1,35 @@
+package com.swp391.gr3.ev_management.dto.response;
+
+import com.swp391.gr3.ev_management.enums.RebillJobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class RebillJobResponse {
+    private Long jobId;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private Long connectorTypeId;
+    private boolean dryRun;
+    private RebillJobStatus status;
+    private long checkpointSessionId;
+    private long totalSessions;
+    private long processed;
+    private long changed;
+    private long skipped;
+    private double amountDelta;
+    private double percentDone;
+    // Tốc độ của lần chạy gần nhất (phiên / giây)
+    private double sessionsPerSecond;
+    private String lastError;
+    private LocalDateTime startedAt;
+    private LocalDateTime updatedAt;
+    private LocalDateTime finishedAt;
+}
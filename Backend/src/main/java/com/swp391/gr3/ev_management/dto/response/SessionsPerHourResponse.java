@@ -7,5 +7,6 @@ import lombok.Data;
 @AllArgsConstructor
 public class SessionsPerHourResponse {
     private String hour;   // "00:00", "04:00", ...
-    private Long count;    // số phiên sạc trong khung giờ
+    private Long count;    // số phiên sạc bắt đầu trong khung giờ
+    private Double energyKwh; // kWh của các phiên kết thúc trong khung giờ
 }
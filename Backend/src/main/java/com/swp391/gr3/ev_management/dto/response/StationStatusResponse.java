@@ -15,4 +15,6 @@ public class StationStatusResponse {
     private long maintenancePoints;
 
     private String status;
+
+    private long activeSessions; // số phiên sạc đang chạy tại trạm
 }
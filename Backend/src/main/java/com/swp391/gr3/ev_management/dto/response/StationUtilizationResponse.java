@@ -0,0 +1,20 @@
+package com.swp391.gr3.ev_management.dto.response;
+
+import lombok.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/** Mức sử dụng của 1 trạm trong [from, to): tổng, theo từng trụ, và đường cong theo giờ trong ngày */
+@Data @Builder @NoArgsConstructor @AllArgsConstructor
+public class StationUtilizationResponse {
+    private Long stationId;
+    private String stationName;
+    private LocalDateTime from;
+    private LocalDateTime to;
+    private long points;
+    private double occupiedHours;
+    private double utilizationPercent;
+    private List<UtilizationRowDto> pointRows;
+    private List<HourlyOccupancyDto> curve;
+}
@@ -0,0 +1,21 @@
+package com.swp391.gr3.ev_management.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatsRollupBackfillResponse {
+    private LocalDate from;
+    private LocalDate to;
+    private int days;
+    // Số bucket (giờ × trạm × connector) đã ghi
+    private long buckets;
+    private long tookMs;
+}
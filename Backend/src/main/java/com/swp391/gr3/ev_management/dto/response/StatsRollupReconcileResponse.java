@@ -0,0 +1,28 @@
+package com.swp391.gr3.ev_management.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+
+/** Đối soát 1 ngày: tổng của bảng rollup so với bảng gốc (hóa đơn PAID, phiên COMPLETED) */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class StatsRollupReconcileResponse {
+    private LocalDate day;
+    private double rollupRevenue;
+    private double rawRevenue;
+    private double rollupEnergyKwh;
+    private double rawEnergyKwh;
+    private long rollupSessions;
+    private long rawSessions;
+    private long rollupMinutes;
+    private long rawMinutes;
+    private boolean matched;
+    // true = ngày lệch đã được dựng lại từ bảng gốc
+    private boolean repaired;
+}
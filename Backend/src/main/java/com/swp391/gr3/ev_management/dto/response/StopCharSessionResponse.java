@@ -5,6 +5,7 @@ import lombok.Builder;
 import lombok.Data;
 
 import java.time.LocalDateTime;
+import java.util.List;
 
 @Data
 @Builder
@@ -23,4 +24,5 @@ public class StopCharSessionResponse {
     private Integer finalSoc;   // thêm
     private Double pricePerKWh; // thêm
     private String currency;
+    private List<PriceLineResponse> priceBreakdown; // chi tiết tính tiền theo tariff / khung giờ
 }
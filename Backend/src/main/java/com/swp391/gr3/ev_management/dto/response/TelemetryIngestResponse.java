@@ -0,0 +1,15 @@
+package com.swp391.gr3.ev_management.dto.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class TelemetryIngestResponse {
+    private int accepted;  // số reading đã nhận vào buffer
+    private int rejected;  // số reading bị từ chối (phiên không hoạt động / buffer đầy)
+}
@@ -0,0 +1,13 @@
+package com.swp391.gr3.ev_management.dto.response;
+
+import lombok.*;
+
+/** Mức sử dụng của 1 trạm (hoặc 1 trụ, points = 1) trong khoảng: giờ bị chiếm / (số trụ × số giờ) */
+@Data @Builder @NoArgsConstructor @AllArgsConstructor
+public class UtilizationRowDto {
+    private Long id;
+    private String name;
+    private long points;
+    private double occupiedHours;
+    private double utilizationPercent;
+}
@@ -4,11 +4,13 @@ import java.time.LocalDateTime;
 
 import com.swp391.gr3.ev_management.enums.ChargingSessionStatus;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
 
 @Data
 @Builder
+@AllArgsConstructor
 public class ViewCharSessionResponse {
     private Long sessionId;
     private Long bookingId;
@@ -13,7 +13,12 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "ChargingSession")
+@Table(name = "ChargingSession", indexes = {
+        // Phiên hiện tại của driver (status = IN_PROGRESS) và lịch sử theo trạng thái
+        @Index(name = "IX_ChargingSession_DriverUser_Status_Start", columnList = "DriverUserID, Status, StartTime"),
+        // Lịch sử của driver phân trang keyset theo (StartTime, SessionID) giảm dần
+        @Index(name = "IX_ChargingSession_DriverUser_Start", columnList = "DriverUserID, StartTime, SessionID")
+})
 @Data
 @NoArgsConstructor @AllArgsConstructor @Builder
 public class ChargingSession {
@@ -27,6 +32,14 @@ public class ChargingSession {
     @JoinColumn(name = "BookingID", unique = true, nullable = true)
     private Booking booking;
 
+    // userId của chủ xe (booking → vehicle → driver → user), ghi lúc start để tra theo index thay vì join 4 bảng
+    @Column(name = "DriverUserID")
+    private Long driverUserId;
+
+    // Ngữ cảnh tính tiền chụp lúc start (tariff, công suất trụ, pin, khung giờ...) → stop không phải join lại
+    @Embedded
+    private SessionBillingSnapshot billing;
+
     @Column(name = "StartTime")
     private LocalDateTime startTime;
 
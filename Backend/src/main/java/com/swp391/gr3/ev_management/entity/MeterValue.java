@@ -0,0 +1,46 @@
+package com.swp391.gr3.ev_management.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 1 lần đọc đồng hồ của trụ sạc trong phiên sạc (SoC, công suất, điện năng tích lũy).
+ * Được ghi theo lô bởi TelemetryIngestService (JDBC batch), không đi qua Hibernate khi insert.
+ */
+@Entity
+@Table(name = "MeterValue", indexes = {
+        @Index(name = "IX_MeterValue_Session_MeasuredAt", columnList = "SessionID, MeasuredAt")
+})
+@Data
+@NoArgsConstructor @AllArgsConstructor @Builder
+public class MeterValue {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "MeterValueID")
+    private Long meterValueId;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "SessionID", nullable = false)
+    private ChargingSession session;
+
+    @Column(name = "MeasuredAt", nullable = false)
+    private LocalDateTime measuredAt;
+
+    // Mức pin (%) — có thể null nếu trụ không báo SoC
+    @Column(name = "Soc")
+    private Integer soc;
+
+    // Công suất tức thời (kW)
+    @Column(name = "PowerKw")
+    private Double powerKw;
+
+    // Điện năng tích lũy từ đầu phiên (kWh)
+    @Column(name = "EnergyKwh")
+    private Double energyKwh;
+}
@@ -0,0 +1,73 @@
+package com.swp391.gr3.ev_management.entity;
+
+import com.swp391.gr3.ev_management.enums.OutboxEventType;
+import com.swp391.gr3.ev_management.enums.OutboxStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Transactional outbox: việc phụ (hóa đơn, thông báo, email) ghi cùng transaction với nghiệp vụ chính,
+ * OutboxDispatcher xử lý sau theo lô, có thử lại.
+ *
+ * - PartitionKey: các sự kiện cùng key (vd "user:12") được xử lý đúng thứ tự OutboxID.
+ * - ClaimedBy / ClaimedUntil: lease của node đang xử lý (giống SessionDeadline).
+ */
+@Entity
+@Table(name = "OutboxEvent", indexes = {
+        // Lấy các sự kiện tới lượt xử lý
+        @Index(name = "IX_OutboxEvent_Status_NextAttempt", columnList = "Status, NextAttemptAt, OutboxID"),
+        // Kiểm tra sự kiện trước đó cùng key (giữ thứ tự theo user)
+        @Index(name = "IX_OutboxEvent_Partition_Status", columnList = "PartitionKey, Status, OutboxID")
+})
+@Data
+@NoArgsConstructor @AllArgsConstructor @Builder
+public class OutboxEvent {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "OutboxID")
+    private Long outboxId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "EventType", columnDefinition = "NVARCHAR(50)", nullable = false)
+    private OutboxEventType eventType;
+
+    @Column(name = "PartitionKey", columnDefinition = "NVARCHAR(64)", nullable = false)
+    private String partitionKey;
+
+    // Nội dung sự kiện dạng JSON
+    @Column(name = "Payload", columnDefinition = "NVARCHAR(MAX)", nullable = false)
+    private String payload;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "Status", columnDefinition = "NVARCHAR(20)", nullable = false)
+    private OutboxStatus status;
+
+    @Column(name = "Attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "NextAttemptAt", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "ClaimedBy", columnDefinition = "NVARCHAR(64)")
+    private String claimedBy;
+
+    @Column(name = "ClaimedUntil")
+    private LocalDateTime claimedUntil;
+
+    @Column(name = "LastError", columnDefinition = "NVARCHAR(1000)")
+    private String lastError;
+
+    @CreationTimestamp
+    @Column(name = "CreatedAt", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "ProcessedAt")
+    private LocalDateTime processedAt;
+}
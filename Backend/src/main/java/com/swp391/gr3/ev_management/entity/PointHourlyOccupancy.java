@@ -0,0 +1,47 @@
+package com.swp391.gr3.ev_management.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Số giây 1 trụ sạc bị chiếm trong 1 giờ (hợp các khoảng start → end của phiên, phiên đang chạy tính tới lúc tính).
+ * Do UtilizationService dựng lại theo khoảng giờ (xóa + chèn), dashboard chỉ cộng bucket.
+ */
+@Entity
+@Table(name = "PointHourlyOccupancy", uniqueConstraints = {
+        @UniqueConstraint(name = "UX_PointHourlyOccupancy_Bucket", columnNames = {"BucketStart", "PointID"})
+}, indexes = {
+        @Index(name = "IX_PointHourlyOccupancy_Station_Bucket", columnList = "StationID, BucketStart")
+})
+@Data
+@NoArgsConstructor @AllArgsConstructor @Builder
+public class PointHourlyOccupancy {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "OccupancyID")
+    private Long occupancyId;
+
+    // Đầu giờ của bucket (giờ địa phương, phút / giây = 0)
+    @Column(name = "BucketStart", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(name = "PointID", nullable = false)
+    private long pointId;
+
+    // Trạm của phiên (0 = phiên không có booking)
+    @Column(name = "StationID", nullable = false)
+    private long stationId;
+
+    // 0..3600
+    @Column(name = "OccupiedSeconds", nullable = false)
+    private int occupiedSeconds;
+
+    @Column(name = "UpdatedAt", nullable = false)
+    private LocalDateTime updatedAt;
+}
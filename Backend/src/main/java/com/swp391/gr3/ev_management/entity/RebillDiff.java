@@ -0,0 +1,50 @@
+package com.swp391.gr3.ev_management.entity;
+
+import com.swp391.gr3.ev_management.enums.InvoiceStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 1 dòng báo cáo chênh lệch của RebillJob: phiên có tiền tính lại khác tiền đã chốt.
+ * Ghi bằng JDBC batch cùng transaction với lô điều chỉnh (InvoiceRebillServiceImpl).
+ */
+@Entity
+@Table(name = "RebillDiff", indexes = {
+        @Index(name = "IX_RebillDiff_Job_Session", columnList = "JobID, SessionID")
+})
+@Data
+@NoArgsConstructor @AllArgsConstructor @Builder
+public class RebillDiff {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "RebillDiffID")
+    private Long rebillDiffId;
+
+    @Column(name = "JobID", nullable = false)
+    private Long jobId;
+
+    @Column(name = "SessionID", nullable = false)
+    private Long sessionId;
+
+    // null = phiên chưa có hóa đơn
+    @Column(name = "InvoiceID")
+    private Long invoiceId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "InvoiceStatus", columnDefinition = "NVARCHAR(20)")
+    private InvoiceStatus invoiceStatus;
+
+    @Column(name = "OldAmount", nullable = false)
+    private double oldAmount;
+
+    @Column(name = "NewAmount", nullable = false)
+    private double newAmount;
+
+    // true = đã sửa hóa đơn + phiên; false = dry-run hoặc không sửa được (đã thanh toán / chưa có hóa đơn)
+    @Column(name = "Applied", nullable = false)
+    private boolean applied;
+}
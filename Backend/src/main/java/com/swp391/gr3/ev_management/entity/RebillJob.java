@@ -0,0 +1,93 @@
+package com.swp391.gr3.ev_management.entity;
+
+import com.swp391.gr3.ev_management.enums.RebillJobStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Job tính lại tiền phiên sạc / hóa đơn sau khi sửa tariff (InvoiceRebillService).
+ *
+ * - CheckpointSessionID: SessionID lớn nhất đã xử lý xong; ghi cùng transaction với lô điều chỉnh
+ *   → resume sau lỗi đi tiếp từ đây, không phiên nào bị điều chỉnh 2 lần.
+ * - DryRun: chỉ ghi báo cáo chênh lệch (RebillDiff), không sửa hóa đơn.
+ */
+@Entity
+@Table(name = "RebillJob")
+@Data
+@NoArgsConstructor @AllArgsConstructor @Builder
+public class RebillJob {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "JobID")
+    private Long jobId;
+
+    // Khoảng thời gian bị ảnh hưởng: phiên có [StartTime, EndTime] giao với [RangeFrom, RangeTo)
+    @Column(name = "RangeFrom", nullable = false)
+    private LocalDateTime rangeFrom;
+
+    @Column(name = "RangeTo", nullable = false)
+    private LocalDateTime rangeTo;
+
+    // null = mọi loại đầu nối
+    @Column(name = "ConnectorTypeID")
+    private Long connectorTypeId;
+
+    @Column(name = "DryRun", nullable = false)
+    private boolean dryRun;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "Status", columnDefinition = "NVARCHAR(20)", nullable = false)
+    private RebillJobStatus status;
+
+    @Column(name = "CheckpointSessionID", nullable = false)
+    private long checkpointSessionId;
+
+    // Tiến độ
+    @Column(name = "TotalSessions", nullable = false)
+    private long totalSessions;
+
+    @Column(name = "Processed", nullable = false)
+    private long processed;
+
+    // Processed lúc bắt đầu lần chạy gần nhất (để tính tốc độ của riêng lần đó)
+    @Column(name = "ProcessedAtStart", nullable = false)
+    private long processedAtStart;
+
+    @Column(name = "Changed", nullable = false)
+    private long changed;
+
+    // Có chênh lệch nhưng không sửa được (hóa đơn đã thanh toán / chưa có hóa đơn)
+    @Column(name = "Skipped", nullable = false)
+    private long skipped;
+
+    // Tổng chênh lệch (mới - cũ) của các hóa đơn đã / sẽ điều chỉnh
+    @Column(name = "AmountDelta", nullable = false)
+    private double amountDelta;
+
+    @Column(name = "RequestedBy")
+    private Long requestedBy;
+
+    @Column(name = "LastError", columnDefinition = "NVARCHAR(1000)")
+    private String lastError;
+
+    @CreationTimestamp
+    @Column(name = "CreatedAt", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+
+    // Lần chạy gần nhất bắt đầu lúc (resume → đặt lại, để tính tốc độ)
+    @Column(name = "StartedAt")
+    private LocalDateTime startedAt;
+
+    @Column(name = "UpdatedAt")
+    private LocalDateTime updatedAt;
+
+    @Column(name = "FinishedAt")
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,84 @@
+package com.swp391.gr3.ev_management.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ngữ cảnh tính tiền của 1 phiên sạc, chụp 1 lần lúc start và lưu cùng dòng ChargingSession.
+ *
+ * - Lúc stop chỉ cần đọc 1 dòng (session + booking + chủ xe) rồi tính toán, không đi lại
+ *   booking → slot → charging point → connector → model xe và không tra tariff lại.
+ * - Tariff hết hiệu lực trước lúc stop (TariffValidTo < endTime) hoặc lúc start chưa có tariff
+ *   → lúc stop tra lại tariff theo connector như cũ.
+ * - Phiên tạo trước khi có snapshot: cả khối null → ChargingSessionTxHandler tự dựng lại lúc stop.
+ * - Riêng IdleMinutes ghi lúc stop (số phút chiếm chỗ đã tính tiền) để job tính lại hóa đơn dựng lại đúng tiền phạt.
+ */
+@Embeddable
+@Data
+@NoArgsConstructor @AllArgsConstructor @Builder
+public class SessionBillingSnapshot {
+
+    // Tariff áp dụng tại thời điểm start (null = chưa có tariff)
+    @Column(name = "BillingTariffID")
+    private Long tariffId;
+
+    @Column(name = "BillingPricePerKWh")
+    private Double pricePerKWh;
+
+    @Column(name = "BillingPricePerMin")
+    private Double pricePerMin;
+
+    @Column(name = "BillingCurrency", columnDefinition = "NVARCHAR(10)")
+    private String currency;
+
+    @Column(name = "BillingTariffValidTo")
+    private LocalDateTime tariffValidTo;
+
+    // Connector dùng để tính tiền (connector của trụ, không có thì của model xe); null = phiên miễn phí
+    @Column(name = "BillingConnectorTypeID")
+    private Long connectorTypeId;
+
+    @Column(name = "BillingConnectorMode", columnDefinition = "NVARCHAR(10)")
+    private String connectorMode;
+
+    // Công suất trụ (kW) và dung lượng pin (kWh) cho đường cong sạc
+    @Column(name = "BillingRatedKW")
+    private Double ratedKw;
+
+    @Column(name = "BillingBatteryCapacityKWh")
+    private Double batteryCapacityKWh;
+
+    // Khung giờ của booking (chưa điều chỉnh theo createdAt / startTime)
+    @Column(name = "BillingWindowStart")
+    private LocalDateTime windowStart;
+
+    @Column(name = "BillingWindowEnd")
+    private LocalDateTime windowEnd;
+
+    // Giờ bắt đầu của slot muộn nhất: stop trước mốc này mới cần trả slot tương lai
+    @Column(name = "BillingLastSlotStart")
+    private LocalDateTime lastSlotStart;
+
+    @Column(name = "BillingSlotMinutes")
+    private Long slotMinutes;
+
+    @Column(name = "BillingBookedSlots")
+    private Integer bookedSlots;
+
+    @Column(name = "BillingPointNumber", columnDefinition = "NVARCHAR(20)")
+    private String pointNumber;
+
+    // Trụ của slot đầu tiên (null = phiên cũ / không có slot) — UtilizationService gom khoảng chiếm chỗ theo trụ
+    @Column(name = "BillingPointID")
+    private Long pointId;
+
+    // Số phút chiếm chỗ bị tính tiền (cuối khung booking), ghi lúc stop; null = phiên dừng trước khi có cột này
+    @Column(name = "BillingIdleMinutes")
+    private Long idleMinutes;
+}
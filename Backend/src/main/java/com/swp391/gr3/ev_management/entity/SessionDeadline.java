@@ -0,0 +1,46 @@
+package com.swp391.gr3.ev_management.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Hạn chót auto-stop của 1 phiên sạc đang chạy (bền vững qua restart / redeploy).
+ *
+ * - Tạo cùng transaction với ChargingSession khi start, xóa khi phiên sạc kết thúc.
+ * - ClaimedBy / ClaimedUntil: "lease" của node đang xử lý → nhiều node cùng chạy chỉ 1 node được fire.
+ */
+@Entity
+@Table(name = "SessionDeadline", indexes = {
+        @Index(name = "IX_SessionDeadline_DueAt", columnList = "DueAt")
+})
+@Data
+@NoArgsConstructor @AllArgsConstructor @Builder
+public class SessionDeadline {
+
+    @Id
+    @Column(name = "SessionID")
+    private Long sessionId;
+
+    // Thời điểm cần auto-stop (windowEnd của booking, giờ VN)
+    @Column(name = "DueAt", nullable = false)
+    private LocalDateTime dueAt;
+
+    @Column(name = "ClaimedBy", columnDefinition = "NVARCHAR(64)")
+    private String claimedBy;
+
+    @Column(name = "ClaimedUntil")
+    private LocalDateTime claimedUntil;
+
+    @Column(name = "Attempts", nullable = false)
+    private int attempts;
+
+    @CreationTimestamp
+    @Column(name = "CreatedAt", nullable = false, updatable = false)
+    private LocalDateTime createdAt;
+}
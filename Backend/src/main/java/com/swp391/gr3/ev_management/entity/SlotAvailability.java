@@ -11,7 +11,10 @@ import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "SlotAvailability")
+@Table(name = "SlotAvailability",
+        uniqueConstraints = @UniqueConstraint(
+                name = "UK_SlotAvailability_Template_Point_Date",
+                columnNames = {"TemplateID", "PointID", "Date"}))
 @Data
 @NoArgsConstructor @AllArgsConstructor @Builder
 public class SlotAvailability {
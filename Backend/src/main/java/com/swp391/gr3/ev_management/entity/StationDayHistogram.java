@@ -0,0 +1,47 @@
+package com.swp391.gr3.ev_management.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Histogram số phiên / điện năng theo giờ (0..23) của 1 trạm trong 1 ngày đã qua (SessionHistogramService).
+ *
+ * - Sessions: 24 int big-endian (số phiên bắt đầu trong giờ); EnergyKwh: 24 double big-endian (kWh của phiên kết thúc
+ *   trong giờ) → 1 dòng / trạm / ngày, đọc lên là mảng nguyên thủy dùng ngay.
+ * - Chỉ ghi cho ngày đã kết thúc (job hằng ngày hoặc lần đọc đầu tiên), ngày hiện tại chỉ nằm trong bộ nhớ.
+ */
+@Entity
+@Table(name = "StationDayHistogram", uniqueConstraints = {
+        @UniqueConstraint(name = "UX_StationDayHistogram_Day", columnNames = {"StatDate", "StationID"})
+})
+@Data
+@NoArgsConstructor @AllArgsConstructor @Builder
+public class StationDayHistogram {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "HistogramID")
+    private Long histogramId;
+
+    @Column(name = "StatDate", nullable = false)
+    private LocalDate statDate;
+
+    // Trạm không xác định (phiên không có booking) = 0; -1 = dòng đánh dấu ngày không có phiên nào
+    @Column(name = "StationID", nullable = false)
+    private long stationId;
+
+    @Column(name = "Sessions", nullable = false, length = 96)
+    private byte[] sessions;
+
+    @Column(name = "EnergyKwh", nullable = false, length = 192)
+    private byte[] energyKwh;
+
+    @Column(name = "UpdatedAt", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,56 @@
+package com.swp391.gr3.ev_management.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * 1 bucket thống kê theo giờ / trạm / loại connector cho dashboard (StatsRollupService).
+ *
+ * - Doanh thu: hóa đơn PAID, cộng vào giờ thanh toán (paidAt). Điện năng / số phiên / phút sạc: phiên COMPLETED,
+ *   cộng vào giờ kết thúc (endTime).
+ * - Trạm / connector không xác định (phiên không có booking, phiên cũ không có snapshot) ghi vào id 0.
+ * - Được cộng dồn bằng JDBC trong cùng transaction với nghiệp vụ, dựng lại theo ngày bằng backfill.
+ */
+@Entity
+@Table(name = "StatsHourlyRollup", uniqueConstraints = {
+        @UniqueConstraint(name = "UX_StatsHourlyRollup_Bucket", columnNames = {"BucketStart", "StationID", "ConnectorTypeID"})
+})
+@Data
+@NoArgsConstructor @AllArgsConstructor @Builder
+public class StatsHourlyRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @Column(name = "RollupID")
+    private Long rollupId;
+
+    // Đầu giờ của bucket (giờ địa phương, phút / giây = 0)
+    @Column(name = "BucketStart", nullable = false)
+    private LocalDateTime bucketStart;
+
+    @Column(name = "StationID", nullable = false)
+    private long stationId;
+
+    @Column(name = "ConnectorTypeID", nullable = false)
+    private long connectorTypeId;
+
+    @Column(name = "Revenue", nullable = false)
+    private double revenue;
+
+    @Column(name = "EnergyKwh", nullable = false)
+    private double energyKwh;
+
+    @Column(name = "Sessions", nullable = false)
+    private long sessions;
+
+    @Column(name = "ChargingMinutes", nullable = false)
+    private long chargingMinutes;
+
+    @Column(name = "UpdatedAt", nullable = false)
+    private LocalDateTime updatedAt;
+}
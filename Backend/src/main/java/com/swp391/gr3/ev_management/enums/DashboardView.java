@@ -0,0 +1,9 @@
+package com.swp391.gr3.ev_management.enums;
+
+/** Các màn hình dashboard được DashboardCache giữ kết quả (1 entry / màn hình) */
+public enum DashboardView {
+    ADMIN_DASHBOARD,  // GET /api/statics/dashboard
+    ADMIN_TOTALS,     // GET /api/statics/totals
+    STAFF_STATS,      // GET /api/staff/dashboard/stats
+    STAFF_STATIONS    // GET /api/staff/dashboard/stations-status
+}
@@ -0,0 +1,5 @@
+package com.swp391.gr3.ev_management.enums;
+
+public enum OutboxEventType {
+    SESSION_STOPPED   // phiên sạc kết thúc: hóa đơn + thông báo + email
+}
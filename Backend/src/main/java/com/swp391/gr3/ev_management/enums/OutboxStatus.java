@@ -0,0 +1,8 @@
+package com.swp391.gr3.ev_management.enums;
+
+public enum OutboxStatus {
+    PENDING,     // chờ gửi (hoặc chờ tới lượt thử lại)
+    PROCESSING,  // đã có node giành lease và đang xử lý
+    DONE,        // đã xử lý xong
+    FAILED       // hết số lần thử → cần xem tay
+}
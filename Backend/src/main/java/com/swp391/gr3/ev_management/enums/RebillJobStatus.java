@@ -0,0 +1,7 @@
+package com.swp391.gr3.ev_management.enums;
+
+public enum RebillJobStatus {
+    RUNNING,     // đang chạy (UpdatedAt = nhịp tim, cập nhật sau mỗi lô)
+    COMPLETED,   // đã duyệt hết khoảng
+    FAILED       // lỗi giữa chừng → resume tiếp từ checkpoint
+}
@@ -0,0 +1,16 @@
+package com.swp391.gr3.ev_management.events;
+
+import com.swp391.gr3.ev_management.enums.DashboardView;
+
+import java.util.Set;
+
+/**
+ * Dữ liệu của các dashboard vừa thay đổi (phiên bắt đầu / kết thúc, hóa đơn PAID, đổi trạng thái trụ / trạm):
+ * DashboardCache làm mới sớm các màn hình này sau khi transaction commit.
+ */
+public record DashboardDataChangedEvent(Set<DashboardView> views) {
+
+    public static DashboardDataChangedEvent of(DashboardView... views) {
+        return new DashboardDataChangedEvent(Set.of(views));
+    }
+}
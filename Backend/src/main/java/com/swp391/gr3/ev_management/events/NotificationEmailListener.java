@@ -6,6 +6,7 @@ import com.swp391.gr3.ev_management.service.BookingService;
 import com.swp391.gr3.ev_management.service.EmailService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
@@ -25,6 +26,9 @@ public class NotificationEmailListener {
 
     private static final DateTimeFormatter DT = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
 
+    // Chạy ở luồng mail sau commit: request không giữ connection thứ 2 trong lúc đọc notification
+    // (REQUIRES_NEW ở đây chỉ là transaction read-only của luồng mail, không treo transaction nào)
+    @Async("mailExecutor")
     @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
     @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
     public void onNotificationCreated(NotificationCreatedEvent event) {
@@ -7,6 +7,7 @@ import com.swp391.gr3.ev_management.repository.NotificationsRepository;
 import com.swp391.gr3.ev_management.service.EmailService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
@@ -14,10 +15,11 @@ import org.springframework.transaction.event.TransactionPhase;
 import org.springframework.transaction.event.TransactionalEventListener;
 
 import java.text.NumberFormat;
-import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.Locale;
 
+import static com.swp391.gr3.ev_management.util.TenantTime.TENANT_ZONE;
+
 @Component
 @RequiredArgsConstructor
 @Slf4j
@@ -26,9 +28,11 @@ public class PaymentNotificationEmailListener {
     private final NotificationsRepository notificationsRepository;
     private final EmailService emailService;
 
-    private static final ZoneId TENANT_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
     private static final DateTimeFormatter DT = DateTimeFormatter.ofPattern("HH:mm dd/MM/yyyy");
 
+    // Chạy ở luồng mail sau commit: request không giữ connection thứ 2 trong lúc đọc notification
+    // (REQUIRES_NEW ở đây chỉ là transaction read-only của luồng mail, không treo transaction nào)
+    @Async("mailExecutor")
     @Transactional(propagation = Propagation.REQUIRES_NEW, readOnly = true)
     @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
     public void onNotificationCreated(NotificationCreatedEvent event) {
@@ -0,0 +1,17 @@
+package com.swp391.gr3.ev_management.events;
+
+/**
+ * Nội dung outbox khi phiên sạc kết thúc (ghi cùng transaction stop, xử lý sau bởi OutboxDispatcher).
+ *
+ * amount / currency null → phiên miễn phí (không tạo hóa đơn); userId null → không tạo thông báo.
+ */
+public record SessionStoppedEvent(
+        Long sessionId,
+        Long bookingId,
+        Long userId,
+        Long driverId,
+        Double amount,
+        String currency,
+        String title,
+        String content
+) { }
@@ -4,9 +4,6 @@ import com.swp391.gr3.ev_management.dto.response.ChargingSessionBriefResponse;
 import com.swp391.gr3.ev_management.dto.response.TransactionBriefResponse;
 import com.swp391.gr3.ev_management.entity.*;
 
-import java.util.List;
-import java.util.stream.Collectors;
-
 public class DriverDataMapper {
 
     // ================== MAPPER: Transaction ==================
@@ -67,10 +64,4 @@ public class DriverDataMapper {
                 .invoiceId(s.getInvoice() != null ? s.getInvoice().getInvoiceId() : null)
                 .build();
     }
-
-    public static List<ChargingSessionBriefResponse> toChargingSessionBriefResponseList(List<ChargingSession> sessions) {
-        return sessions.stream()
-                .map(DriverDataMapper::toChargingSessionBriefResponse)
-                .collect(Collectors.toList());
-    }
 }
@@ -2,6 +2,7 @@ package com.swp391.gr3.ev_management.mapper;
 
 import com.swp391.gr3.ev_management.dto.response.SlotAvailabilityResponse;
 import com.swp391.gr3.ev_management.entity.SlotAvailability;
+import com.swp391.gr3.ev_management.repository.SlotOccupancyView;
 import org.springframework.stereotype.Component;
 
 @Component
@@ -17,4 +18,15 @@ public class SlotAvailabilityMapper {
                 .date(entity.getDate())
                 .build();
     }
+
+    public SlotAvailabilityResponse toResponse(SlotOccupancyView view) {
+        if (view == null) return null;
+        return SlotAvailabilityResponse.builder()
+                .slotId(view.getSlotId())
+                .templateId(view.getTemplateId())
+                .pointId(view.getPointId())
+                .status(view.getStatus())
+                .date(view.getDate())
+                .build();
+    }
 }
@@ -1,11 +1,15 @@
 package com.swp391.gr3.ev_management.mapper;
 
+import com.swp391.gr3.ev_management.dto.response.PriceLineResponse;
 import com.swp391.gr3.ev_management.dto.response.StopCharSessionResponse;
 import com.swp391.gr3.ev_management.entity.Booking;
 import com.swp391.gr3.ev_management.entity.ChargingSession;
 import com.swp391.gr3.ev_management.entity.Tariff;
+import com.swp391.gr3.ev_management.service.TouPricingEngine;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+
 @Component
 public class StopCharSessionResponseMapper {
 
@@ -21,6 +25,34 @@ public class StopCharSessionResponseMapper {
                 .build();
     }
 
+    public StopCharSessionResponse mapWithPrice(
+            ChargingSession cs,
+            Booking booking,
+            String pointNumber,
+            double pricePerKWh,
+            String currency,
+            List<TouPricingEngine.Line> lines
+    ) {
+        return base(cs, booking, pointNumber)
+                .pricePerKWh(pricePerKWh)
+                .currency(currency)
+                .priceBreakdown(lines.stream()
+                        .map(l -> PriceLineResponse.builder()
+                                .from(l.from())
+                                .to(l.to())
+                                .tariffId(l.tariffId())
+                                .band(l.band())
+                                .pricePerKWh(round2(l.pricePerKWh()))
+                                .pricePerMin(round2(l.pricePerMin()))
+                                .energyKWh(round2(l.energyKWh()))
+                                .billedMinutes(round2(l.billedMinutes()))
+                                .energyCost(round2(l.energyCost()))
+                                .timeCost(round2(l.timeCost()))
+                                .build())
+                        .toList())
+                .build();
+    }
+
     public StopCharSessionResponse mapNoBilling(
             ChargingSession cs,
             Booking booking,
@@ -64,4 +96,8 @@ public class StopCharSessionResponseMapper {
                 .initialSoc(cs.getInitialSoc())
                 .finalSoc(cs.getFinalSoc());
     }
+
+    private static double round2(double v) {
+        return Math.round(v * 100.0) / 100.0;
+    }
 }
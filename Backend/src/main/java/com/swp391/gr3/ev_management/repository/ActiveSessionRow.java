@@ -0,0 +1,28 @@
+package com.swp391.gr3.ev_management.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection cho ActiveSessionRegistry: 1 dòng / (phiên đang chạy, charging point của booking).
+ * Đủ dữ liệu để dựng cả ViewCharSessionResponse lẫn ActiveSessionView mà không cần query lại.
+ */
+public interface ActiveSessionRow {
+    Long getSessionId();
+    Long getStationId();
+    String getStationName();
+    Long getBookingId();
+    LocalDateTime getScheduledEndTime();
+    Long getDriverId();
+    String getDriverName();
+    Long getVehicleId();
+    String getVehiclePlate();
+    LocalDateTime getStartTime();
+    Integer getInitialSoc();
+    // null khi booking chưa gắn slot / model xe chưa có connector
+    String getConnector();
+    Long getPointId();
+    String getPointNumber();
+    // Trạm của charging point (dạng compact lọc / hiển thị theo trạm này, như query compact cũ)
+    Long getPointStationId();
+    String getPointStationName();
+}
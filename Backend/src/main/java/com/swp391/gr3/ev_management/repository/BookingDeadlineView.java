@@ -0,0 +1,9 @@
+package com.swp391.gr3.ev_management.repository;
+
+import java.time.LocalDateTime;
+
+/** Projection gọn cho BookingExpiryQueue: chỉ id + hạn chót (scheduledEndTime) của booking */
+public interface BookingDeadlineView {
+    Long getBookingId();
+    LocalDateTime getScheduledEndTime();
+}
@@ -0,0 +1,20 @@
+package com.swp391.gr3.ev_management.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection cho lượt hủy booking quá hạn theo lô (BookingOverdueHandler.cancelOverdueChunkTx):
+ * đủ dữ liệu để tính tiền phạt, tạo Violation và Notification mà không phải query thêm từng booking.
+ */
+public interface BookingOverdueBatchView {
+    Long getBookingId();
+    Long getUserId();
+    Long getDriverId();
+    String getStationName();
+    LocalDateTime getScheduledStartTime();
+    LocalDateTime getScheduledEndTime();
+    // Loại đầu nối: lấy từ charging point của slot, không có thì lấy từ model xe
+    Long getConnectorTypeId();
+    // Số phiên sạc hợp lệ (PENDING / IN_PROGRESS / COMPLETED) gắn với booking
+    Long getValidSessionCount();
+}
@@ -11,6 +11,7 @@ import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -151,6 +152,72 @@ public interface BookingsRepository extends JpaRepository<Booking,Long> {
             @Param("now") LocalDateTime now
     );
 
+    /** Lấy id + hạn chót của các booking theo list trạng thái (nạp hàng đợi hết hạn khi khởi động) */
+    @Query("""
+        select b.bookingId as bookingId,
+               b.scheduledEndTime as scheduledEndTime
+        from Booking b
+        where b.status in :statuses
+    """)
+    List<BookingDeadlineView> findDeadlines(@Param("statuses") List<BookingStatus> statuses);
+
+    /**
+     * Đổi trạng thái cả lô booking trong 1 câu UPDATE (chỉ những booking còn ở allowedStatuses).
+     * updatedAt = :now dùng làm "dấu" để đọc lại đúng các dòng vừa được lô này cập nhật.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+    UPDATE Booking b
+    SET b.status = :newStatus, b.updatedAt = :now
+    WHERE b.bookingId IN (:bookingIds)
+      AND b.status IN (:allowedStatuses)
+""")
+    int updateStatusIfInBatch(
+            @Param("bookingIds") Collection<Long> bookingIds,
+            @Param("newStatus") BookingStatus newStatus,
+            @Param("allowedStatuses") List<BookingStatus> allowedStatuses,
+            @Param("now") LocalDateTime now
+    );
+
+    /**
+     * Dữ liệu cho Violation + Notification của các booking vừa bị hủy bởi updateStatusIfInBatch
+     * (lọc theo status + updatedAt = :now → bỏ qua booking đã bị luồng khác hủy trước đó).
+     */
+    @Query("""
+        select b.bookingId as bookingId,
+               u.userId as userId,
+               d.driverId as driverId,
+               st.stationName as stationName,
+               b.scheduledStartTime as scheduledStartTime,
+               b.scheduledEndTime as scheduledEndTime,
+               coalesce(
+                   (select min(cp.connectorType.connectorTypeId)
+                    from BookingSlot bs
+                        join bs.slot sa
+                        join sa.chargingPoint cp
+                    where bs.booking = b),
+                   vm.connectorType.connectorTypeId) as connectorTypeId,
+               (select count(cs)
+                from ChargingSession cs
+                where cs.booking = b
+                  and cs.status in ('PENDING','IN_PROGRESS','COMPLETED')) as validSessionCount
+        from Booking b
+            join b.vehicle v
+            left join v.model vm
+            join v.driver d
+            join d.user u
+            join b.station st
+        where b.bookingId in (:bookingIds)
+          and b.status = :status
+          and b.updatedAt = :updatedAt
+        order by b.bookingId
+    """)
+    List<BookingOverdueBatchView> findOverdueBatchViews(
+            @Param("bookingIds") Collection<Long> bookingIds,
+            @Param("status") BookingStatus status,
+            @Param("updatedAt") LocalDateTime updatedAt
+    );
+
     /** Lấy thông tin tối thiểu để dùng cho Violation + Notification khi overdue */
     @Query("""
         select u.userId as userId,
@@ -2,6 +2,7 @@ package com.swp391.gr3.ev_management.repository;
 
 import com.swp391.gr3.ev_management.entity.ChargingPoint;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -71,4 +72,13 @@ public interface ChargingPointRepository extends JpaRepository<ChargingPoint,Lon
     );
 
     Optional<ChargingPoint> findFirstByStation_StationId(Long stationId);
+
+    /** Số charging point của từng trạm (chỉ các trạm có point) — 1 query cho cả dashboard */
+    @Query("""
+        select cp.station.stationId as stationId,
+               count(cp) as pointCount
+        from ChargingPoint cp
+        group by cp.station.stationId
+    """)
+    List<StationPointCountView> countGroupByStation();
 }
@@ -1,17 +1,26 @@
 package com.swp391.gr3.ev_management.repository;
 
 import com.swp391.gr3.ev_management.dto.response.ActiveSessionView;
+import com.swp391.gr3.ev_management.dto.response.ChargingSessionBriefResponse;
 import com.swp391.gr3.ev_management.dto.response.CompletedSessionView;
+import com.swp391.gr3.ev_management.dto.response.ViewCharSessionResponse;
 import com.swp391.gr3.ev_management.entity.ChargingSession;
 import com.swp391.gr3.ev_management.enums.ChargingSessionStatus;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface ChargingSessionRepository extends JpaRepository<ChargingSession,Long> {
@@ -45,6 +54,20 @@ public interface ChargingSessionRepository extends JpaRepository<ChargingSession
 """)
     Optional<ChargingSession> findByIdWithBookingVehicleDriverUser(Long sessionId);
 
+    // ✅ Dùng cho stop phiên sạc: 1 dòng (session + booking + trạm + xe + driver + user), không kéo collection;
+    //    phần còn lại (slot, trụ, connector, tariff) đã nằm trong snapshot billing của session
+    @Query("""
+    select cs
+    from ChargingSession cs
+        left join fetch cs.booking b
+        left join fetch b.station st
+        left join fetch b.vehicle v
+        left join fetch v.driver d
+        left join fetch d.user u
+    where cs.sessionId = :sessionId
+""")
+    Optional<ChargingSession> findForStop(@Param("sessionId") Long sessionId);
+
     // ✅ Lấy 1 phiên sạc và "chủ sở hữu" (user) của nó (đi sâu qua booking→vehicle→driver→user)
     //    Phù hợp để kiểm tra quyền sở hữu, hiển thị lịch sử, v.v.
     @Query("""
@@ -60,26 +83,6 @@ public interface ChargingSessionRepository extends JpaRepository<ChargingSession
     // ✅ Lấy tất cả phiên sạc của một trạm (theo stationId) sắp xếp theo startTime giảm dần
     List<ChargingSession> findAllByBooking_Station_StationIdOrderByStartTimeDesc(Long stationId);
 
-    // ✅ Tổng năng lượng (kWh) đã sạc của toàn hệ thống (COALESCE để tránh null)
-    @Query("SELECT COALESCE(SUM(s.energyKWh), 0) FROM ChargingSession s")
-    double sumEnergyAll();
-
-    // ✅ Tổng số phiên sạc trong hệ thống
-    @Query("SELECT COUNT(s) FROM ChargingSession s")
-    long countAll();
-
-    // ✅ Đếm số phiên sạc tại một trạm trong khoảng thời gian [from, to] dựa trên startTime
-    @Query("""
-      SELECT COUNT(s)
-      FROM ChargingSession s
-      JOIN s.booking b
-      WHERE b.station.stationId = :stationId
-        AND s.startTime BETWEEN :from AND :to
-    """)
-    long countByStationBetween(@Param("stationId") Long stationId,
-                               @Param("from") LocalDateTime from,
-                               @Param("to") LocalDateTime to);
-
     // ✅ Đếm số phiên sạc gắn với một người dùng (userId) cụ thể
     //    Đi sâu qua quan hệ: session → booking → vehicle → driver → user
     @Query("""
@@ -93,20 +96,6 @@ public interface ChargingSessionRepository extends JpaRepository<ChargingSession
     """)
     long countSessionsByUserId(@Param("userId") Long userId);
 
-    // ✅ Lấy toàn bộ phiên sạc của một user (theo userId) kèm thông tin liên quan (fetch sâu)
-    //    Sắp xếp theo startTime desc, rồi createdAt desc (ổn định thứ tự)
-    @Query("""
-       select s
-       from ChargingSession s
-         join fetch s.booking b
-         join fetch b.vehicle v
-         join fetch v.driver d
-         join fetch d.user u
-       where u.userId = :userId
-       order by s.startTime desc, s.createdAt desc
-       """)
-    List<ChargingSession> findAllByDriverUserIdDeep(@Param("userId") Long userId);
-
     /**
      * ✅ Lấy tất cả session gắn với một ChargingPoint cụ thể (qua Booking -> BookingSlot -> Slot -> ChargingPoint).
      * - Dùng DISTINCT để tránh trùng do join nhiều bảng.
@@ -218,11 +207,35 @@ public interface ChargingSessionRepository extends JpaRepository<ChargingSession
     /** Đếm số phiên sạc theo trạng thái cụ thể */
     long countByStatus(ChargingSessionStatus status);
 
+    /** Số phiên sạc theo trạng thái, gom theo trạm (fallback khi ActiveSessionRegistry chưa nạp xong) */
+    @Query("""
+        select b.station.stationId as stationId, count(cs) as sessionCount
+        from ChargingSession cs
+            join cs.booking b
+        where cs.status = :status
+        group by b.station.stationId
+    """)
+    List<StationSessionCountView> countByStatusGroupByStation(@Param("status") ChargingSessionStatus status);
+
     /** Lấy 5 phiên sạc mới nhất theo thời gian bắt đầu (startTime) */
     List<ChargingSession> findTop5ByOrderByStartTimeDesc();
 
-    /** Tìm danh sách phiên sạc bắt đầu trong khoảng thời gian nhất định */
-    List<ChargingSession> findByStartTimeBetween(LocalDateTime start, LocalDateTime end);
+    /**
+     * Số phiên bắt đầu trong [from, to) (1 ngày) gom theo giờ bắt đầu / trạm → dựng histogram theo giờ
+     * (SessionHistogramService). Phiên không có booking → trạm 0.
+     */
+    @Query("""
+        select hour(s.startTime) as hour,
+               coalesce(st.stationId, 0) as stationId,
+               count(s) as sessions
+        from ChargingSession s
+            left join s.booking b
+            left join b.station st
+        where s.startTime >= :from and s.startTime < :to
+        group by hour(s.startTime), coalesce(st.stationId, 0)
+    """)
+    List<StationHourCountView> countStartedByHour(@Param("from") LocalDateTime from,
+                                                  @Param("to") LocalDateTime to);
 
     /** Kiểm tra có tồn tại phiên sạc hợp lệ (PENDING, IN_PROGRESS, COMPLETED) cho bookingId không */
     @Query("""
@@ -232,4 +245,338 @@ public interface ChargingSessionRepository extends JpaRepository<ChargingSession
           and cs.status in ('PENDING','IN_PROGRESS','COMPLETED')
         """)
     Boolean existsValidSessionForBooking(Long bookingId);
+
+    /** Phiên sạc có đang ở trạng thái cho trước không (TelemetryIngestService kiểm tra phiên còn IN_PROGRESS) */
+    boolean existsBySessionIdAndStatus(Long sessionId, ChargingSessionStatus status);
+
+    /** Thông tin live của 1 phiên sạc (SessionStatusHub) */
+    @Query("""
+        select cs.sessionId as sessionId,
+               st.stationId as stationId,
+               cs.startTime as startTime,
+               cs.initialSoc as initialSoc,
+               cs.status as status,
+               (select max(cp.maxPowerKW)
+                from BookingSlot bs
+                    join bs.slot sa
+                    join sa.chargingPoint cp
+                where bs.booking = b) as ratedKw,
+               vm.batteryCapacityKWh as batteryCapacityKWh,
+               vct.mode as connectorMode
+        from ChargingSession cs
+            join cs.booking b
+            join b.station st
+            left join b.vehicle v
+            left join v.model vm
+            left join vm.connectorType vct
+        where cs.sessionId = :sessionId
+    """)
+    Optional<LiveSessionView> findLiveView(@Param("sessionId") Long sessionId);
+
+    /** Thông tin live của các phiên đang chạy tại 1 trạm (SessionStatusHub) */
+    @Query("""
+        select cs.sessionId as sessionId,
+               st.stationId as stationId,
+               cs.startTime as startTime,
+               cs.initialSoc as initialSoc,
+               cs.status as status,
+               (select max(cp.maxPowerKW)
+                from BookingSlot bs
+                    join bs.slot sa
+                    join sa.chargingPoint cp
+                where bs.booking = b) as ratedKw,
+               vm.batteryCapacityKWh as batteryCapacityKWh,
+               vct.mode as connectorMode
+        from ChargingSession cs
+            join cs.booking b
+            join b.station st
+            left join b.vehicle v
+            left join v.model vm
+            left join vm.connectorType vct
+        where st.stationId = :stationId
+          and cs.status = :status
+    """)
+    List<LiveSessionView> findLiveViewsByStation(@Param("stationId") Long stationId,
+                                                 @Param("status") ChargingSessionStatus status);
+
+    /**
+     * Lịch sử phiên sạc của driver, phân trang keyset: các phiên đứng SAU (beforeStart, beforeId)
+     * theo thứ tự startTime desc, sessionId desc. Trang đầu truyền mốc "vô cực" (xem DriverServiceImpl).
+     * Đi theo index (DriverUserID, StartTime, SessionID) → chi phí không phụ thuộc độ dài lịch sử.
+     */
+    @Query("""
+        select new com.swp391.gr3.ev_management.dto.response.ChargingSessionBriefResponse(
+            cs.sessionId, cs.startTime, cs.endTime, cs.initialSoc, cs.finalSoc,
+            cs.energyKWh, cs.durationMinutes, cs.cost, cs.status, cs.createdAt,
+            b.bookingId, st.stationId, st.stationName, v.vehicleId, v.vehiclePlate,
+            i.invoiceId
+        )
+        from ChargingSession cs
+            join cs.booking b
+            join b.station st
+            left join b.vehicle v
+            left join cs.invoice i
+        where cs.driverUserId = :userId
+          and (cs.startTime < :beforeStart
+               or (cs.startTime = :beforeStart and cs.sessionId < :beforeId))
+        order by cs.startTime desc, cs.sessionId desc
+    """)
+    List<ChargingSessionBriefResponse> findHistoryByDriverUser(@Param("userId") Long userId,
+                                                               @Param("beforeStart") LocalDateTime beforeStart,
+                                                               @Param("beforeId") Long beforeId,
+                                                               Limit limit);
+
+    /** Phiên sạc theo trạng thái (IN_PROGRESS = phiên hiện tại) của driver, mới nhất trước — 1 query theo index */
+    @Query("""
+        select new com.swp391.gr3.ev_management.dto.response.ViewCharSessionResponse(
+            cs.sessionId, b.bookingId, d.driverId, st.stationName, v.vehiclePlate,
+            cs.startTime, cs.endTime, cs.energyKWh, cs.durationMinutes,
+            cs.initialSoc, cs.finalSoc, cs.cost, coalesce(i.currency, cs.billing.currency, 'VND'), cs.status
+        )
+        from ChargingSession cs
+            join cs.booking b
+            join b.station st
+            left join b.vehicle v
+            left join v.driver d
+            left join cs.invoice i
+        where cs.driverUserId = :userId
+          and cs.status = :status
+        order by cs.startTime desc
+    """)
+    List<ViewCharSessionResponse> findByDriverUserAndStatus(@Param("userId") Long userId,
+                                                            @Param("status") ChargingSessionStatus status,
+                                                            Limit limit);
+
+    /** Còn phiên cũ chưa có DriverUserID không (kiểm tra trước khi chạy backfill) */
+    boolean existsByDriverUserIdIsNullAndBookingIsNotNull();
+
+    /** Điền DriverUserID cho các phiên tạo trước khi có cột này (chạy lúc khởi động) */
+    @Modifying
+    @Transactional
+    @Query("""
+        update ChargingSession cs
+        set cs.driverUserId = (
+            select d.user.userId
+            from Booking b
+                join b.vehicle v
+                join v.driver d
+            where b = cs.booking)
+        where cs.driverUserId is null
+          and cs.booking is not null
+    """)
+    int backfillDriverUserId();
+
+    /** Mọi phiên theo trạng thái (IN_PROGRESS) ở dạng dòng phẳng — ActiveSessionRegistry nạp lúc khởi động / đối soát */
+    @Query("""
+        select cs.sessionId as sessionId,
+               st.stationId as stationId,
+               st.stationName as stationName,
+               b.bookingId as bookingId,
+               b.scheduledEndTime as scheduledEndTime,
+               d.driverId as driverId,
+               u.name as driverName,
+               v.vehicleId as vehicleId,
+               v.vehiclePlate as vehiclePlate,
+               cs.startTime as startTime,
+               cs.initialSoc as initialSoc,
+               ct.displayName as connector,
+               cp.pointId as pointId,
+               cp.pointNumber as pointNumber,
+               cpSt.stationId as pointStationId,
+               cpSt.stationName as pointStationName
+        from ChargingSession cs
+            join cs.booking b
+            join b.station st
+            left join b.vehicle v
+            left join v.driver d
+            left join d.user u
+            left join v.model vm
+            left join vm.connectorType ct
+            left join b.bookingSlots bs
+            left join bs.slot sl
+            left join sl.chargingPoint cp
+            left join cp.station cpSt
+        where cs.status = :status
+    """)
+    List<ActiveSessionRow> findActiveRows(@Param("status") ChargingSessionStatus status);
+
+    /** Như findActiveRows nhưng cho 1 phiên (phiên vừa bắt đầu) */
+    @Query("""
+        select cs.sessionId as sessionId,
+               st.stationId as stationId,
+               st.stationName as stationName,
+               b.bookingId as bookingId,
+               b.scheduledEndTime as scheduledEndTime,
+               d.driverId as driverId,
+               u.name as driverName,
+               v.vehicleId as vehicleId,
+               v.vehiclePlate as vehiclePlate,
+               cs.startTime as startTime,
+               cs.initialSoc as initialSoc,
+               ct.displayName as connector,
+               cp.pointId as pointId,
+               cp.pointNumber as pointNumber,
+               cpSt.stationId as pointStationId,
+               cpSt.stationName as pointStationName
+        from ChargingSession cs
+            join cs.booking b
+            join b.station st
+            left join b.vehicle v
+            left join v.driver d
+            left join d.user u
+            left join v.model vm
+            left join vm.connectorType ct
+            left join b.bookingSlots bs
+            left join bs.slot sl
+            left join sl.chargingPoint cp
+            left join cp.station cpSt
+        where cs.status = :status
+          and cs.sessionId = :sessionId
+    """)
+    List<ActiveSessionRow> findActiveRowsBySession(@Param("sessionId") Long sessionId,
+                                                   @Param("status") ChargingSessionStatus status);
+
+    /**
+     * Phiên đã hoàn tất giao với khoảng [from, to) sau checkpoint {@code afterSessionId}, theo SessionID tăng dần
+     * (keyset → job tính lại hóa đơn tiếp tục được sau khi lỗi). Đọc dạng cursor (fetch size), phải đóng Stream.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("""
+        select cs.sessionId as sessionId,
+               cs.startTime as startTime,
+               cs.endTime as endTime,
+               cs.initialSoc as initialSoc,
+               cs.energyKWh as energyKWh,
+               cs.cost as cost,
+               cs.billing.connectorTypeId as connectorTypeId,
+               cs.billing.connectorMode as connectorMode,
+               cs.billing.ratedKw as ratedKw,
+               cs.billing.batteryCapacityKWh as batteryCapacityKWh,
+               cs.billing.windowEnd as windowEnd,
+               cs.billing.idleMinutes as idleMinutes,
+               cs.billing.tariffId as tariffId,
+               cs.billing.pricePerKWh as pricePerKWh,
+               cs.billing.pricePerMin as pricePerMin,
+               cs.billing.currency as currency,
+               cs.billing.tariffValidTo as tariffValidTo,
+               i.invoiceId as invoiceId,
+               i.amount as invoiceAmount,
+               i.status as invoiceStatus
+        from ChargingSession cs
+            left join cs.invoice i
+        where cs.status = :status
+          and cs.sessionId > :afterSessionId
+          and cs.endTime > :from
+          and cs.startTime < :to
+          and (:connectorTypeId is null or cs.billing.connectorTypeId = :connectorTypeId)
+        order by cs.sessionId
+    """)
+    Stream<RebillSessionRow> streamForRebill(@Param("status") ChargingSessionStatus status,
+                                             @Param("from") LocalDateTime from,
+                                             @Param("to") LocalDateTime to,
+                                             @Param("connectorTypeId") Long connectorTypeId,
+                                             @Param("afterSessionId") Long afterSessionId,
+                                             Limit limit);
+
+    /** Số phiên streamForRebill sẽ duyệt (để báo tiến độ) */
+    @Query("""
+        select count(cs)
+        from ChargingSession cs
+        where cs.status = :status
+          and cs.endTime > :from
+          and cs.startTime < :to
+          and (:connectorTypeId is null or cs.billing.connectorTypeId = :connectorTypeId)
+    """)
+    long countForRebill(@Param("status") ChargingSessionStatus status,
+                        @Param("from") LocalDateTime from,
+                        @Param("to") LocalDateTime to,
+                        @Param("connectorTypeId") Long connectorTypeId);
+
+    /**
+     * Số liệu phiên COMPLETED kết thúc trong [from, to) (1 ngày) gom theo giờ kết thúc / trạm / connector
+     * → dựng / đối soát bảng rollup theo giờ (StatsRollupService). Phiên không có booking / snapshot → 0.
+     */
+    @Query("""
+        select hour(s.endTime) as hour,
+               coalesce(st.stationId, 0) as stationId,
+               coalesce(s.billing.connectorTypeId, 0) as connectorTypeId,
+               0.0 as revenue,
+               coalesce(sum(s.energyKWh), 0) as energyKwh,
+               count(s) as sessions,
+               coalesce(sum(s.durationMinutes), 0) as chargingMinutes
+        from ChargingSession s
+            left join s.booking b
+            left join b.station st
+        where s.status = com.swp391.gr3.ev_management.enums.ChargingSessionStatus.COMPLETED
+          and s.endTime >= :from and s.endTime < :to
+        group by hour(s.endTime), coalesce(st.stationId, 0), coalesce(s.billing.connectorTypeId, 0)
+    """)
+    List<HourlyRollupSourceView> sumCompletedByHour(@Param("from") LocalDateTime from,
+                                                    @Param("to") LocalDateTime to);
+
+    /** Thời điểm kết thúc sớm nhất của phiên COMPLETED (điểm bắt đầu backfill rollup) */
+    @Query("""
+        select min(s.endTime) from ChargingSession s
+        where s.status = com.swp391.gr3.ev_management.enums.ChargingSessionStatus.COMPLETED
+    """)
+    Optional<LocalDateTime> findMinCompletedEndTime();
+
+    /**
+     * Các phiên chiếm trụ giao với [from, to): đang chạy (endTime null) hoặc đã kết thúc sau from.
+     * Trụ lấy từ snapshot; phiên cũ chưa có thì lấy trụ của slot đầu tiên của booking.
+     */
+    @Query("""
+        select s.sessionId as sessionId,
+               coalesce(s.billing.pointId,
+                        (select min(sl.chargingPoint.pointId) from BookingSlot bs join bs.slot sl
+                         where bs.booking = b)) as pointId,
+               coalesce(st.stationId, 0) as stationId,
+               s.startTime as startTime,
+               s.endTime as endTime
+        from ChargingSession s
+            left join s.booking b
+            left join b.station st
+        where s.status in (com.swp391.gr3.ev_management.enums.ChargingSessionStatus.IN_PROGRESS,
+                           com.swp391.gr3.ev_management.enums.ChargingSessionStatus.COMPLETED)
+          and s.startTime < :to
+          and (s.endTime is null or s.endTime > :from)
+    """)
+    List<SessionIntervalView> findIntervalsOverlapping(@Param("from") LocalDateTime from,
+                                                       @Param("to") LocalDateTime to);
+
+    /** Thời điểm bắt đầu sớm nhất của phiên (điểm bắt đầu dựng lại bảng chiếm trụ) */
+    @Query("select min(s.startTime) from ChargingSession s")
+    Optional<LocalDateTime> findMinStartTime();
+
+    /**
+     * Phiên bắt đầu trong [from, to) (tùy chọn lọc trạm) cho export CSV, theo SessionID tăng dần.
+     * Đọc dạng cursor (fetch size, read-only, projection không tạo entity), phải đóng Stream.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+        select s.sessionId as sessionId,
+               st.stationId as stationId,
+               st.stationName as stationName,
+               s.billing.pointId as pointId,
+               s.startTime as startTime,
+               s.endTime as endTime,
+               s.durationMinutes as durationMinutes,
+               s.energyKWh as energyKWh,
+               s.initialSoc as initialSoc,
+               s.finalSoc as finalSoc,
+               s.cost as cost,
+               s.status as status
+        from ChargingSession s
+            left join s.booking b
+            left join b.station st
+        where s.startTime >= :from and s.startTime < :to
+          and (:stationId is null or st.stationId = :stationId)
+        order by s.sessionId
+    """)
+    Stream<SessionExportRow> streamForExport(@Param("from") LocalDateTime from,
+                                             @Param("to") LocalDateTime to,
+                                             @Param("stationId") Long stationId);
 }
@@ -0,0 +1,7 @@
+package com.swp391.gr3.ev_management.repository;
+
+/** Projection đếm violation theo driver (group by) */
+public interface DriverViolationCountView {
+    Long getDriverId();
+    Long getViolationCount();
+}
@@ -7,6 +7,8 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository // ✅ Đánh dấu đây là Repository (tầng truy cập dữ liệu - Data Access Layer)
@@ -127,4 +129,34 @@ public interface DriverViolationRepository extends JpaRepository<DriverViolation
      */
     boolean existsByDriver_DriverIdAndDescriptionContaining(Long driverId, String description);
 
+    /**
+     * ✅ Đọc lại các violation vừa được chèn theo lô (JDBC batch) cho các driver, kèm driver + user.
+     * occurredAt của cả lô là cùng 1 mốc thời gian nên dùng làm khóa để nhận diện.
+     */
+    @Query("""
+        SELECT dv FROM DriverViolation dv
+        JOIN FETCH dv.driver d
+        JOIN FETCH d.user u
+        WHERE d.driverId IN :driverIds
+        AND dv.occurredAt = :occurredAt
+        ORDER BY dv.violationId
+    """)
+    List<DriverViolation> findBatchByDriverIdsAndOccurredAt(@Param("driverIds") Collection<Long> driverIds,
+                                                            @Param("occurredAt") LocalDateTime occurredAt);
+
+
+    /**
+     * ✅ Đếm số vi phạm theo trạng thái cho nhiều driver trong 1 query (group by driver).
+     * Dùng khi xét auto-ban 1 lần / driver cho cả lô booking quá hạn.
+     */
+    @Query("""
+        SELECT dv.driver.driverId AS driverId, COUNT(dv) AS violationCount
+        FROM DriverViolation dv
+        WHERE dv.driver.driverId IN :driverIds
+        AND dv.status = :status
+        GROUP BY dv.driver.driverId
+    """)
+    List<DriverViolationCountView> countByDriverIdsAndStatus(@Param("driverIds") Collection<Long> driverIds,
+                                                             @Param("status") ViolationStatus status);
+
 }
@@ -0,0 +1,7 @@
+package com.swp391.gr3.ev_management.repository;
+
+/** Projection: tổng số giây chiếm trụ theo giờ trong ngày (0..23) — đường cong giờ cao điểm */
+public interface HourOfDayOccupancyView {
+    Integer getHour();
+    Long getOccupiedSeconds();
+}
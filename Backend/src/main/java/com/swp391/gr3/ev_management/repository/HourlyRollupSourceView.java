@@ -0,0 +1,11 @@
+package com.swp391.gr3.ev_management.repository;
+
+/**
+ * Projection: số liệu gốc của 1 ngày gom theo giờ / trạm / connector để dựng bảng rollup
+ * (trạm / connector không xác định = 0)
+ */
+public interface HourlyRollupSourceView extends RollupSumView {
+    Integer getHour();
+    Long getStationId();
+    Long getConnectorTypeId();
+}
@@ -0,0 +1,20 @@
+package com.swp391.gr3.ev_management.repository;
+
+import com.swp391.gr3.ev_management.enums.InvoiceStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection cho export CSV hóa đơn (CsvExportService): 1 dòng / hóa đơn, trạm lấy qua phiên → booking
+ */
+public interface InvoiceExportRow {
+    Long getInvoiceId();
+    Long getSessionId();
+    Long getStationId();
+    String getStationName();
+    double getAmount();
+    String getCurrency();
+    InvoiceStatus getStatus();
+    LocalDateTime getIssuedAt();
+    LocalDateTime getPaidAt();
+}
@@ -2,14 +2,18 @@ package com.swp391.gr3.ev_management.repository;
 
 import com.swp391.gr3.ev_management.dto.response.UnpaidInvoiceResponse;
 import com.swp391.gr3.ev_management.entity.Invoice;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface InvoiceRepository extends JpaRepository<Invoice,Long> {
@@ -59,85 +63,6 @@ public interface InvoiceRepository extends JpaRepository<Invoice,Long> {
     List<Invoice> findUnpaidInvoicesByStation(@Param("stationId") Long stationId);
 
 
-    /**
-     * ✅ Tính tổng doanh thu (sum amount) của tất cả hóa đơn trong khoảng thời gian nhất định.
-     *
-     * 👉 Ý nghĩa:
-     * - Dùng để thống kê doanh thu theo ngày, tuần, tháng, quý, ...
-     * - Chỉ tính những hóa đơn có ngày phát hành nằm trong khoảng `from` → `to`.
-     *
-     * 🔍 JPQL:
-     * SELECT COALESCE(SUM(i.amount), 0)
-     * FROM Invoice i
-     * WHERE i.issuedAt BETWEEN :from AND :to
-     *
-     * ⚙️ Ghi chú:
-     * - `COALESCE(..., 0)` để tránh trả về null nếu không có hóa đơn nào.
-     *
-     * @param from thời gian bắt đầu
-     * @param to thời gian kết thúc
-     * @return tổng tiền (double)
-     */
-    @Query("""
-      SELECT COALESCE(SUM(i.amount), 0)
-      FROM Invoice i
-      WHERE i.issuedAt BETWEEN :from AND :to
-    """)
-    double sumAmountBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
-
-
-    /**
-     * ✅ Tính tổng doanh thu toàn hệ thống (từ trước tới nay).
-     *
-     * 👉 Ý nghĩa:
-     * - Dùng để hiển thị tổng doanh thu trên dashboard tổng quan cho admin.
-     *
-     * 🔍 JPQL:
-     * SELECT COALESCE(SUM(i.amount), 0) FROM Invoice i
-     *
-     * ⚙️ Trả về 0 nếu chưa có hóa đơn nào.
-     *
-     * @return tổng doanh thu toàn hệ thống
-     */
-    @Query("SELECT COALESCE(SUM(i.amount), 0) FROM Invoice i")
-    double sumAll();
-
-
-    /**
-     * ✅ Tính tổng doanh thu của một trạm cụ thể trong khoảng thời gian xác định.
-     *
-     * 👉 Ý nghĩa:
-     * - Dùng để thống kê doanh thu riêng của từng trạm (ví dụ: trạm A trong tháng 10/2025).
-     *
-     * 🔍 JPQL:
-     * SELECT COALESCE(SUM(i.amount), 0)
-     * FROM Invoice i
-     * JOIN i.session s
-     * JOIN s.booking b
-     * WHERE b.station.stationId = :stationId
-     *   AND i.issuedAt BETWEEN :from AND :to
-     *
-     * ⚙️ Cách hoạt động:
-     * - Join từ Invoice → Session → Booking → Station để lọc theo trạm.
-     * - Chỉ tính hóa đơn có issuedAt trong khoảng thời gian.
-     *
-     * @param stationId ID trạm
-     * @param from thời gian bắt đầu
-     * @param to thời gian kết thúc
-     * @return tổng doanh thu của trạm trong khoảng thời gian
-     */
-    @Query("""
-      SELECT COALESCE(SUM(i.amount), 0)
-      FROM Invoice i
-      JOIN i.session s
-      JOIN s.booking b
-      WHERE b.station.stationId = :stationId
-        AND i.issuedAt BETWEEN :from AND :to
-    """)
-    double sumByStationBetween(@Param("stationId") Long stationId,
-                               @Param("from") LocalDateTime from,
-                               @Param("to") LocalDateTime to);
-
     /**
      * ✅ Tìm hóa đơn theo ID kèm theo tất cả các quan hệ liên quan đã được fetch.
      * 👉 Ý nghĩa:
@@ -218,4 +143,63 @@ public interface InvoiceRepository extends JpaRepository<Invoice,Long> {
     where st.stationId = :stationId
 """)
     List<Invoice> findInvoiceDetailsByStation(@Param("stationId") Long stationId);
+
+    /**
+     * ✅ Doanh thu đã thanh toán trong [from, to) (1 ngày) gom theo giờ thanh toán / trạm / connector
+     * → dựng / đối soát bảng rollup theo giờ (StatsRollupService). Hóa đơn cũ chưa có paidAt tính theo issuedAt.
+     */
+    @Query("""
+      SELECT hour(COALESCE(i.paidAt, i.issuedAt)) AS hour,
+             COALESCE(st.stationId, 0) AS stationId,
+             COALESCE(s.billing.connectorTypeId, 0) AS connectorTypeId,
+             COALESCE(SUM(i.amount), 0) AS revenue,
+             0.0 AS energyKwh,
+             0L AS sessions,
+             0L AS chargingMinutes
+      FROM Invoice i
+      JOIN i.session s
+      LEFT JOIN s.booking b
+      LEFT JOIN b.station st
+      WHERE i.status = com.swp391.gr3.ev_management.enums.InvoiceStatus.PAID
+        AND COALESCE(i.paidAt, i.issuedAt) >= :from AND COALESCE(i.paidAt, i.issuedAt) < :to
+      GROUP BY hour(COALESCE(i.paidAt, i.issuedAt)), COALESCE(st.stationId, 0), COALESCE(s.billing.connectorTypeId, 0)
+    """)
+    List<HourlyRollupSourceView> sumPaidByHour(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /** Thời điểm thanh toán sớm nhất của hóa đơn PAID (điểm bắt đầu backfill rollup) */
+    @Query("""
+      SELECT MIN(COALESCE(i.paidAt, i.issuedAt)) FROM Invoice i
+      WHERE i.status = com.swp391.gr3.ev_management.enums.InvoiceStatus.PAID
+    """)
+    Optional<LocalDateTime> findMinPaidTime();
+
+    /**
+     * ✅ Hóa đơn phát hành trong [from, to) (tùy chọn lọc trạm) cho export CSV, theo InvoiceID tăng dần.
+     * Đọc dạng cursor (fetch size, read-only, projection không tạo entity), phải đóng Stream.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+      SELECT i.invoiceId AS invoiceId,
+             s.sessionId AS sessionId,
+             st.stationId AS stationId,
+             st.stationName AS stationName,
+             i.amount AS amount,
+             i.currency AS currency,
+             i.status AS status,
+             i.issuedAt AS issuedAt,
+             i.paidAt AS paidAt
+      FROM Invoice i
+          LEFT JOIN i.session s
+          LEFT JOIN s.booking b
+          LEFT JOIN b.station st
+      WHERE i.issuedAt >= :from AND i.issuedAt < :to
+        AND (:stationId IS NULL OR st.stationId = :stationId)
+      ORDER BY i.invoiceId
+    """)
+    Stream<InvoiceExportRow> streamForExport(@Param("from") LocalDateTime from,
+                                             @Param("to") LocalDateTime to,
+                                             @Param("stationId") Long stationId);
 }
@@ -0,0 +1,19 @@
+package com.swp391.gr3.ev_management.repository;
+
+import com.swp391.gr3.ev_management.enums.ChargingSessionStatus;
+
+import java.time.LocalDateTime;
+
+/** Projection cho SessionStatusHub: thông tin tĩnh của phiên sạc để tính trạng thái live (1 query / phiên hoặc / trạm) */
+public interface LiveSessionView {
+    Long getSessionId();
+    Long getStationId();
+    LocalDateTime getStartTime();
+    Integer getInitialSoc();
+    ChargingSessionStatus getStatus();
+    // Công suất định mức của điểm sạc (kW) và dung lượng pin của xe (kWh) — dùng khi chưa có telemetry
+    Double getRatedKw();
+    Double getBatteryCapacityKWh();
+    // Mode connector của model xe ("AC" / "DC") để chọn đường cong sạc
+    String getConnectorMode();
+}
@@ -0,0 +1,14 @@
+package com.swp391.gr3.ev_management.repository;
+
+import com.swp391.gr3.ev_management.entity.MeterValue;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface MeterValueRepository extends JpaRepository<MeterValue, Long> {
+
+    // ✅ Lần đọc mới nhất của 1 phiên sạc (dùng khi dừng phiên mà bộ nhớ không còn reading, vd: node khác nhận telemetry)
+    Optional<MeterValue> findTopBySession_SessionIdOrderByMeasuredAtDesc(Long sessionId);
+}
@@ -0,0 +1,81 @@
+package com.swp391.gr3.ev_management.repository;
+
+import com.swp391.gr3.ev_management.entity.OutboxEvent;
+import com.swp391.gr3.ev_management.enums.OutboxStatus;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEvent, Long> {
+
+    /**
+     * ✅ Các sự kiện tới lượt xử lý (PENDING đã tới giờ thử, hoặc PROCESSING có lease đã hết hạn), theo OutboxID.
+     *    Bỏ qua sự kiện còn sự kiện trước đó cùng PartitionKey đang chờ thử lại / đang được xử lý → giữ thứ tự theo user.
+     */
+    @Query("""
+        select o from OutboxEvent o
+        where ((o.status = :pending and o.nextAttemptAt <= :now)
+               or (o.status = :processing and o.claimedUntil < :now))
+          and not exists (
+              select 1 from OutboxEvent p
+              where p.partitionKey = o.partitionKey
+                and p.outboxId < o.outboxId
+                and ((p.status = :pending and p.nextAttemptAt > :now)
+                     or (p.status = :processing and p.claimedUntil >= :now)))
+        order by o.outboxId
+    """)
+    List<OutboxEvent> findDue(@Param("pending") OutboxStatus pending,
+                              @Param("processing") OutboxStatus processing,
+                              @Param("now") LocalDateTime now,
+                              Limit limit);
+
+    /**
+     * ✅ Giành quyền xử lý 1 sự kiện (lease): câu UPDATE có điều kiện → nhiều node cùng giành thì chỉ 1 node thắng.
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+        update OutboxEvent o
+        set o.status = :processing, o.claimedBy = :node, o.claimedUntil = :leaseUntil
+        where o.outboxId = :id
+          and ((o.status = :pending and o.nextAttemptAt <= :now)
+               or (o.status = :processing and o.claimedUntil < :now))
+    """)
+    int claim(@Param("id") Long id,
+              @Param("node") String node,
+              @Param("now") LocalDateTime now,
+              @Param("leaseUntil") LocalDateTime leaseUntil,
+              @Param("pending") OutboxStatus pending,
+              @Param("processing") OutboxStatus processing);
+
+    /** ✅ Ghi nhận lần xử lý lỗi: chờ thử lại (PENDING) hoặc bỏ hẳn (FAILED) */
+    @Modifying
+    @Transactional
+    @Query("""
+        update OutboxEvent o
+        set o.status = :status, o.attempts = o.attempts + 1, o.nextAttemptAt = :nextAttemptAt,
+            o.lastError = :error, o.claimedBy = null, o.claimedUntil = null
+        where o.outboxId = :id and o.claimedBy = :node
+    """)
+    int markFailed(@Param("id") Long id,
+                   @Param("node") String node,
+                   @Param("status") OutboxStatus status,
+                   @Param("nextAttemptAt") LocalDateTime nextAttemptAt,
+                   @Param("error") String error);
+
+    /** ✅ Xóa sự kiện đã xử lý xong trước mốc {@code before} */
+    @Modifying
+    @Transactional
+    @Query("delete from OutboxEvent o where o.status = :status and o.processedAt < :before")
+    int purge(@Param("status") OutboxStatus status, @Param("before") LocalDateTime before);
+
+    long countByStatus(OutboxStatus status);
+}
@@ -0,0 +1,50 @@
+package com.swp391.gr3.ev_management.repository;
+
+import com.swp391.gr3.ev_management.entity.PointHourlyOccupancy;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface PointHourlyOccupancyRepository extends JpaRepository<PointHourlyOccupancy, Long> {
+
+    /** Số giây chiếm trụ theo trạm, bucket có đầu giờ trong [from, to) */
+    @Query("""
+      SELECT o.stationId AS stationId, COALESCE(SUM(o.occupiedSeconds), 0) AS occupiedSeconds
+      FROM PointHourlyOccupancy o
+      WHERE o.bucketStart >= :from AND o.bucketStart < :to
+      GROUP BY o.stationId
+    """)
+    List<StationOccupancyView> sumGroupByStation(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /** Số giây chiếm theo từng trụ của 1 trạm */
+    @Query("""
+      SELECT o.pointId AS pointId, COALESCE(SUM(o.occupiedSeconds), 0) AS occupiedSeconds
+      FROM PointHourlyOccupancy o
+      WHERE o.stationId = :stationId AND o.bucketStart >= :from AND o.bucketStart < :to
+      GROUP BY o.pointId
+    """)
+    List<PointOccupancyView> sumGroupByPoint(@Param("stationId") Long stationId,
+                                             @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /** Số giây chiếm theo giờ trong ngày của 1 trạm (stationId null = toàn hệ thống) */
+    @Query("""
+      SELECT hour(o.bucketStart) AS hour, COALESCE(SUM(o.occupiedSeconds), 0) AS occupiedSeconds
+      FROM PointHourlyOccupancy o
+      WHERE (:stationId IS NULL OR o.stationId = :stationId)
+        AND o.bucketStart >= :from AND o.bucketStart < :to
+      GROUP BY hour(o.bucketStart)
+    """)
+    List<HourOfDayOccupancyView> sumGroupByHourOfDay(@Param("stationId") Long stationId,
+                                                     @Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /** Xóa các bucket có đầu giờ trong [from, to) trước khi dựng lại */
+    @Modifying
+    @Query("DELETE FROM PointHourlyOccupancy o WHERE o.bucketStart >= :from AND o.bucketStart < :to")
+    int deleteBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+}
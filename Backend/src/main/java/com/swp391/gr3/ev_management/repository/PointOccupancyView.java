@@ -0,0 +1,7 @@
+package com.swp391.gr3.ev_management.repository;
+
+/** Projection: tổng số giây 1 trụ bị chiếm trong khoảng */
+public interface PointOccupancyView {
+    Long getPointId();
+    Long getOccupiedSeconds();
+}
@@ -0,0 +1,14 @@
+package com.swp391.gr3.ev_management.repository;
+
+import com.swp391.gr3.ev_management.entity.RebillDiff;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface RebillDiffRepository extends JpaRepository<RebillDiff, Long> {
+
+    /** Báo cáo chênh lệch của 1 job, phân trang */
+    Page<RebillDiff> findByJobIdOrderBySessionIdAsc(Long jobId, Pageable pageable);
+}
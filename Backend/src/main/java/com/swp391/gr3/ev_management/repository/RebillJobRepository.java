@@ -0,0 +1,41 @@
+package com.swp391.gr3.ev_management.repository;
+
+import com.swp391.gr3.ev_management.entity.RebillJob;
+import com.swp391.gr3.ev_management.enums.RebillJobStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface RebillJobRepository extends JpaRepository<RebillJob, Long> {
+
+    List<RebillJob> findByStatus(RebillJobStatus status);
+
+    List<RebillJob> findTop50ByOrderByJobIdDesc();
+
+    /** Ghi checkpoint + cộng dồn tiến độ của 1 lô (cùng transaction với lô điều chỉnh) */
+    @Modifying
+    @Query("""
+        update RebillJob j
+        set j.checkpointSessionId = :checkpoint,
+            j.processed = j.processed + :processed,
+            j.changed = j.changed + :changed,
+            j.skipped = j.skipped + :skipped,
+            j.amountDelta = j.amountDelta + :delta,
+            j.updatedAt = :now
+        where j.jobId = :jobId
+          and j.status = com.swp391.gr3.ev_management.enums.RebillJobStatus.RUNNING
+    """)
+    int advance(@Param("jobId") Long jobId,
+                @Param("checkpoint") long checkpoint,
+                @Param("processed") long processed,
+                @Param("changed") long changed,
+                @Param("skipped") long skipped,
+                @Param("delta") double delta,
+                @Param("now") LocalDateTime now);
+}
@@ -0,0 +1,34 @@
+package com.swp391.gr3.ev_management.repository;
+
+import com.swp391.gr3.ev_management.enums.InvoiceStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection cho InvoiceRebillService: 1 dòng / phiên đã hoàn tất, đủ dữ liệu để tính lại tiền
+ * (ngữ cảnh tính tiền chụp lúc start + điện năng / phút phạt chốt lúc stop) và hóa đơn hiện tại.
+ */
+public interface RebillSessionRow {
+    Long getSessionId();
+    LocalDateTime getStartTime();
+    LocalDateTime getEndTime();
+    Integer getInitialSoc();
+    double getEnergyKWh();
+    double getCost();
+    Long getConnectorTypeId();
+    String getConnectorMode();
+    Double getRatedKw();
+    Double getBatteryCapacityKWh();
+    LocalDateTime getWindowEnd();
+    Long getIdleMinutes();
+    // Tariff chụp lúc start (null = lúc start chưa có tariff)
+    Long getTariffId();
+    Double getPricePerKWh();
+    Double getPricePerMin();
+    String getCurrency();
+    LocalDateTime getTariffValidTo();
+    // null = outbox chưa tạo hóa đơn
+    Long getInvoiceId();
+    Double getInvoiceAmount();
+    InvoiceStatus getInvoiceStatus();
+}
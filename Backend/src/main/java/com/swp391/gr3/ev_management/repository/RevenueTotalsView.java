@@ -0,0 +1,15 @@
+package com.swp391.gr3.ev_management.repository;
+
+/**
+ * Projection: tổng toàn hệ thống (doanh thu đã thanh toán, điện năng, số phiên) + doanh thu theo
+ * ngày / tuần / tháng / năm hiện tại, 1 lần quét bảng rollup theo giờ
+ */
+public interface RevenueTotalsView {
+    Double getTotalRevenue();
+    Double getTotalEnergy();
+    Long getSessionCount();
+    Double getDayRevenue();
+    Double getWeekRevenue();
+    Double getMonthRevenue();
+    Double getYearRevenue();
+}
@@ -0,0 +1,9 @@
+package com.swp391.gr3.ev_management.repository;
+
+/** Projection: tổng các chỉ số của bảng rollup theo giờ (hoặc của dữ liệu gốc cùng định nghĩa) */
+public interface RollupSumView {
+    Double getRevenue();
+    Double getEnergyKwh();
+    Long getSessions();
+    Long getChargingMinutes();
+}
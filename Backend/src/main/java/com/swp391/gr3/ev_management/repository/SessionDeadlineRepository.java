@@ -0,0 +1,60 @@
+package com.swp391.gr3.ev_management.repository;
+
+import com.swp391.gr3.ev_management.entity.SessionDeadline;
+import com.swp391.gr3.ev_management.enums.ChargingSessionStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface SessionDeadlineRepository extends JpaRepository<SessionDeadline, Long> {
+
+    /** Các hạn chót tới trước mốc {@code until} (nạp vào hàng đợi trong bộ nhớ) */
+    List<SessionDeadline> findByDueAtLessThanEqualOrderByDueAtAsc(LocalDateTime until);
+
+    /**
+     * ✅ Giành quyền xử lý 1 hạn chót (lease): chỉ thành công nếu đã tới hạn và chưa có node nào giữ lease còn hiệu lực.
+     * Câu UPDATE có điều kiện → khi nhiều node cùng giành, chỉ 1 node nhận được 1 dòng.
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+        update SessionDeadline d
+        set d.claimedBy = :node, d.claimedUntil = :leaseUntil, d.attempts = d.attempts + 1
+        where d.sessionId = :sessionId
+          and d.dueAt <= :now
+          and (d.claimedUntil is null or d.claimedUntil < :now)
+    """)
+    int claim(@Param("sessionId") Long sessionId,
+              @Param("node") String node,
+              @Param("now") LocalDateTime now,
+              @Param("leaseUntil") LocalDateTime leaseUntil);
+
+    /** ✅ Xóa hạn chót (phiên sạc đã kết thúc / đã auto-stop xong) */
+    @Modifying
+    @Transactional
+    @Query("delete from SessionDeadline d where d.sessionId = :sessionId")
+    int deleteBySessionId(@Param("sessionId") Long sessionId);
+    /**
+     * ✅ Bổ sung hạn chót cho các phiên IN_PROGRESS chưa có dòng (phiên tạo trước khi có bảng này,
+     * hoặc dòng bị mất) — hạn chót = scheduledEndTime của booking. Chạy khi khởi động.
+     */
+    @Modifying
+    @Transactional
+    @Query("""
+        insert into SessionDeadline (sessionId, dueAt, attempts, createdAt)
+        select cs.sessionId, b.scheduledEndTime, 0, :now
+        from ChargingSession cs
+            join cs.booking b
+        where cs.status = :status
+          and not exists (select 1 from SessionDeadline d where d.sessionId = cs.sessionId)
+    """)
+    int backfillMissing(@Param("status") ChargingSessionStatus status,
+                        @Param("now") LocalDateTime now);
+}
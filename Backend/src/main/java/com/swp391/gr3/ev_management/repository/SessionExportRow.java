@@ -0,0 +1,23 @@
+package com.swp391.gr3.ev_management.repository;
+
+import com.swp391.gr3.ev_management.enums.ChargingSessionStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection cho export CSV phiên sạc (CsvExportService): 1 dòng / phiên, trụ lấy từ snapshot tính tiền
+ */
+public interface SessionExportRow {
+    Long getSessionId();
+    Long getStationId();
+    String getStationName();
+    Long getPointId();
+    LocalDateTime getStartTime();
+    LocalDateTime getEndTime();
+    int getDurationMinutes();
+    double getEnergyKWh();
+    Integer getInitialSoc();
+    Integer getFinalSoc();
+    double getCost();
+    ChargingSessionStatus getStatus();
+}
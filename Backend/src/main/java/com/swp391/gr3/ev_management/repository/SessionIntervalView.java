@@ -0,0 +1,12 @@
+package com.swp391.gr3.ev_management.repository;
+
+import java.time.LocalDateTime;
+
+/** Projection: khoảng chiếm trụ của 1 phiên (endTime null = đang chạy; pointId null = không xác định được trụ) */
+public interface SessionIntervalView {
+    Long getSessionId();
+    Long getPointId();
+    Long getStationId();
+    LocalDateTime getStartTime();
+    LocalDateTime getEndTime();
+}
@@ -1,14 +1,19 @@
 package com.swp391.gr3.ev_management.repository;
 
 import com.swp391.gr3.ev_management.entity.SlotAvailability;
+import com.swp391.gr3.ev_management.enums.SlotStatus;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -50,23 +55,23 @@ public interface SlotAvailabilityRepository extends JpaRepository<SlotAvailabili
      * - Khi admin thay đổi cấu hình slot (slot config) hoặc muốn làm mới các slot,
      *   hệ thống cần xóa tất cả các slot availability trong một khoảng ngày cụ thể.
      *
-     * ⚙️ Query tự động sinh ra:
+     * ⚙️ Query sinh ra (khoảng nửa mở, ngày :end không bị xóa):
      * DELETE FROM slot_availability
      * WHERE config_id = :configId
-     *   AND date BETWEEN :start AND :end
+     *   AND date >= :start AND date < :end
      *
      * 💡 Hữu ích khi cần "tái tạo" slot availability (ví dụ: khi admin đổi giờ hoạt động của trạm sạc).
      *
      * @param configId ID của slot config
-     * @param start thời gian bắt đầu khoảng cần xóa
-     * @param end thời gian kết thúc khoảng cần xóa
+     * @param start thời gian bắt đầu khoảng cần xóa (bao gồm)
+     * @param end thời gian kết thúc khoảng cần xóa (không bao gồm)
      */
     @Modifying
     @Transactional
     @Query("""
         delete from SlotAvailability sa
         where sa.template.config.configId = :configId
-          and sa.date between :start and :end
+          and sa.date >= :start and sa.date < :end
     """)
     int deleteByConfigIdAndDateRange(
             Long configId,
@@ -93,6 +98,39 @@ public interface SlotAvailabilityRepository extends JpaRepository<SlotAvailabili
      */
     List<SlotAvailability> findAllByChargingPoint_PointId(Long pointId);
 
+    /**
+     * ✅ Các slot availability của 1 điểm sạc từ ngày :from trở đi.
+     *
+     * 👉 Ý nghĩa:
+     * - Đường fallback khi SlotOccupancyIndex chưa build xong: cùng phạm vi với index (chỉ từ hôm nay),
+     *   để kết quả không đổi tùy theo index đã sẵn sàng hay chưa.
+     * - JOIN FETCH template + chargingPoint để map sang DTO không phát sinh N+1; sắp như index (ngày, slotIndex).
+     */
+    @Query("""
+        select sa from SlotAvailability sa
+            join fetch sa.template t
+            join fetch sa.chargingPoint cp
+        where cp.pointId = :pointId
+          and sa.date >= :from
+        order by sa.date, t.slotIndex
+    """)
+    List<SlotAvailability> findUpcomingByPointId(@Param("pointId") Long pointId,
+                                                 @Param("from") LocalDateTime from);
+
+    /**
+     * ✅ Toàn bộ slot availability từ ngày :from trở đi (admin), sắp như index (point, ngày, slotIndex).
+     *
+     * 💡 Chỉ là đường fallback khi SlotOccupancyIndex chưa build xong.
+     */
+    @Query("""
+        select sa from SlotAvailability sa
+            join fetch sa.template t
+            join fetch sa.chargingPoint cp
+        where sa.date >= :from
+        order by cp.pointId, sa.date, t.slotIndex
+    """)
+    List<SlotAvailability> findUpcoming(@Param("from") LocalDateTime from);
+
     /**
      * ✅ Lấy tất cả các slot availability theo cấu hình (configId) trong khoảng thời gian chỉ định.
      *
@@ -100,22 +138,28 @@ public interface SlotAvailabilityRepository extends JpaRepository<SlotAvailabili
      * - Dùng để lấy danh sách các slot availability thuộc một cấu hình slot cụ thể
      *   trong một khoảng ngày (ví dụ: để hiển thị lịch sạc theo cấu hình).
      *
-     * ⚙️ Query tự động sinh ra:
-     * SELECT * FROM slot_availability
-     * WHERE config_id = :configId
-     *   AND date BETWEEN :start AND :end
+     * ⚙️ Khoảng nửa mở: date >= :start AND date < :end (ngày :end không bị tính 2 lần).
+     * - JOIN FETCH template + chargingPoint để map sang DTO không phát sinh N+1.
      *
-     * 💡 Hữu ích khi cần lọc slot availability theo cấu hình và ngày tháng.
+     * 💡 Chỉ là đường fallback khi SlotOccupancyIndex chưa build xong.
      *
      * @param configId ID của slot config
-     * @param start thời gian bắt đầu khoảng cần lấy
-     * @param end thời gian kết thúc khoảng cần lấy
+     * @param start thời gian bắt đầu khoảng cần lấy (bao gồm)
+     * @param end thời gian kết thúc khoảng cần lấy (không bao gồm)
      * @return danh sách các slot availability thỏa mãn điều kiện
      */
-    List<SlotAvailability> findByTemplate_Config_ConfigIdAndDateBetween(
-            Long configId,
-            LocalDateTime start,
-            LocalDateTime end
+    @Query("""
+        select sa from SlotAvailability sa
+            join fetch sa.template t
+            join fetch sa.chargingPoint cp
+        where t.config.configId = :configId
+          and sa.date >= :start and sa.date < :end
+        order by sa.date, cp.pointId, t.slotIndex
+    """)
+    List<SlotAvailability> findByConfigIdAndDateRange(
+            @Param("configId") Long configId,
+            @Param("start") LocalDateTime start,
+            @Param("end") LocalDateTime end
     );
 
     @Query("""
@@ -126,4 +170,112 @@ public interface SlotAvailabilityRepository extends JpaRepository<SlotAvailabili
     where bs.booking.bookingId = :bookingId
     """)
     List<Long> findConnectorTypeIdsByBooking(@Param("bookingId") Long bookingId);
+
+    /**
+     * ✅ Lấy các slot availability từ ngày :from trở đi dưới dạng projection gọn (không load entity).
+     *
+     * 👉 Ý nghĩa:
+     * - Dùng để dựng lại / đối soát SlotOccupancyIndex (bitset trong bộ nhớ) với DB.
+     * - Chỉ 1 query JOIN, không phát sinh N+1 khi đọc template / point / station.
+     */
+    @Query("""
+        select sa.slotId as slotId,
+               t.templateId as templateId,
+               t.slotIndex as slotIndex,
+               t.config.configId as configId,
+               cp.pointId as pointId,
+               cp.station.stationId as stationId,
+               sa.date as date,
+               sa.status as status
+        from SlotAvailability sa
+            join sa.template t
+            join sa.chargingPoint cp
+        where sa.date >= :from
+    """)
+    List<SlotOccupancyView> findOccupancyViewsFrom(@Param("from") LocalDateTime from);
+
+    /**
+     * ✅ Các ngày (00:00) đã có SlotAvailability của 1 config trong khoảng [start, end].
+     *
+     * 👉 Ý nghĩa:
+     * - Dùng cho job horizon nhiều ngày: 1 query để biết ngày nào còn thiếu, chỉ sinh bù những ngày đó.
+     */
+    @Query("""
+        select distinct sa.date
+        from SlotAvailability sa
+        where sa.template.config.configId = :configId
+          and sa.date between :start and :end
+    """)
+    List<LocalDateTime> findGeneratedDates(@Param("configId") Long configId,
+                                           @Param("start") LocalDateTime start,
+                                           @Param("end") LocalDateTime end);
+
+    /**
+     * ✅ Projection slot của 1 config trong 1 ngày (date = 00:00 của ngày đó).
+     *
+     * 👉 Ý nghĩa:
+     * - Dùng khi sinh slot hàng loạt: 1 query duy nhất cho (config, ngày) để biết cặp (template, point) nào đã có,
+     *   thay cho việc gọi existsBy... cho từng template × point.
+     */
+    @Query("""
+        select sa.slotId as slotId,
+               t.templateId as templateId,
+               t.slotIndex as slotIndex,
+               t.config.configId as configId,
+               cp.pointId as pointId,
+               cp.station.stationId as stationId,
+               sa.date as date,
+               sa.status as status
+        from SlotAvailability sa
+            join sa.template t
+            join sa.chargingPoint cp
+        where t.config.configId = :configId
+          and sa.date = :date
+    """)
+    List<SlotOccupancyView> findOccupancyViewsByConfigAndDate(@Param("configId") Long configId,
+                                                              @Param("date") LocalDateTime date);
+
+    /**
+     * ✅ Lấy các slot sẽ được claim khi tạo booking, kèm template → config → station và point → connectorType.
+     *
+     * 👉 Ý nghĩa:
+     * - 1 query JOIN FETCH thay cho findAllById + lazy load từng slot (N+1).
+     * - READ_ONLY: entity không bị dirty-check → việc set status trong bộ nhớ sau khi claim
+     *   không sinh thêm UPDATE (trạng thái thật đã được ghi bằng {@link #transitionStatus}).
+     * - Sắp xếp theo thời gian bắt đầu để slot đầu / cuối đúng là khung sớm nhất / muộn nhất.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true"))
+    @Query("""
+        select sa
+        from SlotAvailability sa
+            join fetch sa.template t
+            join fetch t.config c
+            join fetch c.station st
+            join fetch sa.chargingPoint cp
+            join fetch cp.connectorType ct
+        where sa.slotId in :slotIds
+        order by sa.date asc, t.startTime asc
+    """)
+    List<SlotAvailability> findAllForClaim(@Param("slotIds") Collection<Long> slotIds);
+
+    /**
+     * ✅ Chuyển trạng thái hàng loạt bằng 1 câu UPDATE có điều kiện.
+     *
+     * 👉 Ý nghĩa:
+     * - Chỉ những slot đang ở trạng thái :from mới được đổi sang :to.
+     * - DB khóa dòng khi UPDATE → 2 transaction tranh cùng 1 slot thì chỉ 1 bên thấy status = :from.
+     * - Caller so sánh số dòng bị ảnh hưởng với số slot yêu cầu để phát hiện tranh chấp.
+     *
+     * @return số dòng thực sự được cập nhật
+     */
+    @Modifying(flushAutomatically = true)
+    @Query("""
+        update SlotAvailability sa
+        set sa.status = :to
+        where sa.slotId in :slotIds
+          and sa.status = :from
+    """)
+    int transitionStatus(@Param("slotIds") Collection<Long> slotIds,
+                         @Param("from") SlotStatus from,
+                         @Param("to") SlotStatus to);
 }
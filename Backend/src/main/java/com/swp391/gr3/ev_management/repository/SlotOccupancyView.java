@@ -0,0 +1,17 @@
+package com.swp391.gr3.ev_management.repository;
+
+import com.swp391.gr3.ev_management.enums.SlotStatus;
+
+import java.time.LocalDateTime;
+
+/** Projection gọn cho SlotOccupancyIndex: chỉ các cột cần để dựng bitset, không load entity */
+public interface SlotOccupancyView {
+    Long getSlotId();
+    Long getTemplateId();
+    Integer getSlotIndex();
+    Long getConfigId();
+    Long getPointId();
+    Long getStationId();
+    LocalDateTime getDate();
+    SlotStatus getStatus();
+}
@@ -1,7 +1,10 @@
 package com.swp391.gr3.ev_management.repository;
 
 import com.swp391.gr3.ev_management.entity.SlotTemplate;
+import com.swp391.gr3.ev_management.enums.SlotConfigStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
@@ -66,4 +69,25 @@ public interface SlotTemplateRepository extends JpaRepository<SlotTemplate, Long
             LocalDateTime endExclusive
     );
 
+
+    /**
+     * ✅ Lấy các SlotTemplate (kèm config) của những config đang ở trạng thái :status, bắt đầu từ thời điểm :from.
+     *
+     * 👉 Ý nghĩa:
+     * - Dùng cho chế độ "virtual slot": availability được tính từ template × charging point
+     *   thay vì đọc các dòng SlotAvailability sinh sẵn.
+     * - stationId = null → lấy cho mọi station.
+     */
+    @Query("""
+        select t
+        from SlotTemplate t
+            join fetch t.config c
+        where c.isActive = :status
+          and t.startTime >= :from
+          and (:stationId is null or c.station.stationId = :stationId)
+        order by t.startTime asc
+    """)
+    List<SlotTemplate> findOpenTemplates(@Param("stationId") Long stationId,
+                                         @Param("status") SlotConfigStatus status,
+                                         @Param("from") LocalDateTime from);
 }
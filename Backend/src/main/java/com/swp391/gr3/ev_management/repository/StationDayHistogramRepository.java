@@ -0,0 +1,23 @@
+package com.swp391.gr3.ev_management.repository;
+
+import com.swp391.gr3.ev_management.entity.StationDayHistogram;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface StationDayHistogramRepository extends JpaRepository<StationDayHistogram, Long> {
+
+    // ✅ Histogram đã lưu của các ngày trong [from, to]
+    List<StationDayHistogram> findByStatDateBetween(LocalDate from, LocalDate to);
+
+    // ✅ Xóa histogram của 1 ngày trước khi ghi lại
+    @Modifying
+    @Query("delete from StationDayHistogram h where h.statDate = :day")
+    int deleteByStatDate(@Param("day") LocalDate day);
+}
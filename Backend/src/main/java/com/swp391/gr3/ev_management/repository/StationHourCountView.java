@@ -0,0 +1,10 @@
+package com.swp391.gr3.ev_management.repository;
+
+/**
+ * Projection: số phiên bắt đầu trong 1 giờ tại 1 trạm (trạm không xác định = 0)
+ */
+public interface StationHourCountView {
+    Integer getHour();
+    Long getStationId();
+    Long getSessions();
+}
@@ -0,0 +1,7 @@
+package com.swp391.gr3.ev_management.repository;
+
+/** Projection: tổng số giây chiếm trụ của 1 trạm trong khoảng */
+public interface StationOccupancyView {
+    Long getStationId();
+    Long getOccupiedSeconds();
+}
@@ -0,0 +1,7 @@
+package com.swp391.gr3.ev_management.repository;
+
+/** Projection: số charging point của 1 trạm */
+public interface StationPointCountView {
+    Long getStationId();
+    Long getPointCount();
+}
@@ -0,0 +1,12 @@
+package com.swp391.gr3.ev_management.repository;
+
+/** Projection: doanh thu của 1 trạm theo ngày / tuần / tháng / năm hiện tại và tháng trước + số phiên trong năm */
+public interface StationRevenueView {
+    Long getStationId();
+    Double getDayRevenue();
+    Double getWeekRevenue();
+    Double getMonthRevenue();
+    Double getYearRevenue();
+    Double getPrevMonthRevenue();
+    Long getYearSessions();
+}
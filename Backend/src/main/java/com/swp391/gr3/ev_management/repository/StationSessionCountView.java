@@ -0,0 +1,7 @@
+package com.swp391.gr3.ev_management.repository;
+
+/** Projection: số phiên sạc của 1 trạm (theo trạng thái) */
+public interface StationSessionCountView {
+    Long getStationId();
+    Long getSessionCount();
+}
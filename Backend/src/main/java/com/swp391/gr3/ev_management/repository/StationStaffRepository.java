@@ -126,4 +126,15 @@ where u.userId = :userId
   and s.unassignedAt is null
 """)
     List<StationStaff> findStationStaffByUserId(@Param("userId") Long userId);
+
+    // ✅ Id các trạm mà staff (theo userId) đang được phân công tại thời điểm hiện tại
+    // - Cùng điều kiện assignment với các query compact của ChargingSessionRepository
+    @Query("""
+        select ss.station.stationId
+        from StationStaff ss
+        where ss.staff.user.userId = :userId
+          and ss.assignedAt <= CURRENT_TIMESTAMP
+          and (ss.unassignedAt is null or ss.unassignedAt > CURRENT_TIMESTAMP)
+    """)
+    List<Long> findAssignedStationIdsByUserId(@Param("userId") Long userId);
 }
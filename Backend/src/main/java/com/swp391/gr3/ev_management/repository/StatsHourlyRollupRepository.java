@@ -0,0 +1,76 @@
+package com.swp391.gr3.ev_management.repository;
+
+import com.swp391.gr3.ev_management.entity.StatsHourlyRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface StatsHourlyRollupRepository extends JpaRepository<StatsHourlyRollup, Long> {
+
+    /**
+     * ✅ Tổng toàn hệ thống + doanh thu theo ngày / tuần / tháng / năm: cộng các bucket theo giờ
+     * (các khoảng đều là BETWEEN trên đầu giờ của bucket)
+     */
+    @Query("""
+      SELECT COALESCE(SUM(r.revenue), 0) AS totalRevenue,
+             COALESCE(SUM(r.energyKwh), 0) AS totalEnergy,
+             COALESCE(SUM(r.sessions), 0) AS sessionCount,
+             COALESCE(SUM(CASE WHEN r.bucketStart BETWEEN :dayFrom AND :dayTo THEN r.revenue ELSE 0 END), 0) AS dayRevenue,
+             COALESCE(SUM(CASE WHEN r.bucketStart BETWEEN :weekFrom AND :weekTo THEN r.revenue ELSE 0 END), 0) AS weekRevenue,
+             COALESCE(SUM(CASE WHEN r.bucketStart BETWEEN :monthFrom AND :monthTo THEN r.revenue ELSE 0 END), 0) AS monthRevenue,
+             COALESCE(SUM(CASE WHEN r.bucketStart BETWEEN :yearFrom AND :yearTo THEN r.revenue ELSE 0 END), 0) AS yearRevenue
+      FROM StatsHourlyRollup r
+    """)
+    RevenueTotalsView sumTotals(@Param("dayFrom") LocalDateTime dayFrom, @Param("dayTo") LocalDateTime dayTo,
+                                @Param("weekFrom") LocalDateTime weekFrom, @Param("weekTo") LocalDateTime weekTo,
+                                @Param("monthFrom") LocalDateTime monthFrom, @Param("monthTo") LocalDateTime monthTo,
+                                @Param("yearFrom") LocalDateTime yearFrom, @Param("yearTo") LocalDateTime yearTo);
+
+    /**
+     * ✅ Doanh thu + số phiên trong năm theo trạm cho dashboard: GROUP BY trạm với tổng có điều kiện cho từng khoảng.
+     * Chỉ quét bucket trong [scanFrom, scanTo] = hợp các khoảng; bỏ bucket của trạm không xác định (0).
+     */
+    @Query("""
+      SELECT r.stationId AS stationId,
+             COALESCE(SUM(CASE WHEN r.bucketStart BETWEEN :dayFrom AND :dayTo THEN r.revenue ELSE 0 END), 0) AS dayRevenue,
+             COALESCE(SUM(CASE WHEN r.bucketStart BETWEEN :weekFrom AND :weekTo THEN r.revenue ELSE 0 END), 0) AS weekRevenue,
+             COALESCE(SUM(CASE WHEN r.bucketStart BETWEEN :monthFrom AND :monthTo THEN r.revenue ELSE 0 END), 0) AS monthRevenue,
+             COALESCE(SUM(CASE WHEN r.bucketStart BETWEEN :yearFrom AND :yearTo THEN r.revenue ELSE 0 END), 0) AS yearRevenue,
+             COALESCE(SUM(CASE WHEN r.bucketStart BETWEEN :prevMonthFrom AND :prevMonthTo THEN r.revenue ELSE 0 END), 0) AS prevMonthRevenue,
+             COALESCE(SUM(CASE WHEN r.bucketStart BETWEEN :yearFrom AND :yearTo THEN r.sessions ELSE 0 END), 0) AS yearSessions
+      FROM StatsHourlyRollup r
+      WHERE r.bucketStart BETWEEN :scanFrom AND :scanTo
+        AND r.stationId <> 0
+      GROUP BY r.stationId
+    """)
+    List<StationRevenueView> sumGroupByStation(@Param("dayFrom") LocalDateTime dayFrom, @Param("dayTo") LocalDateTime dayTo,
+                                               @Param("weekFrom") LocalDateTime weekFrom, @Param("weekTo") LocalDateTime weekTo,
+                                               @Param("monthFrom") LocalDateTime monthFrom, @Param("monthTo") LocalDateTime monthTo,
+                                               @Param("yearFrom") LocalDateTime yearFrom, @Param("yearTo") LocalDateTime yearTo,
+                                               @Param("prevMonthFrom") LocalDateTime prevMonthFrom,
+                                               @Param("prevMonthTo") LocalDateTime prevMonthTo,
+                                               @Param("scanFrom") LocalDateTime scanFrom,
+                                               @Param("scanTo") LocalDateTime scanTo);
+
+    /** Tổng các bucket có đầu giờ trong [from, to) — để đối soát với bảng gốc */
+    @Query("""
+      SELECT COALESCE(SUM(r.revenue), 0) AS revenue,
+             COALESCE(SUM(r.energyKwh), 0) AS energyKwh,
+             COALESCE(SUM(r.sessions), 0) AS sessions,
+             COALESCE(SUM(r.chargingMinutes), 0) AS chargingMinutes
+      FROM StatsHourlyRollup r
+      WHERE r.bucketStart >= :from AND r.bucketStart < :to
+    """)
+    RollupSumView sumBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /** Xóa các bucket có đầu giờ trong [from, to) trước khi dựng lại (backfill) */
+    @Modifying
+    @Query("DELETE FROM StatsHourlyRollup r WHERE r.bucketStart >= :from AND r.bucketStart < :to")
+    int deleteBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+}
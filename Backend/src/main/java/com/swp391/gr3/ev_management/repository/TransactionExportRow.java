@@ -0,0 +1,25 @@
+package com.swp391.gr3.ev_management.repository;
+
+import com.swp391.gr3.ev_management.enums.PaymentProvider;
+import com.swp391.gr3.ev_management.enums.PaymentType;
+import com.swp391.gr3.ev_management.enums.TransactionStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projection cho export CSV giao dịch (CsvExportService): 1 dòng / giao dịch, trạm lấy qua hóa đơn → phiên → booking
+ */
+public interface TransactionExportRow {
+    Long getTransactionId();
+    LocalDateTime getCreatedAt();
+    double getAmount();
+    String getCurrency();
+    TransactionStatus getStatus();
+    String getDescription();
+    PaymentType getMethodType();
+    PaymentProvider getProvider();
+    Long getInvoiceId();
+    Long getSessionId();
+    Long getStationId();
+    String getStationName();
+}
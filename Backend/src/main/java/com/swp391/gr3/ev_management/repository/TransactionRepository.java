@@ -3,12 +3,16 @@ package com.swp391.gr3.ev_management.repository;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import com.swp391.gr3.ev_management.entity.PaymentMethod;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
@@ -275,4 +279,39 @@ where u.userId = :userId
             @Param("status") TransactionStatus status,
             Pageable pageable
     );
-}
\ No newline at end of file
+
+    /**
+     * ✅ Giao dịch tạo trong [from, to) (tùy chọn lọc trạm) cho export CSV, theo TransactionID tăng dần.
+     * Đọc dạng cursor (fetch size, read-only, projection không tạo entity), phải đóng Stream.
+     */
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("""
+        select t.transactionId as transactionId,
+               t.createdAt as createdAt,
+               t.amount as amount,
+               t.currency as currency,
+               t.status as status,
+               t.description as description,
+               pm.methodType as methodType,
+               pm.provider as provider,
+               i.invoiceId as invoiceId,
+               s.sessionId as sessionId,
+               st.stationId as stationId,
+               st.stationName as stationName
+        from Transaction t
+            left join t.paymentMethod pm
+            left join t.invoice i
+            left join i.session s
+            left join s.booking b
+            left join b.station st
+        where t.createdAt >= :from and t.createdAt < :to
+          and (:stationId is null or st.stationId = :stationId)
+        order by t.transactionId
+    """)
+    Stream<TransactionExportRow> streamForExport(@Param("from") LocalDateTime from,
+                                                 @Param("to") LocalDateTime to,
+                                                 @Param("stationId") Long stationId);
+}
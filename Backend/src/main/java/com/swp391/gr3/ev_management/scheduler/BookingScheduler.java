@@ -4,45 +4,73 @@ import com.swp391.gr3.ev_management.entity.Booking;
 import com.swp391.gr3.ev_management.enums.BookingStatus;
 import com.swp391.gr3.ev_management.repository.BookingsRepository;
 import com.swp391.gr3.ev_management.service.BookingOverdueHandler;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
 import java.time.LocalDateTime;
-import java.time.ZoneId;
 import java.util.List;
 
+import static com.swp391.gr3.ev_management.util.TenantTime.TENANT_ZONE;
+
 @Component                           // Đánh dấu class này là Spring Bean dùng cho Scheduler
 @RequiredArgsConstructor             // Lombok tạo constructor tự động cho các field final
 @Slf4j                               // Sinh ra logger cho class
 public class BookingScheduler {
 
-    // Múi giờ Việt Nam (để đảm bảo xử lý đúng thời gian theo địa phương)
-    private static final ZoneId TENANT_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
-
     private final BookingsRepository bookingsRepo;      // Repository để truy vấn các booking quá hạn
     private final BookingOverdueHandler overdueHandler; // Service xử lý hủy + tạo violation
+    private final MeterRegistry meterRegistry;          // Đo chi phí quét + số booking lọt khỏi BookingExpiryQueue
 
-    // Chạy mỗi phút (giây 0 của mỗi phút) theo giờ Việt Nam
-    @Scheduled(cron = "0 * * * * *", zone = "Asia/Ho_Chi_Minh")
+    // Số booking mỗi lô hủy (1 UPDATE + 1 batch violation / lô)
+    @Value("${app.booking-expiry.chunk-size:200}")
+    private int chunkSize;
+
+    // Lưới an toàn: BookingExpiryQueue hủy booking đúng hạn chót, job này chỉ quét thưa (mặc định 15 phút)
+    // để bắt các booking lọt khỏi hàng đợi (restart, node khác tạo, lỗi khi xử lý...)
+    @Scheduled(cron = "${app.booking-expiry.safety-net-cron:0 */15 * * * *}", zone = "Asia/Ho_Chi_Minh")
     public void autoCancelOverdueBookings() {
         LocalDateTime now = LocalDateTime.now(TENANT_ZONE);
         log.info("[autoCancelOverdue] tick at {}", now);
+        Timer.Sample scan = Timer.start(meterRegistry);
 
         // ✅ chỉ lấy ID, không JOIN gì nặng cả
         List<BookingStatus> statuses = List.of(BookingStatus.CONFIRMED, BookingStatus.PENDING);
 
         List<Long> overdueIds = bookingsRepo.findOverdueIds(statuses, now);
+        scan.stop(meterRegistry.timer("booking.expiry.scan"));
+        meterRegistry.counter("booking.expiry.scan.caught").increment(overdueIds.size());
         log.info("[autoCancelOverdue] found {} bookings overdue", overdueIds.size());
 
-        for (Long bookingId : overdueIds) {
+        // 1 booking → luồng đơn lẻ; nhiều booking (vd: cả trạm offline) → hủy theo lô
+        if (overdueIds.size() == 1) {
+            cancelOne(overdueIds.get(0));
+            return;
+        }
+        for (int from = 0; from < overdueIds.size(); from += chunkSize) {
+            List<Long> chunk = overdueIds.subList(from, Math.min(from + chunkSize, overdueIds.size()));
             try {
-                overdueHandler.cancelAndCreateViolationTx(bookingId);
+                int canceled = overdueHandler.cancelOverdueChunkTx(chunk);
+                log.info("[autoCancelOverdue] chunk {}..{}: canceled {}", from, from + chunk.size() - 1, canceled);
             } catch (Exception ex) {
-                log.error("[autoCancelOverdue] Error bookingId={}: {}",
-                        bookingId, ex.getMessage(), ex);
+                // Lô lỗi (đã rollback) → xử lý lại từng booking để 1 booking hỏng không chặn cả lô
+                log.error("[autoCancelOverdue] chunk {}..{} failed, fallback per booking: {}",
+                        from, from + chunk.size() - 1, ex.getMessage(), ex);
+                chunk.forEach(this::cancelOne);
             }
         }
     }
+
+    private void cancelOne(Long bookingId) {
+        try {
+            overdueHandler.cancelAndCreateViolationTx(bookingId);
+        } catch (Exception ex) {
+            log.error("[autoCancelOverdue] Error bookingId={}: {}",
+                    bookingId, ex.getMessage(), ex);
+        }
+    }
 }
@@ -2,36 +2,56 @@ package com.swp391.gr3.ev_management.scheduler;
 
 import com.swp391.gr3.ev_management.enums.SlotConfigStatus;
 import com.swp391.gr3.ev_management.repository.SlotConfigRepository;
-import com.swp391.gr3.ev_management.service.SlotAvailabilitySchedulerService;
-import com.swp391.gr3.ev_management.service.SlotAvailabilityService;
-import lombok.RequiredArgsConstructor;
+import com.swp391.gr3.ev_management.service.SlotHorizonService;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class SlotAvailabilityDailyJob {
 
     private final SlotConfigRepository slotConfigRepository;
-    private final SlotAvailabilitySchedulerService schedulerService;
-    private final SlotAvailabilityService slotAvailabilityService;
+    private final SlotHorizonService slotHorizonService;
+    private final Executor slotGenExecutor;
+
+    // Số ngày (tính cả hôm nay) luôn có sẵn slot để driver đặt trước
+    @Value("${app.slot-horizon.days:7}")
+    private int horizonDays;
+
+    // Chặn 2 lượt chạy chồng nhau (startup + cron đầu giờ)
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    // Ngày đã dọn availability của hôm qua (chỉ dọn ở lượt chạy thành công đầu tiên mỗi ngày)
+    private volatile LocalDate lastCleanupDay;
+
+    public SlotAvailabilityDailyJob(SlotConfigRepository slotConfigRepository,
+                                    SlotHorizonService slotHorizonService,
+                                    @Qualifier("slotGenExecutor") Executor slotGenExecutor) {
+        this.slotConfigRepository = slotConfigRepository;
+        this.slotHorizonService = slotHorizonService;
+        this.slotGenExecutor = slotGenExecutor;
+    }
 
     /**
      * 1) MỖI 60 PHÚT kiểm tra:
-     *  - Nếu hôm nay CHƯA có SlotAvailability cho config → sinh mới
-     *  - Nếu đã có rồi → bỏ qua, không đụng vào booking hiện tại
+     *  - Ngày nào trong horizon CHƯA có SlotTemplate / SlotAvailability cho config → sinh bù
+     *  - Ngày đã có rồi → bỏ qua, không đụng vào booking hiện tại
      */
     @Scheduled(cron = "0 0 * * * *", zone = "Asia/Ho_Chi_Minh")
-    public void ensureTodayAvailabilitiesBySchedule() {
-        log.info("⏰ Scheduled check: ensure today slot availabilities exist");
-        ensureTodayAvailabilities();
+    public void ensureHorizonBySchedule() {
+        log.info("⏰ Scheduled check: ensure slot horizon ({} days) exists", horizonDays);
+        ensureHorizon();
     }
 
     /**
@@ -39,67 +59,62 @@ public class SlotAvailabilityDailyJob {
      *  - Cũng chạy logic tương tự (phòng trường hợp app tắt lúc 00:00)
      */
     @EventListener(ApplicationReadyEvent.class)
-    public void ensureTodayAvailabilitiesOnStartup() {
-        log.info("🚀 App started: ensure today slot availabilities exist");
-        ensureTodayAvailabilities();
+    public void ensureHorizonOnStartup() {
+        log.info("🚀 App started: ensure slot horizon ({} days) exists", horizonDays);
+        ensureHorizon();
     }
 
     /**
      * Hàm dùng chung:
      *  - Duyệt hết các SlotConfig ACTIVE
-     *  - Với từng config:
-     *      + Nếu TRONG NGÀY HÔM NAY KHÔNG có SlotAvailability nào → gọi resetAndCreateForConfigInDate()
-     *      + Nếu ĐÃ CÓ slot hôm nay → KHÔNG reset (tránh mất booking)
+     *  - Mỗi config là 1 task trên slotGenExecutor (pool giới hạn), chạy trong transaction riêng
+     *  - Đợi tất cả xong rồi log thời gian từng config + tổng
      */
-    private void ensureTodayAvailabilities() {
-        var actives = slotConfigRepository.findByIsActive(SlotConfigStatus.ACTIVE);
-        if (actives.isEmpty()) {
-            log.info("No active SlotConfig found. Skip availability generation.");
+    private void ensureHorizon() {
+        if (!running.compareAndSet(false, true)) {
+            log.info("Slot horizon generation already running. Skip.");
             return;
         }
+        try {
+            var actives = slotConfigRepository.findByIsActive(SlotConfigStatus.ACTIVE);
+            if (actives.isEmpty()) {
+                log.info("No active SlotConfig found. Skip availability generation.");
+                return;
+            }
 
-        LocalDate today = LocalDate.now();
-        LocalDateTime todayStart = today.atStartOfDay();
-        LocalDateTime todayEnd   = todayStart.plusDays(1);
-
-        // 👇 Ngày hôm qua
-        LocalDate yesterday = today.minusDays(1);
-        LocalDateTime yesterdayStart = yesterday.atStartOfDay();
-        LocalDateTime yesterdayEnd   = yesterdayStart.plusDays(1);
-
-        for (var cfg : actives) {
-            Long configId = cfg.getConfigId();
-            try {
-                // ⚠️ 1) Kiểm tra hôm nay đã có slot chưa
-                var todaysSlots = slotAvailabilityService.findByConfigAndDateBetween(
-                        configId, todayStart, todayEnd
-                );
-                boolean hasTodaySlots = !todaysSlots.isEmpty();
+            LocalDate today = LocalDate.now();
+            boolean cleanupYesterday = !today.equals(lastCleanupDay);
+            long t0 = System.nanoTime();
 
-                if (!hasTodaySlots) {
-                    // 🧹 2) CHƯA có slot hôm nay → trước khi tạo mới, xoá slot của NGÀY HÔM QUA
-                    int deletedYesterday = slotAvailabilityService
-                            .deleteByTemplate_Config_ConfigIdAndDateBetween(
-                                    configId,
-                                    yesterdayStart,
-                                    yesterdayEnd
-                            );
-                    log.info("🧹 Deleted {} availabilities for config {} on yesterday {}",
-                            deletedYesterday, configId, yesterday);
+            List<CompletableFuture<SlotHorizonService.Result>> tasks = actives.stream()
+                    .map(cfg -> CompletableFuture
+                            .supplyAsync(() -> slotHorizonService.topUp(cfg.getConfigId(), today, horizonDays, cleanupYesterday), slotGenExecutor)
+                            .exceptionally(e -> {
+                                log.error("❌ Failed to ensure slot horizon for config {}: {}",
+                                        cfg.getConfigId(), e.getMessage(), e);
+                                return null;
+                            }))
+                    .toList();
+            CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).join();
 
-                    // ✅ 3) Tạo slot cho HÔM NAY
-                    int created = schedulerService.resetAndCreateForConfigInDate(configId, today);
-                    log.info("✅ Created {} availabilities for config {} on {}",
-                            created, configId, today);
-                } else {
-                    // ĐÃ có slot hôm nay rồi -> KHÔNG làm gì để tránh mất booking
-                    log.info("ℹ️ Availabilities already exist for config {} on {}. Skip.",
-                            configId, today);
+            int rows = 0;
+            int failed = 0;
+            for (var task : tasks) {
+                SlotHorizonService.Result r = task.join();
+                if (r == null) {
+                    failed++;
+                    continue;
                 }
-            } catch (Exception e) {
-                log.error("❌ Failed to ensure availabilities for config {}: {}",
-                        configId, e.getMessage(), e);
+                rows += r.rows();
+                log.info("✅ Config {}: templates for {} day(s), availabilities for {} day(s), {} rows in {} ms",
+                        r.configId(), r.templateDays(), r.availabilityDays(), r.rows(), r.elapsedMs());
             }
+            lastCleanupDay = today;
+            log.info("Slot horizon {}..{}: {} configs ({} failed), {} rows in {} ms",
+                    today, today.plusDays(horizonDays - 1L), actives.size(), failed, rows,
+                    (System.nanoTime() - t0) / 1_000_000);
+        } finally {
+            running.set(false);
         }
     }
 }
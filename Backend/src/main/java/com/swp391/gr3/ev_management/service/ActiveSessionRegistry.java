@@ -0,0 +1,227 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.swp391.gr3.ev_management.dto.response.ActiveSessionView;
+import com.swp391.gr3.ev_management.dto.response.ViewCharSessionResponse;
+import com.swp391.gr3.ev_management.enums.ChargingSessionStatus;
+import com.swp391.gr3.ev_management.repository.ActiveSessionRow;
+import com.swp391.gr3.ev_management.repository.ChargingSessionRepository;
+import com.swp391.gr3.ev_management.util.AfterCommit;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * Danh sách phiên sạc đang chạy (IN_PROGRESS) trong bộ nhớ, chia theo trạm.
+ *
+ * - Nạp 1 lần lúc khởi động, sau đó cập nhật sau khi commit từ start / stop phiên sạc.
+ * - Phục vụ các màn hình staff / dashboard (phiên đang chạy theo trạm, compact theo trạm của staff,
+ *   đếm tổng / theo trạm) mà không query DB.
+ * - Đối soát định kỳ với DB (app.active-sessions.resync-ms) để bắt thay đổi từ node khác / lỗi giữa chừng.
+ * - Chưa nạp xong (isReady() = false) → caller tự đọc DB như cũ.
+ *
+ * Metrics: session.active.registry (số phiên đang giữ).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ActiveSessionRegistry {
+
+    private final ChargingSessionRepository chargingSessionRepository;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Dữ liệu hiển thị của 1 phiên đang chạy (bất biến, thay nguyên khối khi cập nhật).
+     * view theo trạm của booking; compact theo trạm của charging point (pointStationId -> các dòng).
+     */
+    private record Entry(long sessionId, long stationId, ViewCharSessionResponse view,
+                         Map<Long, List<ActiveSessionView>> compact) {
+    }
+
+    // sessionId -> entry
+    private final ConcurrentMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    // stationId (của booking) -> (sessionId -> entry)
+    private final ConcurrentMap<Long, ConcurrentMap<Long, Entry>> byStation = new ConcurrentHashMap<>();
+    // stationId (của charging point) -> (sessionId -> các dòng compact)
+    private final ConcurrentMap<Long, ConcurrentMap<Long, List<ActiveSessionView>>> compactByStation = new ConcurrentHashMap<>();
+
+    // Phiên vừa dừng: chặn lượt nạp (start / đối soát) đang chạy dở đưa phiên trở lại
+    private final Cache<Long, Boolean> ended = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofMinutes(10))
+            .maximumSize(100_000)
+            .build();
+
+    private volatile boolean ready;
+
+    // =========================================================================
+    // LIFECYCLE
+    // =========================================================================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        meterRegistry.gauge("session.active.registry", entries, Map::size);
+        long t0 = System.nanoTime();
+        resync();
+        ready = true;
+        log.info("[active-sessions] loaded {} sessions at {} stations in {} ms",
+                entries.size(), byStation.size(), (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    /** Đối soát với DB: thêm phiên thiếu, bỏ phiên đã kết thúc */
+    @Scheduled(fixedDelayString = "${app.active-sessions.resync-ms:300000}",
+            initialDelayString = "${app.active-sessions.resync-ms:300000}")
+    public void resync() {
+        // Chỉ bỏ phiên đã có TRƯỚC lúc query (phiên vừa start trong lúc query không nằm trong kết quả)
+        List<Long> known = List.copyOf(entries.keySet());
+        Map<Long, Entry> fresh = toEntries(chargingSessionRepository.findActiveRows(ChargingSessionStatus.IN_PROGRESS));
+        for (Long sessionId : known) {
+            if (!fresh.containsKey(sessionId)) remove(sessionId);
+        }
+        fresh.values().forEach(this::put);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    // =========================================================================
+    // FEED (gọi từ ChargingSessionServiceImpl / ChargingSessionTxHandler)
+    // =========================================================================
+
+    /** Phiên vừa bắt đầu: nạp dữ liệu hiển thị sau khi commit */
+    public void started(Long sessionId) {
+        if (sessionId == null) return;
+        AfterCommit.run(() -> toEntries(chargingSessionRepository.findActiveRowsBySession(sessionId, ChargingSessionStatus.IN_PROGRESS))
+                .values().forEach(this::put));
+    }
+
+    /** Phiên đã dừng: bỏ khỏi danh sách sau khi commit */
+    public void stopped(Long sessionId) {
+        if (sessionId == null) return;
+        AfterCommit.run(() -> {
+            ended.put(sessionId, Boolean.TRUE);
+            remove(sessionId);
+        });
+    }
+
+    private void put(Entry e) {
+        if (ended.getIfPresent(e.sessionId()) != null) return;
+        Entry old = entries.put(e.sessionId(), e);
+        if (old != null) unindex(old);
+        byStation.computeIfAbsent(e.stationId(), id -> new ConcurrentHashMap<>()).put(e.sessionId(), e);
+        e.compact().forEach((stationId, rows) ->
+                compactByStation.computeIfAbsent(stationId, id -> new ConcurrentHashMap<>()).put(e.sessionId(), rows));
+    }
+
+    private void remove(Long sessionId) {
+        Entry old = entries.remove(sessionId);
+        if (old != null) unindex(old);
+    }
+
+    private void unindex(Entry e) {
+        removeFromShard(byStation, e.stationId(), e.sessionId());
+        e.compact().keySet().forEach(stationId -> removeFromShard(compactByStation, stationId, e.sessionId()));
+    }
+
+    private static <V> void removeFromShard(ConcurrentMap<Long, ConcurrentMap<Long, V>> index, Long stationId, Long sessionId) {
+        index.computeIfPresent(stationId, (id, shard) -> {
+            shard.remove(sessionId);
+            return shard.isEmpty() ? null : shard;
+        });
+    }
+
+    // =========================================================================
+    // READ
+    // =========================================================================
+
+    /** Phiên đang chạy tại 1 trạm */
+    public List<ViewCharSessionResponse> findByStation(Long stationId) {
+        Map<Long, Entry> shard = byStation.get(stationId);
+        if (shard == null) return List.of();
+        return shard.values().stream()
+                .map(Entry::view)
+                .sorted(Comparator.comparing(ViewCharSessionResponse::getStartTime, Comparator.nullsLast(Comparator.reverseOrder())))
+                .toList();
+    }
+
+    /** Dạng compact của các phiên có charging point thuộc các trạm cho trước, mới bắt đầu trước */
+    public List<ActiveSessionView> findCompactByStations(Collection<Long> stationIds) {
+        List<ActiveSessionView> out = new ArrayList<>();
+        for (Long stationId : stationIds) {
+            Map<Long, List<ActiveSessionView>> shard = compactByStation.get(stationId);
+            if (shard != null) shard.values().forEach(out::addAll);
+        }
+        out.sort(Comparator.comparing(ActiveSessionView::getStartTime, Comparator.nullsLast(Comparator.reverseOrder())));
+        return out;
+    }
+
+    /** Tổng số phiên đang chạy */
+    public long count() {
+        return entries.size();
+    }
+
+    /** Số phiên đang chạy tại 1 trạm */
+    public int countByStation(Long stationId) {
+        Map<Long, Entry> shard = byStation.get(stationId);
+        return shard == null ? 0 : shard.size();
+    }
+
+    /** stationId -> số phiên đang chạy (chỉ các trạm có phiên) */
+    public Map<Long, Integer> countsByStation() {
+        Map<Long, Integer> out = new HashMap<>();
+        byStation.forEach((stationId, shard) -> out.put(stationId, shard.size()));
+        return out;
+    }
+
+    // =========================================================================
+    // MAPPING
+    // =========================================================================
+
+    /** Gom các dòng (1 dòng / charging point) thành 1 entry / phiên */
+    private static Map<Long, Entry> toEntries(List<ActiveSessionRow> rows) {
+        Map<Long, List<ActiveSessionRow>> bySession = rows.stream()
+                .collect(Collectors.groupingBy(ActiveSessionRow::getSessionId, LinkedHashMap::new, Collectors.toList()));
+
+        Map<Long, Entry> out = new HashMap<>();
+        bySession.forEach((sessionId, list) -> {
+            ActiveSessionRow r = list.get(0);
+            ViewCharSessionResponse view = ViewCharSessionResponse.builder()
+                    .sessionId(sessionId)
+                    .bookingId(r.getBookingId())
+                    .driverId(r.getDriverId())
+                    .stationName(r.getStationName())
+                    .vehiclePlate(r.getVehiclePlate() != null ? r.getVehiclePlate() : "Unknown")
+                    .startTime(r.getStartTime())
+                    .initialSoc(r.getInitialSoc())
+                    .currency("VND")
+                    .status(ChargingSessionStatus.IN_PROGRESS)
+                    .build();
+
+            // Giống query compact cũ: chỉ phiên có xe + connector + charging point, mỗi point 1 dòng,
+            // trạm lấy theo charging point (không phải trạm của booking)
+            Map<Long, List<ActiveSessionView>> compact = list.stream()
+                    .filter(x -> x.getVehicleId() != null && x.getConnector() != null && x.getPointId() != null
+                            && x.getPointStationId() != null)
+                    .collect(Collectors.toMap(ActiveSessionRow::getPointId, x -> x, (a, b) -> a, LinkedHashMap::new))
+                    .values().stream()
+                    .collect(Collectors.groupingBy(ActiveSessionRow::getPointStationId, LinkedHashMap::new,
+                            Collectors.mapping(x -> new ActiveSessionView(sessionId, x.getConnector(), x.getPointNumber(),
+                                    x.getPointStationName(), x.getDriverName(), x.getVehiclePlate(), x.getStartTime(),
+                                    x.getScheduledEndTime()), Collectors.toList())));
+
+            out.put(sessionId, new Entry(sessionId, r.getStationId(), view, compact));
+        });
+        return out;
+    }
+}
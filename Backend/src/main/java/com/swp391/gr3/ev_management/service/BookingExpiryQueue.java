@@ -0,0 +1,158 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.swp391.gr3.ev_management.enums.BookingStatus;
+import com.swp391.gr3.ev_management.repository.BookingDeadlineView;
+import com.swp391.gr3.ev_management.repository.BookingsRepository;
+import com.swp391.gr3.ev_management.util.AfterCommit;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
+import static com.swp391.gr3.ev_management.util.TenantTime.TENANT_ZONE;
+
+/**
+ * Hàng đợi hạn chót (DelayQueue) của các booking PENDING / CONFIRMED.
+ *
+ * - Nạp từ DB khi app khởi động, sau đó được BookingServiceImpl cập nhật khi tạo / xác nhận / hủy booking.
+ * - 1 thread nền lấy booking đúng lúc tới scheduledEndTime và gọi BookingOverdueHandler
+ *   (handler chỉ hủy nếu booking vẫn PENDING / CONFIRMED → chạy thừa cũng không sao).
+ * - BookingScheduler vẫn quét DB nhưng thưa hơn, chỉ để bắt các booking lọt khỏi hàng đợi
+ *   (node khác tạo, restart giữa chừng...).
+ *
+ * Metrics: booking.expiry.latency (trễ so với hạn chót), booking.expiry.fired, booking.expiry.pending.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class BookingExpiryQueue {
+
+    private static final List<BookingStatus> OPEN_STATUSES = List.of(BookingStatus.CONFIRMED, BookingStatus.PENDING);
+
+    private final BookingsRepository bookingsRepository;
+    // Lấy lười: BookingOverdueHandler → ViolationService → BookingService → hàng đợi này (tránh vòng phụ thuộc)
+    private final ObjectProvider<BookingOverdueHandler> overdueHandlerProvider;
+    private final MeterRegistry meterRegistry;
+
+    private final DelayQueue<Deadline> queue = new DelayQueue<>();
+
+    // bookingId -> hạn chót hiện hành (epoch ms); phần tử trong queue không khớp map = đã hủy / đổi lịch
+    private final ConcurrentMap<Long, Long> deadlines = new ConcurrentHashMap<>();
+
+    private BookingOverdueHandler overdueHandler;
+    private volatile Thread worker;
+    private Timer latencyTimer;
+    private Counter firedCounter;
+
+    /** 1 hạn chót trong DelayQueue */
+    private record Deadline(long bookingId, long dueAtMillis) implements Delayed {
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueAtMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(dueAtMillis, ((Deadline) o).dueAtMillis);
+        }
+    }
+
+    // =========================================================================
+    // LIFECYCLE
+    // =========================================================================
+
+    /** Nạp hạn chót của mọi booking đang mở rồi bật thread xử lý */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        latencyTimer = Timer.builder("booking.expiry.latency")
+                .description("Độ trễ từ scheduledEndTime tới lúc booking bị hủy tự động")
+                .register(meterRegistry);
+        firedCounter = Counter.builder("booking.expiry.fired")
+                .description("Số booking hết hạn được xử lý bởi hàng đợi")
+                .register(meterRegistry);
+        meterRegistry.gauge("booking.expiry.pending", deadlines, ConcurrentMap::size);
+
+        overdueHandler = overdueHandlerProvider.getObject();
+
+        long t0 = System.nanoTime();
+        List<BookingDeadlineView> open = bookingsRepository.findDeadlines(OPEN_STATUSES);
+        open.forEach(v -> put(v.getBookingId(), v.getScheduledEndTime()));
+        log.info("[expiry] loaded {} open bookings in {} ms", open.size(), (System.nanoTime() - t0) / 1_000_000);
+
+        Thread t = new Thread(this::runLoop, "booking-expiry");
+        t.setDaemon(true);
+        worker = t;
+        t.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread t = worker;
+        worker = null;
+        if (t != null) t.interrupt();
+    }
+
+    // =========================================================================
+    // FEED (gọi từ BookingServiceImpl / ChargingSessionServiceImpl)
+    // =========================================================================
+
+    /** Đặt / cập nhật hạn chót của booking (áp dụng sau khi transaction commit) */
+    public void schedule(Long bookingId, LocalDateTime scheduledEndTime) {
+        if (bookingId == null || scheduledEndTime == null) return;
+        AfterCommit.run(() -> put(bookingId, scheduledEndTime));
+    }
+
+    /** Bỏ booking khỏi hàng đợi (đã hủy / đã bắt đầu sạc) */
+    public void cancel(Long bookingId) {
+        if (bookingId == null) return;
+        AfterCommit.run(() -> deadlines.remove(bookingId));
+    }
+
+    private void put(Long bookingId, LocalDateTime scheduledEndTime) {
+        long dueAt = scheduledEndTime.atZone(TENANT_ZONE).toInstant().toEpochMilli();
+        deadlines.put(bookingId, dueAt);
+        queue.put(new Deadline(bookingId, dueAt));
+    }
+
+    // =========================================================================
+    // WORKER
+    // =========================================================================
+
+    private void runLoop() {
+        while (worker == Thread.currentThread()) {
+            Deadline d;
+            try {
+                d = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            // Bỏ qua phần tử cũ (booking đã hủy hoặc đã đổi hạn chót)
+            if (!deadlines.remove(d.bookingId(), d.dueAtMillis())) continue;
+
+            try {
+                overdueHandler.cancelAndCreateViolationTx(d.bookingId());
+                firedCounter.increment();
+                latencyTimer.record(Math.max(0, System.currentTimeMillis() - d.dueAtMillis()), TimeUnit.MILLISECONDS);
+            } catch (Exception ex) {
+                // Không đưa lại vào queue: lượt quét an toàn của BookingScheduler sẽ thử lại
+                log.error("[expiry] Error bookingId={}: {}", d.bookingId(), ex.getMessage(), ex);
+            }
+        }
+    }
+}
@@ -7,37 +7,56 @@ import com.swp391.gr3.ev_management.entity.User;
 import com.swp391.gr3.ev_management.enums.BookingStatus;
 import com.swp391.gr3.ev_management.enums.NotificationTypes;
 import com.swp391.gr3.ev_management.events.NotificationCreatedEvent;
+import com.swp391.gr3.ev_management.repository.BookingOverdueBatchView;
 import com.swp391.gr3.ev_management.repository.BookingsRepository;
-import lombok.RequiredArgsConstructor;
+import com.swp391.gr3.ev_management.util.AfterCommit;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.LocalDateTime;
-import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
 import java.util.List;
 
+import static com.swp391.gr3.ev_management.util.TenantTime.TENANT_ZONE;
+
 @Service // Đánh dấu đây là một Spring Service (bean xử lý logic nghiệp vụ)
-@RequiredArgsConstructor // Tự động sinh constructor với các field final
 @Slf4j // Cho phép sử dụng logger (log.info, log.error,...)
 public class BookingOverdueHandler {
 
-    // Múi giờ cố định cho hệ thống (theo giờ Việt Nam)
-    private static final ZoneId TENANT_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+    private static final List<BookingStatus> OPEN_STATUSES = List.of(BookingStatus.CONFIRMED, BookingStatus.PENDING);
 
     private final BookingsRepository bookingsRepository;           // Repository để thao tác bảng Booking
     private final NotificationsService notificationsService;       // Service để lưu Notification
     private final ApplicationEventPublisher eventPublisher;        // Dùng để bắn Event trong Spring (publish event)
     private final ViolationService violationService;               // Service xử lý vi phạm (tạo Violation)
+    private final TransactionTemplate notifyTxTemplate;            // Transaction riêng cho từng notification (sau commit)
+
+    public BookingOverdueHandler(BookingsRepository bookingsRepository,
+                                 NotificationsService notificationsService,
+                                 ApplicationEventPublisher eventPublisher,
+                                 ViolationService violationService,
+                                 PlatformTransactionManager transactionManager) {
+        this.bookingsRepository = bookingsRepository;
+        this.notificationsService = notificationsService;
+        this.eventPublisher = eventPublisher;
+        this.violationService = violationService;
+        // REQUIRES_NEW: ở afterCommit tài nguyên của transaction hủy vẫn còn gắn với thread
+        this.notifyTxTemplate = new TransactionTemplate(transactionManager);
+        this.notifyTxTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
 
     /**
      * Phương thức này được gọi khi 1 booking bị quá hạn (overdue).
      * Nó sẽ:
      *  1) Hủy booking (nếu đang ở trạng thái CONFIRMED)
      *  2) Tạo bản ghi Violation cho tài xế
-     *  3) Gửi thông báo (Notification) cho người dùng
+     *  3) Gửi thông báo (Notification) cho người dùng sau khi commit
      *
      * Được bọc trong một transaction mới (Propagation.REQUIRES_NEW)
      * để đảm bảo độc lập với các transaction khác (ngăn rollback dây chuyền).
@@ -97,31 +116,76 @@ public class BookingOverdueHandler {
         }
 
         // ===================== GỬI NOTIFICATION =====================
-        try {
-            Notification noti = new Notification();
+        AfterCommit.run(() -> notifyOverdue(bookingId, userId, stationName));
+    }
+    /**
+     * Phiên bản theo lô của cancelAndCreateViolationTx (dùng khi nhiều booking hết hạn cùng lúc,
+     * vd: cả trạm offline). Mỗi lô chạy trong 1 transaction mới:
+     *  1) 1 câu UPDATE cho cả lô (chỉ booking còn CONFIRMED / PENDING)
+     *  2) 1 query đọc lại đúng các booking vừa bị hủy (kèm connectorType + số session hợp lệ)
+     *  3) ViolationService.createOverdueViolations: tariff 1 lần / connectorType, chèn violation theo batch,
+     *     xét auto-ban 1 lần / driver
+     *  4) Notification cho từng booking, sau khi lô commit
+     *
+     * @return số booking thực sự bị hủy
+     */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public int cancelOverdueChunkTx(List<Long> bookingIds) {
+        if (bookingIds.isEmpty()) return 0;
+        // Cắt về mili-giây: giá trị này được ghi vào updatedAt rồi dùng để đọc lại → phải so sánh bằng được
+        LocalDateTime now = LocalDateTime.now(TENANT_ZONE).truncatedTo(ChronoUnit.MILLIS);
 
-            // ⚠️ Không load Booking/User nặng nữa — chỉ gắn "stub" có ID
-            Booking bookingRef = new Booking();
-            bookingRef.setBookingId(bookingId);
+        // ✅ 1) Hủy cả lô bằng 1 câu UPDATE
+        int rows = bookingsRepository.updateStatusIfInBatch(bookingIds, BookingStatus.CANCELED, OPEN_STATUSES, now);
+        if (rows == 0) {
+            log.debug("[overdue] chunk of {} bookings: nothing to cancel", bookingIds.size());
+            return 0;
+        }
 
-            User userRef = new User();
-            userRef.setUserId(userId);
+        // ✅ 2) Chỉ những booking vừa bị lô này hủy
+        List<BookingOverdueBatchView> views =
+                bookingsRepository.findOverdueBatchViews(bookingIds, BookingStatus.CANCELED, now);
+        log.info("[overdue] CANCELED {} of {} bookings at {}", views.size(), bookingIds.size(), now);
 
-            noti.setBooking(bookingRef);
-            noti.setUser(userRef);
-            noti.setTitle("Booking bị hủy do quá hạn");
-            noti.setContentNoti("Booking #" + bookingId + " tại trạm " + stationName + " đã bị hủy vì quá giờ.");
-            noti.setType(NotificationTypes.BOOKING_OVERDUE);
-            noti.setStatus(Notification.STATUS_UNREAD);
+        // ===================== TẠO VIOLATION =====================
+        // Không bắt lỗi ở đây: cùng transaction với UPDATE ở bước 1 → lỗi thì rollback cả lô
+        // và BookingScheduler xử lý lại từng booking (không để booking bị hủy mà thiếu violation)
+        violationService.createOverdueViolations(views, now);
 
-            notificationsService.save(noti);
+        // ===================== GỬI NOTIFICATION =====================
+        // Sau commit, mỗi notification 1 transaction riêng: save lỗi không đánh dấu rollback-only cho lô
+        // (mất cả hủy + violation), cũng không làm mất notification của các booking khác
+        AfterCommit.run(() -> views.forEach(v -> notifyOverdue(v.getBookingId(), v.getUserId(), v.getStationName())));
+        return views.size();
+    }
+
+    /**
+     * Lưu notification "booking bị hủy do quá hạn" + bắn event email trong transaction mới (REQUIRES_NEW).
+     * Gọi sau khi transaction hủy đã commit → lỗi ở đây chỉ log, booking vẫn bị hủy và violation vẫn còn.
+     */
+    private void notifyOverdue(Long bookingId, Long userId, String stationName) {
+        try {
+            notifyTxTemplate.executeWithoutResult(s -> {
+                Notification noti = new Notification();
+
+                // ⚠️ Không load Booking/User nặng nữa — chỉ gắn "stub" có ID
+                Booking bookingRef = new Booking();
+                bookingRef.setBookingId(bookingId);
+
+                User userRef = new User();
+                userRef.setUserId(userId);
 
-            try {
+                noti.setBooking(bookingRef);
+                noti.setUser(userRef);
+                noti.setTitle("Booking bị hủy do quá hạn");
+                noti.setContentNoti("Booking #" + bookingId + " tại trạm " + stationName + " đã bị hủy vì quá giờ.");
+                noti.setType(NotificationTypes.BOOKING_OVERDUE);
+                noti.setStatus(Notification.STATUS_UNREAD);
+
+                notificationsService.save(noti);
+                // Listener email chạy AFTER_COMMIT của chính transaction này
                 eventPublisher.publishEvent(new NotificationCreatedEvent(noti.getNotiId()));
-            } catch (Exception mailEx) {
-                log.warn("[overdue] publish email event failed bookingId={}: {}",
-                        bookingId, mailEx.getMessage());
-            }
+            });
         } catch (Exception e) {
             log.warn("[overdue] notify failed bookingId={}: {}", bookingId, e.getMessage());
         }
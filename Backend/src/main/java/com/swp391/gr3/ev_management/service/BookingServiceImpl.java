@@ -17,6 +17,7 @@ import com.swp391.gr3.ev_management.enums.NotificationTypes;
 import com.swp391.gr3.ev_management.enums.SlotStatus;
 import com.swp391.gr3.ev_management.entity.*;
 import com.swp391.gr3.ev_management.events.NotificationCreatedEvent;
+import com.swp391.gr3.ev_management.exception.ConflictException;
 import com.swp391.gr3.ev_management.exception.ErrorException;
 import com.swp391.gr3.ev_management.mapper.BookingResponseMapper;
 import com.swp391.gr3.ev_management.repository.*;
@@ -26,35 +27,33 @@ import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-
 import java.io.ByteArrayOutputStream;
 import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
 import java.util.*;
 import java.util.stream.Collectors;
 
+import static com.swp391.gr3.ev_management.util.TenantTime.TENANT_ZONE;
 
 @Service // Đánh dấu đây là Spring Service thực thi logic nghiệp vụ cho Booking
 @RequiredArgsConstructor // Tự động generate constructor cho các field final (DI qua constructor)
 @Slf4j // Cung cấp logger (log.info/error/...)
 public class BookingServiceImpl implements BookingService {
 
-    // Múi giờ cho tenant (VN)
-    private static final ZoneId TENANT_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
-
     // ==== Các dependency chính ====
     private final BookingsRepository bookingsRepository;                 // Repository thao tác với bảng Booking (CRUD)
-    private final BookingSlotRepository bookingSlotRepository;           // Repository cho bảng BookingSlot (mapping Booking <-> SlotAvailability)
     private final SlotAvailabilityService slotAvailabilityService;       // Service xử lý SlotAvailability (trạng thái slot)
     private final UserVehicleService userVehicleService;                 // Service xử lý UserVehicle (xe của user)
-    private final TariffService tariffService;                           // Service lấy biểu giá (Tariff) theo loại connector
+    private final TariffIndex tariffIndex;                               // Chỉ mục biểu giá (Tariff) trong bộ nhớ theo loại connector
     private final NotificationsService notificationsService;             // Service tạo/lưu Notification
     private final ApplicationEventPublisher eventPublisher;              // Dùng để publish event trong hệ thống (event-driven)
     private final ObjectMapper mapper;                                   // ObjectMapper để serialize/deserialize JSON
     private final BookingSlotLogRepository bookingSlotLogRepository;     // Repository lưu log slot sau khi confirm (BookingSlotLog)
     private final BookingResponseMapper bookingResponseMapper;           // Mapper chuyển từ Entity -> DTO BookingResponse
     private final StaffService staffService;                             // Service lấy thông tin Staff dựa theo userId
+    private final SlotClaimService slotClaimService;                     // Giữ chỗ slot set-based + ghi BookingSlot theo batch
+    private final VirtualSlotService virtualSlotService;                 // Đổi slotId ảo thành SlotAvailability thật
+    private final BookingExpiryQueue bookingExpiryQueue;                 // Hàng đợi hạn chót để tự hủy booking quá hạn
 
     @Override
     @Transactional // Gộp tất cả bước tạo booking vào một transaction để đảm bảo toàn vẹn
@@ -68,63 +67,74 @@ public class BookingServiceImpl implements BookingService {
         }
 
         // 2️⃣ Lấy danh sách SlotAvailability dựa trên danh sách slotIds client gửi lên
-        List<SlotAvailability> slots = slotAvailabilityService.findAllById(request.getSlotIds());
+        // - Loại trùng id; load kèm template/config/station/point/connector trong 1 query (đã sắp theo thời gian)
+        // - Slot ảo (id âm) chỉ hợp lệ khi bật chế độ virtual slot: tạo dòng thật trước khi giữ chỗ
+        List<Long> slotIds = request.getSlotIds() == null ? List.of()
+                : request.getSlotIds().stream().filter(Objects::nonNull).distinct().toList();
+        if (virtualSlotService.isEnabled()) {
+            slotIds = virtualSlotService.materialize(slotIds);
+        } else if (slotIds.stream().anyMatch(VirtualSlotService::isVirtual)) {
+            throw new ErrorException("No slots found");
+        }
+        List<SlotAvailability> slots = slotIds.isEmpty() ? List.of() : slotClaimService.loadForClaim(slotIds);
         if (slots.isEmpty()) {
             // Nếu không có slot nào tương ứng -> ném lỗi
             throw new ErrorException("No slots found");
         }
+        if (slots.size() != slotIds.size()) {
+            // Client gửi id slot không tồn tại
+            throw new ErrorException("Some slots were not found");
+        }
 
-        // Kiểm tra tất cả slot đều đang AVAILABLE
-        // Nếu có bất kỳ slot nào không AVAILABLE (vd: BOOKED, UNAVAILABLE, ...) -> không cho đặt
+        // Kiểm tra nhanh tất cả slot đều đang AVAILABLE (để trả message rõ ràng cho trường hợp phổ biến)
+        // Nếu có bất kỳ slot nào không AVAILABLE (vd: BOOKED, UNAVAILABLE, ...) -> ConflictException (409),
+        // cùng mã lỗi với nhánh tranh chấp ở claim() để client xử lý 1 kiểu
         for (SlotAvailability slot : slots) {
             if (slot.getStatus() != SlotStatus.AVAILABLE) {
                 // slot.getSlotId() là ID của SlotAvailability, dùng để message dễ hiểu
-                throw new ErrorException("Slot " + slot.getSlotId() + " is not available for booking");
+                throw new ConflictException("Slot " + slot.getSlotId() + " is not available for booking");
             }
         }
 
+        // 3️⃣ Giữ chỗ nguyên tử: 1 câu UPDATE ... WHERE status = AVAILABLE cho cả nhóm slot
+        // Nếu request khác vừa giữ mất slot giữa bước kiểm tra ở trên và bước này -> ConflictException (409) + rollback
+        slotClaimService.claim(slots);
+
         // (Giả định) Tất cả slot thuộc cùng một trạm sạc (ChargingStation)
         // Lấy station từ slot đầu tiên trong danh sách (vì đã đảm bảo cùng trạm từ logic trước đó)
         ChargingStation station = slots.get(0).getTemplate().getConfig().getStation();
 
-        // 3️⃣ Tạo thực thể Booking mới
+        // 4️⃣ Tạo thực thể Booking mới
         // - bookingTime: thời điểm tạo booking (thời gian hiện tại)
         // - scheduledStartTime: thời điểm bắt đầu dự kiến, lấy từ slot đầu tiên
         // - scheduledEndTime: thời điểm kết thúc dự kiến, lấy từ slot cuối cùng
         // - status: PENDING (chờ xác nhận)
+        LocalDateTime now = LocalDateTime.now();
         Booking booking = Booking.builder()
                 .vehicle(vehicle) // gán xe
                 .station(station) // gán trạm
-                .bookingTime(LocalDateTime.now()) // thời điểm user tạo booking
+                .bookingTime(now) // thời điểm user tạo booking
                 // Lấy ngày từ slot + trộn với thời gian start của template -> tạo thành LocalDateTime start
                 .scheduledStartTime(slots.get(0).getDate().with(slots.get(0).getTemplate().getStartTime()))
                 // Tương tự với slot cuối cùng -> thời gian kết thúc
                 .scheduledEndTime(slots.get(slots.size() - 1).getDate().with(slots.get(slots.size() - 1).getTemplate().getEndTime()))
                 .status(BookingStatus.PENDING) // trạng thái ban đầu: PENDING
                 .build();
-        bookingsRepository.save(booking); // Lưu Booking xuống DB
+        bookingsRepository.save(booking); // Lưu Booking xuống DB (IDENTITY -> có bookingId ngay)
 
-        // 4️⃣ Tạo các bản ghi BookingSlot (mapping giữa Booking và SlotAvailability)
-        // Đồng thời set trạng thái SlotAvailability -> BOOKED (tạm giữ chỗ, chưa phải CONFIRMED)
-        for (SlotAvailability slot : slots) {
-            BookingSlot bookingSlot = new BookingSlot();
-            bookingSlot.setBooking(booking); // gắn booking vào
-            bookingSlot.setSlot(slot);       // gắn slot vào
-            bookingSlot.setCreatedAt(LocalDateTime.now()); // thời điểm tạo mapping
-            bookingSlotRepository.save(bookingSlot);       // lưu BookingSlot
-
-            // Cập nhật trạng thái slot sang BOOKED để các user khác không thể đặt chồng
-            slot.setStatus(SlotStatus.BOOKED);
-            slotAvailabilityService.save(slot); // lưu lại trạng thái slot
-        }
+        // Tạo các bản ghi BookingSlot (mapping giữa Booking và SlotAvailability) bằng 1 JDBC batch
+        slotClaimService.insertBookingSlots(booking.getBookingId(), slotIds, now);
+
+        // Đưa hạn chót (scheduledEndTime) vào hàng đợi hết hạn → tự hủy đúng giờ nếu không check-in
+        bookingExpiryQueue.schedule(booking.getBookingId(), booking.getScheduledEndTime());
 
         // 5️⃣ Lấy giá tham chiếu (pricePerKWh) cho loại connector sử dụng
         // Ở đây lấy theo slot đầu tiên trong danh sách
         double price = slots.stream()
                 .findFirst() // lấy Optional<SlotAvailability> đầu tiên
-                .flatMap(slot -> tariffService.findByConnectorType(
-                        slot.getChargingPoint().getConnectorType() // lấy loại connector từ chargingPoint
-                ).map(Tariff::getPricePerKWh))                     // map sang giá mỗi kWh
+                .map(slot -> referencePrice(
+                        slot.getChargingPoint().getConnectorType(), // lấy loại connector từ chargingPoint
+                        booking.getScheduledStartTime()))           // giá hiệu lực lúc bắt đầu booking
                 .orElse(0.0); // nếu không tìm thấy Tariff -> giá mặc định 0.0
 
         // 6️⃣ (Tùy chọn) Build chuỗi khung giờ để hiển thị; ở đây mapper sẽ lo format response
@@ -155,6 +165,7 @@ public class BookingServiceImpl implements BookingService {
         // Cập nhật thời gian update theo múi giờ TENANT_ZONE (Asia/Ho_Chi_Minh)
         booking.setUpdatedAt(LocalDateTime.now(TENANT_ZONE));
         bookingsRepository.save(booking); // Lưu thay đổi
+        bookingExpiryQueue.schedule(booking.getBookingId(), booking.getScheduledEndTime());
 
         // Đảm bảo tất cả slot của booking được giữ ở trạng thái BOOKED
         // (Trong trường hợp có slot nào bị thay đổi trước đó thì reset lại)
@@ -173,9 +184,7 @@ public class BookingServiceImpl implements BookingService {
         // Slot này dùng để lấy thông tin stationName/connectorType/timeRange
         SlotAvailability slot = booking.getBookingSlots().get(0).getSlot();
         // Lấy giá theo connectorType của slot đầu tiên
-        double price = tariffService.findByConnectorType(slot.getChargingPoint().getConnectorType())
-                .map(Tariff::getPricePerKWh)
-                .orElse(0.0);
+        double price = referencePrice(slot.getChargingPoint().getConnectorType(), booking.getScheduledStartTime());
 
         String stationName = slot.getTemplate().getConfig().getStation().getStationName();
         // build chuỗi "HH:mm - HH:mm" cho khung giờ của slot đầu tiên
@@ -259,6 +268,14 @@ public class BookingServiceImpl implements BookingService {
         return start.format(f) + " - " + end.format(f);
     }
 
+    // Giá tham chiếu (pricePerKWh) hiển thị trên booking: tariff hiệu lực tại thời điểm at, không có thì tariff mới nhất
+    private double referencePrice(ConnectorType connectorType, LocalDateTime at) {
+        if (connectorType == null) return 0.0;
+        return tariffIndex.reference(connectorType.getConnectorTypeId(), at)
+                .map(TariffIndex.ActiveTariff::pricePerKWh)
+                .orElse(0.0);
+    }
+
     /** 1) Build payload QR: gom dữ liệu Booking thành DTO -> JSON -> Base64 (URL-safe) */
     @Override
     public String buildQrPayload(Long bookingId) {
@@ -389,6 +406,7 @@ public class BookingServiceImpl implements BookingService {
         booking.setStatus(BookingStatus.CANCELED);
         booking.setUpdatedAt(LocalDateTime.now()); // update thời gian thay đổi
         bookingsRepository.save(booking);          // lưu booking
+        bookingExpiryQueue.cancel(booking.getBookingId()); // không còn cần tự hủy
 
         // 6) Giải phóng toàn bộ slot của booking về trạng thái AVAILABLE
         for (BookingSlot bs : booking.getBookingSlots()) {
@@ -419,9 +437,7 @@ public class BookingServiceImpl implements BookingService {
         }
 
         // 8) Lấy lại giá tham chiếu theo connectorType của slot đầu tiên để hiển thị trong response
-        double price = tariffService.findByConnectorType(firstSlot.getChargingPoint().getConnectorType())
-                .map(Tariff::getPricePerKWh)
-                .orElse(0.0);
+        double price = referencePrice(firstSlot.getChargingPoint().getConnectorType(), booking.getScheduledStartTime());
 
         // Trả về BookingResponse cho hành động hủy booking
         // forCancel: mapper sẽ build DTO phù hợp (bao gồm booking, danh sách slot, firstSlot, price, ...)
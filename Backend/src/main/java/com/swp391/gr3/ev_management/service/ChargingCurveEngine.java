@@ -0,0 +1,171 @@
+package com.swp391.gr3.ev_management.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Đường cong sạc (SoC theo thời gian) có tính giảm công suất (taper) khi pin gần đầy.
+ *
+ * - Mỗi bộ (dung lượng pin của VehicleModel, công suất trụ làm tròn theo kW, AC/DC) có 1 bảng tính sẵn:
+ *   SoC theo từng phút (từ 0%) và số phút để đạt từng 0.1% SoC → mọi câu hỏi "SoC / điện năng sau t phút",
+ *   "bao lâu để lên X%" đều là tra bảng + nội suy, O(1).
+ * - Bảng được tính 1 lần (~vài µs) rồi giữ trong bộ nhớ; số bộ khác nhau rất ít (số model × số loại trụ).
+ * - Điện năng (kWh) là điện năng vào pin = ΔSoC × dung lượng, giống cách tính hóa đơn hiện tại.
+ *
+ * Mô hình công suất: min(công suất trụ, giới hạn C-rate của pin) × hiệu suất 0.90,
+ * giữ nguyên tới ngưỡng taper (DC 80%, AC 90%) rồi giảm tuyến tính về sàn (DC 10%, AC 30%) ở 100%.
+ */
+@Component
+@Slf4j
+public class ChargingCurveEngine {
+
+    // Giá trị mặc định khi thiếu dữ liệu model / trụ (giống các chỗ ước lượng cũ)
+    public static final double DEFAULT_CAPACITY_KWH = 60.0;
+    // Dung lượng mặc định khi tính điện năng để lập hóa đơn lúc stop (giữ như luồng stop cũ)
+    public static final double BILLING_CAPACITY_KWH = 40.0;
+    public static final double DEFAULT_POWER_KW = 11.0;
+    public static final double EFFICIENCY = 0.90;
+
+    // Trụ AC dân dụng / công cộng tối đa 22 kW; lớn hơn coi là DC khi không biết mode của connector
+    private static final double AC_MAX_KW = 22.0;
+    // Độ phân giải bảng nghịch: 0.1% SoC
+    private static final int SOC_STEPS = 1000;
+    // Số bước tích phân trong 1 phút
+    private static final int SUB_STEPS = 10;
+    // Trần độ dài bảng (phiên sạc dài hơn coi như đã đầy)
+    private static final int MAX_MINUTES = 48 * 60;
+
+    /** Khóa bảng: dung lượng (0.1 kWh) × công suất trụ (kW) × AC/DC — không dùng entity làm khóa */
+    private record CurveKey(int capacityDeciKWh, int powerClassKw, boolean dc) {
+    }
+
+    private final ConcurrentMap<CurveKey, Curve> curves = new ConcurrentHashMap<>();
+
+    /** Đường cong theo dung lượng pin (kWh), công suất trụ (kW) và mode connector ("AC" / "DC", null → suy từ kW) */
+    public Curve curveFor(Double capacityKWh, Double pointMaxKw, String connectorMode) {
+        return curveFor(capacityKWh, pointMaxKw, connectorMode, DEFAULT_CAPACITY_KWH);
+    }
+
+    /** Như trên nhưng chỉ định dung lượng mặc định khi thiếu dữ liệu xe (vd: {@link #BILLING_CAPACITY_KWH} cho luồng stop) */
+    public Curve curveFor(Double capacityKWh, Double pointMaxKw, String connectorMode, double defaultCapacityKWh) {
+        double capacity = (capacityKWh != null && capacityKWh > 0) ? capacityKWh : defaultCapacityKWh;
+        double power = (pointMaxKw != null && pointMaxKw > 0) ? pointMaxKw : DEFAULT_POWER_KW;
+        boolean dc = (connectorMode != null) ? "DC".equalsIgnoreCase(connectorMode.trim()) : power > AC_MAX_KW;
+
+        CurveKey key = new CurveKey((int) Math.round(capacity * 10), Math.max(1, (int) Math.round(power)), dc);
+        return curves.computeIfAbsent(key, ChargingCurveEngine::build);
+    }
+
+    /** Số bảng đang giữ trong bộ nhớ */
+    public int size() {
+        return curves.size();
+    }
+
+    // =========================================================================
+    // BUILD
+    // =========================================================================
+
+    private static Curve build(CurveKey key) {
+        double capacity = key.capacityDeciKWh() / 10.0;
+        // Giới hạn C-rate của pin: DC ~2C, AC bị giới hạn bởi bộ sạc onboard (~0.5C)
+        double maxKw = Math.min(key.powerClassKw(), capacity * (key.dc() ? 2.0 : 0.5));
+        double knee = key.dc() ? 80.0 : 90.0;
+        double floor = key.dc() ? 0.10 : 0.30;
+
+        float[] socAtMinute = new float[MAX_MINUTES + 1];
+        float[] minuteAtSoc = new float[SOC_STEPS + 1];
+
+        double soc = 0;
+        int nextStep = 1;
+        int last = MAX_MINUTES;
+        double dt = 1.0 / SUB_STEPS; // phút
+        for (int m = 1; m <= MAX_MINUTES; m++) {
+            for (int k = 0; k < SUB_STEPS; k++) {
+                double factor = (soc <= knee) ? 1.0 : 1.0 - (1.0 - floor) * (soc - knee) / (100.0 - knee);
+                double prev = soc;
+                soc = Math.min(100.0, soc + maxKw * factor * EFFICIENCY * (dt / 60.0) / capacity * 100.0);
+
+                // Ghi lại thời điểm vượt qua từng mốc 0.1% (nội suy trong bước con)
+                double t0 = (m - 1) + k * dt;
+                while (nextStep <= SOC_STEPS && soc * 10 >= nextStep) {
+                    double frac = (nextStep / 10.0 - prev) / (soc - prev);
+                    minuteAtSoc[nextStep++] = (float) (t0 + frac * dt);
+                }
+            }
+            socAtMinute[m] = (float) soc;
+            if (soc >= 100.0) {
+                last = m;
+                break;
+            }
+        }
+        // Không đầy trong MAX_MINUTES (trụ rất yếu) → các mốc còn lại coi như cuối bảng
+        while (nextStep <= SOC_STEPS) minuteAtSoc[nextStep++] = last;
+
+        float[] table = new float[last + 1];
+        System.arraycopy(socAtMinute, 0, table, 0, last + 1);
+        log.debug("[curve] built capacity={}kWh point={}kW dc={} → {} min to full", capacity, key.powerClassKw(), key.dc(), last);
+        return new Curve(capacity, table, minuteAtSoc);
+    }
+
+    // =========================================================================
+    // CURVE
+    // =========================================================================
+
+    /** Bảng tra của 1 đường cong (bất biến, dùng chung giữa các thread) */
+    public static final class Curve {
+        private final double capacityKWh;
+        // SoC (%) sau m phút tính từ 0%
+        private final float[] socAtMinute;
+        // Số phút từ 0% để đạt i/10 %
+        private final float[] minuteAtSoc;
+
+        private Curve(double capacityKWh, float[] socAtMinute, float[] minuteAtSoc) {
+            this.capacityKWh = capacityKWh;
+            this.socAtMinute = socAtMinute;
+            this.minuteAtSoc = minuteAtSoc;
+        }
+
+        public double capacityKWh() {
+            return capacityKWh;
+        }
+
+        /** Số phút để sạc từ 0% lên soc (%) */
+        public double minutesFromEmpty(double soc) {
+            double x = clamp(soc) * 10;
+            int i = (int) x;
+            if (i >= SOC_STEPS) return minuteAtSoc[SOC_STEPS];
+            return minuteAtSoc[i] + (minuteAtSoc[i + 1] - minuteAtSoc[i]) * (x - i);
+        }
+
+        /** Số phút để sạc từ fromSoc lên targetSoc (targetSoc ≤ fromSoc → 0) */
+        public double minutesToReach(double fromSoc, double targetSoc) {
+            return Math.max(0, minutesFromEmpty(targetSoc) - minutesFromEmpty(fromSoc));
+        }
+
+        /** SoC (%) sau minutes phút sạc, bắt đầu từ fromSoc */
+        public double socAfter(double fromSoc, double minutes) {
+            double t = minutesFromEmpty(fromSoc) + Math.max(0, minutes);
+            int last = socAtMinute.length - 1;
+            if (t >= last) return 100.0;
+            int i = (int) t;
+            return socAtMinute[i] + (socAtMinute[i + 1] - socAtMinute[i]) * (t - i);
+        }
+
+        /** Điện năng vào pin (kWh) khi SoC đi từ fromSoc lên toSoc */
+        public double energyBetween(double fromSoc, double toSoc) {
+            return Math.max(0, clamp(toSoc) - clamp(fromSoc)) / 100.0 * capacityKWh;
+        }
+
+        /** Điện năng vào pin (kWh) sau minutes phút sạc, bắt đầu từ fromSoc */
+        public double energyAfter(double fromSoc, double minutes) {
+            return energyBetween(fromSoc, socAfter(fromSoc, minutes));
+        }
+
+        private static double clamp(double soc) {
+            return Math.max(0, Math.min(100, soc));
+        }
+    }
+}
@@ -5,12 +5,15 @@ import com.swp391.gr3.ev_management.dto.request.StopChargingPointRequest;
 import com.swp391.gr3.ev_management.dto.response.ChargingPointResponse;
 import com.swp391.gr3.ev_management.entity.ChargingPoint;
 import com.swp391.gr3.ev_management.enums.ChargingPointStatus;
+import com.swp391.gr3.ev_management.enums.DashboardView;
+import com.swp391.gr3.ev_management.events.DashboardDataChangedEvent;
 import com.swp391.gr3.ev_management.exception.ErrorException;
 import com.swp391.gr3.ev_management.mapper.ChargingPointMapper;
 import com.swp391.gr3.ev_management.repository.ChargingPointRepository;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -29,6 +32,7 @@ public class ChargingPointServiceImpl implements ChargingPointService {
     private final ChargingPointMapper chargingPointMapper;                  // Mapper chuyển đổi giữa Entity <-> DTO (request/response)
     private final ChargingStationService chargingStationService;            // Service xử lý nghiệp vụ liên quan tới ChargingStation (trạm sạc)
     private final ConnectorTypeService connectorTypeService;                // Service xử lý nghiệp vụ liên quan tới ConnectorType (loại đầu cắm)
+    private final ApplicationEventPublisher eventPublisher;                 // Báo dashboard staff làm mới (trạng thái trụ đổi)
 
     @Override
     @Transactional // Thao tác dừng điểm sạc cần transaction để đảm bảo tính nhất quán dữ liệu
@@ -239,6 +243,7 @@ public class ChargingPointServiceImpl implements ChargingPointService {
 
         // 8) Lưu lại vào DB
         chargingPointRepository.save(point);
+        eventPublisher.publishEvent(DashboardDataChangedEvent.of(DashboardView.STAFF_STATS, DashboardView.STAFF_STATIONS));
 
         // 9) Map sang response
         return chargingPointMapper.toResponse(point);
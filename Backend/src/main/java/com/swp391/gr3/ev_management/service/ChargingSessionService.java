@@ -2,11 +2,13 @@ package com.swp391.gr3.ev_management.service;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import com.swp391.gr3.ev_management.dto.request.StartCharSessionRequest;
 import com.swp391.gr3.ev_management.dto.request.StopCharSessionRequest;
 import com.swp391.gr3.ev_management.dto.response.ActiveSessionView;
+import com.swp391.gr3.ev_management.dto.response.ChargingSessionBriefResponse;
 import com.swp391.gr3.ev_management.dto.response.CompletedSessionView;
 import com.swp391.gr3.ev_management.dto.response.StartCharSessionResponse;
 import com.swp391.gr3.ev_management.dto.response.StopCharSessionResponse;
@@ -42,13 +44,14 @@ public interface ChargingSessionService {
 
     List<CompletedSessionView> getCompletedSessionsCompactByStaff(Long userId);
 
-    List<ChargingSession> findAllByDriverUserIdDeep(Long userId);
-
-    double sumEnergyAll();
-
-    long countAll();
+    /**
+     * ✅ Lịch sử phiên sạc của driver (projection), keyset: các phiên sau mốc (beforeStart, beforeId),
+     * mới nhất trước. beforeStart/beforeId null → từ đầu; limit <= 0 → không giới hạn.
+     */
+    List<ChargingSessionBriefResponse> findHistoryByDriverUser(Long userId, LocalDateTime beforeStart, Long beforeId, int limit);
 
-    long countByStationBetween(Long stationId, LocalDateTime yearFrom, LocalDateTime yearTo);
+    /** ✅ Phiên sạc đang chạy (IN_PROGRESS) của driver, 1 query */
+    Optional<ViewCharSessionResponse> findCurrentSessionByDriverUser(Long userId);
 
     long countSessionsByUserId(Long userId);
 
@@ -56,9 +59,10 @@ public interface ChargingSessionService {
 
     long countByStatus(ChargingSessionStatus active);
 
-    List<ChargingSession> findTop5ByOrderByStartTimeDesc();
+    /** ✅ stationId -> số phiên đang chạy (trạm không có phiên thì không có key) */
+    Map<Long, Integer> countActiveSessionsByStation();
 
-    List<ChargingSession> findByStartTimeBetween(LocalDateTime startOfDay, LocalDateTime endOfDay);
+    List<ChargingSession> findTop5ByOrderByStartTimeDesc();
 
     Boolean existsValidSessionForBooking(Long bookingId);
 }
@@ -1,21 +1,26 @@
 package com.swp391.gr3.ev_management.service;
 
-import java.time.Instant;
+import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Collectors;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.ApplicationEventPublisher;
-import org.springframework.scheduling.TaskScheduler;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import com.swp391.gr3.ev_management.dto.request.StartCharSessionRequest;
 import com.swp391.gr3.ev_management.dto.request.StopCharSessionRequest;
 import com.swp391.gr3.ev_management.dto.response.ActiveSessionView;
+import com.swp391.gr3.ev_management.dto.response.ChargingSessionBriefResponse;
 import com.swp391.gr3.ev_management.dto.response.CompletedSessionView;
 import com.swp391.gr3.ev_management.dto.response.StartCharSessionResponse;
 import com.swp391.gr3.ev_management.dto.response.StopCharSessionResponse;
@@ -23,19 +28,26 @@ import com.swp391.gr3.ev_management.dto.response.ViewCharSessionResponse;
 import com.swp391.gr3.ev_management.entity.Booking;
 import com.swp391.gr3.ev_management.entity.ChargingSession;
 import com.swp391.gr3.ev_management.entity.Notification;
+import com.swp391.gr3.ev_management.entity.SessionBillingSnapshot;
 import com.swp391.gr3.ev_management.entity.UserVehicle;
 import com.swp391.gr3.ev_management.enums.BookingStatus;
 import com.swp391.gr3.ev_management.enums.ChargingSessionStatus;
+import com.swp391.gr3.ev_management.enums.DashboardView;
 import com.swp391.gr3.ev_management.enums.NotificationTypes;
 import com.swp391.gr3.ev_management.enums.StopInitiator;
+import com.swp391.gr3.ev_management.events.DashboardDataChangedEvent;
 import com.swp391.gr3.ev_management.events.NotificationCreatedEvent;
 import com.swp391.gr3.ev_management.exception.ErrorException;
 import com.swp391.gr3.ev_management.mapper.ChargingSessionMapper;
 import com.swp391.gr3.ev_management.repository.ChargingSessionRepository;
+import com.swp391.gr3.ev_management.repository.StationSessionCountView;
+import com.swp391.gr3.ev_management.repository.StationStaffRepository;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
+import static com.swp391.gr3.ev_management.util.TenantTime.TENANT_ZONE;
+
 @Service // Đánh dấu class là Spring Service (chứa nghiệp vụ phiên sạc)
 @RequiredArgsConstructor // Generate constructor cho các field final (DI)
 @Slf4j // Cung cấp logger
@@ -47,15 +59,27 @@ public class ChargingSessionServiceImpl implements ChargingSessionService {
     private final ChargingSessionMapper mapper;                            // Mapper chuyển Entity ChargingSession -> các DTO response
     private final NotificationsService notificationsService;               // Service lưu Notification xuống DB
     private final SessionSocCache sessionSocCache;                         // Cache tạm thời SOC (mức pin %) theo sessionId
-    private final TaskScheduler taskScheduler;                             // Bean scheduler để đặt lịch job (auto-stop khi hết giờ)
+    private final SessionDeadlineQueue sessionDeadlineQueue;               // Lịch auto-stop bền vững (DB + hàng đợi trong bộ nhớ)
+    private final SessionStatusHub sessionStatusHub;                       // Nguồn trạng thái live cho stream SSE
     private final StaffService staffService;                               // Service lấy staffId từ userId (nhân viên trạm)
 
     // Handler giao dịch riêng (TX độc lập) cho stop/auto-stop để cô lập rollback
     private final ChargingSessionTxHandler txHandler;                      // TX handler chuyên dùng cho stop session (chạy trong transaction riêng)
     private final ApplicationEventPublisher eventPublisher;                // Publish event (ví dụ NotificationCreatedEvent để gửi email/push)
+    private final BookingExpiryQueue bookingExpiryQueue;                   // Hàng đợi hạn chót booking (bỏ booking đã check-in)
+    private final ActiveSessionRegistry activeSessionRegistry;             // Phiên đang chạy trong bộ nhớ (màn hình staff / dashboard)
+    private final StationStaffRepository stationStaffRepository;           // Trạm mà staff đang được phân công
+    private final SessionBillingSnapshotService billingSnapshotService;    // Chụp ngữ cảnh tính tiền lúc start (stop chỉ đọc lại)
+    private final SessionHistogramService sessionHistogramService;        // Histogram số phiên / kWh theo giờ cho biểu đồ staff
+
+    // userId (staff) -> các trạm đang phân công; cache ngắn để màn hình staff refresh không query lại
+    private final Cache<Long, List<Long>> staffStationsCache = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofSeconds(60))
+            .maximumSize(10_000)
+            .build();
 
-    // Múi giờ tenant (VN) dùng thống nhất
-    private static final ZoneId TENANT_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+    // Mốc startTime của trang lịch sử đầu tiên (lớn hơn mọi phiên sạc thật)
+    private static final LocalDateTime HISTORY_MAX_START = LocalDateTime.of(9999, 12, 31, 0, 0);
 
     @Override
     @Transactional // Bắt đầu phiên sạc cần đảm bảo tính toàn vẹn (tạo session, đổi trạng thái booking, create noti, schedule...)
@@ -90,9 +114,15 @@ public class ChargingSessionServiceImpl implements ChargingSessionService {
         // 7) Tạo ChargingSession
         ChargingSession session = new ChargingSession();
         session.setBooking(booking);
+        session.setDriverUserId(booking.getVehicle() != null && booking.getVehicle().getDriver() != null
+                && booking.getVehicle().getDriver().getUser() != null
+                ? booking.getVehicle().getDriver().getUser().getUserId() : null);
         session.setStartTime(now);
         session.setStatus(ChargingSessionStatus.IN_PROGRESS);
         session.setInitialSoc(initialSoc);
+        // Ngữ cảnh tính tiền (tariff, trụ, pin, khung giờ, slot) lưu cùng session → lúc stop không phải join lại
+        SessionBillingSnapshot billing = billingSnapshotService.capture(booking, now);
+        session.setBilling(billing);
         chargingSessionRepository.save(session);
 
         // 8) Cache SOC
@@ -101,23 +131,17 @@ public class ChargingSessionServiceImpl implements ChargingSessionService {
         // 9) Cập nhật trạng thái Booking
         booking.setStatus(BookingStatus.BOOKED);
         bookingService.save(booking);
+        bookingExpiryQueue.cancel(booking.getBookingId()); // đã check-in → không tự hủy nữa
+        sessionHistogramService.started(session);          // +1 phiên vào giờ bắt đầu (sau commit)
+        eventPublisher.publishEvent(DashboardDataChangedEvent.of(DashboardView.STAFF_STATS, DashboardView.STAFF_STATIONS));
 
-        // 10) Đặt lịch auto-stop
-        Instant triggerInstant = windowEnd.atZone(TENANT_ZONE).toInstant();
-        Date triggerAt = Date.from(triggerInstant);
+        // 10) Đặt lịch auto-stop (ghi DB cùng transaction → không mất khi restart / redeploy)
         Long sid = session.getSessionId();
-
         log.info("[SCHEDULE STOP] sessionId={} bookingId={} triggerAt(VN)={} now(VN)={}",
-                sid, booking.getBookingId(), triggerAt, Date.from(now.atZone(TENANT_ZONE).toInstant()));
-
-        taskScheduler.schedule(() -> {
-            try {
-                txHandler.autoStopIfStillRunningTx(sid, windowEnd);
-            } catch (Exception ex) {
-                log.error("[SCHEDULE STOP] Uncaught error for sessionId={} windowEnd(VN)={}: {}",
-                        sid, windowEnd, ex.getMessage(), ex);
-            }
-        }, triggerAt);
+                sid, booking.getBookingId(), windowEnd, now);
+        sessionDeadlineQueue.register(sid, windowEnd);
+        sessionStatusHub.track(sid);
+        activeSessionRegistry.started(sid);
 
         // 11) Tạo Notification cho user khi phiên sạc bắt đầu (nếu tìm được user từ vehicle)
         UserVehicle vehicle = booking.getVehicle();
@@ -147,20 +171,8 @@ public class ChargingSessionServiceImpl implements ChargingSessionService {
             vehiclePlate = vehicle.getVehiclePlate();
         }
 
-        // ==== GET POINT NUMBER FOR THIS BOOKING ====
-        String pointNumber = "Unknown";
-
-        var firstSlot = booking.getBookingSlots().stream()
-                .findFirst()
-                .orElse(null);
-
-        if (firstSlot != null &&
-                firstSlot.getSlot() != null &&
-                firstSlot.getSlot().getChargingPoint() != null &&
-                firstSlot.getSlot().getChargingPoint().getPointNumber() != null) {
-
-            pointNumber = firstSlot.getSlot().getChargingPoint().getPointNumber();
-        }
+        // ==== POINT NUMBER (đã lấy từ slot đầu tiên khi chụp snapshot) ====
+        String pointNumber = billing.getPointNumber();
 
         return StartCharSessionResponse.builder()
                 .sessionId(session.getSessionId())
@@ -296,6 +308,10 @@ public class ChargingSessionServiceImpl implements ChargingSessionService {
     @Transactional(readOnly = true)
     @Override
     public List<ViewCharSessionResponse> getActiveCharSessionsByStation(Long stationId) {
+        // Registry trong bộ nhớ đã nạp xong → không chạm DB
+        if (activeSessionRegistry.isReady()) {
+            return activeSessionRegistry.findByStation(stationId);
+        }
         // Tìm tất cả session đang hoạt động (active/in-progress) theo stationId
         List<ChargingSession> active = chargingSessionRepository.findActiveSessionsByStation(stationId);
         // Map sang DTO view ngắn gọn
@@ -363,6 +379,16 @@ public class ChargingSessionServiceImpl implements ChargingSessionService {
     @Transactional(readOnly = true)
     @Override
     public List<ActiveSessionView> getActiveSessionsCompact(Long userId) {
+        // 0) Registry sẵn sàng → lấy trạm của staff (cache ngắn hạn) rồi lọc trong bộ nhớ
+        if (activeSessionRegistry.isReady()) {
+            List<Long> stationIds = staffStationsCache.get(userId, id -> {
+                staffService.findIdByUserId(id)
+                        .orElseThrow(() -> new ErrorException("Staff not found for current user"));
+                return stationStaffRepository.findAssignedStationIdsByUserId(id);
+            });
+            return activeSessionRegistry.findCompactByStations(stationIds);
+        }
+
         // 1) Từ userId (user login là staff) -> tìm staffId tương ứng
         Long staffId = staffService.findIdByUserId(userId)
                 .orElseThrow(() -> new ErrorException("Staff not found for current user"));
@@ -385,29 +411,32 @@ public class ChargingSessionServiceImpl implements ChargingSessionService {
         return chargingSessionRepository.findCompletedSessionCompactByStaff(staffId);
     }
 
+    @Transactional(readOnly = true)
     @Override
-    public List<ChargingSession> findAllByDriverUserIdDeep(Long userId) {
-        // Lấy toàn bộ phiên sạc theo userId của driver, join fetch sâu (deep) để tránh N+1
-        return chargingSessionRepository.findAllByDriverUserIdDeep(userId);
-    }
-
-    @Override
-    public double sumEnergyAll() {
-        // Tính tổng toàn bộ energy (kWh) của tất cả phiên sạc (dùng cho dashboard/thống kê)
-        return chargingSessionRepository.sumEnergyAll();
+    public List<ChargingSessionBriefResponse> findHistoryByDriverUser(Long userId, LocalDateTime beforeStart,
+                                                                      Long beforeId, int limit) {
+        // Trang đầu: mốc "vô cực" để dùng chung 1 câu query (điều kiện OR-null làm hỏng index seek)
+        LocalDateTime start = (beforeStart != null) ? beforeStart : HISTORY_MAX_START;
+        Long id = (beforeStart != null && beforeId != null) ? beforeId : Long.MAX_VALUE;
+        return chargingSessionRepository.findHistoryByDriverUser(userId, start, id,
+                limit > 0 ? Limit.of(limit) : Limit.unlimited());
     }
 
+    @Transactional(readOnly = true)
     @Override
-    public long countAll() {
-        // Đếm tổng số phiên sạc
-        return chargingSessionRepository.countAll();
+    public Optional<ViewCharSessionResponse> findCurrentSessionByDriverUser(Long userId) {
+        return chargingSessionRepository
+                .findByDriverUserAndStatus(userId, ChargingSessionStatus.IN_PROGRESS, Limit.of(1))
+                .stream().findFirst();
     }
 
-    @Override
-    public long countByStationBetween(Long stationId, LocalDateTime yearFrom, LocalDateTime yearTo) {
-        // Đếm số phiên sạc tại một station trong khoảng thời gian [yearFrom, yearTo]
-        // (dùng cho biểu đồ theo năm/tháng, v.v.)
-        return chargingSessionRepository.countByStationBetween(stationId, yearFrom, yearTo);
+    /** Điền DriverUserID cho các phiên cũ (trước khi có cột), để API lịch sử / phiên hiện tại thấy đủ dữ liệu */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillDriverUserId() {
+        // Chỉ UPDATE khi thật sự còn dòng thiếu (sau lần chạy đầu tiên: 1 câu SELECT, không khóa bảng)
+        if (!chargingSessionRepository.existsByDriverUserIdIsNullAndBookingIsNotNull()) return;
+        int updated = chargingSessionRepository.backfillDriverUserId();
+        if (updated > 0) log.info("[session] backfilled DriverUserID for {} sessions", updated);
     }
 
     @Override
@@ -424,20 +453,27 @@ public class ChargingSessionServiceImpl implements ChargingSessionService {
 
     @Override
     public long countByStatus(ChargingSessionStatus active) {
+        // Phiên đang chạy: đếm từ registry trong bộ nhớ (nếu đã nạp xong)
+        if (active == ChargingSessionStatus.IN_PROGRESS && activeSessionRegistry.isReady()) {
+            return activeSessionRegistry.count();
+        }
         // Đếm số phiên sạc theo trạng thái (status)
         return chargingSessionRepository.countByStatus(active);
     }
 
     @Override
-    public List<ChargingSession> findTop5ByOrderByStartTimeDesc() {
-        // Lấy 5 phiên sạc mới nhất (theo startTime giảm dần)
-        return chargingSessionRepository.findTop5ByOrderByStartTimeDesc();
+    public Map<Long, Integer> countActiveSessionsByStation() {
+        if (activeSessionRegistry.isReady()) {
+            return activeSessionRegistry.countsByStation();
+        }
+        return chargingSessionRepository.countByStatusGroupByStation(ChargingSessionStatus.IN_PROGRESS).stream()
+                .collect(Collectors.toMap(StationSessionCountView::getStationId, v -> v.getSessionCount().intValue()));
     }
 
     @Override
-    public List<ChargingSession> findByStartTimeBetween(LocalDateTime startOfDay, LocalDateTime endOfDay) {
-        // Lấy danh sách phiên sạc bắt đầu trong khoảng [startOfDay, endOfDay]
-        return chargingSessionRepository.findByStartTimeBetween(startOfDay, endOfDay);
+    public List<ChargingSession> findTop5ByOrderByStartTimeDesc() {
+        // Lấy 5 phiên sạc mới nhất (theo startTime giảm dần)
+        return chargingSessionRepository.findTop5ByOrderByStartTimeDesc();
     }
 
     @Override
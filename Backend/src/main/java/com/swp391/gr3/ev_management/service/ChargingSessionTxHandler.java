@@ -4,7 +4,6 @@ import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.Optional;
 
-import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -12,25 +11,25 @@ import com.swp391.gr3.ev_management.dto.response.StopCharSessionResponse;
 import com.swp391.gr3.ev_management.entity.Booking;
 import com.swp391.gr3.ev_management.entity.ChargingPoint;
 import com.swp391.gr3.ev_management.entity.ChargingSession;
-import com.swp391.gr3.ev_management.entity.ConnectorType;
 import com.swp391.gr3.ev_management.entity.Driver;
-import com.swp391.gr3.ev_management.entity.Invoice;
-import com.swp391.gr3.ev_management.entity.Notification;
+import com.swp391.gr3.ev_management.entity.SessionBillingSnapshot;
 import com.swp391.gr3.ev_management.entity.SlotAvailability;
-import com.swp391.gr3.ev_management.entity.Tariff;
 import com.swp391.gr3.ev_management.entity.User;
 import com.swp391.gr3.ev_management.entity.UserVehicle;
+import com.swp391.gr3.ev_management.entity.VehicleModel;
 import com.swp391.gr3.ev_management.enums.BookingStatus;
 import com.swp391.gr3.ev_management.enums.ChargingSessionStatus;
-import com.swp391.gr3.ev_management.enums.InvoiceStatus;
-import com.swp391.gr3.ev_management.enums.NotificationTypes;
+import com.swp391.gr3.ev_management.enums.OutboxEventType;
 import com.swp391.gr3.ev_management.enums.SlotStatus;
 import com.swp391.gr3.ev_management.enums.StopInitiator;
-import com.swp391.gr3.ev_management.events.NotificationCreatedEvent;
+import com.swp391.gr3.ev_management.events.SessionStoppedEvent;
 import com.swp391.gr3.ev_management.exception.ErrorException;
 import com.swp391.gr3.ev_management.mapper.StopCharSessionResponseMapper;
 import com.swp391.gr3.ev_management.repository.ChargingSessionRepository;
+import com.swp391.gr3.ev_management.repository.SessionDeadlineRepository;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
@@ -41,13 +40,20 @@ public class ChargingSessionTxHandler {
 
     private final ChargingSessionRepository chargingSessionRepository;
     private final BookingService bookingService;
-    private final TariffService tariffService;
-    private final InvoiceService invoiceService;
-    private final NotificationsService notificationsService;
     private final SessionSocCache sessionSocCache;
-    private final ApplicationEventPublisher eventPublisher;
     private final StopCharSessionResponseMapper stopResponseMapper;
     private final SlotAvailabilityService slotAvailabilityService;
+    private final SessionDeadlineRepository sessionDeadlineRepository;
+    private final TelemetryIngestService telemetryIngestService;
+    private final SessionStatusHub sessionStatusHub;
+    private final ChargingCurveEngine chargingCurveEngine;
+    private final ActiveSessionRegistry activeSessionRegistry;
+    private final SessionBillingSnapshotService billingSnapshotService;
+    private final MeterRegistry meterRegistry;
+    private final OutboxPublisher outboxPublisher;
+    private final TouPricingEngine touPricingEngine;
+    private final StatsRollupService statsRollupService;
+    private final SessionHistogramService sessionHistogramService;
 
     @Transactional
     public StopCharSessionResponse stopSessionInternalTx(
@@ -56,9 +62,27 @@ public class ChargingSessionTxHandler {
             LocalDateTime endTime,
             StopInitiator initiator
     ) {
-        // 1) Lấy session + booking + vehicle + driver + user
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return stopSession(sessionId, finalSocIfAny, endTime, initiator);
+        } finally {
+            sample.stop(Timer.builder("session.stop.latency")
+                    .description("Thời gian xử lý stop phiên sạc (tính tiền + hóa đơn + thông báo)")
+                    .tag("initiator", String.valueOf(initiator))
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry));
+        }
+    }
+
+    private StopCharSessionResponse stopSession(
+            Long sessionId,
+            Integer finalSocIfAny,
+            LocalDateTime endTime,
+            StopInitiator initiator
+    ) {
+        // 1) Lấy session + booking + trạm + vehicle + driver + user (1 dòng, không kéo slot)
         ChargingSession cs = chargingSessionRepository
-                .findByIdWithBookingVehicleDriverUser(sessionId)
+                .findForStop(sessionId)
                 .orElseThrow(() -> new ErrorException("Session not found"));
 
         if (cs.getStatus() != ChargingSessionStatus.IN_PROGRESS) {
@@ -84,19 +108,34 @@ public class ChargingSessionTxHandler {
             log.warn("[STOP] No USER found → Notification disabled.");
         }
 
-        // 2) initial soc
+        // 2) Ngữ cảnh tính tiền chụp lúc start; phiên cũ (trước khi có snapshot) thì dựng lại từ booking
+        SessionBillingSnapshot billing = cs.getBilling();
+        if (billing == null) {
+            meterRegistry.counter("session.stop.snapshot.miss").increment();
+            billing = billingSnapshotService.capture(booking, endTime);
+            cs.setBilling(billing);
+        }
+
+        // 3) initial soc
         Integer initialSoc = Optional.ofNullable(cs.getInitialSoc())
                 .orElseThrow(() -> new ErrorException("Initial SoC not recorded"));
 
-        // 3) final soc
-        int finalSoc = (finalSocIfAny != null) ? clampSoc(finalSocIfAny) : estimateFinalSoc(cs, endTime);
+        // 4) final soc: SoC truyền vào → reading thật mới nhất của trụ sạc → ước lượng (khi không có telemetry)
+        var lastReading = telemetryIngestService.latestReading(sessionId).orElse(null);
+        int finalSoc;
+        if (finalSocIfAny != null) {
+            finalSoc = clampSoc(finalSocIfAny);
+        } else if (lastReading != null && lastReading.soc() != null) {
+            finalSoc = clampSoc(lastReading.soc());
+        } else {
+            finalSoc = estimateFinalSoc(cs, endTime);
+        }
         if (finalSoc < initialSoc) finalSoc = initialSoc;
 
-        // 4) Resolve windows
-        LocalDateTime rawWindowStart = resolveWindowStartForTx(booking);
-        LocalDateTime windowEnd = resolveWindowEndForTx(booking);
+        // 5) Windows (khung giờ booking lấy từ snapshot)
+        LocalDateTime windowStart = billing.getWindowStart();
+        LocalDateTime windowEnd = billing.getWindowEnd();
 
-        LocalDateTime windowStart = rawWindowStart;
         if (booking.getCreatedAt() != null && booking.getCreatedAt().isAfter(windowStart)) {
             windowStart = booking.getCreatedAt();
         }
@@ -106,101 +145,88 @@ public class ChargingSessionTxHandler {
 
         long sessionMinutes = Math.max(0, ChronoUnit.MINUTES.between(cs.getStartTime(), endTime));
 
-        // 5) Slot info (để lấy ChargingPoint & pointNumber)
-        var firstSlot = booking.getBookingSlots().stream()
-                .findFirst()
-                .orElseThrow(() -> new ErrorException("No slot found for booking"));
-
-        ChargingPoint point = (firstSlot.getSlot() != null)
-                ? firstSlot.getSlot().getChargingPoint()
-                : null;
-
-        String pointNumber = (point != null && point.getPointNumber() != null)
-                ? point.getPointNumber()
-                : "Unknown";
+        String pointNumber = (billing.getPointNumber() != null) ? billing.getPointNumber() : "Unknown";
 
         // ====== PHÒNG VỆ CONNECTOR-TYPE NULL ======
-        ConnectorType connectorType =
-                (point != null && point.getConnectorType() != null)
-                        ? point.getConnectorType()
-                        : (vehicle != null && vehicle.getModel() != null)
-                        ? vehicle.getModel().getConnectorType()
-                        : null;
-
-        if (connectorType == null) {
+        if (billing.getConnectorTypeId() == null) {
             log.warn("[STOP] connectorType NULL → free session.");
             return forceCompleteWithoutBilling(cs, booking, user, pointNumber, initialSoc, finalSoc,
                     0, sessionMinutes);
         }
 
         // ====== TARIFF ======
-        LocalDateTime pricingTime = endTime;
-        Tariff tariff = tariffService
-                .findTopByConnectorType_ConnectorTypeIdAndEffectiveFromLessThanEqualAndEffectiveToGreaterThanEqualOrderByEffectiveFromDesc(
-                        connectorType.getConnectorTypeId(), pricingTime, pricingTime)
-                .orElseGet(() -> tariffService
-                        .findActiveByConnectorType(connectorType.getConnectorTypeId(), pricingTime)
-                        .stream().findFirst().orElse(null));
-
-        if (tariff == null) {
-            log.warn("[STOP] No active tariff → free session.");
-            return forceCompleteWithoutBilling(cs, booking, user, pointNumber, initialSoc, finalSoc,
-                    0, sessionMinutes);
-        }
+        // Quy tắc giá lúc stop (TouPricingEngine.price, pinOwnPeriod = true):
+        //  - Phần phiên mà tariff chụp lúc start VẪN là tariff hiệu lực → tính theo giá ĐÃ CHỤP
+        //    (admin sửa giá tariff đó giữa phiên không làm đổi tiền của phiên đang chạy).
+        //  - Phần phiên sau khi tariff đó hết hiệu lực / bị tariff mới thay → giá của tariff hiệu lực tại từng thời điểm.
+        //  - Phần không có tariff nào hiệu lực → giá đã chụp.
+        //  Phiên không có snapshot tariff → tariff tại endTime đóng vai trò "tariff chụp".
+        Long connectorTypeId = billing.getConnectorTypeId();
+        TariffIndex.ActiveTariff fallbackTariff = SessionBillingSnapshotService.snapshotTariff(billing)
+                .or(() -> billingSnapshotService.resolveTariff(connectorTypeId, endTime))
+                .orElse(null);
 
         // ====== ENERGY ======
 
-        double batteryCapacity =
-                (vehicle != null && vehicle.getModel() != null)
-                        ? vehicle.getModel().getBatteryCapacityKWh()
-                        : 40.0; // default tránh NPE
+        // Đường cong sạc của xe trên trụ này (có taper khi pin gần đầy); thiếu dung lượng pin → 40 kWh như luồng stop cũ
+        ChargingCurveEngine.Curve curve = chargingCurveEngine.curveFor(
+                billing.getBatteryCapacityKWh(), billing.getRatedKw(), billing.getConnectorMode(),
+                ChargingCurveEngine.BILLING_CAPACITY_KWH);
 
-        double deltaSoc = finalSoc - initialSoc;
-        double energyKWh = round2((deltaSoc / 100.0) * batteryCapacity);
+        // Có điện năng đo từ trụ (kWh tích lũy) thì dùng luôn, không thì quy đổi từ chênh lệch SoC
+        double energyKWh = (lastReading != null && lastReading.energyKwh() != null && lastReading.energyKwh() > 0)
+                ? round2(lastReading.energyKwh())
+                : round2(curve.energyBetween(initialSoc, finalSoc));
 
-        long slotMinutes = getSlotMinutes(booking);
-        int bookedSlots = booking.getBookingSlots().size();
+        long slotMinutes = Optional.ofNullable(billing.getSlotMinutes()).orElse(0L);
+        int bookedSlots = Optional.ofNullable(billing.getBookedSlots()).orElse(0);
 
-        double ratedKW = (point != null && point.getMaxPowerKW() > 0)
-                ? point.getMaxPowerKW()
-                : 11.0;
-
-        long chargingMinutesFromEnergy = (long) Math.ceil((energyKWh / (ratedKW * 0.9)) * 60);
+        // Thời gian sạc thực sự cần để nạp lượng điện trên (theo đường cong, không phải công suất phẳng)
+        double socReached = initialSoc + energyKWh / curve.capacityKWh() * 100.0;
+        long chargingMinutesFromEnergy = (long) Math.ceil(curve.minutesToReach(initialSoc, socReached));
         long activeChargingMinutes = Math.min(sessionMinutes, chargingMinutesFromEnergy);
 
         // ====== PRICING ======
-        double timeCost = 0.0;
-        double energyCost = 0.0;
-
         // khoảng thời gian driver "chiếm chỗ" trong khung windowStart → windowEnd
         long windowMinutes = Math.max(0,
                 ChronoUnit.MINUTES.between(windowStart, windowEnd));
 
-        if (initiator == StopInitiator.STAFF) {
-            // STAFF: chỉ tính tiền điện
-            energyCost = round2(energyKWh * tariff.getPricePerKWh());
-
-        } else if (initiator == StopInitiator.DRIVER) {
-
-            // 👉 Phạt phần thời gian đã giữ chỗ nhưng không sạc
-            //     penalty = (thời gian trong window) - (thời gian sạc thực tế)
-            if (slotMinutes > 0 && bookedSlots > 0) {
-                long penaltyMinutes = Math.max(0, windowMinutes - activeChargingMinutes);
-                timeCost = round2(penaltyMinutes * tariff.getPricePerMin());
-            }
-
-            // Vẫn tính tiền điện bình thường
-            energyCost = round2(energyKWh * tariff.getPricePerKWh());
+        // 👉 DRIVER: phạt phần thời gian đã giữ chỗ nhưng không sạc
+        //     penalty = (thời gian trong window) - (thời gian sạc thực tế), nằm ở cuối window
+        //    STAFF / SYSTEM_AUTO: chỉ tính tiền điện
+        long penaltyMinutes = 0;
+        if (initiator == StopInitiator.DRIVER && slotMinutes > 0 && bookedSlots > 0) {
+            penaltyMinutes = Math.max(0, windowMinutes - activeChargingMinutes);
+        }
 
-        } else { // SYSTEM_AUTO
-            // SYSTEM_AUTO: chỉ tính tiền điện
-            energyCost = round2(energyKWh * tariff.getPricePerKWh());
+        // Cắt phiên theo các đoạn tariff + khung giờ; điện năng phân bổ theo đường cong sạc của phiên
+        long startSec = TariffIndex.epochSec(cs.getStartTime());
+        long endSec = TariffIndex.epochSec(endTime);
+        long idleToSec = TariffIndex.epochSec(windowEnd);
+        long idleFromSec = idleToSec - penaltyMinutes * 60;
+        TouPricingEngine.Quote quote = touPricingEngine.price(connectorTypeId,
+                Math.min(startSec, idleFromSec), Math.max(endSec, idleToSec),
+                energyProfile(curve, initialSoc, energyKWh, startSec, endSec),
+                idleFromSec, idleToSec, fallbackTariff, true);
+
+        if (!quote.priced()) {
+            log.warn("[STOP] No active tariff → free session.");
+            return forceCompleteWithoutBilling(cs, booking, user, pointNumber, initialSoc, finalSoc,
+                    0, sessionMinutes);
         }
 
+        double timeCost = round2(quote.timeCost());
+        double energyCost = round2(quote.energyCost());
+        String currency = quote.currency();
+        double pricePerKWh = (energyKWh > 0)
+                ? round2(quote.averagePricePerKWh())
+                : (fallbackTariff != null ? fallbackTariff.pricePerKWh() : 0.0);
+
         double totalCost = round2(timeCost + energyCost);
 
-        // Giải phóng slot tương lai nếu DRIVER hoặc STAFF dừng sớm
-        if (initiator == StopInitiator.DRIVER || initiator == StopInitiator.STAFF) {
+        // Giải phóng slot tương lai nếu DRIVER hoặc STAFF dừng sớm (chỉ khi còn slot chưa bắt đầu mới phải đọc slot)
+        if ((initiator == StopInitiator.DRIVER || initiator == StopInitiator.STAFF)
+                && billing.getLastSlotStart() != null && !endTime.isAfter(billing.getLastSlotStart())) {
             releaseUnusedFutureSlots(booking, endTime);
         }
 
@@ -211,55 +237,41 @@ public class ChargingSessionTxHandler {
         cs.setEnergyKWh(energyKWh);
         cs.setCost(totalCost);
         cs.setStatus(ChargingSessionStatus.COMPLETED);
+        billing.setIdleMinutes(penaltyMinutes); // để InvoiceRebillService tính lại đúng tiền phạt
         chargingSessionRepository.save(cs);
         sessionSocCache.remove(cs.getSessionId());
+        sessionDeadlineRepository.deleteBySessionId(cs.getSessionId()); // phiên đã dừng → bỏ lịch auto-stop
+        telemetryIngestService.closeSession(cs.getSessionId());           // không nhận thêm telemetry của phiên này
+        sessionStatusHub.stopped(cs.getSessionId(), finalSoc, energyKWh); // đẩy trạng thái cuối cho stream SSE
+        activeSessionRegistry.stopped(cs.getSessionId());                 // bỏ khỏi danh sách phiên đang chạy
+        statsRollupService.sessionCompleted(cs);                          // cộng vào bucket thống kê theo giờ
+        sessionHistogramService.completed(cs);                            // kWh vào histogram theo giờ (sau commit)
 
         // ====== UPDATE BOOKING ======
         booking.setStatus(BookingStatus.COMPLETED);
         bookingService.save(booking);
 
-        // ====== NOTIFICATION (NULL-SAFE) ======
-        if (user != null) {
-            Notification done = new Notification();
-            done.setUser(user);
-            done.setBooking(booking);
-            done.setSession(cs);
-            done.setTitle("Kết thúc sạc #" + booking.getBookingId());
-            done.setContentNoti(
-                    "Điểm sạc: " + pointNumber +
-                            " | Thời lượng: " + sessionMinutes + " phút" +
-                            " | Tăng SOC: " + initialSoc + " → " + finalSoc +
-                            " | Năng lượng: " + energyKWh + " kWh" +
-                            " | Tổng phí: " + totalCost + " " + tariff.getCurrency()
-            );
-            done.setType(NotificationTypes.CHARGING_COMPLETED);
-            done.setStatus(Notification.STATUS_UNREAD);
-            done.setCreatedAt(LocalDateTime.now());
-            notificationsService.save(done);
-            eventPublisher.publishEvent(new NotificationCreatedEvent(done.getNotiId()));
-        } else {
+        // ====== HÓA ĐƠN + THÔNG BÁO + EMAIL: ghi outbox cùng transaction, OutboxDispatcher xử lý sau commit ======
+        if (user == null) {
             log.warn("[STOP] Skip notification because USER == null");
         }
-
-        // ====== INVOICE (driver có thể null) ======
-        invoiceService.findBySession_SessionId(cs.getSessionId())
-                .ifPresent(i -> { throw new ErrorException("Invoice already exists for this session"); });
-
-        Invoice invoice = new Invoice();
-        invoice.setSession(cs);
-        invoice.setAmount(totalCost);
-        invoice.setCurrency(tariff.getCurrency());
-        invoice.setStatus(InvoiceStatus.UNPAID);
-        invoice.setIssuedAt(LocalDateTime.now());
-        // driver null cũng lưu bình thường (có thể sau này update driver sau)
-        invoice.setDriver(driver);
-        invoiceService.save(invoice);
-
-        if (driver == null) {
-            log.warn("[STOP] Invoice created WITHOUT DRIVER for session {}", cs.getSessionId());
-        }
-
-        return stopResponseMapper.mapWithTariff(cs, booking, pointNumber, tariff);
+        outboxPublisher.enqueue(OutboxEventType.SESSION_STOPPED,
+                OutboxPublisher.partitionKey(user != null ? user.getUserId() : null, "session", cs.getSessionId()),
+                new SessionStoppedEvent(
+                        cs.getSessionId(),
+                        booking.getBookingId(),
+                        user != null ? user.getUserId() : null,
+                        driver != null ? driver.getDriverId() : null,
+                        totalCost,
+                        currency,
+                        "Kết thúc sạc #" + booking.getBookingId(),
+                        "Điểm sạc: " + pointNumber +
+                                " | Thời lượng: " + sessionMinutes + " phút" +
+                                " | Tăng SOC: " + initialSoc + " → " + finalSoc +
+                                " | Năng lượng: " + energyKWh + " kWh" +
+                                " | Tổng phí: " + totalCost + " " + currency));
+
+        return stopResponseMapper.mapWithPrice(cs, booking, pointNumber, pricePerKWh, currency, quote.lines());
     }
 
     @Transactional
@@ -296,17 +308,17 @@ public class ChargingSessionTxHandler {
                 int finalSoc = (finalSocIfAny != null) ? finalSocIfAny : estimateFinalSoc(cs, windowEnd);
                 long minutes = Math.max(0, ChronoUnit.MINUTES.between(cs.getStartTime(), windowEnd));
 
-                double capKWh =
-                        (vehicle != null && vehicle.getModel() != null)
-                                ? vehicle.getModel().getBatteryCapacityKWh()
-                                : 40.0;
+                double energyKWh = round2(curveOf(cs, ChargingCurveEngine.BILLING_CAPACITY_KWH).energyBetween(cs.getInitialSoc(), finalSoc));
 
-                double energyKWh = round2(((finalSoc - cs.getInitialSoc()) / 100.0) * capKWh);
-
-                var firstSlot = booking.getBookingSlots().stream().findFirst()
-                        .orElseThrow(() -> new ErrorException("No slot found for booking"));
-                var point = firstSlot.getSlot().getChargingPoint();
-                String pointNumber = (point != null) ? point.getPointNumber() : "Unknown";
+                String pointNumber;
+                if (cs.getBilling() != null) {
+                    pointNumber = cs.getBilling().getPointNumber();
+                } else {
+                    var firstSlot = booking.getBookingSlots().stream().findFirst()
+                            .orElseThrow(() -> new ErrorException("No slot found for booking"));
+                    var point = firstSlot.getSlot().getChargingPoint();
+                    pointNumber = (point != null) ? point.getPointNumber() : "Unknown";
+                }
 
                 forceCompleteWithoutBilling(cs, booking, user, pointNumber,
                         cs.getInitialSoc(), finalSoc, energyKWh, minutes);
@@ -319,7 +331,22 @@ public class ChargingSessionTxHandler {
     }
 
     // ===== helper methods y như cũ: round2, clampSoc, estimateFinalSoc, forceCompleteWithoutBilling,
-    // resolveWindowStartForTx, resolveWindowEndForTx, getSlotMinutes, releaseUnusedFutureSlots =====
+    // releaseUnusedFutureSlots =====
+
+    /**
+     * Điện năng tích lũy theo thời gian của phiên: dáng theo đường cong sạc (taper), co giãn để tới endSec
+     * đúng bằng energyKWh đã chốt (đo từ trụ hoặc quy đổi SoC); ngoài [startSec, endSec] không đổi.
+     */
+    static TouPricingEngine.EnergyProfile energyProfile(ChargingCurveEngine.Curve curve, int initialSoc,
+                                                        double energyKWh, long startSec, long endSec) {
+        double curveTotal = curve.energyAfter(initialSoc, (endSec - startSec) / 60.0);
+        double scale = (curveTotal > 0) ? energyKWh / curveTotal : 0;
+        return sec -> {
+            if (sec <= startSec) return 0;
+            if (sec >= endSec || scale == 0) return energyKWh;
+            return Math.min(energyKWh, curve.energyAfter(initialSoc, (sec - startSec) / 60.0) * scale);
+        };
+    }
 
     private static double round2(double v) {
         return Math.round(v * 100.0) / 100.0;
@@ -331,34 +358,46 @@ public class ChargingSessionTxHandler {
 
     private int estimateFinalSoc(ChargingSession session, LocalDateTime endTime) {
         int initial = Optional.ofNullable(session.getInitialSoc()).orElse(20);
-        Booking b = session.getBooking();
-
-        double capKWh = (b != null && b.getVehicle() != null && b.getVehicle().getModel() != null)
-                ? b.getVehicle().getModel().getBatteryCapacityKWh()
-                : 60.0;
+        ChargingCurveEngine.Curve curve = curveOf(session, ChargingCurveEngine.DEFAULT_CAPACITY_KWH);
 
         double minutes = Math.max(0, ChronoUnit.MINUTES.between(session.getStartTime(), endTime));
-        double hours = minutes / 60.0;
+        int estFinal = (int) Math.round(curve.socAfter(initial, minutes));
+        if (minutes > 0 && estFinal == initial) estFinal = initial + 1;
 
-        double ratedKW = 11.0;
-        if (b != null && b.getBookingSlots() != null && !b.getBookingSlots().isEmpty()) {
-            var bs0 = b.getBookingSlots().get(0);
-            if (bs0.getSlot() != null && bs0.getSlot().getChargingPoint() != null) {
-                Double p = bs0.getSlot().getChargingPoint().getMaxPowerKW();
-                if (p != null && p > 0) ratedKW = p;
-            }
-        }
+        log.info("⚡ Estimating SoC: initial={} capKWh={} minutes={} → estFinal={}",
+                initial, curve.capacityKWh(), minutes, estFinal);
 
-        double efficiency = 0.90;
-        double estEnergy = round2(hours * ratedKW * efficiency);
+        return Math.min(100, Math.max(initial, estFinal));
+    }
 
-        int estFinal = (int) Math.round(initial + (estEnergy / capKWh) * 100.0);
-        if (minutes > 0 && estFinal == initial) estFinal = initial + 1;
+    /**
+     * Đường cong sạc của phiên: snapshot billing, phiên cũ thì model xe của booking + trụ của slot đầu tiên.
+     * Thiếu dung lượng pin → defaultCapacityKWh (40 kWh khi tính tiền, 60 kWh khi chỉ ước lượng SoC).
+     */
+    private ChargingCurveEngine.Curve curveOf(ChargingSession session, double defaultCapacityKWh) {
+        SessionBillingSnapshot billing = session.getBilling();
+        if (billing != null) {
+            return chargingCurveEngine.curveFor(
+                    billing.getBatteryCapacityKWh(), billing.getRatedKw(), billing.getConnectorMode(), defaultCapacityKWh);
+        }
 
-        log.info("⚡ Estimating SoC: initial={} capKWh={} ratedKW={} minutes={} hours={} estEnergy={} → estFinal={}",
-                initial, capKWh, ratedKW, minutes, hours, estEnergy, estFinal);
+        Booking b = session.getBooking();
+        VehicleModel model = (b != null && b.getVehicle() != null) ? b.getVehicle().getModel() : null;
 
-        return Math.min(100, Math.max(initial, estFinal));
+        ChargingPoint point = null;
+        if (b != null && b.getBookingSlots() != null && !b.getBookingSlots().isEmpty()) {
+            var bs0 = b.getBookingSlots().get(0);
+            if (bs0.getSlot() != null) point = bs0.getSlot().getChargingPoint();
+        }
+
+        String mode = (point != null && point.getConnectorType() != null) ? point.getConnectorType().getMode()
+                : (model != null && model.getConnectorType() != null) ? model.getConnectorType().getMode()
+                : null;
+        return chargingCurveEngine.curveFor(
+                model != null ? model.getBatteryCapacityKWh() : null,
+                point != null ? point.getMaxPowerKW() : null,
+                mode,
+                defaultCapacityKWh);
     }
 
     private StopCharSessionResponse forceCompleteWithoutBilling(
@@ -379,61 +418,37 @@ public class ChargingSessionTxHandler {
         cs.setStatus(ChargingSessionStatus.COMPLETED);
         chargingSessionRepository.save(cs);
         sessionSocCache.remove(cs.getSessionId());
+        sessionStatusHub.stopped(cs.getSessionId(), finalSoc, energyKWh);
+        activeSessionRegistry.stopped(cs.getSessionId());
+        statsRollupService.sessionCompleted(cs);
+        sessionHistogramService.completed(cs);
 
         booking.setStatus(BookingStatus.COMPLETED);
         bookingService.save(booking);
 
-        if (user != null) {
-            Notification warn = new Notification();
-            warn.setUser(user);
-            warn.setBooking(booking);
-            warn.setSession(cs);
-            warn.setTitle("Kết thúc sạc (không tính phí) #" + booking.getBookingId());
-            warn.setContentNoti(
-                    "Điểm sạc: " + pointNumber +
-                            " | Thời lượng: " + minutes + " phút" +
-                            " | Tăng SOC: " + initialSoc + "% → " + finalSoc + "%" +
-                            " | Năng lượng (ước lượng): " + energyKWh + " kWh" +
-                            " | Lưu ý: Không tìm thấy tariff hoặc lỗi billing. Chi phí tạm tính: 0."
-            );
-            warn.setType(NotificationTypes.CHARGING_COMPLETED);
-            warn.setStatus(Notification.STATUS_UNREAD);
-            warn.setCreatedAt(LocalDateTime.now());
-            notificationsService.save(warn);
-            eventPublisher.publishEvent(new NotificationCreatedEvent(warn.getNotiId()));
-        } else {
+        // Phiên miễn phí: không có hóa đơn, chỉ thông báo (qua outbox như phiên có tính phí)
+        if (user == null) {
             log.warn("[STOP] Skip FREE notification because USER == null");
         }
+        outboxPublisher.enqueue(OutboxEventType.SESSION_STOPPED,
+                OutboxPublisher.partitionKey(user != null ? user.getUserId() : null, "session", cs.getSessionId()),
+                new SessionStoppedEvent(
+                        cs.getSessionId(),
+                        booking.getBookingId(),
+                        user != null ? user.getUserId() : null,
+                        null,
+                        null,
+                        null,
+                        "Kết thúc sạc (không tính phí) #" + booking.getBookingId(),
+                        "Điểm sạc: " + pointNumber +
+                                " | Thời lượng: " + minutes + " phút" +
+                                " | Tăng SOC: " + initialSoc + "% → " + finalSoc + "%" +
+                                " | Năng lượng (ước lượng): " + energyKWh + " kWh" +
+                                " | Lưu ý: Không tìm thấy tariff hoặc lỗi billing. Chi phí tạm tính: 0."));
 
         return stopResponseMapper.mapNoBilling(cs, booking, pointNumber);
     }
 
-    private LocalDateTime resolveWindowStartForTx(Booking booking) {
-        if (booking.getScheduledStartTime() != null) return booking.getScheduledStartTime();
-        return booking.getBookingSlots().stream()
-                .map(bs -> bs.getSlot().getDate().with(bs.getSlot().getTemplate().getStartTime()))
-                .min(LocalDateTime::compareTo)
-                .orElseThrow(() -> new ErrorException("Booking has no slot start time"));
-    }
-
-    private LocalDateTime resolveWindowEndForTx(Booking booking) {
-        if (booking.getScheduledEndTime() != null) return booking.getScheduledEndTime();
-        return booking.getBookingSlots().stream()
-                .map(bs -> bs.getSlot().getDate().with(bs.getSlot().getTemplate().getEndTime()))
-                .max(LocalDateTime::compareTo)
-                .orElseThrow(() -> new ErrorException("Booking has no slot end time"));
-    }
-
-    private long getSlotMinutes(Booking booking) {
-        var any = booking.getBookingSlots().stream()
-                .findFirst()
-                .orElseThrow(() -> new ErrorException("No slot found for booking"));
-        var tpl = any.getSlot().getTemplate();
-        var start = tpl.getStartTime();
-        var end   = tpl.getEndTime();
-        return ChronoUnit.MINUTES.between(start, end);
-    }
-
     private void releaseUnusedFutureSlots(Booking booking, LocalDateTime endTime) {
         if (booking.getBookingSlots() == null) return;
 
@@ -4,10 +4,13 @@ import com.swp391.gr3.ev_management.dto.request.ChargingStationRequest;
 import com.swp391.gr3.ev_management.dto.response.ChargingStationResponse;
 import com.swp391.gr3.ev_management.entity.ChargingStation;
 import com.swp391.gr3.ev_management.enums.ChargingStationStatus;
+import com.swp391.gr3.ev_management.enums.DashboardView;
+import com.swp391.gr3.ev_management.events.DashboardDataChangedEvent;
 import com.swp391.gr3.ev_management.exception.ErrorException;
 import com.swp391.gr3.ev_management.mapper.ChargingStationMapper;
 import com.swp391.gr3.ev_management.repository.ChargingStationRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDateTime;
@@ -23,6 +26,7 @@ public class ChargingStationServiceImpl implements ChargingStationService {
     // ====== Dependencies được inject qua constructor ======
     private final ChargingStationRepository chargingStationRepository; // Repository thao tác DB bảng ChargingStation (CRUD, query tùy chỉnh)
     private final ChargingStationMapper chargingStationMapper;         // Mapper chuyển đổi giữa Entity và DTO (request/response)
+    private final ApplicationEventPublisher eventPublisher;            // Báo dashboard staff làm mới (trạng thái trạm đổi)
 
     /**
      * Tìm trạm sạc theo ID.
@@ -136,6 +140,7 @@ public class ChargingStationServiceImpl implements ChargingStationService {
 
         // 4️⃣ Lưu thay đổi vào DB (UPDATE)
         ChargingStation updated = chargingStationRepository.save(station);
+        eventPublisher.publishEvent(DashboardDataChangedEvent.of(DashboardView.STAFF_STATS, DashboardView.STAFF_STATIONS));
 
         // 5️⃣ Map entity đã cập nhật sang DTO và trả về cho client
         return chargingStationMapper.toResponse(updated);
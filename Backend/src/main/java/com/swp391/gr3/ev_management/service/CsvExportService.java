@@ -0,0 +1,155 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.swp391.gr3.ev_management.repository.*;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.*;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Export CSV (gzip) giao dịch / phiên sạc / hóa đơn theo khoảng ngày, tùy chọn lọc trạm.
+ *
+ * - Đọc bằng Stream JPA (cursor, fetch size 500, projection read-only) trong 1 transaction read-only, mỗi dòng ghi
+ *   thẳng ra output stream qua GZIPOutputStream → bộ nhớ cố định, không phụ thuộc số dòng (không dựng List / Page DTO).
+ * - Khoảng ngày [from, to] tính cả 2 đầu theo giờ địa phương; tệp UTF-8 có BOM để Excel đọc đúng tiếng Việt.
+ */
+@Service
+@Slf4j
+public class CsvExportService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final String[] TRANSACTION_HEADER = {"TransactionID", "CreatedAt", "Amount", "Currency", "Status",
+            "Description", "MethodType", "Provider", "InvoiceID", "SessionID", "StationID", "StationName"};
+    private static final String[] SESSION_HEADER = {"SessionID", "StationID", "StationName", "PointID", "StartTime",
+            "EndTime", "DurationMinutes", "EnergyKWh", "InitialSoc", "FinalSoc", "Cost", "Status"};
+    private static final String[] INVOICE_HEADER = {"InvoiceID", "SessionID", "StationID", "StationName", "Amount",
+            "Currency", "Status", "IssuedAt", "PaidAt"};
+
+    private final TransactionRepository transactionRepository;
+    private final ChargingSessionRepository chargingSessionRepository;
+    private final InvoiceRepository invoiceRepository;
+    private final TransactionTemplate readTxTemplate;
+
+    public CsvExportService(TransactionRepository transactionRepository,
+                            ChargingSessionRepository chargingSessionRepository,
+                            InvoiceRepository invoiceRepository,
+                            PlatformTransactionManager transactionManager) {
+        this.transactionRepository = transactionRepository;
+        this.chargingSessionRepository = chargingSessionRepository;
+        this.invoiceRepository = invoiceRepository;
+        this.readTxTemplate = new TransactionTemplate(transactionManager);
+        this.readTxTemplate.setReadOnly(true);
+    }
+
+    /** Giao dịch tạo trong [from, to] → số dòng đã ghi */
+    public long exportTransactions(LocalDate from, LocalDate to, Long stationId, OutputStream out) throws IOException {
+        return export("transactions", TRANSACTION_HEADER, out,
+                () -> transactionRepository.streamForExport(start(from, to), end(to), stationId),
+                (TransactionExportRow r) -> new Object[]{r.getTransactionId(), r.getCreatedAt(), r.getAmount(),
+                        r.getCurrency(), r.getStatus(), r.getDescription(), r.getMethodType(), r.getProvider(),
+                        r.getInvoiceId(), r.getSessionId(), r.getStationId(), r.getStationName()});
+    }
+
+    /** Phiên sạc bắt đầu trong [from, to] → số dòng đã ghi */
+    public long exportSessions(LocalDate from, LocalDate to, Long stationId, OutputStream out) throws IOException {
+        return export("sessions", SESSION_HEADER, out,
+                () -> chargingSessionRepository.streamForExport(start(from, to), end(to), stationId),
+                (SessionExportRow r) -> new Object[]{r.getSessionId(), r.getStationId(), r.getStationName(),
+                        r.getPointId(), r.getStartTime(), r.getEndTime(), r.getDurationMinutes(), r.getEnergyKWh(),
+                        r.getInitialSoc(), r.getFinalSoc(), r.getCost(), r.getStatus()});
+    }
+
+    /** Hóa đơn phát hành trong [from, to] → số dòng đã ghi */
+    public long exportInvoices(LocalDate from, LocalDate to, Long stationId, OutputStream out) throws IOException {
+        return export("invoices", INVOICE_HEADER, out,
+                () -> invoiceRepository.streamForExport(start(from, to), end(to), stationId),
+                (InvoiceExportRow r) -> new Object[]{r.getInvoiceId(), r.getSessionId(), r.getStationId(),
+                        r.getStationName(), r.getAmount(), r.getCurrency(), r.getStatus(), r.getIssuedAt(),
+                        r.getPaidAt()});
+    }
+
+    /** Kiểm tra khoảng ngày trước khi controller ghi header của response */
+    public void validateRange(LocalDate from, LocalDate to) {
+        if (from == null || to == null || to.isBefore(from)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+    }
+
+    // =========================================================================
+    // GHI CSV
+    // =========================================================================
+
+    /** Mở cursor trong transaction read-only, ghi header + từng dòng ra gzip; không đóng {@code out} (container đóng) */
+    private <T> long export(String name, String[] header, OutputStream out,
+                            Supplier<Stream<T>> rows, Function<T, Object[]> mapper) throws IOException {
+        long t0 = System.nanoTime();
+        GZIPOutputStream gzip = new GZIPOutputStream(out, BUFFER_SIZE);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8), BUFFER_SIZE);
+        writer.write('\uFEFF'); // BOM
+        writeLine(writer, header);
+
+        long count;
+        try {
+            count = readTxTemplate.execute(s -> {
+                long n = 0;
+                try (Stream<T> stream = rows.get()) {
+                    for (T row : (Iterable<T>) stream::iterator) {
+                        writeLine(writer, mapper.apply(row));
+                        n++;
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+                return n;
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause(); // client ngắt kết nối giữa chừng
+        }
+        writer.flush();
+        gzip.finish();
+        log.info("[export] {}: {} rows in {} ms", name, count, (System.nanoTime() - t0) / 1_000_000);
+        return count;
+    }
+
+    private static void writeLine(Writer w, Object[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) w.write(',');
+            w.write(format(values[i]));
+        }
+        w.write("\r\n");
+    }
+
+    static String format(Object v) {
+        if (v == null) return "";
+        if (v instanceof Double d) return BigDecimal.valueOf(d).toPlainString(); // tránh dạng 1.0E7
+        if (v instanceof Number || v instanceof LocalDateTime || v instanceof Enum<?>) return v.toString();
+        return quote(v.toString());
+    }
+
+    /** Quote theo RFC 4180; chuỗi bắt đầu bằng = + - @ tab CR thêm ' để Excel không hiểu là công thức */
+    static String quote(String s) {
+        if (!s.isEmpty() && "=+-@\t\r".indexOf(s.charAt(0)) >= 0) s = "'" + s;
+        boolean needQuote = s.indexOf(',') >= 0 || s.indexOf('"') >= 0 || s.indexOf('\n') >= 0 || s.indexOf('\r') >= 0;
+        return needQuote ? '"' + s.replace("\"", "\"\"") + '"' : s;
+    }
+
+    private LocalDateTime start(LocalDate from, LocalDate to) {
+        validateRange(from, to);
+        return from.atStartOfDay();
+    }
+
+    private static LocalDateTime end(LocalDate to) {
+        return to.plusDays(1).atStartOfDay();
+    }
+}
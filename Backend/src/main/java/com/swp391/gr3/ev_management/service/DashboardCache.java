@@ -0,0 +1,224 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.swp391.gr3.ev_management.enums.DashboardView;
+import com.swp391.gr3.ev_management.events.DashboardDataChangedEvent;
+import com.swp391.gr3.ev_management.events.UserRegisteredEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Cache stale-while-revalidate cho các dashboard admin / staff (mỗi màn hình 1 entry, xem DashboardView).
+ *
+ * - Có kết quả cũ → trả ngay; cũ hơn app.dashboard-cache.refresh-ms hoặc vừa có DashboardDataChangedEvent thì
+ *   làm mới nền trên dashboardExecutor (không sớm hơn app.dashboard-cache.min-refresh-ms kể từ lần làm mới trước).
+ * - Single-flight: mỗi màn hình tối đa 1 lần tính đang chạy, các request đồng thời dùng chung kết quả của nó.
+ * - Chưa có kết quả, hoặc kết quả cũ hơn app.dashboard-cache.max-stale-ms (làm mới nền lỗi liên tục) → chờ lần tính.
+ * - Hàm tính chạy trong transaction read-only (lazy loading vẫn dùng được ở thread nền), không dùng ngữ cảnh request.
+ *
+ * Header trả về: Age (số giây kể từ lúc tính), X-Cache (FRESH | STALE | MISS).
+ * Metrics: dashboard.cache.age (giây, theo view), dashboard.cache.requests (view, result), dashboard.cache.refresh.
+ */
+@Component
+@Slf4j
+public class DashboardCache {
+
+    private final Executor dashboardExecutor;
+    private final TransactionTemplate readTxTemplate;
+    private final MeterRegistry meterRegistry;
+    private final long refreshNanos;
+    private final long minRefreshNanos;
+    private final long maxStaleNanos;
+
+    private final Map<DashboardView, Slot> slots = new EnumMap<>(DashboardView.class);
+
+    /** Kết quả đã tính của 1 màn hình: version = số lần invalidate đã thấy lúc bắt đầu tính */
+    private record Snapshot(Object value, long computedAt, long version) {
+    }
+
+    /** Trạng thái của 1 màn hình */
+    private static final class Slot {
+        volatile Snapshot snapshot;
+        final AtomicLong version = new AtomicLong();        // tăng mỗi lần dữ liệu thay đổi
+        final AtomicLong lastAttempt = new AtomicLong(Long.MIN_VALUE / 2);
+        final AtomicReference<CompletableFuture<Snapshot>> inflight = new AtomicReference<>();
+        Counter fresh;
+        Counter stale;
+        Counter miss;
+        Timer refresh;
+    }
+
+    /** Kết quả trả cho controller: giá trị + tuổi + header */
+    public record Cached<T>(T value, long ageSeconds, String status) {
+
+        public HttpHeaders headers() {
+            HttpHeaders h = new HttpHeaders();
+            h.set(HttpHeaders.AGE, Long.toString(ageSeconds));
+            h.set("X-Cache", status);
+            return h;
+        }
+    }
+
+    public DashboardCache(@Qualifier("dashboardExecutor") Executor dashboardExecutor,
+                          PlatformTransactionManager transactionManager,
+                          MeterRegistry meterRegistry,
+                          @Value("${app.dashboard-cache.refresh-ms:30000}") long refreshMs,
+                          @Value("${app.dashboard-cache.min-refresh-ms:2000}") long minRefreshMs,
+                          @Value("${app.dashboard-cache.max-stale-ms:600000}") long maxStaleMs) {
+        this.dashboardExecutor = dashboardExecutor;
+        this.readTxTemplate = new TransactionTemplate(transactionManager);
+        this.readTxTemplate.setReadOnly(true);
+        this.meterRegistry = meterRegistry;
+        this.refreshNanos = TimeUnit.MILLISECONDS.toNanos(refreshMs);
+        this.minRefreshNanos = TimeUnit.MILLISECONDS.toNanos(minRefreshMs);
+        this.maxStaleNanos = TimeUnit.MILLISECONDS.toNanos(maxStaleMs);
+
+        for (DashboardView view : DashboardView.values()) {
+            Slot slot = new Slot();
+            String tag = view.name();
+            slot.fresh = counter(tag, "fresh");
+            slot.stale = counter(tag, "stale");
+            slot.miss = counter(tag, "miss");
+            slot.refresh = Timer.builder("dashboard.cache.refresh").tag("view", tag)
+                    .description("Thời gian tính lại 1 dashboard")
+                    .register(meterRegistry);
+            Gauge.builder("dashboard.cache.age", slot, s -> {
+                        Snapshot snap = s.snapshot;
+                        return snap == null ? 0 : (System.nanoTime() - snap.computedAt()) / 1e9;
+                    })
+                    .tag("view", tag)
+                    .description("Tuổi (giây) của kết quả dashboard đang phục vụ")
+                    .register(meterRegistry);
+            slots.put(view, slot);
+        }
+    }
+
+    private Counter counter(String view, String result) {
+        return Counter.builder("dashboard.cache.requests").tag("view", view).tag("result", result)
+                .description("Số request dashboard theo kết quả cache")
+                .register(meterRegistry);
+    }
+
+    // =========================================================================
+    // READ
+    // =========================================================================
+
+    /** Kết quả của màn hình {@code view}; {@code loader} chỉ được gọi khi cần tính lại (tối đa 1 lần cùng lúc) */
+    @SuppressWarnings("unchecked")
+    public <T> Cached<T> get(DashboardView view, Supplier<T> loader) {
+        Slot slot = slots.get(view);
+        Snapshot snap = slot.snapshot;
+        long now = System.nanoTime();
+
+        if (snap == null) {
+            slot.miss.increment();
+            snap = await(refresh(slot, loader));
+            return new Cached<>((T) snap.value(), 0, "MISS");
+        }
+
+        long age = now - snap.computedAt();
+        boolean expired = age >= refreshNanos;
+        boolean invalidated = slot.version.get() != snap.version();
+        if (!expired && !invalidated) {
+            slot.fresh.increment();
+            return new Cached<>((T) snap.value(), TimeUnit.NANOSECONDS.toSeconds(age), "FRESH");
+        }
+
+        if (now - slot.lastAttempt.get() >= minRefreshNanos) {
+            CompletableFuture<Snapshot> f = refresh(slot, loader);
+            if (age >= maxStaleNanos) {
+                // Kết quả quá cũ (làm mới nền lỗi liên tục) → không phục vụ nữa, chờ lần tính này
+                slot.miss.increment();
+                snap = await(f);
+                return new Cached<>((T) snap.value(), 0, "MISS");
+            }
+        }
+        slot.stale.increment();
+        return new Cached<>((T) snap.value(), TimeUnit.NANOSECONDS.toSeconds(age), "STALE");
+    }
+
+    /** Bắt đầu 1 lần tính nền nếu chưa có lần nào đang chạy, trả về lần đang chạy */
+    private CompletableFuture<Snapshot> refresh(Slot slot, Supplier<?> loader) {
+        while (true) {
+            CompletableFuture<Snapshot> running = slot.inflight.get();
+            if (running != null) return running;
+
+            CompletableFuture<Snapshot> f = new CompletableFuture<>();
+            if (!slot.inflight.compareAndSet(null, f)) continue;
+
+            slot.lastAttempt.set(System.nanoTime());
+            long version = slot.version.get();
+            try {
+                dashboardExecutor.execute(() -> compute(slot, loader, version, f));
+            } catch (RuntimeException e) {
+                // Executor từ chối (đang tắt / đầy hàng đợi) → tính ngay trên thread gọi
+                compute(slot, loader, version, f);
+            }
+            return f;
+        }
+    }
+
+    private void compute(Slot slot, Supplier<?> loader, long version, CompletableFuture<Snapshot> f) {
+        try {
+            Object value = slot.refresh.record(() -> readTxTemplate.execute(s -> loader.get()));
+            Snapshot next = new Snapshot(value, System.nanoTime(), version);
+            slot.snapshot = next;
+            slot.inflight.set(null);
+            f.complete(next);
+        } catch (RuntimeException e) {
+            log.warn("[dashboard-cache] refresh failed: {}", e.toString());
+            slot.inflight.set(null);
+            f.completeExceptionally(e);
+        }
+    }
+
+    private static Snapshot await(CompletableFuture<Snapshot> f) {
+        try {
+            return f.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw e;
+        }
+    }
+
+    // =========================================================================
+    // INVALIDATE
+    // =========================================================================
+
+    /** Đánh dấu các màn hình cần tính lại; request kế tiếp vẫn nhận kết quả cũ và kích hoạt làm mới nền */
+    public void invalidate(DashboardView... views) {
+        for (DashboardView v : views) {
+            slots.get(v).version.incrementAndGet();
+        }
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onDataChanged(DashboardDataChangedEvent event) {
+        event.views().forEach(this::invalidate);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onUserRegistered(UserRegisteredEvent event) {
+        invalidate(DashboardView.ADMIN_TOTALS);
+    }
+}
@@ -2,6 +2,7 @@ package com.swp391.gr3.ev_management.service;
 
 import com.swp391.gr3.ev_management.dto.request.*;
 import com.swp391.gr3.ev_management.dto.response.ChargingSessionBriefResponse;
+import com.swp391.gr3.ev_management.dto.response.ChargingSessionHistoryPage;
 import com.swp391.gr3.ev_management.dto.response.DriverResponse;
 import com.swp391.gr3.ev_management.dto.response.TransactionBriefResponse;
 import com.swp391.gr3.ev_management.dto.response.VehicleResponse;
@@ -11,6 +12,7 @@ import com.swp391.gr3.ev_management.enums.UserVehicleStatus;
 import jakarta.validation.Valid;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -42,6 +44,8 @@ public interface DriverService {
 
     List<ChargingSessionBriefResponse> getMyChargingSessions(Long userId);
 
+    ChargingSessionHistoryPage getMyChargingSessionHistory(Long userId, LocalDateTime beforeStart, Long beforeId, Integer limit);
+
     Optional<Driver> findByUser_UserId(Long userId);
 
     long count();
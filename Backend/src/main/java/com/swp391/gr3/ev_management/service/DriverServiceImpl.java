@@ -2,6 +2,7 @@ package com.swp391.gr3.ev_management.service;
 
 import com.swp391.gr3.ev_management.dto.request.*;
 import com.swp391.gr3.ev_management.dto.response.ChargingSessionBriefResponse;
+import com.swp391.gr3.ev_management.dto.response.ChargingSessionHistoryPage;
 import com.swp391.gr3.ev_management.dto.response.DriverResponse;
 import com.swp391.gr3.ev_management.dto.response.TransactionBriefResponse;
 import com.swp391.gr3.ev_management.dto.response.VehicleResponse;
@@ -11,15 +12,16 @@ import com.swp391.gr3.ev_management.enums.UserVehicleStatus;
 import com.swp391.gr3.ev_management.enums.VehicleModelStatus;
 import com.swp391.gr3.ev_management.exception.ConflictException;
 import com.swp391.gr3.ev_management.exception.ErrorException;
-import com.swp391.gr3.ev_management.mapper.DriverDataMapper;
 import com.swp391.gr3.ev_management.repository.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 import java.util.stream.Collectors;
@@ -41,6 +43,13 @@ public class DriverServiceImpl implements DriverService {
     private final ChargingSessionService chargingSessionService;     // Truy vấn ChargingSession của driver
     private final TransactionService transactionService;             // Truy vấn Transaction của driver
 
+    // Số phiên / trang mặc định và tối đa của lịch sử phiên sạc (keyset)
+    @Value("${app.driver-history.page-size:20}")
+    private int historyPageSize;
+
+    @Value("${app.driver-history.max-page-size:100}")
+    private int historyMaxPageSize;
+
     /**
      * Tạo driver profile cho 1 user (nâng cấp user thành tài xế).
      * - Kiểm tra user tồn tại
@@ -484,23 +493,49 @@ public class DriverServiceImpl implements DriverService {
     }
 
     /**
-     * Lấy lịch sử phiên sạc của driver theo userId.
-     * - Tìm driver (xác thực tồn tại)
-     * - Truy vấn sessions (deep graph)
-     * - Map sang DTO tóm tắt
+     * Lấy lịch sử phiên sạc của driver theo userId (toàn bộ, giữ cho client cũ).
+     * - Kiểm tra driver tồn tại
+     * - 1 query projection (không nạp entity graph / invoice lười từng dòng)
      */
     @Override
     @Transactional(readOnly = true)
     public List<ChargingSessionBriefResponse> getMyChargingSessions(Long userId) {
         // 1️⃣ Đảm bảo driver tồn tại
-        Driver driver = driverRepository.findByUserIdWithUser(userId)
-                .orElseThrow(() -> new ErrorException("Driver not found with userId " + userId));
+        if (!driverRepository.existsByUser_UserId(userId)) {
+            throw new ErrorException("Driver not found with userId " + userId);
+        }
 
-        // 2️⃣ Truy vấn tất cả các ChargingSession của driver (deep graph)
-        List<ChargingSession> sessions = chargingSessionService.findAllByDriverUserIdDeep(userId);
+        // 2️⃣ Projection thẳng ra DTO tóm tắt, mới nhất trước
+        return chargingSessionService.findHistoryByDriverUser(userId, null, null, 0);
+    }
 
-        // 3️⃣ Map sang DTO tóm tắt để trả về cho client
-        return DriverDataMapper.toChargingSessionBriefResponseList(sessions);
+    /**
+     * Lịch sử phiên sạc của driver theo trang (keyset / seek).
+     * - Trang đầu: beforeStart / beforeId null
+     * - Trang sau: truyền lại nextBeforeStart / nextBeforeId của trang trước
+     * - Lấy dư 1 dòng để biết còn trang sau hay không (không COUNT)
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public ChargingSessionHistoryPage getMyChargingSessionHistory(Long userId, LocalDateTime beforeStart,
+                                                                  Long beforeId, Integer limit) {
+        if (!driverRepository.existsByUser_UserId(userId)) {
+            throw new ErrorException("Driver not found with userId " + userId);
+        }
+        int size = (limit == null || limit <= 0) ? historyPageSize : Math.min(limit, historyMaxPageSize);
+
+        List<ChargingSessionBriefResponse> rows =
+                chargingSessionService.findHistoryByDriverUser(userId, beforeStart, beforeId, size + 1);
+        boolean hasMore = rows.size() > size;
+        List<ChargingSessionBriefResponse> items = hasMore ? rows.subList(0, size) : rows;
+        ChargingSessionBriefResponse last = (hasMore && !items.isEmpty()) ? items.get(items.size() - 1) : null;
+
+        return ChargingSessionHistoryPage.builder()
+                .items(items)
+                .hasMore(hasMore)
+                .nextBeforeStart(last != null ? last.getStartTime() : null)
+                .nextBeforeId(last != null ? last.getSessionId() : null)
+                .build();
     }
 
     @Override
@@ -0,0 +1,25 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.swp391.gr3.ev_management.dto.request.RebillJobRequest;
+import com.swp391.gr3.ev_management.dto.response.RebillDiffResponse;
+import com.swp391.gr3.ev_management.dto.response.RebillJobResponse;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+
+public interface InvoiceRebillService {
+
+    /** Tạo job tính lại tiền cho các phiên trong khoảng và chạy nền */
+    RebillJobResponse start(RebillJobRequest request, Long requestedBy);
+
+    /** Chạy tiếp job FAILED (hoặc RUNNING nhưng node chạy nó đã dừng) từ checkpoint */
+    RebillJobResponse resume(Long jobId);
+
+    RebillJobResponse get(Long jobId);
+
+    List<RebillJobResponse> recent();
+
+    /** Báo cáo chênh lệch (cũ → mới) của job */
+    Page<RebillDiffResponse> diff(Long jobId, Pageable pageable);
+}
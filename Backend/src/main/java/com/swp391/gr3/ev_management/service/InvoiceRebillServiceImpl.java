@@ -0,0 +1,500 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.swp391.gr3.ev_management.dto.request.RebillJobRequest;
+import com.swp391.gr3.ev_management.dto.response.RebillDiffResponse;
+import com.swp391.gr3.ev_management.dto.response.RebillJobResponse;
+import com.swp391.gr3.ev_management.entity.RebillJob;
+import com.swp391.gr3.ev_management.enums.ChargingSessionStatus;
+import com.swp391.gr3.ev_management.enums.InvoiceStatus;
+import com.swp391.gr3.ev_management.enums.RebillJobStatus;
+import com.swp391.gr3.ev_management.exception.ConflictException;
+import com.swp391.gr3.ev_management.exception.ErrorException;
+import com.swp391.gr3.ev_management.repository.ChargingSessionRepository;
+import com.swp391.gr3.ev_management.repository.RebillDiffRepository;
+import com.swp391.gr3.ev_management.repository.RebillJobRepository;
+import com.swp391.gr3.ev_management.repository.RebillSessionRow;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+
+import static com.swp391.gr3.ev_management.util.TenantTime.TENANT_ZONE;
+
+/**
+ * Job tính lại tiền phiên sạc / hóa đơn sau khi sửa tariff (thay cho SQL viết tay).
+ *
+ * - Đọc các phiên COMPLETED giao với khoảng [from, to) theo SessionID tăng dần, mỗi lô 1 cursor (Stream,
+ *   fetch size) bắt đầu từ checkpoint → không giữ kết nối đọc trong lúc ghi, resume được.
+ * - Tính lại song song trên ForkJoinPool riêng (app.rebill.parallelism): TouPricingEngine.reprice với giá
+ *   hiện hành của TariffIndex, cùng đường cong sạc + phút phạt như lúc stop → thuần CPU, không query.
+ * - Ghi theo lô trong 1 transaction: UPDATE hóa đơn chưa thanh toán + cost của phiên (JDBC batch),
+ *   INSERT báo cáo chênh lệch (RebillDiff), rồi checkpoint + tiến độ của job → lỗi giữa chừng không điều chỉnh 2 lần.
+ * - Dry-run chỉ ghi báo cáo. Hóa đơn đã thanh toán / chưa có hóa đơn: chỉ báo cáo (Skipped), không sửa.
+ *
+ * Metrics: rebill.sessions (result = unchanged | changed | skipped), rebill.chunk.latency, rebill.jobs.running.
+ */
+@Service
+@Slf4j
+public class InvoiceRebillServiceImpl implements InvoiceRebillService {
+
+    // Chỉ sửa hóa đơn chưa thanh toán; điều kiện status lặp lại trong WHERE phòng hóa đơn vừa được trả giữa lúc đọc và ghi
+    private static final String UPDATE_INVOICE_SQL =
+            "UPDATE invoices SET amount = ?, updated_at = ? WHERE invoiceid = ? AND status IN ('UNPAID', 'PENDING')";
+    private static final String UPDATE_SESSION_SQL =
+            "UPDATE charging_session SET cost = ?, updated_at = ? WHERE sessionid = ?";
+    private static final String INSERT_DIFF_SQL =
+            "INSERT INTO rebill_diff (jobid, sessionid, invoiceid, invoice_status, old_amount, new_amount, applied) "
+                    + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private final ChargingSessionRepository chargingSessionRepository;
+    private final RebillJobRepository rebillJobRepository;
+    private final RebillDiffRepository rebillDiffRepository;
+    private final TouPricingEngine touPricingEngine;
+    private final ChargingCurveEngine chargingCurveEngine;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate txTemplate;
+    private final TransactionTemplate readTxTemplate;
+    private final Executor rebillExecutor;
+    private final ForkJoinPool pricingPool;
+
+    private final Counter unchangedCounter;
+    private final Counter changedCounter;
+    private final Counter skippedCounter;
+    private final Timer chunkTimer;
+
+    // Số phiên mỗi lô (1 cursor đọc + 1 transaction ghi)
+    @Value("${app.rebill.chunk-size:1000}")
+    private int chunkSize;
+
+    // Job RUNNING không cập nhật quá số giây này → coi như node chạy nó đã dừng, cho phép resume
+    @Value("${app.rebill.stale-seconds:300}")
+    private long staleSeconds;
+
+    // Job đang chạy trên node này
+    private final Set<Long> running = ConcurrentHashMap.newKeySet();
+
+    /** Kết quả tính lại 1 phiên */
+    private record Outcome(RebillSessionRow row, double oldAmount, double newAmount, boolean adjustable) {
+        boolean changed() {
+            return Math.abs(newAmount - oldAmount) >= 0.005;
+        }
+    }
+
+    public InvoiceRebillServiceImpl(ChargingSessionRepository chargingSessionRepository,
+                                    RebillJobRepository rebillJobRepository,
+                                    RebillDiffRepository rebillDiffRepository,
+                                    TouPricingEngine touPricingEngine,
+                                    ChargingCurveEngine chargingCurveEngine,
+                                    JdbcTemplate jdbcTemplate,
+                                    PlatformTransactionManager transactionManager,
+                                    @Qualifier("rebillExecutor") Executor rebillExecutor,
+                                    @Value("${app.rebill.parallelism:4}") int parallelism,
+                                    MeterRegistry meterRegistry) {
+        this.chargingSessionRepository = chargingSessionRepository;
+        this.rebillJobRepository = rebillJobRepository;
+        this.rebillDiffRepository = rebillDiffRepository;
+        this.touPricingEngine = touPricingEngine;
+        this.chargingCurveEngine = chargingCurveEngine;
+        this.jdbcTemplate = jdbcTemplate;
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.readTxTemplate = new TransactionTemplate(transactionManager);
+        this.readTxTemplate.setReadOnly(true);
+        this.rebillExecutor = rebillExecutor;
+        this.pricingPool = new ForkJoinPool(parallelism);
+
+        this.unchangedCounter = Counter.builder("rebill.sessions").tag("result", "unchanged")
+                .description("Số phiên đã tính lại theo kết quả").register(meterRegistry);
+        this.changedCounter = Counter.builder("rebill.sessions").tag("result", "changed")
+                .description("Số phiên đã tính lại theo kết quả").register(meterRegistry);
+        this.skippedCounter = Counter.builder("rebill.sessions").tag("result", "skipped")
+                .description("Số phiên đã tính lại theo kết quả").register(meterRegistry);
+        this.chunkTimer = Timer.builder("rebill.chunk.latency")
+                .description("Thời gian xử lý 1 lô tính lại (đọc + tính + ghi)")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+        meterRegistry.gauge("rebill.jobs.running", running, Set::size);
+    }
+
+    @PreDestroy
+    public void stop() {
+        pricingPool.shutdownNow();
+    }
+
+    // =========================================================================
+    // API
+    // =========================================================================
+
+    @Override
+    public synchronized RebillJobResponse start(RebillJobRequest request, Long requestedBy) {
+        if (!request.getFrom().isBefore(request.getTo())) {
+            throw new IllegalArgumentException("'from' must be before 'to'");
+        }
+        ensureNoOtherJobRunning(null);
+
+        LocalDateTime now = LocalDateTime.now(TENANT_ZONE);
+        long total = chargingSessionRepository.countForRebill(ChargingSessionStatus.COMPLETED,
+                request.getFrom(), request.getTo(), request.getConnectorTypeId());
+        RebillJob job = rebillJobRepository.save(RebillJob.builder()
+                .rangeFrom(request.getFrom())
+                .rangeTo(request.getTo())
+                .connectorTypeId(request.getConnectorTypeId())
+                .dryRun(request.isDryRun())
+                .status(RebillJobStatus.RUNNING)
+                .checkpointSessionId(0)
+                .totalSessions(total)
+                .requestedBy(requestedBy)
+                .startedAt(now)
+                .updatedAt(now)
+                .build());
+
+        log.info("[rebill] job={} created: range=[{}, {}) connectorType={} dryRun={} sessions={}",
+                job.getJobId(), job.getRangeFrom(), job.getRangeTo(), job.getConnectorTypeId(), job.isDryRun(), total);
+        launch(job.getJobId());
+        return toResponse(job);
+    }
+
+    @Override
+    public synchronized RebillJobResponse resume(Long jobId) {
+        RebillJob job = rebillJobRepository.findById(jobId)
+                .orElseThrow(() -> new ErrorException("Rebill job not found"));
+        if (job.getStatus() == RebillJobStatus.COMPLETED) {
+            throw new ConflictException("Rebill job already completed");
+        }
+        if (job.getStatus() == RebillJobStatus.RUNNING && !isStale(job)) {
+            throw new ConflictException("Rebill job is still running");
+        }
+        ensureNoOtherJobRunning(jobId);
+
+        LocalDateTime now = LocalDateTime.now(TENANT_ZONE);
+        job.setStatus(RebillJobStatus.RUNNING);
+        job.setLastError(null);
+        job.setProcessedAtStart(job.getProcessed());
+        job.setStartedAt(now);
+        job.setUpdatedAt(now);
+        job.setFinishedAt(null);
+        rebillJobRepository.save(job);
+
+        log.info("[rebill] job={} resumed after session {} ({}/{} done)",
+                jobId, job.getCheckpointSessionId(), job.getProcessed(), job.getTotalSessions());
+        launch(jobId);
+        return toResponse(job);
+    }
+
+    @Override
+    public RebillJobResponse get(Long jobId) {
+        return rebillJobRepository.findById(jobId)
+                .map(this::toResponse)
+                .orElseThrow(() -> new ErrorException("Rebill job not found"));
+    }
+
+    @Override
+    public List<RebillJobResponse> recent() {
+        return rebillJobRepository.findTop50ByOrderByJobIdDesc().stream().map(this::toResponse).toList();
+    }
+
+    @Override
+    public Page<RebillDiffResponse> diff(Long jobId, Pageable pageable) {
+        if (!rebillJobRepository.existsById(jobId)) {
+            throw new ErrorException("Rebill job not found");
+        }
+        return rebillDiffRepository.findByJobIdOrderBySessionIdAsc(jobId, pageable)
+                .map(d -> RebillDiffResponse.builder()
+                        .sessionId(d.getSessionId())
+                        .invoiceId(d.getInvoiceId())
+                        .invoiceStatus(d.getInvoiceStatus())
+                        .oldAmount(d.getOldAmount())
+                        .newAmount(d.getNewAmount())
+                        .delta(round2(d.getNewAmount() - d.getOldAmount()))
+                        .applied(d.isApplied())
+                        .build());
+    }
+
+    /** 2 job chạy chồng nhau trên cùng phiên sẽ ghi báo cáo 2 lần → mỗi lúc chỉ 1 job */
+    private void ensureNoOtherJobRunning(Long exceptJobId) {
+        for (RebillJob other : rebillJobRepository.findByStatus(RebillJobStatus.RUNNING)) {
+            if (!other.getJobId().equals(exceptJobId) && (running.contains(other.getJobId()) || !isStale(other))) {
+                throw new ConflictException("Rebill job " + other.getJobId() + " is still running");
+            }
+        }
+    }
+
+    private boolean isStale(RebillJob job) {
+        if (running.contains(job.getJobId())) return false;
+        LocalDateTime heartbeat = job.getUpdatedAt() != null ? job.getUpdatedAt() : job.getCreatedAt();
+        return heartbeat == null || heartbeat.isBefore(LocalDateTime.now(TENANT_ZONE).minusSeconds(staleSeconds));
+    }
+
+    private void launch(Long jobId) {
+        running.add(jobId);
+        try {
+            rebillExecutor.execute(() -> run(jobId));
+        } catch (RuntimeException e) {
+            running.remove(jobId);
+            fail(jobId, e);
+            throw e;
+        }
+    }
+
+    // =========================================================================
+    // JOB LOOP
+    // =========================================================================
+
+    private void run(Long jobId) {
+        long t0 = System.nanoTime();
+        long done = 0;
+        try {
+            RebillJob job = rebillJobRepository.findById(jobId).orElseThrow();
+            long checkpoint = job.getCheckpointSessionId();
+            while (true) {
+                Timer.Sample sample = Timer.start();
+                List<RebillSessionRow> chunk = readChunk(job, checkpoint);
+                if (chunk.isEmpty()) break;
+
+                List<Outcome> outcomes = priceInParallel(chunk);
+                checkpoint = chunk.get(chunk.size() - 1).getSessionId();
+                write(job, checkpoint, outcomes);
+                sample.stop(chunkTimer);
+
+                done += chunk.size();
+                long elapsedMs = Math.max(1, (System.nanoTime() - t0) / 1_000_000);
+                log.info("[rebill] job={} checkpoint={} +{} sessions ({} this run, {} sessions/s)",
+                        jobId, checkpoint, chunk.size(), done, done * 1000L / elapsedMs);
+            }
+            complete(jobId);
+            log.info("[rebill] job={} completed: {} sessions in {} ms", jobId, done, (System.nanoTime() - t0) / 1_000_000);
+        } catch (Exception e) {
+            log.error("[rebill] job={} failed after {} sessions this run: {}", jobId, done, e.getMessage(), e);
+            fail(jobId, e);
+        } finally {
+            running.remove(jobId);
+        }
+    }
+
+    /** 1 lô phiên sau checkpoint: cursor riêng, đóng ngay sau khi đọc xong */
+    private List<RebillSessionRow> readChunk(RebillJob job, long afterSessionId) {
+        return readTxTemplate.execute(status -> {
+            try (Stream<RebillSessionRow> rows = chargingSessionRepository.streamForRebill(
+                    ChargingSessionStatus.COMPLETED, job.getRangeFrom(), job.getRangeTo(), job.getConnectorTypeId(),
+                    afterSessionId, Limit.of(chunkSize))) {
+                return rows.toList();
+            }
+        });
+    }
+
+    private List<Outcome> priceInParallel(List<RebillSessionRow> chunk) throws InterruptedException {
+        try {
+            // parallelStream chạy trong pricingPool (không chiếm common pool của cả ứng dụng); toList giữ thứ tự
+            return pricingPool.submit(() -> chunk.parallelStream().map(this::reprice).toList()).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Repricing failed", e.getCause());
+        }
+    }
+
+    /** Tính lại 1 phiên giống ChargingSessionTxHandler lúc stop, nhưng theo giá hiện hành */
+    private Outcome reprice(RebillSessionRow row) {
+        double oldAmount = (row.getInvoiceAmount() != null) ? row.getInvoiceAmount() : row.getCost();
+        boolean adjustable = row.getInvoiceId() != null
+                && (row.getInvoiceStatus() == InvoiceStatus.UNPAID || row.getInvoiceStatus() == InvoiceStatus.PENDING);
+
+        // Phiên miễn phí lúc stop (không connector / thiếu mốc thời gian) → giữ nguyên
+        if (row.getConnectorTypeId() == null || row.getStartTime() == null || row.getEndTime() == null) {
+            return new Outcome(row, oldAmount, oldAmount, adjustable);
+        }
+
+        // Cùng mặc định 40 kWh với luồng stop → tính lại không lệch với hóa đơn gốc khi thiếu model xe
+        ChargingCurveEngine.Curve curve = chargingCurveEngine.curveFor(
+                row.getBatteryCapacityKWh(), row.getRatedKw(), row.getConnectorMode(),
+                ChargingCurveEngine.BILLING_CAPACITY_KWH);
+        int initialSoc = (row.getInitialSoc() != null) ? row.getInitialSoc() : 0;
+        long startSec = TariffIndex.epochSec(row.getStartTime());
+        long endSec = TariffIndex.epochSec(row.getEndTime());
+        long idleToSec = (row.getWindowEnd() != null) ? TariffIndex.epochSec(row.getWindowEnd()) : endSec;
+        long idleFromSec = idleToSec - idleMinutes(row) * 60;
+
+        TariffIndex.ActiveTariff gapFill = (row.getTariffId() != null && row.getPricePerKWh() != null
+                && row.getPricePerMin() != null)
+                ? new TariffIndex.ActiveTariff(row.getTariffId(), row.getConnectorTypeId(), row.getPricePerKWh(),
+                        row.getPricePerMin(), row.getCurrency(), null, row.getTariffValidTo())
+                : null;
+
+        TouPricingEngine.Quote quote = touPricingEngine.reprice(row.getConnectorTypeId(),
+                Math.min(startSec, idleFromSec), Math.max(endSec, idleToSec),
+                ChargingSessionTxHandler.energyProfile(curve, initialSoc, row.getEnergyKWh(), startSec, endSec),
+                idleFromSec, idleToSec, gapFill);
+        if (!quote.priced()) {
+            return new Outcome(row, oldAmount, oldAmount, adjustable);
+        }
+        // Làm tròn giống lúc stop
+        double newAmount = round2(round2(quote.timeCost()) + round2(quote.energyCost()));
+        return new Outcome(row, oldAmount, newAmount, adjustable);
+    }
+
+    /**
+     * Phút phạt đã tính lúc stop. Phiên dừng trước khi có cột BillingIdleMinutes: suy ra từ tiền đã chốt
+     * (lúc đó 1 giá cả phiên: cost = kWh × giá kWh + phút × giá phút).
+     */
+    private static long idleMinutes(RebillSessionRow row) {
+        if (row.getIdleMinutes() != null) return row.getIdleMinutes();
+        if (row.getPricePerKWh() == null || row.getPricePerMin() == null || row.getPricePerMin() <= 0) return 0;
+        double timeCost = row.getCost() - round2(row.getEnergyKWh() * row.getPricePerKWh());
+        return Math.max(0, Math.round(timeCost / row.getPricePerMin()));
+    }
+
+    /** Ghi 1 lô: điều chỉnh + báo cáo + checkpoint trong cùng 1 transaction */
+    private void write(RebillJob job, long checkpoint, List<Outcome> outcomes) {
+        List<Outcome> changed = outcomes.stream().filter(Outcome::changed).toList();
+
+        txTemplate.executeWithoutResult(status -> {
+            Timestamp now = Timestamp.valueOf(LocalDateTime.now(TENANT_ZONE));
+            List<Outcome> toApply = job.isDryRun() ? List.of() : changed.stream().filter(Outcome::adjustable).toList();
+
+            // 1️⃣ Hóa đơn chưa thanh toán; dòng không cập nhật được (vừa được trả) → không sửa phiên, báo cáo Skipped
+            Set<Long> applied = new HashSet<>();
+            if (!toApply.isEmpty()) {
+                int[][] counts = jdbcTemplate.batchUpdate(UPDATE_INVOICE_SQL, toApply, chunkSize, (ps, o) -> {
+                    ps.setDouble(1, o.newAmount());
+                    ps.setTimestamp(2, now);
+                    ps.setLong(3, o.row().getInvoiceId());
+                });
+                int k = 0;
+                for (int[] batch : counts) {
+                    for (int c : batch) {
+                        if (c != 0) applied.add(toApply.get(k).row().getSessionId());
+                        k++;
+                    }
+                }
+                List<Outcome> sessions = toApply.stream().filter(o -> applied.contains(o.row().getSessionId())).toList();
+                jdbcTemplate.batchUpdate(UPDATE_SESSION_SQL, sessions, chunkSize, (ps, o) -> {
+                    ps.setDouble(1, o.newAmount());
+                    ps.setTimestamp(2, now);
+                    ps.setLong(3, o.row().getSessionId());
+                });
+            }
+
+            // 2️⃣ Báo cáo chênh lệch
+            if (!changed.isEmpty()) {
+                jdbcTemplate.batchUpdate(INSERT_DIFF_SQL, changed, chunkSize, (ps, o) -> {
+                    ps.setLong(1, job.getJobId());
+                    ps.setLong(2, o.row().getSessionId());
+                    ps.setObject(3, o.row().getInvoiceId());
+                    ps.setString(4, o.row().getInvoiceStatus() != null ? o.row().getInvoiceStatus().name() : null);
+                    ps.setDouble(5, o.oldAmount());
+                    ps.setDouble(6, o.newAmount());
+                    ps.setBoolean(7, applied.contains(o.row().getSessionId()));
+                });
+            }
+
+            // 3️⃣ Checkpoint + tiến độ (dry-run: "changed" = sẽ điều chỉnh được)
+            long changedCount = 0;
+            long skippedCount = 0;
+            double delta = 0;
+            for (Outcome o : changed) {
+                boolean counted = job.isDryRun() ? o.adjustable() : applied.contains(o.row().getSessionId());
+                if (counted) {
+                    changedCount++;
+                    delta += o.newAmount() - o.oldAmount();
+                } else {
+                    skippedCount++;
+                }
+            }
+            int updated = rebillJobRepository.advance(job.getJobId(), checkpoint, outcomes.size(),
+                    changedCount, skippedCount, round2(delta), now.toLocalDateTime());
+            if (updated == 0) {
+                throw new IllegalStateException("Rebill job " + job.getJobId() + " is no longer RUNNING");
+            }
+
+            unchangedCounter.increment(outcomes.size() - changed.size());
+            changedCounter.increment(changedCount);
+            skippedCounter.increment(skippedCount);
+        });
+    }
+
+    private void complete(Long jobId) {
+        txTemplate.executeWithoutResult(status -> rebillJobRepository.findById(jobId).ifPresent(job -> {
+            LocalDateTime now = LocalDateTime.now(TENANT_ZONE);
+            job.setStatus(RebillJobStatus.COMPLETED);
+            job.setUpdatedAt(now);
+            job.setFinishedAt(now);
+            rebillJobRepository.save(job);
+        }));
+    }
+
+    private void fail(Long jobId, Exception e) {
+        try {
+            txTemplate.executeWithoutResult(status -> rebillJobRepository.findById(jobId).ifPresent(job -> {
+                String msg = String.valueOf(e.getMessage());
+                job.setStatus(RebillJobStatus.FAILED);
+                job.setLastError(msg.length() > 1000 ? msg.substring(0, 1000) : msg);
+                job.setUpdatedAt(LocalDateTime.now(TENANT_ZONE));
+                rebillJobRepository.save(job);
+            }));
+        } catch (RuntimeException ex) {
+            log.error("[rebill] job={} could not be marked FAILED: {}", jobId, ex.getMessage());
+        }
+    }
+
+    // =========================================================================
+    // MAPPING
+    // =========================================================================
+
+    private RebillJobResponse toResponse(RebillJob job) {
+        double percent = (job.getTotalSessions() > 0)
+                ? Math.min(100.0, job.getProcessed() * 100.0 / job.getTotalSessions())
+                : (job.getStatus() == RebillJobStatus.COMPLETED ? 100.0 : 0.0);
+
+        double perSecond = 0;
+        if (job.getStartedAt() != null) {
+            LocalDateTime until = (job.getFinishedAt() != null) ? job.getFinishedAt()
+                    : (job.getUpdatedAt() != null ? job.getUpdatedAt() : job.getStartedAt());
+            long ms = Duration.between(job.getStartedAt(), until).toMillis();
+            if (ms > 0) perSecond = (job.getProcessed() - job.getProcessedAtStart()) * 1000.0 / ms;
+        }
+
+        return RebillJobResponse.builder()
+                .jobId(job.getJobId())
+                .from(job.getRangeFrom())
+                .to(job.getRangeTo())
+                .connectorTypeId(job.getConnectorTypeId())
+                .dryRun(job.isDryRun())
+                .status(job.getStatus())
+                .checkpointSessionId(job.getCheckpointSessionId())
+                .totalSessions(job.getTotalSessions())
+                .processed(job.getProcessed())
+                .changed(job.getChanged())
+                .skipped(job.getSkipped())
+                .amountDelta(round2(job.getAmountDelta()))
+                .percentDone(round2(percent))
+                .sessionsPerSecond(round2(perSecond))
+                .lastError(job.getLastError())
+                .startedAt(job.getStartedAt())
+                .updatedAt(job.getUpdatedAt())
+                .finishedAt(job.getFinishedAt())
+                .build();
+    }
+
+    private static double round2(double v) {
+        return Math.round(v * 100.0) / 100.0;
+    }
+}
@@ -5,7 +5,6 @@ import com.swp391.gr3.ev_management.dto.response.UnpaidInvoiceResponse;
 import com.swp391.gr3.ev_management.entity.Invoice;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -20,12 +19,6 @@ public interface InvoiceService {
 
     List<Invoice> findUnpaidInvoicesByStation(Long stationId);
 
-    double sumAll();
-
-    double sumAmountBetween(LocalDateTime dayFrom, LocalDateTime dayTo);
-
-    double sumByStationBetween(Long stationId, LocalDateTime dayFrom, LocalDateTime dayTo);
-
     DriverInvoiceDetail getDetail(Long invoiceId, Long userId);
 
     List<UnpaidInvoiceResponse> getUnpaidInvoices(Long userId);
@@ -18,6 +18,8 @@ import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
+import static com.swp391.gr3.ev_management.util.TenantTime.TENANT_ZONE;
+
 @Service // Đánh dấu class là Spring Service (xử lý logic của Invoice)
 @RequiredArgsConstructor // Tự động tạo constructor cho các field final (DI)
 @Slf4j // Cho phép sử dụng logger (log.info, warn, error...)
@@ -25,10 +27,11 @@ public class InvoiceServiceImpl implements InvoiceService {
 
     // Repository làm việc trực tiếp với DB bảng Invoice (CRUD + query custom)
     private final InvoiceRepository invoiceRepository;
-    private final TariffService tariffService;
+    private final TariffIndex tariffIndex;
     private final DriverInvoiceMapper mapper;
     private final TransactionService transactionService;
     private final ChargingPointService chargingPointService;
+    private final StatsRollupService statsRollupService;
 
     @Override
     public void save(Invoice invoice) {
@@ -54,24 +57,6 @@ public class InvoiceServiceImpl implements InvoiceService {
         return invoiceRepository.findUnpaidInvoicesByStation(stationId);
     }
 
-    @Override
-    public double sumAll() {
-        // Tổng doanh thu từ tất cả hoá đơn
-        return invoiceRepository.sumAll();
-    }
-
-    @Override
-    public double sumAmountBetween(LocalDateTime dayFrom, LocalDateTime dayTo) {
-        // Tổng tiền hoá đơn trong khoảng thời gian (dayFrom → dayTo)
-        return invoiceRepository.sumAmountBetween(dayFrom, dayTo);
-    }
-
-    @Override
-    public double sumByStationBetween(Long stationId, LocalDateTime dayFrom, LocalDateTime dayTo) {
-        // Tổng doanh thu của một trạm trong khoảng thời gian (dayFrom → dayTo)
-        return invoiceRepository.sumByStationBetween(stationId, dayFrom, dayTo);
-    }
-
     @Override
     public DriverInvoiceDetail getDetail(Long invoiceId, Long userId) {
         Invoice invoice = invoiceRepository.findInvoiceDetail(invoiceId)
@@ -92,10 +77,8 @@ public class InvoiceServiceImpl implements InvoiceService {
         assert cp != null;
         Long connectorTypeId = cp.getConnectorType().getConnectorTypeId();
 
-        Double pricePerKwh = tariffService.findTariffByConnectorType(connectorTypeId)
-                .stream()
-                .findFirst()
-                .map(Tariff::getPricePerKWh)
+        Double pricePerKwh = tariffIndex.latest(connectorTypeId)
+                .map(TariffIndex.ActiveTariff::pricePerKWh)
                 .orElse(null);
 
         return mapper.toDto(invoice, booking, cp, pricePerKwh);
@@ -136,10 +119,8 @@ public class InvoiceServiceImpl implements InvoiceService {
         Double pricePerKwh = null;
         if (connectorType != null) {
             Long connectorTypeId = connectorType.getConnectorTypeId();
-            pricePerKwh = tariffService.findTariffByConnectorType(connectorTypeId)
-                    .stream()
-                    .findFirst()
-                    .map(Tariff::getPricePerKWh)
+            pricePerKwh = tariffIndex.latest(connectorTypeId)
+                    .map(TariffIndex.ActiveTariff::pricePerKWh)
                     .orElse(null);
         } else {
             log.warn("[INVOICE_DETAIL] Cannot resolve connectorType / pricePerKWh for invoiceId={}", invoice.getInvoiceId());
@@ -175,9 +156,12 @@ public class InvoiceServiceImpl implements InvoiceService {
                 .orElseThrow(() -> new RuntimeException("Payment method EVM not found"));
 
         // 4) Cập nhật trạng thái invoice
+        LocalDateTime now = LocalDateTime.now(TENANT_ZONE); // giờ thanh toán quyết định bucket doanh thu theo giờ
         invoice.setStatus(InvoiceStatus.PAID);
-        invoice.setUpdatedAt(LocalDateTime.now());
+        invoice.setPaidAt(now);
+        invoice.setUpdatedAt(now);
         invoiceRepository.save(invoice);
+        statsRollupService.invoicePaid(invoice); // doanh thu vào bucket thống kê theo giờ
 
         // 5) Tạo transaction tương ứng
         Transaction transaction = Transaction.builder()
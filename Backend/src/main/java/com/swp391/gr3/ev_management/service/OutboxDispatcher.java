@@ -0,0 +1,236 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.swp391.gr3.ev_management.entity.OutboxEvent;
+import com.swp391.gr3.ev_management.enums.OutboxStatus;
+import com.swp391.gr3.ev_management.repository.OutboxEventRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static com.swp391.gr3.ev_management.util.TenantTime.TENANT_ZONE;
+
+/**
+ * Xử lý bảng OutboxEvent: lấy theo lô, chia theo PartitionKey, mỗi key chạy tuần tự trên pool outboxExecutor
+ * (các key khác nhau chạy song song) → đúng thứ tự theo user, SMTP / DB chậm không chặn request gốc.
+ *
+ * - Đánh thức ngay sau khi transaction ghi outbox commit (OutboxPublisher), ngoài ra quét định kỳ (app.outbox.poll-ms).
+ * - Mỗi sự kiện: giành lease (UPDATE có điều kiện) → OutboxEventHandler (transaction riêng) → DONE.
+ * - Lỗi: thử lại với backoff lũy thừa; quá app.outbox.max-attempts → FAILED (giữ lại để xem tay).
+ *   Sự kiện lỗi chặn các sự kiện sau cùng key cho tới khi xử lý được hoặc FAILED.
+ *
+ * Metrics: outbox.delivered, outbox.retried, outbox.failed, outbox.lag (từ lúc ghi tới lúc xử lý xong).
+ */
+@Component
+@Slf4j
+public class OutboxDispatcher {
+
+    // Trần thời gian chờ giữa 2 lần thử
+    private static final long MAX_BACKOFF_SECONDS = 300;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final OutboxEventHandler outboxEventHandler;
+    private final Executor outboxExecutor;
+    private final MeterRegistry meterRegistry;
+
+    // Số sự kiện tối đa mỗi lô
+    @Value("${app.outbox.batch-size:200}")
+    private int batchSize;
+
+    // Chu kỳ quét khi không được đánh thức (ms)
+    @Value("${app.outbox.poll-ms:2000}")
+    private long pollMs;
+
+    @Value("${app.outbox.lease-seconds:60}")
+    private long leaseSeconds;
+
+    @Value("${app.outbox.max-attempts:8}")
+    private int maxAttempts;
+
+    // Số ngày giữ lại sự kiện DONE trước khi xóa
+    @Value("${app.outbox.retention-days:7}")
+    private long retentionDays;
+
+    @Value("${app.node-id:}")
+    private String nodeId;
+
+    // Tín hiệu đánh thức vòng xử lý (nhiều lần đánh thức dồn lại thành 1 lượt)
+    private final Semaphore signal = new Semaphore(0);
+
+    private volatile Thread worker;
+    private Counter deliveredCounter;
+    private Counter retriedCounter;
+    private Counter failedCounter;
+    private Timer lagTimer;
+
+    public OutboxDispatcher(OutboxEventRepository outboxEventRepository,
+                            OutboxEventHandler outboxEventHandler,
+                            @Qualifier("outboxExecutor") Executor outboxExecutor,
+                            MeterRegistry meterRegistry) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.outboxEventHandler = outboxEventHandler;
+        this.outboxExecutor = outboxExecutor;
+        this.meterRegistry = meterRegistry;
+    }
+
+    // =========================================================================
+    // LIFECYCLE
+    // =========================================================================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (nodeId == null || nodeId.isBlank()) {
+            nodeId = resolveHostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        }
+        deliveredCounter = Counter.builder("outbox.delivered")
+                .description("Số sự kiện outbox xử lý thành công")
+                .register(meterRegistry);
+        retriedCounter = Counter.builder("outbox.retried")
+                .description("Số lần xử lý sự kiện outbox bị lỗi và chờ thử lại")
+                .register(meterRegistry);
+        failedCounter = Counter.builder("outbox.failed")
+                .description("Số sự kiện outbox bỏ hẳn sau khi hết số lần thử")
+                .register(meterRegistry);
+        lagTimer = Timer.builder("outbox.lag")
+                .description("Thời gian từ lúc ghi outbox tới lúc xử lý xong")
+                .publishPercentiles(0.5, 0.99)
+                .register(meterRegistry);
+
+        Thread t = new Thread(this::runLoop, "outbox-dispatcher");
+        t.setDaemon(true);
+        worker = t;
+        t.start();
+        log.info("[outbox] node={} started, {} events pending",
+                nodeId, outboxEventRepository.countByStatus(OutboxStatus.PENDING));
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread t = worker;
+        worker = null;
+        if (t != null) t.interrupt();
+    }
+
+    /** Có sự kiện mới vừa commit → xử lý ngay */
+    public void wakeUp() {
+        signal.release();
+    }
+
+    /** Dọn sự kiện đã xử lý xong */
+    @Scheduled(cron = "${app.outbox.purge-cron:0 30 3 * * *}", zone = "Asia/Ho_Chi_Minh")
+    public void purge() {
+        int deleted = outboxEventRepository.purge(OutboxStatus.DONE,
+                LocalDateTime.now(TENANT_ZONE).minusDays(retentionDays));
+        if (deleted > 0) log.info("[outbox] purged {} processed events", deleted);
+    }
+
+    // =========================================================================
+    // WORKER
+    // =========================================================================
+
+    private void runLoop() {
+        while (worker == Thread.currentThread()) {
+            try {
+                signal.tryAcquire(pollMs, TimeUnit.MILLISECONDS);
+                signal.drainPermits();
+                // Lô đầy → còn việc, lấy tiếp ngay
+                while (dispatchBatch() >= batchSize && worker == Thread.currentThread()) {
+                    signal.drainPermits();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception ex) {
+                log.error("[outbox] dispatch loop error: {}", ex.getMessage(), ex);
+            }
+        }
+    }
+
+    /** @return số sự kiện lấy được trong lô */
+    private int dispatchBatch() {
+        List<OutboxEvent> due = outboxEventRepository.findDue(OutboxStatus.PENDING, OutboxStatus.PROCESSING,
+                LocalDateTime.now(TENANT_ZONE), Limit.of(batchSize));
+        if (due.isEmpty()) return 0;
+
+        // Giữ thứ tự OutboxID trong từng key
+        Map<String, List<OutboxEvent>> byKey = due.stream()
+                .collect(Collectors.groupingBy(OutboxEvent::getPartitionKey, LinkedHashMap::new, Collectors.toList()));
+
+        CompletableFuture<?>[] tasks = byKey.values().stream()
+                .map(events -> CompletableFuture.runAsync(() -> deliverInOrder(events), outboxExecutor))
+                .toArray(CompletableFuture[]::new);
+        CompletableFuture.allOf(tasks).join();
+        return due.size();
+    }
+
+    /** Xử lý tuần tự các sự kiện cùng key; dừng ở sự kiện đầu tiên lỗi / không giành được để giữ thứ tự */
+    private void deliverInOrder(List<OutboxEvent> events) {
+        for (OutboxEvent e : events) {
+            LocalDateTime now = LocalDateTime.now(TENANT_ZONE);
+            int claimed = outboxEventRepository.claim(e.getOutboxId(), nodeId, now, now.plusSeconds(leaseSeconds),
+                    OutboxStatus.PENDING, OutboxStatus.PROCESSING);
+            if (claimed == 0) return; // node khác đang xử lý key này
+
+            try {
+                if (!outboxEventHandler.handle(e.getOutboxId(), nodeId)) return;
+                deliveredCounter.increment();
+                if (e.getCreatedAt() != null) {
+                    lagTimer.record(Duration.between(e.getCreatedAt(), LocalDateTime.now(TENANT_ZONE)));
+                }
+            } catch (Exception ex) {
+                onFailure(e, ex);
+                return;
+            }
+        }
+    }
+
+    private void onFailure(OutboxEvent e, Exception ex) {
+        int attempts = e.getAttempts() + 1;
+        String error = String.valueOf(ex.getMessage());
+        if (error.length() > 1000) error = error.substring(0, 1000);
+
+        if (attempts >= maxAttempts) {
+            outboxEventRepository.markFailed(e.getOutboxId(), nodeId, OutboxStatus.FAILED,
+                    LocalDateTime.now(TENANT_ZONE), error);
+            failedCounter.increment();
+            log.error("[outbox] giving up outboxId={} type={} after {} attempts: {}",
+                    e.getOutboxId(), e.getEventType(), attempts, ex.getMessage(), ex);
+        } else {
+            long backoff = Math.min(MAX_BACKOFF_SECONDS, 1L << Math.min(attempts, 20));
+            outboxEventRepository.markFailed(e.getOutboxId(), nodeId, OutboxStatus.PENDING,
+                    LocalDateTime.now(TENANT_ZONE).plusSeconds(backoff), error);
+            retriedCounter.increment();
+            log.warn("[outbox] outboxId={} type={} attempt {}/{} failed, retry in {}s: {}",
+                    e.getOutboxId(), e.getEventType(), attempts, maxAttempts, backoff, ex.getMessage());
+        }
+    }
+
+    private static String resolveHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "node";
+        }
+    }
+}
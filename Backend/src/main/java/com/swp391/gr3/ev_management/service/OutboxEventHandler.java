@@ -0,0 +1,110 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.swp391.gr3.ev_management.entity.Invoice;
+import com.swp391.gr3.ev_management.entity.Notification;
+import com.swp391.gr3.ev_management.entity.OutboxEvent;
+import com.swp391.gr3.ev_management.enums.InvoiceStatus;
+import com.swp391.gr3.ev_management.enums.NotificationTypes;
+import com.swp391.gr3.ev_management.enums.OutboxStatus;
+import com.swp391.gr3.ev_management.events.NotificationCreatedEvent;
+import com.swp391.gr3.ev_management.events.SessionStoppedEvent;
+import com.swp391.gr3.ev_management.repository.BookingsRepository;
+import com.swp391.gr3.ev_management.repository.ChargingSessionRepository;
+import com.swp391.gr3.ev_management.repository.DriverRepository;
+import com.swp391.gr3.ev_management.repository.InvoiceRepository;
+import com.swp391.gr3.ev_management.repository.NotificationsRepository;
+import com.swp391.gr3.ev_management.repository.OutboxEventRepository;
+import com.swp391.gr3.ev_management.repository.UserRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+import static com.swp391.gr3.ev_management.util.TenantTime.TENANT_ZONE;
+
+/**
+ * Xử lý 1 sự kiện outbox trong transaction riêng: việc phụ + đánh dấu DONE cùng commit
+ * → mỗi sự kiện chỉ có hiệu lực đúng 1 lần, lỗi thì rollback toàn bộ để thử lại.
+ *
+ * Email vẫn do NotificationEmailListener gửi (AFTER_COMMIT của transaction này, trên thread outbox).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxEventHandler {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final InvoiceRepository invoiceRepository;
+    private final NotificationsRepository notificationsRepository;
+    private final ChargingSessionRepository chargingSessionRepository;
+    private final BookingsRepository bookingsRepository;
+    private final DriverRepository driverRepository;
+    private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+
+    /** @return false nếu node này không còn giữ lease của sự kiện (node khác đã lấy lại) */
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public boolean handle(Long outboxId, String node) throws Exception {
+        OutboxEvent e = outboxEventRepository.findById(outboxId).orElse(null);
+        if (e == null || e.getStatus() != OutboxStatus.PROCESSING || !node.equals(e.getClaimedBy())) {
+            return false;
+        }
+
+        switch (e.getEventType()) {
+            case SESSION_STOPPED -> onSessionStopped(objectMapper.readValue(e.getPayload(), SessionStoppedEvent.class));
+        }
+
+        e.setStatus(OutboxStatus.DONE);
+        e.setProcessedAt(LocalDateTime.now(TENANT_ZONE));
+        e.setClaimedBy(null);
+        e.setClaimedUntil(null);
+        e.setLastError(null);
+        return true;
+    }
+
+    // =========================================================================
+    // SESSION_STOPPED
+    // =========================================================================
+
+    private void onSessionStopped(SessionStoppedEvent ev) {
+        var session = chargingSessionRepository.getReferenceById(ev.sessionId());
+
+        // Hóa đơn (phiên có tính phí); đã có thì bỏ qua → xử lý lại không tạo trùng
+        if (ev.amount() != null && invoiceRepository.findBySession_SessionId(ev.sessionId()).isEmpty()) {
+            Invoice invoice = new Invoice();
+            invoice.setSession(session);
+            invoice.setAmount(ev.amount());
+            invoice.setCurrency(ev.currency());
+            invoice.setStatus(InvoiceStatus.UNPAID);
+            invoice.setIssuedAt(LocalDateTime.now());
+            // driver null cũng lưu bình thường (có thể sau này update driver sau)
+            invoice.setDriver(ev.driverId() != null ? driverRepository.getReferenceById(ev.driverId()) : null);
+            invoiceRepository.save(invoice);
+
+            if (ev.driverId() == null) {
+                log.warn("[OUTBOX] Invoice created WITHOUT DRIVER for session {}", ev.sessionId());
+            }
+        }
+
+        // Thông báo kết thúc sạc (+ email qua NotificationCreatedEvent)
+        if (ev.userId() != null) {
+            Notification done = new Notification();
+            done.setUser(userRepository.getReferenceById(ev.userId()));
+            done.setBooking(ev.bookingId() != null ? bookingsRepository.getReferenceById(ev.bookingId()) : null);
+            done.setSession(session);
+            done.setTitle(ev.title());
+            done.setContentNoti(ev.content());
+            done.setType(NotificationTypes.CHARGING_COMPLETED);
+            done.setStatus(Notification.STATUS_UNREAD);
+            done.setCreatedAt(LocalDateTime.now());
+            notificationsRepository.save(done);
+            eventPublisher.publishEvent(new NotificationCreatedEvent(done.getNotiId()));
+        }
+    }
+}
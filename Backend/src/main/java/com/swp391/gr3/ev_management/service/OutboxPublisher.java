@@ -0,0 +1,53 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.swp391.gr3.ev_management.entity.OutboxEvent;
+import com.swp391.gr3.ev_management.enums.OutboxEventType;
+import com.swp391.gr3.ev_management.enums.OutboxStatus;
+import com.swp391.gr3.ev_management.repository.OutboxEventRepository;
+import com.swp391.gr3.ev_management.util.AfterCommit;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+import static com.swp391.gr3.ev_management.util.TenantTime.TENANT_ZONE;
+
+/**
+ * Ghi sự kiện vào bảng OutboxEvent trong transaction hiện tại; sau khi commit đánh thức OutboxDispatcher
+ * để xử lý ngay thay vì chờ lượt quét.
+ */
+@Component
+@RequiredArgsConstructor
+public class OutboxPublisher {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+    // Lấy lười: dispatcher → handler → repository / event publisher (không cần khi chỉ ghi outbox)
+    private final ObjectProvider<OutboxDispatcher> dispatcherProvider;
+
+    /** Key giữ thứ tự theo user; không có user thì theo đối tượng phát sinh sự kiện */
+    public static String partitionKey(Long userId, String fallbackType, Long fallbackId) {
+        return (userId != null) ? "user:" + userId : fallbackType + ":" + fallbackId;
+    }
+
+    public void enqueue(OutboxEventType type, String partitionKey, Object payload) {
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize outbox payload " + type, e);
+        }
+        outboxEventRepository.save(OutboxEvent.builder()
+                .eventType(type)
+                .partitionKey(partitionKey)
+                .payload(json)
+                .status(OutboxStatus.PENDING)
+                .attempts(0)
+                .nextAttemptAt(LocalDateTime.now(TENANT_ZONE))
+                .build());
+        AfterCommit.run(() -> dispatcherProvider.ifAvailable(OutboxDispatcher::wakeUp));
+    }
+}
@@ -20,10 +20,11 @@ import java.nio.charset.StandardCharsets;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
 
+import static com.swp391.gr3.ev_management.util.TenantTime.TENANT_ZONE;
+
 @Service // Đánh dấu đây là 1 Spring Service chứa logic xử lý thanh toán
 @RequiredArgsConstructor // Tự động generate constructor cho các field final
 public class PaymentService {
@@ -37,9 +38,7 @@ public class PaymentService {
     // ✅ thêm 2 bean sau để gửi thông báo
     private final NotificationsService notificationsService;           // Lưu Notification vào DB
     private final ApplicationEventPublisher eventPublisher;            // Publish event để gửi notify realtime/email...
-
-    // (khuyến nghị) dùng timezone thống nhất cho toàn hệ thống
-    private static final ZoneId TENANT_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+    private final StatsRollupService statsRollupService;               // Cộng doanh thu vào thống kê theo giờ (dashboard)
 
     // ====== Các config của VNPay được inject từ application.yml/properties ======
 
@@ -73,9 +72,7 @@ public class PaymentService {
         Driver driver = driverService.findByUser_UserId(userId).orElse(null);
 
         // 2️⃣ Invoice lấy theo session → invoice có thể không có driver
-        Invoice invoice = invoiceService.findBySession_SessionId(sessionId)
-                .orElseThrow(() -> new ErrorException(
-                        "No invoice found for session " + sessionId + ". Stop session must create an UNPAID invoice first."));
+        Invoice invoice = requireInvoice(sessionId);
 
         // 3️⃣ Lấy phương thức thanh toán theo paymentMethodId
         PaymentMethod method = paymentMethodService.findById(paymentMethodId)
@@ -268,11 +265,13 @@ public class PaymentService {
         String responseCode = request.getParameter("vnp_ResponseCode");
         if ("00".equals(responseCode)) {
             // 5.1) Cập nhật trạng thái transaction & invoice
+            boolean newlyPaid = invoice.getStatus() != InvoiceStatus.PAID; // ReturnUrl có thể bị gọi lại
             tx.setStatus(TransactionStatus.COMPLETED);
             invoice.setStatus(InvoiceStatus.PAID);
-            invoice.setPaidAt(LocalDateTime.now(TENANT_ZONE));
+            if (newlyPaid) invoice.setPaidAt(LocalDateTime.now(TENANT_ZONE));
             transactionService.addTransaction(tx);
             invoiceService.save(invoice);
+            if (newlyPaid) statsRollupService.invoicePaid(invoice); // doanh thu vào bucket thống kê theo giờ
 
             // ===== ✅ Gửi Notification: thanh toán thành công =====
             var driver = invoice.getDriver(); // lấy Driver từ Invoice
@@ -365,9 +364,7 @@ public class PaymentService {
                 .orElseThrow(() -> new ErrorException("Payment method not found"));
 
         // 2️⃣ Lấy invoice UNPAID gắn với session
-        Invoice invoice = invoiceService.findBySession_SessionId(sessionId)
-                .orElseThrow(() -> new ErrorException(
-                        "No invoice found for session " + sessionId + ". Stop session must create an UNPAID invoice first."));
+        Invoice invoice = requireInvoice(sessionId);
 
         // Ràng buộc: chỉ xử lý nếu invoice đang UNPAID
         if (invoice.getStatus() != InvoiceStatus.UNPAID) {
@@ -393,6 +390,7 @@ public class PaymentService {
         invoice.setStatus(InvoiceStatus.PAID);
         invoice.setPaidAt(LocalDateTime.now(TENANT_ZONE));
         invoiceService.save(invoice);
+        statsRollupService.invoicePaid(invoice); // doanh thu vào bucket thống kê theo giờ
 
         // 5️⃣ Gửi notification giống logic thanh toán VNPay thành công
 //        var user = driver.getUser();
@@ -428,6 +426,24 @@ public class PaymentService {
         return "Payment successful (EVM)";
     }
 
+    /**
+     * ✅ Lấy hóa đơn của phiên.
+     *  - Hóa đơn được outbox tạo bất đồng bộ sau khi stop → phiên đã COMPLETED mà chưa có hóa đơn
+     *    nghĩa là đang chờ tạo: trả 409 "invoice pending" để client thử lại, không phải 404
+     */
+    private Invoice requireInvoice(Long sessionId) {
+        return invoiceService.findBySession_SessionId(sessionId).orElseThrow(() -> {
+            boolean completed = chargingSessionRepository.findById(sessionId)
+                    .map(s -> s.getStatus() == ChargingSessionStatus.COMPLETED)
+                    .orElse(false);
+            if (completed) {
+                return new ConflictException("Invoice pending for session " + sessionId + ". Please retry in a few seconds.");
+            }
+            return new ErrorException(
+                    "No invoice found for session " + sessionId + ". Stop session must create an UNPAID invoice first.");
+        });
+    }
+
     /**
      * ✅ Helper kiểm tra PaymentMethod có phải là VNPay không
      *  - Thường dựa vào provider (VNPAY)
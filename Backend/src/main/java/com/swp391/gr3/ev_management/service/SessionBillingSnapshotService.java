@@ -0,0 +1,109 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.swp391.gr3.ev_management.entity.Booking;
+import com.swp391.gr3.ev_management.entity.BookingSlot;
+import com.swp391.gr3.ev_management.entity.ChargingPoint;
+import com.swp391.gr3.ev_management.entity.ConnectorType;
+import com.swp391.gr3.ev_management.entity.SessionBillingSnapshot;
+import com.swp391.gr3.ev_management.entity.SlotAvailability;
+import com.swp391.gr3.ev_management.entity.VehicleModel;
+import com.swp391.gr3.ev_management.exception.ErrorException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Dựng SessionBillingSnapshot từ booking (slot → charging point → connector, model xe, tariff).
+ *
+ * - ChargingSessionServiceImpl gọi lúc start và lưu cùng session.
+ * - ChargingSessionTxHandler chỉ gọi lúc stop cho phiên cũ chưa có snapshot.
+ */
+@Service
+@RequiredArgsConstructor
+public class SessionBillingSnapshotService {
+
+    private final TariffIndex tariffIndex;
+
+    /** Chụp ngữ cảnh tính tiền của booking, tariff tra theo thời điểm {@code at} */
+    public SessionBillingSnapshot capture(Booking booking, LocalDateTime at) {
+        List<BookingSlot> slots = (booking.getBookingSlots() != null) ? booking.getBookingSlots() : List.of();
+        SlotAvailability firstSlot = slots.isEmpty() ? null : slots.get(0).getSlot();
+
+        ChargingPoint point = (firstSlot != null) ? firstSlot.getChargingPoint() : null;
+        VehicleModel model = (booking.getVehicle() != null) ? booking.getVehicle().getModel() : null;
+
+        // Connector của trụ, không có thì của model xe (giống luồng stop cũ)
+        ConnectorType connectorType = (point != null && point.getConnectorType() != null)
+                ? point.getConnectorType()
+                : (model != null) ? model.getConnectorType() : null;
+
+        TariffIndex.ActiveTariff tariff = (connectorType != null)
+                ? resolveTariff(connectorType.getConnectorTypeId(), at).orElse(null)
+                : null;
+
+        Long slotMinutes = (firstSlot != null && firstSlot.getTemplate() != null)
+                ? ChronoUnit.MINUTES.between(firstSlot.getTemplate().getStartTime(), firstSlot.getTemplate().getEndTime())
+                : null;
+
+        return SessionBillingSnapshot.builder()
+                .tariffId(tariff != null ? tariff.tariffId() : null)
+                .pricePerKWh(tariff != null ? tariff.pricePerKWh() : null)
+                .pricePerMin(tariff != null ? tariff.pricePerMin() : null)
+                .currency(tariff != null ? tariff.currency() : null)
+                .tariffValidTo(tariff != null ? tariff.effectiveTo() : null)
+                .connectorTypeId(connectorType != null ? connectorType.getConnectorTypeId() : null)
+                .connectorMode(connectorType != null ? connectorType.getMode() : null)
+                .ratedKw(point != null && point.getMaxPowerKW() > 0 ? point.getMaxPowerKW() : null)
+                .batteryCapacityKWh(model != null && model.getBatteryCapacityKWh() > 0 ? model.getBatteryCapacityKWh() : null)
+                .windowStart(resolveWindowStart(booking))
+                .windowEnd(resolveWindowEnd(booking))
+                .lastSlotStart(slots.stream()
+                        .map(bs -> slotStart(bs.getSlot()))
+                        .max(LocalDateTime::compareTo)
+                        .orElse(null))
+                .slotMinutes(slotMinutes)
+                .bookedSlots(slots.size())
+                .pointNumber(point != null && point.getPointNumber() != null ? point.getPointNumber() : "Unknown")
+                .pointId(point != null ? point.getPointId() : null)
+                .build();
+    }
+
+    /** Tariff chụp lúc start (dùng cho đoạn không có tariff hiệu lực khi tính tiền theo thời điểm) */
+    public static Optional<TariffIndex.ActiveTariff> snapshotTariff(SessionBillingSnapshot snap) {
+        if (snap.getTariffId() == null || snap.getPricePerKWh() == null || snap.getPricePerMin() == null) {
+            return Optional.empty();
+        }
+        return Optional.of(new TariffIndex.ActiveTariff(snap.getTariffId(),
+                snap.getConnectorTypeId() != null ? snap.getConnectorTypeId() : 0L,
+                snap.getPricePerKWh(), snap.getPricePerMin(), snap.getCurrency(), null, snap.getTariffValidTo()));
+    }
+
+    /** Tariff hiệu lực của connector tại thời điểm {@code at} (tra chỉ mục trong bộ nhớ, không query DB) */
+    public Optional<TariffIndex.ActiveTariff> resolveTariff(Long connectorTypeId, LocalDateTime at) {
+        return tariffIndex.activeAt(connectorTypeId, at);
+    }
+
+    private static LocalDateTime resolveWindowStart(Booking booking) {
+        if (booking.getScheduledStartTime() != null) return booking.getScheduledStartTime();
+        return booking.getBookingSlots().stream()
+                .map(bs -> slotStart(bs.getSlot()))
+                .min(LocalDateTime::compareTo)
+                .orElseThrow(() -> new ErrorException("Booking has no slot start time"));
+    }
+
+    private static LocalDateTime resolveWindowEnd(Booking booking) {
+        if (booking.getScheduledEndTime() != null) return booking.getScheduledEndTime();
+        return booking.getBookingSlots().stream()
+                .map(bs -> bs.getSlot().getDate().with(bs.getSlot().getTemplate().getEndTime()))
+                .max(LocalDateTime::compareTo)
+                .orElseThrow(() -> new ErrorException("Booking has no slot end time"));
+    }
+
+    private static LocalDateTime slotStart(SlotAvailability slot) {
+        return slot.getDate().with(slot.getTemplate().getStartTime());
+    }
+}
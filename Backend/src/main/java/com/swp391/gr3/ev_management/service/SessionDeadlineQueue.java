@@ -0,0 +1,240 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.swp391.gr3.ev_management.entity.SessionDeadline;
+import com.swp391.gr3.ev_management.enums.ChargingSessionStatus;
+import com.swp391.gr3.ev_management.repository.SessionDeadlineRepository;
+import com.swp391.gr3.ev_management.util.AfterCommit;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.*;
+
+import static com.swp391.gr3.ev_management.util.TenantTime.TENANT_ZONE;
+
+/**
+ * Lịch auto-stop phiên sạc, bền vững qua restart và an toàn khi chạy nhiều node.
+ *
+ * - Mỗi phiên sạc IN_PROGRESS có 1 dòng SessionDeadline (ghi cùng transaction với lúc start),
+ *   nên redeploy / crash không làm mất lịch auto-stop như khi dùng TaskScheduler trong bộ nhớ.
+ * - Mỗi node giữ các hạn chót sắp tới trong DelayQueue (nạp lại từ DB khi khởi động + quét định kỳ).
+ * - Tới hạn: node giành lease bằng 1 câu UPDATE có điều kiện → chỉ 1 node gọi
+ *   ChargingSessionTxHandler.autoStopIfStillRunningTx; xong thì xóa dòng. Node chết giữa chừng
+ *   → lease hết hạn, node khác làm lại (autoStop tự bỏ qua nếu phiên đã dừng).
+ *
+ * Metrics: session.autostop.latency, session.autostop.fired, session.autostop.pending.
+ */
+@Component
+@Slf4j
+public class SessionDeadlineQueue {
+
+    private final SessionDeadlineRepository deadlineRepository;
+    private final ChargingSessionTxHandler txHandler;
+    private final Executor autoStopExecutor;
+    private final MeterRegistry meterRegistry;
+
+    // Thời gian giữ lease: quá thời gian này mà node chưa xóa dòng → node khác được xử lý lại
+    @Value("${app.session-deadline.lease-seconds:300}")
+    private long leaseSeconds;
+
+    // Chỉ giữ trong bộ nhớ các hạn chót tới trong khoảng này (phần còn lại để lượt quét sau nạp)
+    @Value("${app.session-deadline.lookahead-minutes:10}")
+    private long lookaheadMinutes;
+
+    // Số lần thử tối đa cho 1 hạn chót trước khi bỏ (tránh lặp vô hạn với phiên lỗi dữ liệu)
+    @Value("${app.session-deadline.max-attempts:3}")
+    private int maxAttempts;
+
+    @Value("${app.node-id:}")
+    private String nodeId;
+
+    private final DelayQueue<Due> queue = new DelayQueue<>();
+
+    // sessionId -> hạn chót đang chờ trong queue (epoch ms)
+    private final ConcurrentMap<Long, Long> pending = new ConcurrentHashMap<>();
+
+    private volatile Thread worker;
+    private Timer latencyTimer;
+    private Counter firedCounter;
+
+    /** 1 hạn chót trong DelayQueue */
+    private record Due(long sessionId, LocalDateTime dueAt, long dueAtMillis) implements Delayed {
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(dueAtMillis - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed o) {
+            return Long.compare(dueAtMillis, ((Due) o).dueAtMillis);
+        }
+    }
+
+    public SessionDeadlineQueue(SessionDeadlineRepository deadlineRepository,
+                                ChargingSessionTxHandler txHandler,
+                                @Qualifier("autoStopExecutor") Executor autoStopExecutor,
+                                MeterRegistry meterRegistry) {
+        this.deadlineRepository = deadlineRepository;
+        this.txHandler = txHandler;
+        this.autoStopExecutor = autoStopExecutor;
+        this.meterRegistry = meterRegistry;
+    }
+
+    // =========================================================================
+    // LIFECYCLE
+    // =========================================================================
+
+    /** Nạp các hạn chót sắp tới (kể cả đã quá hạn trong lúc app tắt) rồi bật thread xử lý */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (nodeId == null || nodeId.isBlank()) {
+            nodeId = resolveHostName() + "-" + UUID.randomUUID().toString().substring(0, 8);
+        }
+        latencyTimer = Timer.builder("session.autostop.latency")
+                .description("Độ trễ từ windowEnd tới lúc phiên sạc được auto-stop")
+                .register(meterRegistry);
+        firedCounter = Counter.builder("session.autostop.fired")
+                .description("Số phiên sạc được auto-stop bởi node này")
+                .register(meterRegistry);
+        meterRegistry.gauge("session.autostop.pending", pending, ConcurrentMap::size);
+
+        try {
+            int backfilled = deadlineRepository.backfillMissing(ChargingSessionStatus.IN_PROGRESS, LocalDateTime.now(TENANT_ZONE));
+            if (backfilled > 0) log.info("[auto-stop] backfilled {} deadlines for running sessions", backfilled);
+        } catch (Exception e) {
+            // Node khác khởi động cùng lúc và đã chèn trước → bỏ qua
+            log.warn("[auto-stop] backfill skipped: {}", e.getMessage());
+        }
+        int loaded = reload();
+        log.info("[auto-stop] node={} recovered {} deadlines", nodeId, loaded);
+
+        Thread t = new Thread(this::runLoop, "session-deadline");
+        t.setDaemon(true);
+        worker = t;
+        t.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        Thread t = worker;
+        worker = null;
+        if (t != null) t.interrupt();
+    }
+
+    /** Quét định kỳ: nhận hạn chót do node khác tạo, hạn chót vừa vào cửa sổ lookahead, lease đã hết hạn */
+    @Scheduled(fixedDelayString = "${app.session-deadline.poll-ms:60000}")
+    public void poll() {
+        if (worker == null) return;
+        int added = reload();
+        if (added > 0) log.debug("[auto-stop] poll added {} deadlines", added);
+    }
+
+    private int reload() {
+        LocalDateTime until = LocalDateTime.now(TENANT_ZONE).plusMinutes(lookaheadMinutes);
+        List<SessionDeadline> rows = deadlineRepository.findByDueAtLessThanEqualOrderByDueAtAsc(until);
+        int added = 0;
+        for (SessionDeadline d : rows) {
+            if (put(d.getSessionId(), d.getDueAt())) added++;
+        }
+        return added;
+    }
+
+    // =========================================================================
+    // FEED (gọi từ ChargingSessionServiceImpl)
+    // =========================================================================
+
+    /**
+     * Ghi hạn chót auto-stop của phiên sạc (trong transaction hiện tại) và đưa vào hàng đợi sau khi commit.
+     */
+    public void register(Long sessionId, LocalDateTime windowEnd) {
+        deadlineRepository.save(SessionDeadline.builder()
+                .sessionId(sessionId)
+                .dueAt(windowEnd)
+                .attempts(0)
+                .build());
+        AfterCommit.run(() -> {
+            if (!windowEnd.isAfter(LocalDateTime.now(TENANT_ZONE).plusMinutes(lookaheadMinutes))) {
+                put(sessionId, windowEnd);
+            }
+        });
+    }
+
+    /** @return true nếu hạn chót mới được đưa vào queue (chưa có hoặc đã đổi) */
+    private boolean put(Long sessionId, LocalDateTime dueAt) {
+        long dueAtMillis = dueAt.atZone(TENANT_ZONE).toInstant().toEpochMilli();
+        Long prev = pending.put(sessionId, dueAtMillis);
+        if (prev != null && prev == dueAtMillis) return false;
+        queue.put(new Due(sessionId, dueAt, dueAtMillis));
+        return true;
+    }
+
+    // =========================================================================
+    // WORKER
+    // =========================================================================
+
+    private void runLoop() {
+        while (worker == Thread.currentThread()) {
+            Due d;
+            try {
+                d = queue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            // Bỏ qua phần tử cũ (hạn chót đã được thay)
+            if (!pending.remove(d.sessionId(), d.dueAtMillis())) continue;
+
+            // Thread này chỉ phát lệnh; việc dừng phiên (transaction, invoice, noti) chạy trên pool riêng
+            autoStopExecutor.execute(() -> fire(d));
+        }
+    }
+
+    private void fire(Due d) {
+        LocalDateTime now = LocalDateTime.now(TENANT_ZONE);
+        int claimed = deadlineRepository.claim(d.sessionId(), nodeId, now, now.plusSeconds(leaseSeconds));
+        if (claimed == 0) {
+            // Node khác đang / đã xử lý, hoặc phiên đã dừng (dòng đã bị xóa)
+            log.debug("[auto-stop] sessionId={} not claimed by node={}", d.sessionId(), nodeId);
+            return;
+        }
+
+        try {
+            txHandler.autoStopIfStillRunningTx(d.sessionId(), d.dueAt());
+            deadlineRepository.deleteBySessionId(d.sessionId());
+            firedCounter.increment();
+            latencyTimer.record(Math.max(0, System.currentTimeMillis() - d.dueAtMillis()), TimeUnit.MILLISECONDS);
+        } catch (Exception ex) {
+            int attempts = deadlineRepository.findById(d.sessionId()).map(SessionDeadline::getAttempts).orElse(0);
+            if (attempts >= maxAttempts) {
+                deadlineRepository.deleteBySessionId(d.sessionId());
+                log.error("[auto-stop] giving up sessionId={} after {} attempts: {}",
+                        d.sessionId(), attempts, ex.getMessage(), ex);
+            } else {
+                // Giữ dòng: lease hết hạn thì lượt quét sau (node này hoặc node khác) sẽ thử lại
+                log.error("[auto-stop] failed sessionId={} attempt {}/{}: {}",
+                        d.sessionId(), attempts, maxAttempts, ex.getMessage(), ex);
+            }
+        }
+    }
+
+    private static String resolveHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "node";
+        }
+    }
+}
@@ -0,0 +1,370 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.swp391.gr3.ev_management.entity.Booking;
+import com.swp391.gr3.ev_management.entity.ChargingSession;
+import com.swp391.gr3.ev_management.dto.response.SessionsPerHourResponse;
+import com.swp391.gr3.ev_management.entity.StationDayHistogram;
+import com.swp391.gr3.ev_management.repository.ChargingSessionRepository;
+import com.swp391.gr3.ev_management.repository.HourlyRollupSourceView;
+import com.swp391.gr3.ev_management.repository.StationDayHistogramRepository;
+import com.swp391.gr3.ev_management.repository.StationHourCountView;
+import com.swp391.gr3.ev_management.util.AfterCommit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.ByteBuffer;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.swp391.gr3.ev_management.util.TenantTime.TENANT_ZONE;
+
+/**
+ * Histogram số phiên / điện năng theo giờ trong ngày cho biểu đồ staff (thay cho việc tải mọi phiên của ngày rồi đếm).
+ *
+ * - Mỗi trạm / ngày là 1 cặp mảng nguyên thủy 24 phần tử: số phiên theo giờ bắt đầu, kWh theo giờ kết thúc.
+ * - Ngày hiện tại nằm trong bộ nhớ: dựng từ DB lúc khởi động (1 query gom nhóm), sau đó cộng sau khi commit
+ *   từ start / stop phiên sạc.
+ * - Ngày đã qua: job hằng ngày (app.session-histogram.persist-cron) dựng lại hôm qua từ DB rồi lưu StationDayHistogram;
+ *   ngày cũ chưa có dòng thì dựng + lưu ở lần đọc đầu tiên (ngày không có phiên lưu 1 dòng đánh dấu EMPTY_DAY).
+ *   Bộ nhớ chỉ giữ app.session-histogram.cache-days ngày gần nhất.
+ * - Dựng + lưu 1 ngày là single-flight trong node; node khác lưu cùng ngày (trùng UX_StationDayHistogram_Day)
+ *   → đọc lại các dòng node đó đã lưu.
+ * - Đọc nhiều ngày / lọc trạm: cộng mảng của từng (ngày, trạm) → chi phí cố định cho mỗi bucket, không phụ thuộc số phiên.
+ */
+@Service
+@Slf4j
+public class SessionHistogramService {
+
+    private static final int HOURS = 24;
+
+    // StationID của dòng đánh dấu "ngày đã dựng, không có phiên nào" → ngày trống cũng không bị dựng lại khi đọc
+    static final long EMPTY_DAY = -1L;
+
+    private final ChargingSessionRepository chargingSessionRepository;
+    private final StationDayHistogramRepository histogramRepository;
+    private final TransactionTemplate txTemplate;
+
+    // Số ngày gần nhất được giữ trong bộ nhớ
+    @Value("${app.session-histogram.cache-days:62}")
+    private int cacheDays;
+
+    // Khoảng đọc tối đa (ngày) cho 1 request biểu đồ
+    @Value("${app.session-histogram.max-range-days:366}")
+    private int maxRangeDays;
+
+    /** Histogram của 1 trạm trong 1 ngày; ghi / đọc khóa trên chính nó */
+    static final class Hist {
+        final int[] sessions = new int[HOURS];
+        final double[] energyKwh = new double[HOURS];
+    }
+
+    /** Kết quả cộng dồn: 24 giờ trong ngày (0..23) */
+    public record Histogram(long[] sessions, double[] energyKwh) {
+    }
+
+    // ngày -> (stationId -> histogram); ngày có mặt = đã nạp đủ mọi trạm
+    private final ConcurrentMap<LocalDate, ConcurrentMap<Long, Hist>> days = new ConcurrentHashMap<>();
+
+    // ngày đang được dựng + lưu → các request đồng thời chờ chung 1 lần dựng
+    private final ConcurrentMap<LocalDate, CompletableFuture<ConcurrentMap<Long, Hist>>> inflight = new ConcurrentHashMap<>();
+
+    public SessionHistogramService(ChargingSessionRepository chargingSessionRepository,
+                                   StationDayHistogramRepository histogramRepository,
+                                   PlatformTransactionManager transactionManager) {
+        this.chargingSessionRepository = chargingSessionRepository;
+        this.histogramRepository = histogramRepository;
+        this.txTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // =========================================================================
+    // LIFECYCLE
+    // =========================================================================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        long t0 = System.nanoTime();
+        LocalDate today = today();
+        days.put(today, compute(today));
+        log.info("[session-histogram] loaded {} ({} stations) in {} ms",
+                today, days.get(today).size(), (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    /** Chốt hôm qua: dựng lại từ DB (bắt thay đổi từ node khác), lưu, bỏ các ngày cũ khỏi bộ nhớ */
+    @Scheduled(cron = "${app.session-histogram.persist-cron:0 5 0 * * *}", zone = "Asia/Ho_Chi_Minh")
+    public void persistYesterday() {
+        LocalDate yesterday = today().minusDays(1);
+        days.put(yesterday, rebuild(yesterday));
+        LocalDate oldest = today().minusDays(cacheDays);
+        days.keySet().removeIf(d -> d.isBefore(oldest));
+    }
+
+    // =========================================================================
+    // FEED (gọi từ ChargingSessionServiceImpl / ChargingSessionTxHandler)
+    // =========================================================================
+
+    /** Phiên vừa bắt đầu: +1 phiên vào giờ bắt đầu sau khi commit */
+    public void started(ChargingSession cs) {
+        if (cs == null || cs.getStartTime() == null) return;
+        LocalDateTime at = cs.getStartTime();
+        long stationId = stationIdOf(cs);
+        AfterCommit.run(() -> {
+            Hist h = live(at.toLocalDate(), stationId);
+            if (h == null) return;
+            synchronized (h) {
+                h.sessions[at.getHour()]++;
+            }
+        });
+    }
+
+    /** Phiên vừa COMPLETED: cộng điện năng vào giờ kết thúc sau khi commit */
+    public void completed(ChargingSession cs) {
+        if (cs == null) return;
+        LocalDateTime at = (cs.getEndTime() != null) ? cs.getEndTime() : LocalDateTime.now(TENANT_ZONE);
+        long stationId = stationIdOf(cs);
+        double energy = cs.getEnergyKWh();
+        AfterCommit.run(() -> {
+            Hist h = live(at.toLocalDate(), stationId);
+            if (h == null) return;
+            synchronized (h) {
+                h.energyKwh[at.getHour()] += energy;
+            }
+        });
+    }
+
+    /**
+     * Histogram đang cập nhật của (ngày, trạm). Ngày mới (qua 0h) chưa có trong bộ nhớ → tạo rỗng;
+     * ngày cũ không còn trong bộ nhớ đã được chốt từ DB → null (không cộng).
+     */
+    private Hist live(LocalDate day, long stationId) {
+        ConcurrentMap<Long, Hist> stations = day.isBefore(today())
+                ? days.get(day)
+                : days.computeIfAbsent(day, d -> new ConcurrentHashMap<>());
+        return stations == null ? null : stations.computeIfAbsent(stationId, id -> new Hist());
+    }
+
+    // =========================================================================
+    // READ
+    // =========================================================================
+
+    /**
+     * Số phiên / kWh theo khung bucketHours tiếng (00:00, 04:00, ...) của các ngày [from, to]: cộng mọi giờ trong khung,
+     * kWh làm tròn 2 chữ số
+     */
+    public List<SessionsPerHourResponse> sessionsPerHour(LocalDate from, LocalDate to, Long stationId, int bucketHours) {
+        if (bucketHours <= 0 || HOURS % bucketHours != 0) {
+            throw new IllegalArgumentException("bucketHours must divide 24");
+        }
+        Histogram hist = histogram(from, to, stationId);
+
+        List<SessionsPerHourResponse> response = new ArrayList<>();
+        for (int hour = 0; hour < HOURS; hour += bucketHours) {
+            long count = 0;
+            double energy = 0;
+            for (int h = hour; h < hour + bucketHours; h++) {
+                count += hist.sessions()[h];
+                energy += hist.energyKwh()[h];
+            }
+            response.add(new SessionsPerHourResponse(
+                    String.format("%02d:00", hour),
+                    count,
+                    Math.round(energy * 100.0) / 100.0
+            ));
+        }
+        return response;
+    }
+
+    /** Tổng theo giờ trong ngày của các ngày [from, to] (tính cả 2 đầu, mặc định hôm nay); stationId null → mọi trạm */
+    public Histogram histogram(LocalDate from, LocalDate to, Long stationId) {
+        if (from == null) from = today();
+        if (to == null) to = from;
+        if (to.isBefore(from)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= maxRangeDays) {
+            throw new IllegalArgumentException("Range must not exceed " + maxRangeDays + " days");
+        }
+        loadMissing(from, to);
+
+        long[] sessions = new long[HOURS];
+        double[] energy = new double[HOURS];
+        for (LocalDate d = from; !d.isAfter(to); d = d.plusDays(1)) {
+            Map<Long, Hist> stations = days.get(d);
+            if (stations == null) continue;
+            if (stationId != null) {
+                add(stations.get(stationId), sessions, energy);
+            } else {
+                stations.values().forEach(h -> add(h, sessions, energy));
+            }
+        }
+        return new Histogram(sessions, energy);
+    }
+
+    private static void add(Hist h, long[] sessions, double[] energy) {
+        if (h == null) return;
+        synchronized (h) {
+            for (int i = 0; i < HOURS; i++) {
+                sessions[i] += h.sessions[i];
+                energy[i] += h.energyKwh[i];
+            }
+        }
+    }
+
+    /** Nạp các ngày đã qua chưa có trong bộ nhớ: từ bảng StationDayHistogram, thiếu thì dựng từ DB rồi lưu */
+    private void loadMissing(LocalDate from, LocalDate to) {
+        LocalDate today = today();
+        LocalDate lastPast = to.isBefore(today) ? to : today.minusDays(1);
+        if (lastPast.isBefore(from)) return;
+
+        List<LocalDate> missing = new ArrayList<>();
+        for (LocalDate d = from; !d.isAfter(lastPast); d = d.plusDays(1)) {
+            if (!days.containsKey(d)) missing.add(d);
+        }
+        if (missing.isEmpty()) return;
+
+        Map<LocalDate, ConcurrentMap<Long, Hist>> stored = readStored(missing.get(0), missing.get(missing.size() - 1));
+        for (LocalDate d : missing) {
+            ConcurrentMap<Long, Hist> loaded = stored.get(d);
+            days.putIfAbsent(d, loaded != null ? loaded : rebuild(d));
+        }
+    }
+
+    private Map<LocalDate, ConcurrentMap<Long, Hist>> readStored(LocalDate from, LocalDate to) {
+        Map<LocalDate, ConcurrentMap<Long, Hist>> stored = new ConcurrentHashMap<>();
+        for (StationDayHistogram row : histogramRepository.findByStatDateBetween(from, to)) {
+            ConcurrentMap<Long, Hist> stations = stored.computeIfAbsent(row.getStatDate(), d -> new ConcurrentHashMap<>());
+            if (row.getStationId() != EMPTY_DAY) stations.put(row.getStationId(), decode(row));
+        }
+        return stored;
+    }
+
+    // =========================================================================
+    // DỰNG / LƯU
+    // =========================================================================
+
+    /** Dựng histogram của 1 ngày từ DB: số phiên theo giờ bắt đầu, kWh phiên COMPLETED theo giờ kết thúc */
+    private ConcurrentMap<Long, Hist> compute(LocalDate day) {
+        LocalDateTime from = day.atStartOfDay();
+        LocalDateTime to = from.plusDays(1);
+        ConcurrentMap<Long, Hist> stations = new ConcurrentHashMap<>();
+        for (StationHourCountView v : chargingSessionRepository.countStartedByHour(from, to)) {
+            stations.computeIfAbsent(v.getStationId(), id -> new Hist()).sessions[v.getHour()] += v.getSessions().intValue();
+        }
+        for (HourlyRollupSourceView v : chargingSessionRepository.sumCompletedByHour(from, to)) {
+            stations.computeIfAbsent(v.getStationId(), id -> new Hist()).energyKwh[v.getHour()] +=
+                    (v.getEnergyKwh() != null ? v.getEnergyKwh() : 0.0);
+        }
+        return stations;
+    }
+
+    /** Dựng + lưu 1 ngày, mỗi ngày chỉ 1 lần chạy tại 1 thời điểm; request đồng thời nhận chung kết quả */
+    private ConcurrentMap<Long, Hist> rebuild(LocalDate day) {
+        CompletableFuture<ConcurrentMap<Long, Hist>> f = new CompletableFuture<>();
+        CompletableFuture<ConcurrentMap<Long, Hist>> running = inflight.putIfAbsent(day, f);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException re) throw re;
+                throw e;
+            }
+        }
+        try {
+            ConcurrentMap<Long, Hist> stations = computeAndSave(day);
+            f.complete(stations);
+            return stations;
+        } catch (RuntimeException e) {
+            f.completeExceptionally(e);
+            throw e;
+        } finally {
+            inflight.remove(day, f);
+        }
+    }
+
+    /**
+     * Dựng lại 1 ngày đã qua và ghi đè các dòng StationDayHistogram của ngày đó (1 transaction).
+     * Node khác vừa lưu cùng ngày → trùng khóa, transaction rollback → dùng các dòng node đó đã lưu.
+     */
+    private ConcurrentMap<Long, Hist> computeAndSave(LocalDate day) {
+        try {
+            return save(day);
+        } catch (DataIntegrityViolationException e) {
+            log.info("[session-histogram] {} saved concurrently, re-reading stored rows", day);
+            ConcurrentMap<Long, Hist> stored = readStored(day, day).get(day);
+            return stored != null ? stored : compute(day);
+        }
+    }
+
+    private ConcurrentMap<Long, Hist> save(LocalDate day) {
+        return txTemplate.execute(s -> {
+            ConcurrentMap<Long, Hist> stations = compute(day);
+            LocalDateTime now = LocalDateTime.now(TENANT_ZONE);
+            histogramRepository.deleteByStatDate(day);
+            List<StationDayHistogram> rows = new ArrayList<>();
+            stations.forEach((stationId, h) -> rows.add(StationDayHistogram.builder()
+                    .statDate(day)
+                    .stationId(stationId)
+                    .sessions(encode(h.sessions))
+                    .energyKwh(encode(h.energyKwh))
+                    .updatedAt(now)
+                    .build()));
+            if (rows.isEmpty()) {
+                rows.add(StationDayHistogram.builder()
+                        .statDate(day)
+                        .stationId(EMPTY_DAY)
+                        .sessions(encode(new int[HOURS]))
+                        .energyKwh(encode(new double[HOURS]))
+                        .updatedAt(now)
+                        .build());
+            }
+            histogramRepository.saveAll(rows);
+            return stations;
+        });
+    }
+
+    static byte[] encode(int[] values) {
+        ByteBuffer buf = ByteBuffer.allocate(values.length * Integer.BYTES);
+        for (int v : values) buf.putInt(v);
+        return buf.array();
+    }
+
+    static byte[] encode(double[] values) {
+        ByteBuffer buf = ByteBuffer.allocate(values.length * Double.BYTES);
+        for (double v : values) buf.putDouble(v);
+        return buf.array();
+    }
+
+    static Hist decode(StationDayHistogram row) {
+        Hist h = new Hist();
+        ByteBuffer sessions = ByteBuffer.wrap(row.getSessions());
+        ByteBuffer energy = ByteBuffer.wrap(row.getEnergyKwh());
+        for (int i = 0; i < HOURS; i++) {
+            h.sessions[i] = sessions.getInt();
+            h.energyKwh[i] = energy.getDouble();
+        }
+        return h;
+    }
+
+    private static long stationIdOf(ChargingSession cs) {
+        Booking b = cs.getBooking();
+        return (b != null && b.getStation() != null) ? b.getStation().getStationId() : 0L;
+    }
+
+    private static LocalDate today() {
+        return LocalDate.now(TENANT_ZONE);
+    }
+}
@@ -0,0 +1,350 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.swp391.gr3.ev_management.dto.response.ChargingStatusResponse;
+import com.swp391.gr3.ev_management.enums.ChargingSessionStatus;
+import com.swp391.gr3.ev_management.exception.ErrorException;
+import com.swp391.gr3.ev_management.repository.ChargingSessionRepository;
+import com.swp391.gr3.ev_management.repository.LiveSessionView;
+import com.swp391.gr3.ev_management.util.AfterCommit;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+import static com.swp391.gr3.ev_management.util.TenantTime.TENANT_ZONE;
+
+/**
+ * Nguồn trạng thái live duy nhất của các phiên sạc, đẩy cho client qua SSE.
+ *
+ * - Thông tin tĩnh của phiên (trạm, giờ bắt đầu, SoC ban đầu, công suất, dung lượng pin) nạp 1 lần từ DB,
+ *   kèm đường cong sạc tra sẵn (ChargingCurveEngine).
+ * - Mỗi tick tính trạng thái 1 lần / phiên (telemetry mới nhất trong bộ nhớ, không có thì ước lượng)
+ *   rồi fan-out cho mọi subscriber của phiên và của trạm → N người xem = 1 lần tính, 0 query.
+ * - Mỗi subscriber có buffer giới hạn; đầy (client đọc chậm) → ngắt kết nối, client tự kết nối lại.
+ *
+ * Metrics: session.stream.subscribers, session.stream.evicted.
+ */
+@Component
+@Slf4j
+public class SessionStatusHub {
+
+    // Đánh dấu kết thúc stream (phiên đã dừng) trong buffer của subscriber
+    private static final Object COMPLETE = new Object();
+
+    // Giữ dấu "vừa dừng" đủ lâu để phủ 1 lượt đọc DB của subscribe/track đang chạy song song
+    private static final long STOPPED_MARK_TTL_MS = 60_000;
+
+    private final ChargingSessionRepository chargingSessionRepository;
+    private final TelemetryIngestService telemetryIngestService;
+    private final Executor sseExecutor;
+    private final MeterRegistry meterRegistry;
+    private final ChargingCurveEngine chargingCurveEngine;
+
+    // Số event tối đa chờ gửi cho 1 subscriber
+    @Value("${app.session-stream.buffer-size:16}")
+    private int bufferSize;
+
+    // Thời gian sống của 1 kết nối SSE (client tự kết nối lại khi hết)
+    @Value("${app.session-stream.timeout-ms:1800000}")
+    private long timeoutMs;
+
+    private final ConcurrentMap<Long, LiveSession> sessions = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Set<Subscriber>> bySession = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, Set<Subscriber>> byStation = new ConcurrentHashMap<>();
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    // sessionId -> thời điểm stopped() (ms); chặn việc đưa lại phiên đã dừng vào sessions từ 1 lượt đọc DB cũ
+    private final ConcurrentMap<Long, Long> stoppedAt = new ConcurrentHashMap<>();
+
+    private Counter evictedCounter;
+
+    /** Thông tin tĩnh của 1 phiên đang được theo dõi */
+    private static final class LiveSession {
+        final long sessionId;
+        final long stationId;
+        final LocalDateTime startTime;
+        final int initialSoc;
+        final ChargingCurveEngine.Curve curve;
+        volatile ChargingSessionStatus status;
+
+        LiveSession(LiveSessionView v, ChargingCurveEngine.Curve curve) {
+            sessionId = v.getSessionId();
+            stationId = v.getStationId();
+            startTime = v.getStartTime();
+            initialSoc = Optional.ofNullable(v.getInitialSoc()).orElse(20);
+            this.curve = curve;
+            status = v.getStatus();
+        }
+    }
+
+    /** 1 kết nối SSE: theo 1 phiên (sessionId) hoặc cả trạm (stationId) */
+    private static final class Subscriber {
+        final SseEmitter emitter;
+        final Long sessionId;
+        final Long stationId;
+        final BlockingQueue<Object> buffer;
+        final AtomicBoolean draining = new AtomicBoolean(false);
+        volatile boolean closed;
+
+        Subscriber(SseEmitter emitter, Long sessionId, Long stationId, int bufferSize) {
+            this.emitter = emitter;
+            this.sessionId = sessionId;
+            this.stationId = stationId;
+            this.buffer = new ArrayBlockingQueue<>(bufferSize);
+        }
+    }
+
+    public SessionStatusHub(ChargingSessionRepository chargingSessionRepository,
+                            TelemetryIngestService telemetryIngestService,
+                            @Qualifier("sseExecutor") Executor sseExecutor,
+                            MeterRegistry meterRegistry,
+                            ChargingCurveEngine chargingCurveEngine) {
+        this.chargingSessionRepository = chargingSessionRepository;
+        this.telemetryIngestService = telemetryIngestService;
+        this.sseExecutor = sseExecutor;
+        this.meterRegistry = meterRegistry;
+        this.chargingCurveEngine = chargingCurveEngine;
+    }
+
+    @PostConstruct
+    void registerMetrics() {
+        evictedCounter = meterRegistry.counter("session.stream.evicted");
+        meterRegistry.gauge("session.stream.subscribers", subscribers, Set::size);
+    }
+
+    // =========================================================================
+    // SUBSCRIBE
+    // =========================================================================
+
+    /** Stream trạng thái của 1 phiên sạc */
+    public SseEmitter subscribeSession(Long sessionId) {
+        LiveSession cached = sessions.get(sessionId);
+        LiveSession s = cached != null ? cached : live(chargingSessionRepository.findLiveView(sessionId)
+                .orElseThrow(() -> new ErrorException("Session not found")));
+        // Đăng ký subscriber TRƯỚC rồi mới đưa phiên vào sessions: tick() bỏ các phiên không có người xem
+        Subscriber sub = register(new Subscriber(newEmitter(), sessionId, null, bufferSize));
+        // Chỉ theo dõi phiên còn đang chạy; phiên đã xong chỉ gửi 1 trạng thái rồi đóng
+        if (s.status == ChargingSessionStatus.IN_PROGRESS) {
+            LiveSession candidate = s;
+            LiveSession tracked = addLive(sessionId, id -> candidate);
+            if (tracked == null) {
+                // Phiên vừa dừng trong lúc đăng ký → đọc lại trạng thái cuối
+                s = chargingSessionRepository.findLiveView(sessionId).map(this::live).orElse(s);
+                s.status = ChargingSessionStatus.COMPLETED;
+            } else {
+                s = tracked;
+            }
+        }
+        offer(sub, snapshot(s, LocalDateTime.now(TENANT_ZONE)));
+        if (s.status != ChargingSessionStatus.IN_PROGRESS) offer(sub, COMPLETE);
+        return sub.emitter;
+    }
+
+    /** Stream trạng thái của mọi phiên đang chạy tại 1 trạm (màn hình staff) */
+    public SseEmitter subscribeStation(Long stationId) {
+        // Nạp các phiên đang chạy của trạm (1 query), phiên mới bắt đầu sau đó được thêm qua track()
+        List<LiveSessionView> views = chargingSessionRepository.findLiveViewsByStation(stationId, ChargingSessionStatus.IN_PROGRESS);
+        // Đăng ký subscriber TRƯỚC rồi mới đưa phiên vào sessions: tick() bỏ các phiên không có người xem
+        Subscriber sub = register(new Subscriber(newEmitter(), null, stationId, bufferSize));
+        for (LiveSessionView v : views) {
+            addLive(v.getSessionId(), id -> live(v));
+        }
+        LocalDateTime now = LocalDateTime.now(TENANT_ZONE);
+        sessions.values().stream()
+                .filter(s -> s.stationId == stationId && s.status == ChargingSessionStatus.IN_PROGRESS)
+                .forEach(s -> offer(sub, snapshot(s, now)));
+        return sub.emitter;
+    }
+
+    /** Trạng thái hiện tại của 1 phiên (GET 1 lần, không mở stream) */
+    public ChargingStatusResponse currentStatus(Long sessionId) {
+        LiveSession s = sessions.get(sessionId);
+        if (s == null) {
+            s = live(chargingSessionRepository.findLiveView(sessionId)
+                    .orElseThrow(() -> new ErrorException("Session not found")));
+        }
+        return snapshot(s, LocalDateTime.now(TENANT_ZONE));
+    }
+
+    /**
+     * Đưa phiên vào danh sách theo dõi (gọi SAU khi đã có subscriber).
+     * Nếu stopped() chạy xen giữa lượt đọc DB và lúc thêm → gỡ ra ngay và trả null.
+     */
+    private LiveSession addLive(Long sessionId, Function<Long, LiveSession> factory) {
+        LiveSession s = sessions.computeIfAbsent(sessionId, factory);
+        if (stoppedAt.containsKey(sessionId)) {
+            sessions.remove(sessionId, s);
+            return null;
+        }
+        return s;
+    }
+
+    private LiveSession live(LiveSessionView v) {
+        return new LiveSession(v, chargingCurveEngine.curveFor(v.getBatteryCapacityKWh(), v.getRatedKw(), v.getConnectorMode()));
+    }
+
+    private SseEmitter newEmitter() {
+        return new SseEmitter(timeoutMs);
+    }
+
+    private Subscriber register(Subscriber sub) {
+        subscribers.add(sub);
+        if (sub.sessionId != null) bySession.computeIfAbsent(sub.sessionId, k -> ConcurrentHashMap.newKeySet()).add(sub);
+        if (sub.stationId != null) byStation.computeIfAbsent(sub.stationId, k -> ConcurrentHashMap.newKeySet()).add(sub);
+        sub.emitter.onCompletion(() -> remove(sub));
+        sub.emitter.onTimeout(() -> remove(sub));
+        sub.emitter.onError(e -> remove(sub));
+        return sub;
+    }
+
+    private void remove(Subscriber sub) {
+        sub.closed = true;
+        subscribers.remove(sub);
+        if (sub.sessionId != null) {
+            bySession.computeIfPresent(sub.sessionId, (k, set) -> {
+                set.remove(sub);
+                return set.isEmpty() ? null : set;
+            });
+        }
+        if (sub.stationId != null) {
+            byStation.computeIfPresent(sub.stationId, (k, set) -> {
+                set.remove(sub);
+                return set.isEmpty() ? null : set;
+            });
+        }
+    }
+
+    // =========================================================================
+    // FEED (gọi từ ChargingSessionServiceImpl / ChargingSessionTxHandler)
+    // =========================================================================
+
+    /** Phiên vừa bắt đầu: nếu trạm đang có người xem thì đưa vào danh sách theo dõi (sau khi commit) */
+    public void track(Long sessionId) {
+        AfterCommit.run(() -> {
+            if (byStation.isEmpty()) return;
+            chargingSessionRepository.findLiveView(sessionId).ifPresent(v -> {
+                if (byStation.containsKey(v.getStationId())) {
+                    addLive(sessionId, id -> live(v));
+                }
+            });
+        });
+    }
+
+    /** Phiên đã dừng: gửi trạng thái cuối rồi đóng các stream theo phiên (sau khi commit) */
+    public void stopped(Long sessionId, int finalSoc, double energyKWh) {
+        AfterCommit.run(() -> {
+            // Đánh dấu TRƯỚC khi gỡ: subscribe/track đang thêm lại phiên này sẽ thấy dấu và tự gỡ
+            stoppedAt.put(sessionId, System.currentTimeMillis());
+            LiveSession s = sessions.remove(sessionId);
+            if (s == null) return;
+            s.status = ChargingSessionStatus.COMPLETED;
+            ChargingStatusResponse last = snapshot(s, LocalDateTime.now(TENANT_ZONE));
+            last.setCurrentSoc(finalSoc);
+            last.setEnergyKWh(energyKWh);
+            fanOut(s, last);
+            bySession.getOrDefault(sessionId, Set.of()).forEach(sub -> offer(sub, COMPLETE));
+        });
+    }
+
+    // =========================================================================
+    // TICK + FAN-OUT
+    // =========================================================================
+
+    /** Mỗi tick: tính trạng thái 1 lần / phiên có người xem rồi đẩy cho tất cả subscriber liên quan */
+    @Scheduled(fixedDelayString = "${app.session-stream.tick-ms:2000}")
+    public void tick() {
+        long cutoff = System.currentTimeMillis() - STOPPED_MARK_TTL_MS;
+        stoppedAt.values().removeIf(t -> t < cutoff);
+        if (subscribers.isEmpty()) {
+            sessions.clear(); // không ai xem → bỏ trạng thái, lần subscribe sau nạp lại
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now(TENANT_ZONE);
+        sessions.values().removeIf(s -> {
+            boolean watched = bySession.containsKey(s.sessionId) || byStation.containsKey(s.stationId);
+            if (watched) fanOut(s, snapshot(s, now));
+            return !watched;
+        });
+    }
+
+    private void fanOut(LiveSession s, ChargingStatusResponse event) {
+        bySession.getOrDefault(s.sessionId, Set.of()).forEach(sub -> offer(sub, event));
+        byStation.getOrDefault(s.stationId, Set.of()).forEach(sub -> offer(sub, event));
+    }
+
+    /** Đưa event vào buffer của subscriber; buffer đầy → client đọc quá chậm → ngắt */
+    private void offer(Subscriber sub, Object event) {
+        if (sub.closed) return;
+        if (!sub.buffer.offer(event)) {
+            evictedCounter.increment();
+            log.debug("[sse] evict slow subscriber session={} station={}", sub.sessionId, sub.stationId);
+            remove(sub);
+            sub.emitter.complete();
+            return;
+        }
+        if (sub.draining.compareAndSet(false, true)) {
+            sseExecutor.execute(() -> drain(sub));
+        }
+    }
+
+    private void drain(Subscriber sub) {
+        try {
+            Object event;
+            while (!sub.closed && (event = sub.buffer.poll()) != null) {
+                if (event == COMPLETE) {
+                    remove(sub);
+                    sub.emitter.complete();
+                    return;
+                }
+                sub.emitter.send(SseEmitter.event().name("status").data(event));
+            }
+        } catch (Exception ex) {
+            // Client đã đóng kết nối
+            remove(sub);
+        } finally {
+            sub.draining.set(false);
+        }
+        // Event đến trong lúc đang kết thúc lượt gửi → gửi tiếp
+        if (!sub.closed && !sub.buffer.isEmpty() && sub.draining.compareAndSet(false, true)) {
+            sseExecutor.execute(() -> drain(sub));
+        }
+    }
+
+    /** Trạng thái hiện tại: telemetry mới nhất trong bộ nhớ, thiếu thì ước lượng theo đường cong sạc */
+    private ChargingStatusResponse snapshot(LiveSession s, LocalDateTime now) {
+        long minutes = Math.max(0, Duration.between(s.startTime, now).toMinutes());
+        double estSoc = s.curve.socAfter(s.initialSoc, minutes);
+        double estEnergy = s.curve.energyBetween(s.initialSoc, estSoc);
+
+        var reading = telemetryIngestService.latestBuffered(s.sessionId).orElse(null);
+        double soc = (reading != null && reading.soc() != null) ? reading.soc() : estSoc;
+        double energy = (reading != null && reading.energyKwh() != null) ? reading.energyKwh() : estEnergy;
+
+        return ChargingStatusResponse.builder()
+                .sessionId(s.sessionId)
+                .stationId(s.stationId)
+                .currentSoc(Math.round(soc * 10) / 10.0)
+                .energyKWh(Math.round(energy * 100) / 100.0)
+                .minutesElapsed(minutes)
+                .powerKw(reading != null ? reading.powerKw() : null)
+                .status(s.status)
+                .build();
+    }
+}
@@ -0,0 +1,95 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.swp391.gr3.ev_management.enums.SlotStatus;
+import com.swp391.gr3.ev_management.repository.SlotAvailabilityRepository;
+import com.swp391.gr3.ev_management.repository.SlotOccupancyView;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Sinh SlotAvailability hàng loạt cho 1 (config, ngày) theo kiểu set-based.
+ *
+ * - 1 query projection để biết cặp (template, point) nào đã tồn tại (thay cho existsBy... từng cặp).
+ * - Các cặp còn thiếu được INSERT bằng JDBC batch, sắp theo (template, point) → batch gửi liên tục vào cùng bảng.
+ *   Entity dùng IDENTITY nên đi qua Hibernate saveAll sẽ là 1 round-trip / dòng.
+ * - Đọc lại các dòng vừa tạo bằng 1 query projection để trả về id và cập nhật SlotOccupancyIndex.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SlotAvailabilityBulkWriter {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO slot_availability (templateid, pointid, status, date) VALUES (?, ?, ?, ?)";
+
+    private final SlotAvailabilityRepository slotAvailabilityRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final SlotOccupancyIndex occupancyIndex;
+
+    // Số dòng mỗi batch JDBC
+    @Value("${app.slot-gen.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Tạo SlotAvailability AVAILABLE cho mọi cặp (template × point) còn thiếu trong ngày {@code day}.
+     *
+     * @param configId    config chứa các template
+     * @param day         ngày áp dụng (00:00)
+     * @param templateIds template của config trong ngày đó (theo thứ tự khung giờ)
+     * @param pointIds    các charging point được sinh slot
+     * @return projection của các slot vừa được tạo
+     */
+    @Transactional
+    public List<SlotOccupancyView> insertMissing(Long configId, LocalDateTime day,
+                                                 Collection<Long> templateIds, Collection<Long> pointIds) {
+        if (templateIds.isEmpty() || pointIds.isEmpty()) return Collections.emptyList();
+        long t0 = System.nanoTime();
+
+        // 1️⃣ Những cặp (template, point) đã có trong ngày → 1 query
+        Set<List<Long>> existing = new HashSet<>();
+        for (SlotOccupancyView v : slotAvailabilityRepository.findOccupancyViewsByConfigAndDate(configId, day)) {
+            existing.add(List.of(v.getTemplateId(), v.getPointId()));
+        }
+
+        // 2️⃣ Tính các cặp còn thiếu, giữ thứ tự (template, point)
+        List<long[]> missing = new ArrayList<>(templateIds.size() * pointIds.size());
+        for (Long templateId : templateIds) {
+            for (Long pointId : pointIds) {
+                if (!existing.contains(List.of(templateId, pointId))) {
+                    missing.add(new long[]{templateId, pointId});
+                }
+            }
+        }
+        if (missing.isEmpty()) return Collections.emptyList();
+
+        // 3️⃣ INSERT bằng JDBC batch
+        Timestamp date = Timestamp.valueOf(day);
+        String status = SlotStatus.AVAILABLE.name();
+        jdbcTemplate.batchUpdate(INSERT_SQL, missing, batchSize, (ps, pair) -> {
+            ps.setLong(1, pair[0]);
+            ps.setLong(2, pair[1]);
+            ps.setString(3, status);
+            ps.setTimestamp(4, date);
+        });
+
+        // 4️⃣ Đọc lại để lấy slotId của các dòng mới (dòng cũ đã có trong existing)
+        List<SlotOccupancyView> created = slotAvailabilityRepository.findOccupancyViewsByConfigAndDate(configId, day)
+                .stream()
+                .filter(v -> !existing.contains(List.of(v.getTemplateId(), v.getPointId())))
+                .toList();
+        occupancyIndex.recordViews(created);
+
+        long elapsedMs = Math.max(1, (System.nanoTime() - t0) / 1_000_000);
+        log.info("[slot-gen] config={} date={} inserted={} in {} ms ({} rows/s)",
+                configId, day.toLocalDate(), missing.size(), elapsedMs, missing.size() * 1000L / elapsedMs);
+        return created;
+    }
+}
@@ -35,7 +35,7 @@ public interface SlotAvailabilityService {
 
     Collection<SlotAvailability> saveAll(ArrayList<SlotAvailability> toSave);
 
-    List<SlotAvailability> findByConfigAndDateBetween(Long configId, LocalDateTime start, LocalDateTime end);
+    List<SlotAvailabilityResponse> findByConfigAndDateBetween(Long configId, LocalDateTime start, LocalDateTime end);
 
     List<Long> findConnectorTypeIdByBooking(Long bookingId);
 }
@@ -16,6 +16,8 @@ import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
+import static com.swp391.gr3.ev_management.util.TenantTime.TENANT_ZONE;
+
 @Service // Đánh dấu class là một Spring Service (chứa logic nghiệp vụ cho SlotAvailability)
 @RequiredArgsConstructor // Lombok tạo constructor cho các field final, dùng cho DI
 public class SlotAvailabilityServiceImpl implements SlotAvailabilityService {
@@ -27,6 +29,9 @@ public class SlotAvailabilityServiceImpl implements SlotAvailabilityService {
     private final ConnectorTypeService connectorTypeService;             // Lấy danh sách ConnectorType
     private final ChargingPointService chargingPointService;             // Lấy ChargingPoint theo station/connectorType
     private final SlotAvailabilityMapper mapper;                          // Map entity SlotAvailability -> DTO response
+    private final SlotOccupancyIndex occupancyIndex;                      // Bitset trạng thái slot trong bộ nhớ (phục vụ API đọc)
+    private final SlotAvailabilityBulkWriter bulkWriter;                  // Sinh slot hàng loạt bằng JDBC batch
+    private final VirtualSlotService virtualSlotService;                  // Chế độ virtual slot (tính availability khi đọc)
 
     /**
      * Tạo SlotAvailability cho danh sách template + danh sách connectorType được chọn.
@@ -34,17 +39,14 @@ public class SlotAvailabilityServiceImpl implements SlotAvailabilityService {
      *  - Validate request (templateIds & connectorTypeIds không rỗng)
      *  - Lấy list SlotTemplate theo templateIds
      *  - Lấy list ConnectorType theo connectorTypeIds
-     *  - Với mỗi template:
-     *      + Lấy stationId từ template → config → station
-     *      + Chuẩn hóa ngày về 00:00:00
-     *      + Với mỗi connector type:
-     *          * Tìm tất cả ChargingPoint ở station đó có connectorType tương ứng
-     *          * Với mỗi point:
-     *              - Nếu chưa tồn tại SlotAvailability (template + point + date) thì tạo mới
-     *  - saveAll() & map sang DTO
+     *  - Gom template theo (config, ngày 00:00):
+     *      + Lấy các ChargingPoint của station (1 query / station) có connectorType nằm trong danh sách chọn
+     *      + Giao cho SlotAvailabilityBulkWriter: 1 query tìm cặp (template, point) đã có,
+     *        cặp còn thiếu được INSERT bằng JDBC batch
+     *  - Map các slot vừa tạo sang DTO
      */
     @Override
-    @Transactional // Có thao tác ghi DB (saveAll) → cần transaction để đảm bảo toàn vẹn
+    @Transactional // Có thao tác ghi DB (batch insert) → cần transaction để đảm bảo toàn vẹn
     public List<SlotAvailabilityResponse> createForTemplates(SlotAvailabilityCreateRequest req) {
         // 1️⃣ Validate: danh sách templateIds phải có
         if (req.getTemplateIds() == null || req.getTemplateIds().isEmpty()) {
@@ -62,56 +64,47 @@ public class SlotAvailabilityServiceImpl implements SlotAvailabilityService {
         // 4️⃣ Lấy danh sách ConnectorType từ DB theo list connectorTypeIds
         List<ConnectorType> connectorTypes = connectorTypeService.findAllById(req.getConnectorTypeIds());
         if (connectorTypes.isEmpty()) return Collections.emptyList(); // Không có connector type -> dừng
-
-        // 5️⃣ Danh sách SlotAvailability sẽ được tạo mới & lưu batch
-        List<SlotAvailability> toSave = new ArrayList<>();
-
-        // 6️⃣ Lặp qua từng template để build SlotAvailability tương ứng
-        for (SlotTemplate template : templates) {
-            // 6.1) Lấy stationId từ template -> config -> station (giả định quan hệ không null)
-            Long stationId = Optional.ofNullable(template.getConfig())
-                    .map(SlotConfig::getStation)
-                    .map(ChargingStation::getStationId)
-                    .orElseThrow(() -> new ErrorException(
-                            "Template " + template.getTemplateId() + " không có liên kết Station qua Config"));
-
-            // 6.2) Chuẩn hóa ngày: lấy ngày từ startTime của template và set giờ về 00:00:00
-            LocalDateTime date = template.getStartTime()
-                    .withHour(0).withMinute(0).withSecond(0).withNano(0);
-
-            // 6.3) Với mỗi connector type được chọn
-            for (ConnectorType ct : connectorTypes) {
-                // 6.3.1) Lấy tất cả ChargingPoint tại station này có connectorType = ct
-                List<ChargingPoint> points =
-                        chargingPointService.findByStation_StationIdAndConnectorType_ConnectorTypeId(
-                                stationId, ct.getConnectorTypeId()
-                        );
-
-                // 6.3.2) Với mỗi point, kiểm tra SlotAvailability đã tồn tại hay chưa
-                for (ChargingPoint point : points) {
-                    boolean exists = slotAvailabilityRepository
-                            .existsByTemplate_TemplateIdAndChargingPoint_PointIdAndDate(
-                                    template.getTemplateId(), point.getPointId(), date);
-
-                    // 6.3.3) Nếu chưa tồn tại -> tạo mới SlotAvailability AVAILABLE cho (template, point, date)
-                    if (!exists) {
-                        SlotAvailability sa = SlotAvailability.builder()
-                                .template(template)
-                                .chargingPoint(point)             // ✅ gán đúng ChargingPoint
-                                .status(SlotStatus.AVAILABLE)     // mặc định là AVAILABLE để book
-                                .date(date)
-                                .build();
-                        toSave.add(sa); // thêm vào list chờ save batch
-                    }
-                }
-            }
-        }
-
-        // 7️⃣ Lưu hàng loạt SlotAvailability và map sang DTO trước khi trả về
-        return slotAvailabilityRepository.saveAll(toSave)
-                .stream()
-                .map(mapper::toResponse)
-                .collect(Collectors.toList());
+        Set<Long> connectorTypeIds = connectorTypes.stream()
+                .map(ConnectorType::getConnectorTypeId)
+                .collect(Collectors.toSet());
+
+        // 5️⃣ Gom template theo (configId, ngày), giữ thứ tự khung giờ
+        //    (key bằng id: entity @Data có hashCode đi qua cả collection lazy)
+        Map<Long, SlotConfig> configs = new HashMap<>();
+        Map<Long, Map<LocalDateTime, List<SlotTemplate>>> groups = new LinkedHashMap<>();
+        templates.stream()
+                .sorted(Comparator.comparing(SlotTemplate::getStartTime))
+                .forEach(template -> {
+                    SlotConfig config = Optional.ofNullable(template.getConfig())
+                            .filter(c -> c.getStation() != null)
+                            .orElseThrow(() -> new ErrorException(
+                                    "Template " + template.getTemplateId() + " không có liên kết Station qua Config"));
+                    // Chuẩn hóa ngày: lấy ngày từ startTime của template và set giờ về 00:00:00
+                    LocalDateTime date = template.getStartTime().toLocalDate().atStartOfDay();
+                    configs.putIfAbsent(config.getConfigId(), config);
+                    groups.computeIfAbsent(config.getConfigId(), c -> new LinkedHashMap<>())
+                            .computeIfAbsent(date, d -> new ArrayList<>())
+                            .add(template);
+                });
+
+        // 6️⃣ Với mỗi (config, ngày): lấy point hợp lệ của station rồi batch insert phần còn thiếu
+        Map<Long, List<Long>> pointsByStation = new HashMap<>();
+        List<SlotAvailabilityResponse> created = new ArrayList<>();
+        groups.forEach((configId, byDate) -> {
+            Long stationId = configs.get(configId).getStation().getStationId();
+            List<Long> pointIds = pointsByStation.computeIfAbsent(stationId, id ->
+                    chargingPointService.findByStation_StationId(id).stream()
+                            .filter(p -> p.getConnectorType() != null
+                                    && connectorTypeIds.contains(p.getConnectorType().getConnectorTypeId()))
+                            .map(ChargingPoint::getPointId)
+                            .toList());
+
+            byDate.forEach((date, dayTemplates) -> bulkWriter
+                    .insertMissing(configId, date,
+                            dayTemplates.stream().map(SlotTemplate::getTemplateId).toList(), pointIds)
+                    .forEach(v -> created.add(mapper.toResponse(v))));
+        });
+        return created;
     }
 
     /**
@@ -125,6 +118,9 @@ public class SlotAvailabilityServiceImpl implements SlotAvailabilityService {
     @Override
     @Transactional
     public List<SlotAvailabilityResponse> createForConfigInDate(Long configId, LocalDate date) {
+        // 0️⃣ Chế độ virtual slot: không sinh sẵn dòng nào, slot được tính khi đọc
+        if (virtualSlotService.isEnabled()) return Collections.emptyList();
+
         // 1️⃣ Lấy SlotConfig theo configId
         SlotConfig config = slotConfigRepository.findByConfigId(configId);
         if (config == null) throw new ErrorException("Không tìm thấy SlotConfig id=" + configId);
@@ -164,13 +160,18 @@ public class SlotAvailabilityServiceImpl implements SlotAvailabilityService {
     @Override
     @Transactional
     public SlotAvailabilityResponse updateStatus(Long slotAvailabilityId, SlotStatus status) {
-        // 1️⃣ Tìm SlotAvailability theo id
-        SlotAvailability sa = slotAvailabilityRepository.findById(slotAvailabilityId)
+        // 1️⃣ Tìm SlotAvailability theo id (slot ảo → tạo dòng thật trước, chỉ khi bật virtual slot)
+        Long slotId = virtualSlotService.isEnabled()
+                ? virtualSlotService.materialize(List.of(slotAvailabilityId)).get(0)
+                : slotAvailabilityId;
+        SlotAvailability sa = slotAvailabilityRepository.findById(slotId)
                 .orElseThrow(() -> new ErrorException("Không tìm thấy SlotAvailability id=" + slotAvailabilityId));
         // 2️⃣ Cập nhật trạng thái
         sa.setStatus(status);
-        // 3️⃣ Lưu và map sang DTO
-        return mapper.toResponse(slotAvailabilityRepository.save(sa));
+        // 3️⃣ Lưu, cập nhật index và map sang DTO
+        SlotAvailability saved = slotAvailabilityRepository.save(sa);
+        occupancyIndex.record(saved);
+        return mapper.toResponse(saved);
     }
 
     /**
@@ -178,8 +179,28 @@ public class SlotAvailabilityServiceImpl implements SlotAvailabilityService {
      */
     @Override
     public List<SlotAvailabilityResponse> findByPointId(Long pointId) {
-        // 1️⃣ Lấy tất cả slotAvailability của 1 charging point
-        List<SlotAvailability> slots = slotAvailabilityRepository.findAllByChargingPoint_PointId(pointId);
+        // Chế độ virtual slot: template × point + các dòng đã lưu
+        if (virtualSlotService.isEnabled()) {
+            List<SlotAvailabilityResponse> slots = virtualSlotService.findByPointId(pointId);
+            if (slots.isEmpty()) {
+                throw new ErrorException("Không tìm thấy SlotAvailability cho PointId = " + pointId);
+            }
+            return slots;
+        }
+
+        // 0️⃣ Ưu tiên đọc từ index trong bộ nhớ (không chạm DB); chỉ fallback DB khi index chưa build xong
+        //    Cả 2 đường đều chỉ trả slot từ hôm nay (TENANT_ZONE) trở đi, như index
+        if (occupancyIndex.isReady()) {
+            List<SlotAvailabilityResponse> cached = occupancyIndex.findByPointId(pointId);
+            if (cached.isEmpty()) {
+                throw new ErrorException("Không tìm thấy SlotAvailability cho PointId = " + pointId);
+            }
+            return cached;
+        }
+
+        // 1️⃣ Lấy slotAvailability của 1 charging point từ hôm nay trở đi
+        List<SlotAvailability> slots = slotAvailabilityRepository.findUpcomingByPointId(
+                pointId, LocalDate.now(TENANT_ZONE).atStartOfDay());
 
         // 2️⃣ Nếu không có -> ném lỗi nghiệp vụ
         if (slots.isEmpty()) {
@@ -193,11 +214,17 @@ public class SlotAvailabilityServiceImpl implements SlotAvailabilityService {
     }
 
     /**
-     * Lấy tất cả SlotAvailability (dùng cho admin xem tổng quan).
+     * Lấy tất cả SlotAvailability từ hôm nay trở đi (dùng cho admin xem tổng quan).
      */
     @Override
     public List<SlotAvailabilityResponse> findAll() {
-        return slotAvailabilityRepository.findAll()
+        if (virtualSlotService.isEnabled()) {
+            return virtualSlotService.findAll();
+        }
+        if (occupancyIndex.isReady()) {
+            return occupancyIndex.findAll();
+        }
+        return slotAvailabilityRepository.findUpcoming(LocalDate.now(TENANT_ZONE).atStartOfDay())
                 .stream()
                 .map(mapper::toResponse)
                 .collect(Collectors.toList());
@@ -217,6 +244,7 @@ public class SlotAvailabilityServiceImpl implements SlotAvailabilityService {
     @Override
     public void save(SlotAvailability slot) {
         slotAvailabilityRepository.save(slot);
+        occupancyIndex.record(slot); // áp vào index sau khi transaction của caller commit
     }
 
     /**
@@ -226,7 +254,9 @@ public class SlotAvailabilityServiceImpl implements SlotAvailabilityService {
     @Override
     @Transactional
     public int deleteByTemplate_Config_ConfigIdAndDateBetween(Long configId, LocalDateTime start, LocalDateTime end) {
-        return slotAvailabilityRepository.deleteByConfigIdAndDateRange(configId, start, end);
+        int deleted = slotAvailabilityRepository.deleteByConfigIdAndDateRange(configId, start, end);
+        occupancyIndex.evict(configId, start, end);
+        return deleted;
     }
 
     /**
@@ -234,7 +264,9 @@ public class SlotAvailabilityServiceImpl implements SlotAvailabilityService {
      */
     @Override
     public Collection<SlotAvailability> saveAll(ArrayList<SlotAvailability> toSave) {
-        return slotAvailabilityRepository.saveAll(toSave);
+        List<SlotAvailability> saved = slotAvailabilityRepository.saveAll(toSave);
+        occupancyIndex.record(saved);
+        return saved;
     }
 
     /**
@@ -242,8 +274,15 @@ public class SlotAvailabilityServiceImpl implements SlotAvailabilityService {
      * Dùng cho các logic lọc slot theo config và ngày.
      */
     @Override
-    public List<SlotAvailability> findByConfigAndDateBetween(Long configId, LocalDateTime start, LocalDateTime end) {
-        return slotAvailabilityRepository.findByTemplate_Config_ConfigIdAndDateBetween(configId, start, end);
+    public List<SlotAvailabilityResponse> findByConfigAndDateBetween(Long configId, LocalDateTime start, LocalDateTime end) {
+        // Ưu tiên index trong bộ nhớ (chỉ giữ từ hôm nay trở đi); khoảng có ngày đã qua hoặc index chưa sẵn sàng → DB
+        if (occupancyIndex.isReady() && !start.toLocalDate().isBefore(LocalDate.now(TENANT_ZONE))) {
+            return occupancyIndex.findByConfig(configId, start, end);
+        }
+        return slotAvailabilityRepository.findByConfigIdAndDateRange(configId, start, end)
+                .stream()
+                .map(mapper::toResponse)
+                .toList();
     }
 
     @Override
@@ -0,0 +1,79 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.swp391.gr3.ev_management.entity.SlotAvailability;
+import com.swp391.gr3.ev_management.enums.SlotStatus;
+import com.swp391.gr3.ev_management.exception.ConflictException;
+import com.swp391.gr3.ev_management.repository.SlotAvailabilityRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Giữ chỗ (claim) slot theo kiểu set-based cho luồng tạo booking.
+ *
+ * - 1 câu UPDATE có điều kiện "status = AVAILABLE" cho cả nhóm slot → DB tự tuần tự hóa các request tranh chấp,
+ *   không còn khoảng hở giữa bước kiểm tra trong Java và bước ghi như trước.
+ * - BookingSlot được ghi bằng JDBC batch: entity dùng IDENTITY nên Hibernate không batch insert được.
+ * - Luôn chạy trong transaction của caller (MANDATORY) để khi mất slot thì toàn bộ booking rollback.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SlotClaimService {
+
+    private static final String INSERT_BOOKING_SLOT_SQL =
+            "INSERT INTO booking_slots (bookingid, slotid, created_at) VALUES (?, ?, ?)";
+
+    private final SlotAvailabilityRepository slotAvailabilityRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final SlotOccupancyIndex occupancyIndex;
+
+    /**
+     * Load các slot cần giữ chỗ (kèm template/config/station/point/connector) trong 1 query.
+     * Entity trả về là read-only, chỉ dùng để đọc và build response.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public List<SlotAvailability> loadForClaim(Collection<Long> slotIds) {
+        return slotAvailabilityRepository.findAllForClaim(slotIds);
+    }
+
+    /**
+     * Chuyển toàn bộ slot AVAILABLE → BOOKED bằng 1 câu UPDATE.
+     * Nếu số dòng cập nhật ít hơn số slot yêu cầu → đã có request khác giữ mất ít nhất 1 slot → 409 và rollback.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void claim(List<SlotAvailability> slots) {
+        List<Long> slotIds = slots.stream().map(SlotAvailability::getSlotId).distinct().toList();
+
+        int claimed = slotAvailabilityRepository.transitionStatus(slotIds, SlotStatus.AVAILABLE, SlotStatus.BOOKED);
+        if (claimed != slotIds.size()) {
+            log.info("[SlotClaim] Conflict: requested={} claimed={} slotIds={}", slotIds.size(), claimed, slotIds);
+            throw new ConflictException("One or more slots were just booked by another request");
+        }
+
+        // Đồng bộ trạng thái trong bộ nhớ (entity read-only nên không sinh thêm UPDATE)
+        slots.forEach(slot -> slot.setStatus(SlotStatus.BOOKED));
+        occupancyIndex.record(slots);
+    }
+
+    /**
+     * Ghi các bản ghi BookingSlot (Booking ↔ SlotAvailability) bằng 1 JDBC batch.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void insertBookingSlots(Long bookingId, List<Long> slotIds, LocalDateTime createdAt) {
+        Timestamp ts = Timestamp.valueOf(createdAt);
+        jdbcTemplate.batchUpdate(INSERT_BOOKING_SLOT_SQL, slotIds, slotIds.size(), (ps, slotId) -> {
+            ps.setLong(1, bookingId);
+            ps.setLong(2, slotId);
+            ps.setTimestamp(3, ts);
+        });
+    }
+}
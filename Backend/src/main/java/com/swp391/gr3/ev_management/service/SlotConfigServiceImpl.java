@@ -9,6 +9,7 @@ import com.swp391.gr3.ev_management.exception.ErrorException;
 import com.swp391.gr3.ev_management.mapper.SlotConfigMapper;
 import com.swp391.gr3.ev_management.repository.SlotConfigRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Isolation;
 import org.springframework.transaction.annotation.Transactional;
@@ -25,10 +26,12 @@ public class SlotConfigServiceImpl implements SlotConfigService {
     private final ChargingStationService chargingStationService; // Lấy thông tin trạm sạc
     private final SlotConfigMapper mapper;                       // Mapper entity <-> DTO
 
-    // Service sinh SlotTemplate cho từng ngày
-    private final SlotTemplateService slotTemplateService;
-    // Service tạo SlotAvailability dựa trên template
-    private final SlotAvailabilityService slotAvailabilityService;
+    // Service bù SlotTemplate + SlotAvailability cho cửa sổ N ngày
+    private final SlotHorizonService slotHorizonService;
+
+    // Số ngày (tính cả hôm nay) luôn có sẵn slot, giống SlotAvailabilityDailyJob
+    @Value("${app.slot-horizon.days:7}")
+    private int horizonDays;
 
     @Override
     public SlotConfigResponse findByConfigId(Long slotConfigId) {
@@ -57,7 +60,7 @@ public class SlotConfigServiceImpl implements SlotConfigService {
      * Tạo 1 SlotConfig mới cho 1 trạm.
      * - Mỗi trạm chỉ có 1 ACTIVE config tại một thời điểm.
      * - Trước khi tạo mới → deactivate toàn bộ config đang ACTIVE.
-     * - Sau đó generate SlotTemplates + SlotAvailability cho hôm nay.
+     * - Sau đó generate SlotTemplates + SlotAvailability cho cả cửa sổ horizon (N ngày từ hôm nay).
      */
     @Override
     @Transactional(isolation = Isolation.SERIALIZABLE) // đảm bảo an toàn khi nhiều người thao tác cùng lúc
@@ -85,7 +88,7 @@ public class SlotConfigServiceImpl implements SlotConfigService {
         SlotConfig entity = mapper.toEntity(req, station);
         SlotConfig saved = slotConfigRepository.save(entity);
 
-        // 5) Sinh SlotTemplate & SlotAvailability cho ngày hiện tại
+        // 5) Sinh SlotTemplate & SlotAvailability cho N ngày kể từ hôm nay
         generateDailyTemplates(saved.getConfigId(), now);
 
         return mapper.toResponse(saved);
@@ -120,18 +123,14 @@ public class SlotConfigServiceImpl implements SlotConfigService {
     }
 
     /**
-     * Tạo template hằng ngày & availability tương ứng.
+     * Tạo template & availability cho cửa sổ horizon [ngày của now, + N ngày).
+     * - Dùng chung SlotHorizonService với job hằng ngày → config mới đặt trước được ngay như config cũ,
+     *   không phải chờ lượt chạy kế tiếp của job.
      */
     @Override
     @Transactional
     public void generateDailyTemplates(Long configId, LocalDateTime now) {
-        // 1) Generate SlotTemplate cho ngày hôm nay
-        slotTemplateService.generateDailyTemplates(configId, now, now.plusDays(1));
-
-        // 2) Tạo thêm SlotAvailability cho ngày hôm nay dựa trên template
-        if (slotAvailabilityService != null) {
-            slotAvailabilityService.createForConfigInDate(configId, now.toLocalDate());
-        }
+        slotHorizonService.topUp(configId, now.toLocalDate(), horizonDays, false);
     }
 
     /**
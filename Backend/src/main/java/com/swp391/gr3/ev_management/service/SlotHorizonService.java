@@ -0,0 +1,117 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.swp391.gr3.ev_management.entity.ChargingPoint;
+import com.swp391.gr3.ev_management.entity.SlotConfig;
+import com.swp391.gr3.ev_management.entity.SlotTemplate;
+import com.swp391.gr3.ev_management.exception.ErrorException;
+import com.swp391.gr3.ev_management.repository.SlotAvailabilityRepository;
+import com.swp391.gr3.ev_management.repository.SlotConfigRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Bù slot (SlotTemplate + SlotAvailability) cho 1 SlotConfig trên cửa sổ N ngày kể từ hôm nay.
+ *
+ * - Chỉ sinh cho những ngày còn thiếu (2 query đọc cho cả cửa sổ: template và ngày đã có availability).
+ * - Mỗi config chạy trong 1 transaction riêng → config lỗi không kéo theo config khác.
+ * - Được SlotAvailabilityDailyJob gọi song song cho nhiều config.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class SlotHorizonService {
+
+    private final SlotConfigRepository slotConfigRepository; // repository (không qua SlotConfigService → tránh vòng phụ thuộc)
+    private final SlotTemplateService slotTemplateService;
+    private final SlotAvailabilityRepository slotAvailabilityRepository;
+    private final SlotAvailabilityService slotAvailabilityService;
+    private final ChargingPointService chargingPointService;
+    private final SlotAvailabilityBulkWriter bulkWriter;
+    private final VirtualSlotService virtualSlotService;
+
+    /** Kết quả bù slot của 1 config (để log thời gian / khối lượng) */
+    public record Result(Long configId, int templateDays, int availabilityDays, int rows, long elapsedMs) {
+    }
+
+    /**
+     * Đảm bảo config có template (và availability, nếu không ở chế độ virtual slot) cho các ngày
+     * [from, from + days).
+     *
+     * @param cleanupYesterday true → xóa availability của ngày trước {@code from} (lượt chạy đầu tiên trong ngày)
+     */
+    @Transactional
+    public Result topUp(Long configId, LocalDate from, int days, boolean cleanupYesterday) {
+        long t0 = System.nanoTime();
+        SlotConfig config = slotConfigRepository.findByConfigId(configId);
+        if (config == null) {
+            throw new ErrorException("Không tìm thấy SlotConfig id=" + configId);
+        }
+
+        LocalDateTime windowStart = from.atStartOfDay();
+        LocalDateTime windowEnd = windowStart.plusDays(days).minusNanos(1);
+
+        // 1️⃣ Template hiện có trong cả cửa sổ, gom theo ngày
+        Map<LocalDate, List<SlotTemplate>> templatesByDay = slotTemplateService
+                .findByConfig_ConfigIdAndStartTimeBetween(configId, windowStart, windowEnd)
+                .stream()
+                .collect(Collectors.groupingBy(t -> t.getStartTime().toLocalDate(), TreeMap::new, Collectors.toList()));
+
+        // 2️⃣ Ngày đã có availability
+        Set<LocalDate> generated = virtualSlotService.isEnabled() ? Set.of()
+                : slotAvailabilityRepository.findGeneratedDates(configId, windowStart, windowEnd).stream()
+                        .map(LocalDateTime::toLocalDate)
+                        .collect(Collectors.toSet());
+
+        // 🧹 Dọn availability của hôm qua (như job 1 ngày trước đây), tối đa 1 lần / ngày
+        if (cleanupYesterday && !virtualSlotService.isEnabled()) {
+            int deleted = slotAvailabilityService.deleteByTemplate_Config_ConfigIdAndDateBetween(
+                    configId, windowStart.minusDays(1), windowStart);
+            log.info("🧹 Deleted {} availabilities for config {} on yesterday {}",
+                    deleted, configId, from.minusDays(1));
+        }
+
+        List<Long> pointIds = null; // load lười, chỉ khi thật sự cần sinh availability
+        int templateDays = 0;
+        int availabilityDays = 0;
+        int rows = 0;
+
+        for (int d = 0; d < days; d++) {
+            LocalDate day = from.plusDays(d);
+            LocalDateTime dayStart = day.atStartOfDay();
+
+            // 3️⃣ Ngày chưa có template → sinh template cho ngày đó
+            List<SlotTemplate> templates = templatesByDay.get(day);
+            if (templates == null || templates.isEmpty()) {
+                slotTemplateService.generateDailyTemplates(configId, dayStart, dayStart.plusDays(1));
+                templates = slotTemplateService.findByConfig_ConfigIdAndStartTimeBetween(
+                        configId, dayStart, dayStart.plusDays(1).minusNanos(1));
+                templateDays++;
+            }
+
+            // 4️⃣ Ngày chưa có availability → sinh bằng JDBC batch (virtual mode: bỏ qua)
+            if (virtualSlotService.isEnabled() || generated.contains(day) || templates.isEmpty()) continue;
+
+            if (pointIds == null) {
+                pointIds = chargingPointService.findByStation_StationId(config.getStation().getStationId())
+                        .stream().map(ChargingPoint::getPointId).toList();
+            }
+            if (pointIds.isEmpty()) continue;
+
+            List<Long> templateIds = templates.stream()
+                    .sorted(Comparator.comparing(SlotTemplate::getStartTime))
+                    .map(SlotTemplate::getTemplateId)
+                    .toList();
+            rows += bulkWriter.insertMissing(configId, dayStart, templateIds, pointIds).size();
+            availabilityDays++;
+        }
+
+        return new Result(configId, templateDays, availabilityDays, rows, (System.nanoTime() - t0) / 1_000_000);
+    }
+}
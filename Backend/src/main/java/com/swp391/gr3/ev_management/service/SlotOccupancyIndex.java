@@ -0,0 +1,344 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.swp391.gr3.ev_management.dto.response.SlotAvailabilityResponse;
+import com.swp391.gr3.ev_management.entity.SlotAvailability;
+import com.swp391.gr3.ev_management.enums.SlotStatus;
+import com.swp391.gr3.ev_management.repository.SlotAvailabilityRepository;
+import com.swp391.gr3.ev_management.repository.SlotOccupancyView;
+import com.swp391.gr3.ev_management.util.AfterCommit;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+import static com.swp391.gr3.ev_management.util.TenantTime.TENANT_ZONE;
+
+/**
+ * Chỉ mục trạng thái slot trong bộ nhớ, phục vụ các API đọc availability mà không chạm DB.
+ *
+ * Cấu trúc:
+ *  - Mỗi (charging point, ngày, config) là 1 {@link PointDay}.
+ *  - Trong PointDay, bit thứ i ứng với SlotTemplate có slotIndex = i + 1
+ *    (2 bitset: booked / maintenance; không set bit nào = AVAILABLE).
+ *  - slotId / templateId được giữ trong mảng long[] song song để dựng lại SlotAvailabilityResponse.
+ *
+ * Đồng bộ:
+ *  - Mọi thay đổi trạng thái đi qua SlotAvailabilityServiceImpl → {@link #record} / {@link #evict},
+ *    được áp vào index SAU KHI transaction commit (rollback thì không đụng index).
+ *  - Job {@link #reconcile()} định kỳ dựng lại toàn bộ từ DB để sửa mọi sai lệch
+ *    (ví dụ xóa template cascade, update bằng SQL tay).
+ *
+ * Chỉ giữ các ngày từ hôm nay (TENANT_ZONE) trở đi: ngày đã qua bị bỏ qua khi ghi
+ * và được dọn bởi {@link #evictPastDays()} sau nửa đêm.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class SlotOccupancyIndex {
+
+    private final SlotAvailabilityRepository slotAvailabilityRepository;
+
+    // pointId -> (khóa ngày/config -> PointDay); thay nguyên map khi reconcile (copy-on-rebuild)
+    private volatile ConcurrentMap<Long, ConcurrentMap<DayKey, PointDay>> byPoint = new ConcurrentHashMap<>();
+
+    // Index chỉ được dùng để trả lời sau lần build đầu tiên thành công
+    private volatile boolean ready = false;
+
+    // Các thay đổi phát sinh trong lúc đang rebuild → phát lại lên map mới trước khi swap
+    private final Object mutationLock = new Object();
+    private boolean rebuilding = false;
+    private final List<Consumer<ConcurrentMap<Long, ConcurrentMap<DayKey, PointDay>>>> pending = new ArrayList<>();
+
+    /** Khóa con của 1 point: ngày + config (tránh trùng slotIndex khi station đổi config giữa ngày) */
+    private record DayKey(LocalDate date, long configId) implements Comparable<DayKey> {
+        @Override
+        public int compareTo(DayKey o) {
+            int c = date.compareTo(o.date);
+            return c != 0 ? c : Long.compare(configId, o.configId);
+        }
+    }
+
+    /** Ảnh chụp trạng thái 1 slot tại thời điểm ghi nhận (không giữ tham chiếu entity) */
+    private record SlotChange(Long pointId, Long configId, LocalDate date,
+                              Integer slotIndex, Long slotId, Long templateId, SlotStatus status) {
+    }
+
+    /** Trạng thái slot của 1 charging point trong 1 ngày (1 config) */
+    private static final class PointDay {
+        final long pointId;
+        final LocalDate date;
+        long[] slotIds = new long[0];
+        long[] templateIds = new long[0];
+        final BitSet present = new BitSet();
+        final BitSet booked = new BitSet();
+        final BitSet maintenance = new BitSet();
+
+        PointDay(long pointId, LocalDate date) {
+            this.pointId = pointId;
+            this.date = date;
+        }
+
+        synchronized void set(int bit, long slotId, long templateId, SlotStatus status) {
+            if (bit >= slotIds.length) {
+                int newLen = Math.max(bit + 1, slotIds.length * 2);
+                slotIds = Arrays.copyOf(slotIds, newLen);
+                templateIds = Arrays.copyOf(templateIds, newLen);
+            }
+            slotIds[bit] = slotId;
+            templateIds[bit] = templateId;
+            present.set(bit);
+            booked.set(bit, status == SlotStatus.BOOKED);
+            maintenance.set(bit, status == SlotStatus.MAINTENANCE);
+        }
+
+        synchronized void appendTo(List<SlotAvailabilityResponse> out) {
+            LocalDateTime day = date.atStartOfDay();
+            for (int i = present.nextSetBit(0); i >= 0; i = present.nextSetBit(i + 1)) {
+                SlotStatus status = maintenance.get(i) ? SlotStatus.MAINTENANCE
+                        : booked.get(i) ? SlotStatus.BOOKED
+                        : SlotStatus.AVAILABLE;
+                out.add(SlotAvailabilityResponse.builder()
+                        .slotId(slotIds[i])
+                        .templateId(templateIds[i])
+                        .pointId(pointId)
+                        .status(status)
+                        .date(day)
+                        .build());
+            }
+        }
+    }
+
+    // =========================================================================
+    // BUILD / RECONCILE
+    // =========================================================================
+
+    /** Dựng index ngay khi app khởi động xong */
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+        reconcile();
+    }
+
+    /** Đối soát định kỳ với DB (mặc định 5 phút / lần) */
+    @Scheduled(fixedDelayString = "${app.slot-index.reconcile-ms:300000}",
+            initialDelayString = "${app.slot-index.reconcile-ms:300000}")
+    public void reconcileBySchedule() {
+        reconcile();
+    }
+
+    /**
+     * Đọc toàn bộ SlotAvailability bằng 1 query projection, dựng map mới,
+     * phát lại các thay đổi xảy ra trong lúc đọc rồi thay thế map cũ.
+     */
+    public void reconcile() {
+        synchronized (mutationLock) {
+            if (rebuilding) return; // đã có 1 lượt rebuild đang chạy
+            rebuilding = true;
+            pending.clear();
+        }
+
+        long t0 = System.nanoTime();
+        ConcurrentMap<Long, ConcurrentMap<DayKey, PointDay>> fresh = new ConcurrentHashMap<>();
+        try {
+            List<SlotOccupancyView> rows = slotAvailabilityRepository.findOccupancyViewsFrom(
+                    LocalDate.now(TENANT_ZONE).atStartOfDay());
+            for (SlotOccupancyView r : rows) {
+                if (r.getSlotIndex() == null || r.getDate() == null) continue;
+                put(fresh, toChange(r));
+            }
+
+            int drift;
+            synchronized (mutationLock) {
+                pending.forEach(m -> m.accept(fresh));
+                drift = ready ? countDrift(byPoint, fresh) : 0;
+                byPoint = fresh;
+                ready = true;
+                rebuilding = false;
+                pending.clear();
+            }
+            log.info("[slot-index] rebuilt {} slots in {} ms (drift fixed: {})",
+                    rows.size(), (System.nanoTime() - t0) / 1_000_000, drift);
+        } catch (Exception e) {
+            synchronized (mutationLock) {
+                rebuilding = false;
+                pending.clear();
+            }
+            log.error("[slot-index] rebuild failed: {}", e.getMessage(), e);
+        }
+    }
+
+    // =========================================================================
+    // MUTATION (gọi từ SlotAvailabilityServiceImpl)
+    // =========================================================================
+
+    /**
+     * Ghi nhận trạng thái mới của các slot. Giá trị được chụp lại ngay (entity có thể đổi tiếp),
+     * còn việc áp vào index được hoãn tới afterCommit nếu đang trong transaction.
+     */
+    public void record(Collection<SlotAvailability> slots) {
+        if (slots == null || slots.isEmpty()) return;
+        List<SlotChange> snapshot = new ArrayList<>(slots.size());
+        for (SlotAvailability sa : slots) {
+            if (sa == null || sa.getSlotId() == null || sa.getTemplate() == null
+                    || sa.getChargingPoint() == null || sa.getDate() == null) continue;
+            try {
+                var cp = sa.getChargingPoint();
+                var tpl = sa.getTemplate();
+                snapshot.add(new SlotChange(
+                        cp.getPointId(),
+                        tpl.getConfig() != null ? tpl.getConfig().getConfigId() : null,
+                        sa.getDate().toLocalDate(),
+                        tpl.getSlotIndex(),
+                        sa.getSlotId(),
+                        tpl.getTemplateId(),
+                        sa.getStatus()));
+            } catch (RuntimeException e) {
+                // Entity detached / lazy chưa load → bỏ qua, lượt reconcile kế tiếp sẽ sửa lại
+                log.debug("[slot-index] skip slotId={}: {}", sa.getSlotId(), e.getMessage());
+            }
+        }
+        if (snapshot.isEmpty()) return;
+
+        afterCommit(map -> snapshot.forEach(c -> put(map, c)));
+    }
+
+    public void record(SlotAvailability slot) {
+        record(List.of(slot));
+    }
+
+    /** Ghi nhận các slot từ projection (luồng sinh slot bằng JDBC batch không có entity trong tay) */
+    public void recordViews(Collection<SlotOccupancyView> views) {
+        if (views == null || views.isEmpty()) return;
+        List<SlotChange> snapshot = new ArrayList<>(views.size());
+        for (SlotOccupancyView r : views) {
+            if (r.getSlotIndex() == null || r.getDate() == null) continue;
+            snapshot.add(toChange(r));
+        }
+        if (snapshot.isEmpty()) return;
+
+        afterCommit(map -> snapshot.forEach(c -> put(map, c)));
+    }
+
+    /** Bỏ khỏi index các slot của 1 config có ngày trong [start, end) (khớp câu DELETE nửa mở) */
+    public void evict(Long configId, LocalDateTime start, LocalDateTime end) {
+        afterCommit(map -> map.values().forEach(days ->
+                days.keySet().removeIf(k -> k.configId() == configId && inRange(k.date(), start, end))));
+    }
+
+    /** Dọn các ngày đã qua khỏi index (chạy ngay sau nửa đêm theo giờ địa phương) */
+    @Scheduled(cron = "${app.slot-index.evict-cron:0 1 0 * * *}", zone = "Asia/Ho_Chi_Minh")
+    public void evictPastDays() {
+        LocalDate today = LocalDate.now(TENANT_ZONE);
+        apply(map -> {
+            map.values().forEach(days -> days.keySet().removeIf(k -> k.date().isBefore(today)));
+            map.values().removeIf(Map::isEmpty);
+        });
+    }
+
+    private void afterCommit(Consumer<ConcurrentMap<Long, ConcurrentMap<DayKey, PointDay>>> mutation) {
+        AfterCommit.run(() -> apply(mutation));
+    }
+
+    private void apply(Consumer<ConcurrentMap<Long, ConcurrentMap<DayKey, PointDay>>> mutation) {
+        synchronized (mutationLock) {
+            if (rebuilding) pending.add(mutation);
+            mutation.accept(byPoint);
+        }
+    }
+
+    private static SlotChange toChange(SlotOccupancyView r) {
+        return new SlotChange(r.getPointId(), r.getConfigId(),
+                r.getDate().toLocalDate(), r.getSlotIndex(), r.getSlotId(), r.getTemplateId(), r.getStatus());
+    }
+
+    private static void put(ConcurrentMap<Long, ConcurrentMap<DayKey, PointDay>> map, SlotChange c) {
+        if (c.pointId() == null || c.slotIndex() == null || c.slotIndex() < 1) return;
+        if (c.date().isBefore(LocalDate.now(TENANT_ZONE))) return; // ngày đã qua: không giữ trong index
+        long config = c.configId() != null ? c.configId() : 0L;
+        PointDay day = map.computeIfAbsent(c.pointId(), k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(new DayKey(c.date(), config), k -> new PointDay(c.pointId(), c.date()));
+        day.set(c.slotIndex() - 1, c.slotId(), c.templateId() != null ? c.templateId() : 0L, c.status());
+    }
+
+    // =========================================================================
+    // QUERY
+    // =========================================================================
+
+    /** true khi index đã build xong ít nhất 1 lần và có thể thay DB để trả lời */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /** Tất cả slot của 1 charging point, sắp theo ngày rồi theo slotIndex */
+    public List<SlotAvailabilityResponse> findByPointId(Long pointId) {
+        var days = byPoint.get(pointId);
+        if (days == null) return Collections.emptyList();
+        List<SlotAvailabilityResponse> out = new ArrayList<>();
+        new TreeMap<>(days).values().forEach(d -> d.appendTo(out));
+        return out;
+    }
+
+    /** Tất cả slot trong index */
+    public List<SlotAvailabilityResponse> findAll() {
+        List<SlotAvailabilityResponse> out = new ArrayList<>();
+        new TreeMap<>(byPoint).values().forEach(days -> new TreeMap<>(days).values().forEach(d -> d.appendTo(out)));
+        return out;
+    }
+
+    /** Các slot của 1 config có ngày trong [start, end), sắp theo ngày, point rồi slotIndex */
+    public List<SlotAvailabilityResponse> findByConfig(Long configId, LocalDateTime start, LocalDateTime end) {
+        TreeMap<DayKey, List<PointDay>> matched = new TreeMap<>();
+        new TreeMap<>(byPoint).values().forEach(days -> days.forEach((k, d) -> {
+            if (k.configId() == configId && inRange(k.date(), start, end)) {
+                matched.computeIfAbsent(k, x -> new ArrayList<>()).add(d);
+            }
+        }));
+        List<SlotAvailabilityResponse> out = new ArrayList<>();
+        matched.values().forEach(list -> list.forEach(d -> d.appendTo(out)));
+        return out;
+    }
+
+    /** Slot lưu ngày ở 00:00 → thuộc [start, end) khi start <= 00:00 của ngày đó < end */
+    private static boolean inRange(LocalDate date, LocalDateTime start, LocalDateTime end) {
+        LocalDateTime day = date.atStartOfDay();
+        return !day.isBefore(start) && day.isBefore(end);
+    }
+
+    /** Đếm số PointDay khác nhau giữa map cũ và mới (chỉ để log mức độ lệch) */
+    private static int countDrift(Map<Long, ConcurrentMap<DayKey, PointDay>> oldMap,
+                                  Map<Long, ConcurrentMap<DayKey, PointDay>> newMap) {
+        int drift = 0;
+        Set<Long> points = new HashSet<>(oldMap.keySet());
+        points.addAll(newMap.keySet());
+        for (Long p : points) {
+            var a = oldMap.getOrDefault(p, new ConcurrentHashMap<>());
+            var b = newMap.getOrDefault(p, new ConcurrentHashMap<>());
+            Set<DayKey> keys = new HashSet<>(a.keySet());
+            keys.addAll(b.keySet());
+            for (DayKey k : keys) {
+                PointDay x = a.get(k);
+                PointDay y = b.get(k);
+                if (x == null || y == null || !sameBits(x, y)) drift++;
+            }
+        }
+        return drift;
+    }
+
+    private static boolean sameBits(PointDay x, PointDay y) {
+        synchronized (x) {
+            synchronized (y) {
+                return x.present.equals(y.present)
+                        && x.booked.equals(y.booked)
+                        && x.maintenance.equals(y.maintenance);
+            }
+        }
+    }
+}
@@ -13,19 +13,21 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.*;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static com.swp391.gr3.ev_management.util.TenantTime.TENANT_ZONE;
 
 @Service
 @Transactional(readOnly = true) // Mặc định tất cả method chỉ đọc (không ghi DB) → tối ưu và an toàn hơn
 @RequiredArgsConstructor // Lombok tạo constructor với tất cả field final để DI
 public class StatisticsServiceImpl implements StatisticsService {
 
-    // Tham số mặc định để ước lượng thời lượng 1 phiên sạc (phút) khi tính utilization
-    private static final int DEFAULT_AVG_SESSION_MINUTES = 45;
-
     // ====== Các service/phụ thuộc được inject ======
-    private final InvoiceService invoiceService;                     // Làm việc với Invoice (doanh thu)
-    private final ChargingSessionService chargingSessionService;     // Thống kê phiên sạc (energy, số session)
-    private final ChargingStationService chargingStationService;     // Lấy danh sách các trạm sạc
+    private final StatsHourlyRollupRepository rollupRepository;       // Bucket thống kê theo giờ (doanh thu, energy, số phiên)
+    private final ChargingStationRepository chargingStationRepository; // Danh sách các trạm sạc
+    private final ChargingPointRepository chargingPointRepository;     // Số point / trạm (utilization)
+    private final PointHourlyOccupancyRepository occupancyRepository;  // Số giây chiếm trụ theo giờ (UtilizationService)
     private final UserService userService;                           // Đếm tổng số user
     private final DriverService driverService;                       // Thống kê Driver
     private final StaffService staffService;                         // Thống kê Staff
@@ -36,15 +38,21 @@ public class StatisticsServiceImpl implements StatisticsService {
      * - Tổng doanh thu / năng lượng / số session / trung bình mỗi session
      * - Doanh thu theo ngày / tuần / tháng / năm hiện tại
      * - KPI chi tiết theo từng trạm (doanh thu, số session, utilization, growth%)
+     *
+     * Đọc từ bảng rollup theo giờ (StatsRollupService cộng dồn khi hóa đơn PAID / phiên COMPLETED) thay vì SUM cả
+     * bảng Invoice / ChargingSession → doanh thu là doanh thu đã thanh toán theo giờ thanh toán, số phiên / energy
+     * theo giờ kết thúc phiên.
+     * Utilization = giờ trụ bị chiếm thật (hợp khoảng phiên, UtilizationService) / giờ khả dụng từ đầu năm tới nay.
+     * Số query cố định (5) bất kể số trạm: tổng có điều kiện, doanh thu + số phiên GROUP BY trạm,
+     * giây chiếm trụ GROUP BY trạm, số point GROUP BY trạm, danh sách trạm → ghép trong bộ nhớ.
      */
     @Override
     public DashboardStatsResponse getDashboard() {
         // ------ 1) Xây dựng các mốc thời gian (day/week/month/year hiện tại) ------
 
-        // Lấy ZoneId hệ thống (thường cấu hình là Asia/Ho_Chi_Minh)
-        ZoneId zone = ZoneId.systemDefault();
-        // "today" theo zone hiện tại
-        LocalDate today = LocalDate.now(zone);
+        // "today" / "now" theo giờ tenant (Asia/Ho_Chi_Minh) như bucket rollup và paidAt, không theo zone của JVM
+        LocalDateTime now = LocalDateTime.now(TENANT_ZONE);
+        LocalDate today = now.toLocalDate();
 
         // Khoảng ngày hôm nay: [00:00, 23:59:59.999999999]
         LocalDateTime dayFrom   = today.atStartOfDay();
@@ -72,46 +80,61 @@ public class StatisticsServiceImpl implements StatisticsService {
         // prevMonthTo: ngay trước thời điểm monthFrom (tức là cuối tháng trước)
         LocalDateTime prevMonthTo   = monthFrom.minusNanos(1);
 
-        // ------ 3) Các tổng số liệu toàn hệ thống ------
+        // ------ 3) Các tổng số liệu toàn hệ thống (1 query) ------
 
-        // Tổng doanh thu từ tất cả Invoice (toàn thời gian)
-        double totalRevenue  = invoiceService.sumAll();
-        // Tổng năng lượng sạc (kWh) của tất cả session
-        double totalEnergy   = chargingSessionService.sumEnergyAll();
-        // Tổng số phiên sạc
-        long totalSessions   = chargingSessionService.countAll();
+        // Tổng doanh thu / năng lượng (kWh) / số phiên toàn thời gian + doanh thu theo ngày / tuần / tháng / năm
+        RevenueTotalsView revenue = rollupRepository.sumTotals(
+                dayFrom, dayTo, weekFrom, weekTo, monthFrom, monthTo, yearFrom, yearTo);
+        double totalRevenue  = nz(revenue.getTotalRevenue());
+        long totalSessions   = revenue.getSessionCount() == null ? 0 : revenue.getSessionCount();
+        double totalEnergy   = nz(revenue.getTotalEnergy());
         // Doanh thu trung bình trên mỗi session (nếu chưa có session nào thì = 0)
         double avgPerSession = totalSessions == 0 ? 0.0 : (totalRevenue / totalSessions);
 
-        // ------ 4) Doanh thu theo từng khoảng thời gian ------
+        // ------ 4) Số liệu theo trạm: mỗi loại 1 query GROUP BY trạm ------
+
+        // Doanh thu các khoảng + số phiên trong năm (để ước lượng utilization); chỉ quét bucket trong hợp các khoảng
+        // (tuần hiện tại có thể vắt qua đầu / cuối năm)
+        LocalDateTime scanFrom = min(min(yearFrom, prevMonthFrom), weekFrom);
+        LocalDateTime scanTo   = yearTo.isAfter(weekTo) ? yearTo : weekTo;
+        Map<Long, StationRevenueView> revenueByStation = rollupRepository.sumGroupByStation(
+                        dayFrom, dayTo, weekFrom, weekTo, monthFrom, monthTo, yearFrom, yearTo,
+                        prevMonthFrom, prevMonthTo, scanFrom, scanTo).stream()
+                .collect(Collectors.toMap(StationRevenueView::getStationId, v -> v));
+
+        // Số giây trụ bị chiếm từ đầu năm theo trạm + số giây khả dụng của 1 trụ từ đầu năm tới nay
+        Map<Long, Long> occupiedYearByStation = occupancyRepository.sumGroupByStation(yearFrom, yearTo).stream()
+                .collect(Collectors.toMap(StationOccupancyView::getStationId, StationOccupancyView::getOccupiedSeconds));
+        long yearCapacitySeconds = Duration.between(yearFrom, now).getSeconds();
+
+        // Số charging point theo trạm
+        Map<Long, Long> pointsByStation = chargingPointRepository.countGroupByStation().stream()
+                .collect(Collectors.toMap(StationPointCountView::getStationId, StationPointCountView::getPointCount));
 
-        double dayRevenue    = invoiceService.sumAmountBetween(dayFrom, dayTo);
-        double weekRevenue   = invoiceService.sumAmountBetween(weekFrom, weekTo);
-        double monthRevenue  = invoiceService.sumAmountBetween(monthFrom, monthTo);
-        double yearRevenue   = invoiceService.sumAmountBetween(yearFrom, yearTo);
+        // ------ 5) Thống kê chi tiết theo từng trạm (Station KPI rows) — ghép trong bộ nhớ, không query thêm ------
 
-        // ------ 5) Thống kê chi tiết theo từng trạm (Station KPI rows) ------
+        List<StationKpiRowDto> rows = chargingStationRepository.findAll().stream().map(st -> {
+            StationRevenueView r = revenueByStation.get(st.getStationId());
 
-        // Lấy tất cả trạm, sau đó map từng trạm thành StationKpiRowDto
-        List<StationKpiRowDto> rows = chargingStationService.findAll().stream().map(st -> {
-            // 5.1) Doanh thu trạm theo ngày/tuần/tháng/năm
-            double rDay   = invoiceService.sumByStationBetween(st.getStationId(), dayFrom, dayTo);
-            double rWeek  = invoiceService.sumByStationBetween(st.getStationId(), weekFrom, weekTo);
-            double rMonth = invoiceService.sumByStationBetween(st.getStationId(), monthFrom, monthTo);
-            double rYear  = invoiceService.sumByStationBetween(st.getStationId(), yearFrom, yearTo);
+            // 5.1) Doanh thu trạm theo ngày/tuần/tháng/năm (trạm chưa có bucket → 0)
+            double rDay   = r == null ? 0.0 : nz(r.getDayRevenue());
+            double rWeek  = r == null ? 0.0 : nz(r.getWeekRevenue());
+            double rMonth = r == null ? 0.0 : nz(r.getMonthRevenue());
+            double rYear  = r == null ? 0.0 : nz(r.getYearRevenue());
 
             // 5.2) Doanh thu tháng trước cho trạm này (để tính % tăng trưởng MoM)
-            double prevMonthRevenue = invoiceService.sumByStationBetween(
-                    st.getStationId(), prevMonthFrom, prevMonthTo);
+            double prevMonthRevenue = r == null ? 0.0 : nz(r.getPrevMonthRevenue());
 
             // 5.3) Tính % tăng trưởng doanh thu tháng hiện tại so với tháng trước
             double growthPercent = calcGrowthPercent(rMonth, prevMonthRevenue);
 
-            // 5.4) Số phiên sạc trong năm cho trạm (để ước lượng utilization)
-            long sessionsYear = chargingSessionService.countByStationBetween(st.getStationId(), yearFrom, yearTo);
+            // 5.4) Số phiên sạc trong năm cho trạm
+            long sessionsYear = (r == null || r.getYearSessions() == null) ? 0L : r.getYearSessions();
 
-            // 5.5) Ước lượng mức độ sử dụng (utilization) theo % trong năm
-            double utilizationPercent = estimateUtilizationPercent(st, sessionsYear);
+            // 5.5) Mức độ sử dụng (utilization) thật theo % từ đầu năm
+            long points = pointsByStation.getOrDefault(st.getStationId(), 0L);
+            double utilizationPercent = UtilizationService.percent(
+                    occupiedYearByStation.getOrDefault(st.getStationId(), 0L), points, yearCapacitySeconds);
 
             // 5.6) Lấy tên trạm an toàn (tránh NullPointer)
             String stationName = safeStationName(st);
@@ -140,10 +163,10 @@ public class StatisticsServiceImpl implements StatisticsService {
                 totalEnergy,
                 totalSessions,
                 avgPerSession,
-                dayRevenue,
-                weekRevenue,
-                monthRevenue,
-                yearRevenue,
+                nz(revenue.getDayRevenue()),
+                nz(revenue.getWeekRevenue()),
+                nz(revenue.getMonthRevenue()),
+                nz(revenue.getYearRevenue()),
                 rows,
                 baseCurrency() // currency mặc định toàn hệ thống
         );
@@ -198,15 +221,11 @@ public class StatisticsServiceImpl implements StatisticsService {
     }
 
     /**
-     * Lấy tên trạm an toàn, tránh NPE.
-     * Thử gọi getStationName() 2 lần trong try-catch; nếu vẫn lỗi → fallback "Station #id".
+     * Tên trạm; trạm chưa đặt tên → "Station #id".
      */
     private String safeStationName(ChargingStation st) {
-        try { return st.getStationName(); }
-        catch (Exception ignore) { /* fallthrough */ }
-        try { return st.getStationName(); }
-        catch (Exception ignore) { /* fallthrough */ }
-        return "Station #" + st.getStationId();
+        String name = st.getStationName();
+        return (name == null || name.isBlank()) ? "Station #" + st.getStationId() : name;
     }
 
     /**
@@ -243,42 +262,12 @@ public class StatisticsServiceImpl implements StatisticsService {
         return Math.round(val * 10.0) / 10.0;
     }
 
-    /**
-     * Ước tính % utilization của trạm trong 1 năm:
-     *   utilization = (tổng phút sạc ước tính / tổng phút khả dụng của tất cả cổng) * 100
-     *
-     * - minutesCharged ~ sessionsInYear * DEFAULT_AVG_SESSION_MINUTES
-     * - minutesCapacityYear ~ sốConnector * 365 * 24 * 60
-     *
-     * Lưu ý:
-     *  - Đây là cách ước lượng nếu không có duration thực tế. Nếu có dữ liệu durationMinutes thực,
-     *    nên thay bằng sum(durationMinutes) để chính xác hơn.
-     */
-    private double estimateUtilizationPercent(ChargingStation st, long sessionsInYear) {
-        int connectors = 1;
-        try {
-            // Nếu station có danh sách points → lấy size, đảm bảo >= 1
-            connectors = Math.max(1, st.getPoints() == null ? 1 : st.getPoints().size());
-        } catch (Exception e) {
-            // Nếu lần đầu lỗi thì thử lại 1 lần, nếu vẫn lỗi thì fallback = 1
-            try {
-                connectors = Math.max(1, st.getPoints() == null ? 1 : st.getPoints().size());
-            } catch (Exception ignore) {
-                connectors = 1;
-            }
-        }
-
-        // Tổng phút sạc ước tính trong năm (dựa trên số sessions và avg duration)
-        double minutesCharged = sessionsInYear * DEFAULT_AVG_SESSION_MINUTES;
-        // Tổng phút khả dụng trong năm của tất cả connector
-        double minutesCapacityYear = connectors * 365.0 * 24.0 * 60.0;
-
-        // Tính %: (phút sử dụng / phút capacity) * 100
-        double percent = (minutesCharged / Math.max(1.0, minutesCapacityYear)) * 100.0;
-
-        // Clamp kết quả về [0, 100]
-        if (percent < 0) percent = 0;
-        if (percent > 100) percent = 100;
-        return percent;
+    /** SUM có thể trả null trên 1 số DB khi không có dòng nào */
+    private static double nz(Double v) {
+        return v == null ? 0.0 : v;
+    }
+
+    private static LocalDateTime min(LocalDateTime a, LocalDateTime b) {
+        return a.isBefore(b) ? a : b;
     }
 }
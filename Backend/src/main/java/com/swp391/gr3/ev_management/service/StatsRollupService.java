@@ -0,0 +1,309 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.swp391.gr3.ev_management.dto.response.StatsRollupBackfillResponse;
+import com.swp391.gr3.ev_management.dto.response.StatsRollupReconcileResponse;
+import com.swp391.gr3.ev_management.entity.Booking;
+import com.swp391.gr3.ev_management.entity.ChargingSession;
+import com.swp391.gr3.ev_management.entity.Invoice;
+import com.swp391.gr3.ev_management.enums.DashboardView;
+import com.swp391.gr3.ev_management.events.DashboardDataChangedEvent;
+import com.swp391.gr3.ev_management.repository.ChargingSessionRepository;
+import com.swp391.gr3.ev_management.repository.InvoiceRepository;
+import com.swp391.gr3.ev_management.repository.RollupSumView;
+import com.swp391.gr3.ev_management.repository.StatsHourlyRollupRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static com.swp391.gr3.ev_management.util.TenantTime.TENANT_ZONE;
+
+/**
+ * Bảng thống kê theo giờ / trạm / loại connector (StatsHourlyRollup) cho dashboard admin.
+ *
+ * - Cộng dồn ngay trong transaction nghiệp vụ: ChargingSessionTxHandler dừng phiên → điện năng / số phiên / phút sạc
+ *   vào giờ kết thúc; PaymentService, InvoiceServiceImpl chuyển hóa đơn sang PAID → doanh thu vào giờ thanh toán.
+ *   Commit / rollback cùng nghiệp vụ → không đếm 2 lần, không sót.
+ * - Ghi bằng JDBC: UPDATE cộng dồn, chưa có bucket thì INSERT (trùng khóa do luồng khác vừa chèn → UPDATE lại).
+ * - Backfill: dựng lại từng ngày từ bảng gốc (xóa bucket của ngày + chèn lại, 1 transaction / ngày, chạy lại được).
+ *   Tự chạy lúc khởi động nếu bảng còn trống (app.stats-rollup.backfill-on-startup).
+ * - Đối soát định kỳ các ngày gần đây với bảng gốc (app.stats-rollup.reconcile-cron), lệch thì log + metric và
+ *   dựng lại ngày đó (app.stats-rollup.auto-repair).
+ *
+ * Mỗi lần cộng dồn publish DashboardDataChangedEvent → DashboardCache làm mới sớm dashboard sau commit.
+ *
+ * Metrics: stats.rollup.reconcile.mismatch (số ngày lệch).
+ */
+@Service
+@Slf4j
+public class StatsRollupService {
+
+    private static final String UPDATE_SQL =
+            "UPDATE stats_hourly_rollup SET revenue = revenue + ?, energy_kwh = energy_kwh + ?, sessions = sessions + ?, "
+                    + "charging_minutes = charging_minutes + ?, updated_at = ? "
+                    + "WHERE bucket_start = ? AND stationid = ? AND connector_typeid = ?";
+    private static final String INSERT_SQL =
+            "INSERT INTO stats_hourly_rollup (bucket_start, stationid, connector_typeid, revenue, energy_kwh, sessions, "
+                    + "charging_minutes, updated_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private final StatsHourlyRollupRepository rollupRepository;
+    private final ChargingSessionRepository chargingSessionRepository;
+    private final InvoiceRepository invoiceRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate txTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Counter mismatchCounter;
+
+    // Tự backfill toàn bộ lịch sử khi khởi động nếu bảng rollup còn trống
+    @Value("${app.stats-rollup.backfill-on-startup:true}")
+    private boolean backfillOnStartup;
+
+    // Số ngày gần nhất (không tính hôm nay) được đối soát định kỳ
+    @Value("${app.stats-rollup.reconcile-days:7}")
+    private int reconcileDays;
+
+    // Ngày lệch khi đối soát định kỳ → dựng lại từ bảng gốc
+    @Value("${app.stats-rollup.auto-repair:true}")
+    private boolean autoRepair;
+
+    /** Khóa của 1 bucket khi backfill: đầu giờ + trạm + connector */
+    private record Key(LocalDateTime bucketStart, long stationId, long connectorTypeId) {
+    }
+
+    /** Cộng dồn của 1 bucket (hoặc của cả 1 ngày khi đối soát) */
+    private static final class Sums {
+        double revenue;
+        double energyKwh;
+        long sessions;
+        long chargingMinutes;
+
+        void add(RollupSumView v) {
+            revenue += nz(v.getRevenue());
+            energyKwh += nz(v.getEnergyKwh());
+            sessions += nz(v.getSessions());
+            chargingMinutes += nz(v.getChargingMinutes());
+        }
+    }
+
+    public StatsRollupService(StatsHourlyRollupRepository rollupRepository,
+                              ChargingSessionRepository chargingSessionRepository,
+                              InvoiceRepository invoiceRepository,
+                              JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager,
+                              ApplicationEventPublisher eventPublisher,
+                              MeterRegistry meterRegistry) {
+        this.rollupRepository = rollupRepository;
+        this.chargingSessionRepository = chargingSessionRepository;
+        this.invoiceRepository = invoiceRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.txTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.mismatchCounter = Counter.builder("stats.rollup.reconcile.mismatch")
+                .description("Số ngày bảng rollup lệch với bảng gốc khi đối soát")
+                .register(meterRegistry);
+    }
+
+    // =========================================================================
+    // CỘNG DỒN (gọi trong transaction nghiệp vụ)
+    // =========================================================================
+
+    /** Phiên vừa chuyển sang COMPLETED: điện năng + 1 phiên + phút sạc vào giờ kết thúc */
+    public void sessionCompleted(ChargingSession cs) {
+        LocalDateTime at = (cs.getEndTime() != null) ? cs.getEndTime() : LocalDateTime.now(TENANT_ZONE);
+        increment(at, stationIdOf(cs), connectorTypeIdOf(cs), 0, cs.getEnergyKWh(), 1, cs.getDurationMinutes());
+        eventPublisher.publishEvent(DashboardDataChangedEvent.of(
+                DashboardView.ADMIN_DASHBOARD, DashboardView.STAFF_STATS, DashboardView.STAFF_STATIONS));
+    }
+
+    /** Hóa đơn vừa chuyển sang PAID: doanh thu vào giờ thanh toán */
+    public void invoicePaid(Invoice invoice) {
+        LocalDateTime at = (invoice.getPaidAt() != null) ? invoice.getPaidAt() : LocalDateTime.now(TENANT_ZONE);
+        ChargingSession cs = invoice.getSession();
+        increment(at, stationIdOf(cs), connectorTypeIdOf(cs), invoice.getAmount(), 0, 0, 0);
+        eventPublisher.publishEvent(DashboardDataChangedEvent.of(DashboardView.ADMIN_DASHBOARD, DashboardView.STAFF_STATS));
+    }
+
+    private void increment(LocalDateTime at, long stationId, long connectorTypeId,
+                           double revenue, double energyKwh, long sessions, long minutes) {
+        Timestamp bucket = Timestamp.valueOf(at.truncatedTo(ChronoUnit.HOURS));
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now(TENANT_ZONE));
+        if (update(bucket, stationId, connectorTypeId, revenue, energyKwh, sessions, minutes, now) > 0) return;
+        try {
+            jdbcTemplate.update(INSERT_SQL, bucket, stationId, connectorTypeId, revenue, energyKwh, sessions, minutes, now);
+        } catch (DuplicateKeyException e) {
+            // Luồng khác vừa tạo bucket này → cộng vào bucket đó
+            update(bucket, stationId, connectorTypeId, revenue, energyKwh, sessions, minutes, now);
+        }
+    }
+
+    private int update(Timestamp bucket, long stationId, long connectorTypeId,
+                       double revenue, double energyKwh, long sessions, long minutes, Timestamp now) {
+        return jdbcTemplate.update(UPDATE_SQL, revenue, energyKwh, sessions, minutes, now, bucket, stationId, connectorTypeId);
+    }
+
+    private static long stationIdOf(ChargingSession cs) {
+        Booking b = (cs != null) ? cs.getBooking() : null;
+        return (b != null && b.getStation() != null) ? b.getStation().getStationId() : 0L;
+    }
+
+    private static long connectorTypeIdOf(ChargingSession cs) {
+        return (cs != null && cs.getBilling() != null && cs.getBilling().getConnectorTypeId() != null)
+                ? cs.getBilling().getConnectorTypeId() : 0L;
+    }
+
+    // =========================================================================
+    // BACKFILL
+    // =========================================================================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        if (!backfillOnStartup || rollupRepository.count() > 0) return;
+        StatsRollupBackfillResponse r = backfill(null, null);
+        if (r.getDays() > 0) {
+            log.info("[stats-rollup] initial backfill {}..{}: {} buckets in {} ms",
+                    r.getFrom(), r.getTo(), r.getBuckets(), r.getTookMs());
+        }
+    }
+
+    /**
+     * Dựng lại các ngày [from, to] (tính cả 2 đầu) từ bảng gốc, mỗi ngày 1 transaction.
+     * from = null → ngày có dữ liệu sớm nhất; to = null → hôm nay.
+     */
+    public StatsRollupBackfillResponse backfill(LocalDate from, LocalDate to) {
+        long t0 = System.nanoTime();
+        LocalDate end = (to != null) ? to : LocalDate.now(TENANT_ZONE);
+        LocalDate start = (from != null) ? from : earliestDay().orElse(null);
+        if (start == null || start.isAfter(end)) {
+            return StatsRollupBackfillResponse.builder().from(start).to(end).build();
+        }
+
+        int days = 0;
+        long buckets = 0;
+        for (LocalDate d = start; !d.isAfter(end); d = d.plusDays(1)) {
+            LocalDate day = d;
+            buckets += txTemplate.execute(s -> rebuildDay(day));
+            days++;
+        }
+        return StatsRollupBackfillResponse.builder()
+                .from(start).to(end).days(days).buckets(buckets)
+                .tookMs((System.nanoTime() - t0) / 1_000_000)
+                .build();
+    }
+
+    private Optional<LocalDate> earliestDay() {
+        return Stream.of(chargingSessionRepository.findMinCompletedEndTime(), invoiceRepository.findMinPaidTime())
+                .flatMap(Optional::stream)
+                .min(LocalDateTime::compareTo)
+                .map(LocalDateTime::toLocalDate);
+    }
+
+    /** Xóa bucket của ngày rồi chèn lại từ bảng gốc (trong transaction của caller) → số bucket đã ghi */
+    private int rebuildDay(LocalDate day) {
+        LocalDateTime from = day.atStartOfDay();
+        LocalDateTime to = from.plusDays(1);
+        rollupRepository.deleteBetween(from, to);
+
+        Map<Key, Sums> buckets = new LinkedHashMap<>();
+        Stream.concat(chargingSessionRepository.sumCompletedByHour(from, to).stream(),
+                        invoiceRepository.sumPaidByHour(from, to).stream())
+                .forEach(v -> buckets.computeIfAbsent(
+                        new Key(from.plusHours(v.getHour()), v.getStationId(), v.getConnectorTypeId()),
+                        k -> new Sums()).add(v));
+        if (buckets.isEmpty()) return 0;
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now(TENANT_ZONE));
+        List<Object[]> args = new ArrayList<>(buckets.size());
+        buckets.forEach((k, v) -> args.add(new Object[]{Timestamp.valueOf(k.bucketStart()), k.stationId(),
+                k.connectorTypeId(), v.revenue, v.energyKwh, v.sessions, v.chargingMinutes, now}));
+        jdbcTemplate.batchUpdate(INSERT_SQL, args);
+        return args.size();
+    }
+
+    // =========================================================================
+    // ĐỐI SOÁT
+    // =========================================================================
+
+    /** Đối soát định kỳ các ngày gần đây (hôm nay còn đang ghi nên bỏ qua) */
+    @Scheduled(cron = "${app.stats-rollup.reconcile-cron:0 15 3 * * *}", zone = "Asia/Ho_Chi_Minh")
+    public void scheduledReconcile() {
+        LocalDate today = LocalDate.now(TENANT_ZONE);
+        List<StatsRollupReconcileResponse> result = reconcile(today.minusDays(reconcileDays), today.minusDays(1), autoRepair);
+        long bad = result.stream().filter(r -> !r.isMatched()).count();
+        log.info("[stats-rollup] reconciled {} days, {} mismatched{}", result.size(), bad,
+                (bad > 0 && autoRepair) ? " (repaired)" : "");
+    }
+
+    /** So tổng từng ngày [from, to] của bảng rollup với bảng gốc; repair = dựng lại ngày lệch */
+    public List<StatsRollupReconcileResponse> reconcile(LocalDate from, LocalDate to, boolean repair) {
+        if (from == null || to == null || from.isAfter(to)) {
+            throw new IllegalArgumentException("from must be on or before to");
+        }
+        List<StatsRollupReconcileResponse> out = new ArrayList<>();
+        for (LocalDate d = from; !d.isAfter(to); d = d.plusDays(1)) {
+            LocalDateTime dayFrom = d.atStartOfDay();
+            LocalDateTime dayTo = dayFrom.plusDays(1);
+
+            RollupSumView rollup = rollupRepository.sumBetween(dayFrom, dayTo);
+            Sums raw = new Sums();
+            chargingSessionRepository.sumCompletedByHour(dayFrom, dayTo).forEach(raw::add);
+            invoiceRepository.sumPaidByHour(dayFrom, dayTo).forEach(raw::add);
+
+            boolean matched = Math.abs(nz(rollup.getRevenue()) - raw.revenue) < 0.5
+                    && Math.abs(nz(rollup.getEnergyKwh()) - raw.energyKwh) < 0.001
+                    && nz(rollup.getSessions()) == raw.sessions
+                    && nz(rollup.getChargingMinutes()) == raw.chargingMinutes;
+
+            boolean repaired = false;
+            if (!matched) {
+                mismatchCounter.increment();
+                log.warn("[stats-rollup] {} mismatch: revenue {} vs {}, energy {} vs {}, sessions {} vs {}, minutes {} vs {}",
+                        d, rollup.getRevenue(), raw.revenue, rollup.getEnergyKwh(), raw.energyKwh,
+                        rollup.getSessions(), raw.sessions, rollup.getChargingMinutes(), raw.chargingMinutes);
+                if (repair) {
+                    LocalDate day = d;
+                    txTemplate.execute(s -> rebuildDay(day));
+                    repaired = true;
+                }
+            }
+
+            out.add(StatsRollupReconcileResponse.builder()
+                    .day(d)
+                    .rollupRevenue(nz(rollup.getRevenue())).rawRevenue(raw.revenue)
+                    .rollupEnergyKwh(nz(rollup.getEnergyKwh())).rawEnergyKwh(raw.energyKwh)
+                    .rollupSessions(nz(rollup.getSessions())).rawSessions(raw.sessions)
+                    .rollupMinutes(nz(rollup.getChargingMinutes())).rawMinutes(raw.chargingMinutes)
+                    .matched(matched)
+                    .repaired(repaired)
+                    .build());
+        }
+        return out;
+    }
+
+    private static double nz(Double v) {
+        return v == null ? 0.0 : v;
+    }
+
+    private static long nz(Long v) {
+        return v == null ? 0L : v;
+    }
+}
@@ -0,0 +1,265 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.swp391.gr3.ev_management.entity.Tariff;
+import com.swp391.gr3.ev_management.repository.TariffRepository;
+import com.swp391.gr3.ev_management.util.AfterCommit;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Chỉ mục biểu giá trong bộ nhớ theo connector type: "tariff hiệu lực tại thời điểm t" trong O(log n).
+ *
+ * - Mỗi connector type có 1 dòng thời gian đã trải phẳng: các mốc effectiveFrom / effectiveTo sắp xếp tăng dần,
+ *   tại mỗi mốc và giữa 2 mốc liên tiếp đã tính sẵn tariff thắng (effectiveFrom mới nhất trong các tariff bao trùm,
+ *   giống ORDER BY effectiveFrom DESC của các query cũ) → tra = 1 lần binary search.
+ * - Copy-on-write: mỗi lần nạp dựng bản mới rồi thay nguyên khối (volatile), người đọc không bao giờ thấy bản dở dang.
+ * - Nạp lại sau khi TariffServiceImpl.createTariff / updateTariff commit, và định kỳ (app.tariff-index.refresh-ms)
+ *   để bắt thay đổi từ node khác / sửa tay trong DB.
+ *
+ * Metrics: tariff.index.version (số lần đã nạp), tariff.index.size (số tariff đang giữ).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class TariffIndex {
+
+    private final TariffRepository tariffRepository;
+    private final MeterRegistry meterRegistry;
+
+    /** Giá của 1 tariff (bất biến, dùng chung giữa các thread — không đưa entity ra ngoài) */
+    public record ActiveTariff(long tariffId, long connectorTypeId, double pricePerKWh, double pricePerMin,
+                               String currency, LocalDateTime effectiveFrom, LocalDateTime effectiveTo) {
+    }
+
+    /** 1 bản chỉ mục đã dựng xong */
+    private record Snapshot(long version, Map<Long, Timeline> byConnector) {
+    }
+
+    private final AtomicLong versions = new AtomicLong();
+    private volatile Snapshot current;
+
+    // =========================================================================
+    // LIFECYCLE
+    // =========================================================================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        meterRegistry.gauge("tariff.index.version", versions, AtomicLong::get);
+        meterRegistry.gauge("tariff.index.size", this, idx -> idx.snapshot().byConnector().values().stream()
+                .mapToInt(Timeline::size).sum());
+        reload();
+    }
+
+    /** Đối soát định kỳ với DB */
+    @Scheduled(fixedDelayString = "${app.tariff-index.refresh-ms:300000}",
+            initialDelayString = "${app.tariff-index.refresh-ms:300000}")
+    public void refresh() {
+        reload();
+    }
+
+    /** Tariff vừa được tạo / sửa: dựng lại chỉ mục sau khi transaction commit */
+    public void invalidate() {
+        AfterCommit.run(this::reload);
+    }
+
+    /** Đọc toàn bộ tariff và thay chỉ mục (các lần nạp chạy tuần tự → bản sau luôn mới hơn bản trước) */
+    public synchronized void reload() {
+        long t0 = System.nanoTime();
+        Map<Long, List<ActiveTariff>> grouped = tariffRepository.findAllWithConnectorType().stream()
+                .map(TariffIndex::toView)
+                .collect(Collectors.groupingBy(ActiveTariff::connectorTypeId));
+
+        Map<Long, Timeline> byConnector = new HashMap<>();
+        grouped.forEach((connectorTypeId, list) -> byConnector.put(connectorTypeId, Timeline.build(list)));
+
+        Snapshot next = new Snapshot(versions.incrementAndGet(), Map.copyOf(byConnector));
+        current = next;
+        log.info("[tariff-index] v{} loaded {} tariffs for {} connector types in {} ms",
+                next.version(), grouped.values().stream().mapToInt(List::size).sum(), byConnector.size(),
+                (System.nanoTime() - t0) / 1_000_000);
+    }
+
+    private Snapshot snapshot() {
+        Snapshot s = current;
+        if (s == null) {
+            // Gọi trước ApplicationReadyEvent (DataInitializer, test...) → nạp ngay
+            reload();
+            s = current;
+        }
+        return s;
+    }
+
+    // =========================================================================
+    // READ
+    // =========================================================================
+
+    /** Tariff hiệu lực của connector tại thời điểm {@code at} (effectiveFrom ≤ at ≤ effectiveTo, from mới nhất) */
+    public Optional<ActiveTariff> activeAt(Long connectorTypeId, LocalDateTime at) {
+        if (connectorTypeId == null || at == null) return Optional.empty();
+        Timeline tl = snapshot().byConnector().get(connectorTypeId);
+        return (tl == null) ? Optional.empty() : Optional.ofNullable(tl.at(at));
+    }
+
+    /** Giá / phút đang hiệu lực tại {@code at} */
+    public Optional<Double> pricePerMinAt(Long connectorTypeId, LocalDateTime at) {
+        return activeAt(connectorTypeId, at).map(ActiveTariff::pricePerMin);
+    }
+
+    /** Tariff tạo sau cùng (tariffId lớn nhất) của connector, không xét thời gian */
+    public Optional<ActiveTariff> latest(Long connectorTypeId) {
+        if (connectorTypeId == null) return Optional.empty();
+        Timeline tl = snapshot().byConnector().get(connectorTypeId);
+        return (tl == null) ? Optional.empty() : Optional.of(tl.latest());
+    }
+
+    /** Giá tham chiếu để hiển thị: tariff hiệu lực tại {@code at}, không có thì tariff mới nhất */
+    public Optional<ActiveTariff> reference(Long connectorTypeId, LocalDateTime at) {
+        return activeAt(connectorTypeId, at).or(() -> latest(connectorTypeId));
+    }
+
+    /** Nhận từng đoạn giá liên tiếp của {@link #forEachSegment} (giây epoch theo giờ địa phương) */
+    @FunctionalInterface
+    public interface SegmentVisitor {
+        /** tariff = null: đoạn không có tariff nào hiệu lực */
+        void segment(long fromSec, long toSec, ActiveTariff tariff);
+    }
+
+    /**
+     * Duyệt khoảng [fromSec, toSec) theo các đoạn giá liên tiếp của connector (mỗi đoạn 1 tariff thắng).
+     * Giây epoch tính từ LocalDateTime theo giờ địa phương ({@link #epochSec}); không cấp phát trên đường duyệt.
+     */
+    public void forEachSegment(Long connectorTypeId, long fromSec, long toSec, SegmentVisitor visitor) {
+        if (fromSec >= toSec) return;
+        Timeline tl = (connectorTypeId == null) ? null : snapshot().byConnector().get(connectorTypeId);
+        if (tl == null) {
+            visitor.segment(fromSec, toSec, null);
+            return;
+        }
+        tl.walk(fromSec, toSec, visitor);
+    }
+
+    /** LocalDateTime (giờ địa phương) → giây epoch dùng cho forEachSegment */
+    public static long epochSec(LocalDateTime t) {
+        return t.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /** Số lần chỉ mục đã được dựng */
+    public long version() {
+        return snapshot().version();
+    }
+
+    // =========================================================================
+    // TIMELINE
+    // =========================================================================
+
+    private static ActiveTariff toView(Tariff t) {
+        return new ActiveTariff(t.getTariffId(), t.getConnectorType().getConnectorTypeId(),
+                t.getPricePerKWh(), t.getPricePerMin(), t.getCurrency(), t.getEffectiveFrom(), t.getEffectiveTo());
+    }
+
+    /**
+     * Dòng thời gian của 1 connector type (bất biến).
+     * points[i]: các mốc from / to phân biệt, tăng dần; atPoint[i]: tariff thắng đúng tại points[i];
+     * between[i]: tariff thắng trong khoảng mở (points[i], points[i+1]); pointSec: points theo giây epoch.
+     */
+    private static final class Timeline {
+        private final LocalDateTime[] points;
+        private final long[] pointSec;
+        private final ActiveTariff[] atPoint;
+        private final ActiveTariff[] between;
+        private final ActiveTariff latest;
+        private final int size;
+
+        private Timeline(LocalDateTime[] points, ActiveTariff[] atPoint, ActiveTariff[] between,
+                         ActiveTariff latest, int size) {
+            this.points = points;
+            this.pointSec = Arrays.stream(points).mapToLong(TariffIndex::epochSec).toArray();
+            this.atPoint = atPoint;
+            this.between = between;
+            this.latest = latest;
+            this.size = size;
+        }
+
+        static Timeline build(List<ActiveTariff> tariffs) {
+            List<ActiveTariff> valid = tariffs.stream()
+                    .filter(t -> t.effectiveFrom() != null && t.effectiveTo() != null
+                            && !t.effectiveFrom().isAfter(t.effectiveTo()))
+                    .toList();
+
+            LocalDateTime[] points = valid.stream()
+                    .flatMap(t -> Stream.of(t.effectiveFrom(), t.effectiveTo()))
+                    .distinct()
+                    .sorted()
+                    .toArray(LocalDateTime[]::new);
+
+            // Số tariff / connector rất ít (vài chục) → tính thắng cho từng mốc / khoảng bằng cách duyệt hết
+            ActiveTariff[] atPoint = new ActiveTariff[points.length];
+            ActiveTariff[] between = new ActiveTariff[Math.max(0, points.length - 1)];
+            for (int i = 0; i < points.length; i++) {
+                LocalDateTime p = points[i];
+                atPoint[i] = winner(valid, t -> !t.effectiveFrom().isAfter(p) && !t.effectiveTo().isBefore(p));
+                if (i + 1 < points.length) {
+                    LocalDateTime q = points[i + 1];
+                    // Bao trùm cả khoảng mở (p, q) ⇔ from ≤ p và to ≥ q (p, q là 2 mốc liên tiếp)
+                    between[i] = winner(valid, t -> !t.effectiveFrom().isAfter(p) && !t.effectiveTo().isBefore(q));
+                }
+            }
+
+            ActiveTariff latest = tariffs.stream()
+                    .max(Comparator.comparingLong(ActiveTariff::tariffId))
+                    .orElseThrow();
+            return new Timeline(points, atPoint, between, latest, tariffs.size());
+        }
+
+        /** from mới nhất thắng; trùng from thì tariffId lớn hơn thắng */
+        private static ActiveTariff winner(List<ActiveTariff> tariffs, Predicate<ActiveTariff> covers) {
+            return tariffs.stream()
+                    .filter(covers)
+                    .max(Comparator.comparing(ActiveTariff::effectiveFrom)
+                            .thenComparingLong(ActiveTariff::tariffId))
+                    .orElse(null);
+        }
+
+        ActiveTariff at(LocalDateTime t) {
+            int i = Arrays.binarySearch(points, t);
+            if (i >= 0) return atPoint[i];
+            int before = -i - 2; // mốc lớn nhất < t
+            if (before < 0 || before >= between.length) return null;
+            return between[before];
+        }
+
+        void walk(long fromSec, long toSec, SegmentVisitor visitor) {
+            int i = Arrays.binarySearch(pointSec, fromSec);
+            int idx = (i >= 0) ? i : -i - 2; // mốc lớn nhất ≤ fromSec (-1: trước mốc đầu)
+            long t = fromSec;
+            while (t < toSec) {
+                long next = (idx + 1 < pointSec.length) ? Math.min(toSec, pointSec[idx + 1]) : toSec;
+                ActiveTariff tariff = (idx >= 0 && idx < between.length) ? between[idx] : null;
+                visitor.segment(t, next, tariff);
+                t = next;
+                idx++;
+            }
+        }
+
+        ActiveTariff latest() {
+            return latest;
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
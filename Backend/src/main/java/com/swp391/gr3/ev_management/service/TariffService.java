@@ -3,13 +3,8 @@ package com.swp391.gr3.ev_management.service;
 import com.swp391.gr3.ev_management.dto.request.TariffCreateRequest;
 import com.swp391.gr3.ev_management.dto.request.TariffUpdateRequest;
 import com.swp391.gr3.ev_management.dto.response.TariffResponse;
-import com.swp391.gr3.ev_management.entity.ConnectorType;
-import com.swp391.gr3.ev_management.entity.Tariff;
 
-import java.time.LocalDateTime;
-import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 
 public interface TariffService {
 
@@ -20,14 +15,4 @@ public interface TariffService {
     TariffResponse createTariff(TariffCreateRequest request);
 
     TariffResponse updateTariff(long tariffId, TariffUpdateRequest request);
-
-    Optional<Tariff> findByConnectorType(ConnectorType connectorType);
-
-    Optional<Tariff> findTopByConnectorType_ConnectorTypeIdAndEffectiveFromLessThanEqualAndEffectiveToGreaterThanEqualOrderByEffectiveFromDesc(Long connectorTypeId, LocalDateTime pricingTime, LocalDateTime pricingTime1);
-
-    Collection<Tariff> findActiveByConnectorType(Long connectorTypeId, LocalDateTime pricingTime);
-
-    Optional<Double> findPricePerMinActive(Long connectorTypeId, LocalDateTime now);
-
-    Collection<Tariff> findTariffByConnectorType(Long connectorTypeId);
 }
@@ -12,10 +12,7 @@ import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
-import java.time.LocalDateTime;
-import java.util.Collection;
 import java.util.List;
-import java.util.Optional;
 
 @Service // Đánh dấu class là Spring Service (chứa logic nghiệp vụ về biểu giá Tariff)
 @RequiredArgsConstructor // Lombok tự tạo constructor cho các field final để DI
@@ -24,6 +21,7 @@ public class TariffServiceImpl implements TariffService {
     private final TariffRepository tariffRepository;           // Repository thao tác CRUD với bảng Tariff
     private final ConnectorTypeService connectorTypeService;   // Service để kiểm tra / lấy ConnectorType
     private final TariffResponseMapper tariffResponseMapper;   // Mapper Entity Tariff -> DTO TariffResponse
+    private final TariffIndex tariffIndex;                     // Chỉ mục giá trong bộ nhớ (dựng lại sau khi commit)
 
     /**
      * Lấy toàn bộ Tariff trong hệ thống và map sang TariffResponse.
@@ -78,6 +76,7 @@ public class TariffServiceImpl implements TariffService {
 
         // 4) Lưu Tariff mới vào DB
         Tariff saved = tariffRepository.save(tariff);
+        tariffIndex.invalidate();
         // 5) Map sang DTO trả về
         return tariffResponseMapper.toResponse(saved);
     }
@@ -144,48 +143,8 @@ public class TariffServiceImpl implements TariffService {
 
         // 9) Lưu Tariff đã cập nhật
         Tariff updated = tariffRepository.save(tariff);
+        tariffIndex.invalidate();
         // 10) Map sang DTO và trả về
         return tariffResponseMapper.toResponse(updated);
     }
-
-    /**
-     * Tìm Tariff hiện tại theo ConnectorType (không quan tâm thời gian).
-     */
-    @Override
-    public Optional<Tariff> findByConnectorType(ConnectorType connectorType) {
-        return tariffRepository.findByConnectorType(connectorType)
-                .stream()
-                .findFirst(); // lấy bản ghi đầu tiên
-    }
-
-    /**
-     * Tìm Tariff mới nhất (ORDER BY effectiveFrom DESC) cho 1 connectorType,
-     * mà khoảng thời gian hiệu lực bao trùm pricingTime.
-     * - Dùng khi cần áp dụng giá tại một thời điểm cụ thể.
-     */
-    @Override
-    public Optional<Tariff> findTopByConnectorType_ConnectorTypeIdAndEffectiveFromLessThanEqualAndEffectiveToGreaterThanEqualOrderByEffectiveFromDesc(Long connectorTypeId, LocalDateTime pricingTime, LocalDateTime pricingTime1) {
-        // Delegate hoàn toàn cho repository, giữ nguyên chữ ký method
-        return tariffRepository.findTopByConnectorType_ConnectorTypeIdAndEffectiveFromLessThanEqualAndEffectiveToGreaterThanEqualOrderByEffectiveFromDesc(connectorTypeId, pricingTime, pricingTime1);
-    }
-
-    /**
-     * Tìm tất cả Tariff đang ACTIVE cho connectorType tại một thời điểm pricingTime.
-     * - Có thể trả về nhiều bản ghi nếu cấu hình cho phép overlap thời gian (tuỳ design).
-     */
-    @Override
-    public Collection<Tariff> findActiveByConnectorType(Long connectorTypeId, LocalDateTime pricingTime) {
-        return tariffRepository.findActiveByConnectorType(connectorTypeId, pricingTime);
-    }
-
-    @Override
-    public Optional<Double> findPricePerMinActive(Long connectorTypeId, LocalDateTime now) {
-        return tariffRepository.findPricePerMinActive(connectorTypeId, now);
-    }
-
-    @Override
-    public Collection<Tariff> findTariffByConnectorType(Long connectorTypeId) {
-        return tariffRepository.findTariffByConnectorType(connectorTypeId);
-    }
-
 }
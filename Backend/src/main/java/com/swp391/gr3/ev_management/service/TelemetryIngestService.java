@@ -0,0 +1,316 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.swp391.gr3.ev_management.dto.request.MeterReadingRequest;
+import com.swp391.gr3.ev_management.dto.response.TelemetryIngestResponse;
+import com.swp391.gr3.ev_management.enums.ChargingSessionStatus;
+import com.swp391.gr3.ev_management.repository.ChargingSessionRepository;
+import com.swp391.gr3.ev_management.repository.MeterValueRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.swp391.gr3.ev_management.util.TenantTime.TENANT_ZONE;
+
+/**
+ * Nhận telemetry (SoC / kW / kWh) của trụ sạc và ghi xuống bảng MeterValue theo lô.
+ *
+ * - Mỗi phiên sạc có 1 ring buffer cố định (mảng primitive, không boxing) giữ các reading chưa ghi DB;
+ *   đầy thì ghi đè reading cũ nhất (telemetry.dropped).
+ * - Tổng số reading đang chờ bị giới hạn (app.telemetry.max-buffered): vượt ngưỡng → từ chối (backpressure,
+ *   controller trả 429 để trụ sạc gửi lại sau).
+ * - 1 thread nền "telemetry-writer" gom reading của mọi phiên và INSERT bằng JDBC batch mỗi flush-ms
+ *   (hoặc sớm hơn khi đã đủ 1 batch).
+ * - Reading mới nhất của mỗi phiên luôn có trong bộ nhớ → ChargingSessionTxHandler dùng khi dừng phiên
+ *   thay cho việc ước lượng SoC.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TelemetryIngestService {
+
+    private static final String INSERT_SQL =
+            "INSERT INTO meter_value (sessionid, measured_at, soc, power_kw, energy_kwh) VALUES (?, ?, ?, ?, ?)";
+
+    private final ChargingSessionRepository chargingSessionRepository;
+    private final MeterValueRepository meterValueRepository;
+    private final SessionSocCache sessionSocCache;
+    private final JdbcTemplate jdbcTemplate;
+    private final MeterRegistry meterRegistry;
+
+    // Số reading chưa ghi DB tối đa của 1 phiên
+    @Value("${app.telemetry.ring-size:256}")
+    private int ringSize;
+
+    // Tổng số reading chờ ghi tối đa trên node (backpressure)
+    @Value("${app.telemetry.max-buffered:200000}")
+    private int maxBuffered;
+
+    @Value("${app.telemetry.batch-size:1000}")
+    private int batchSize;
+
+    @Value("${app.telemetry.flush-ms:500}")
+    private long flushMs;
+
+    /** Reading gần nhất của 1 phiên sạc */
+    public record MeterReading(LocalDateTime measuredAt, Integer soc, Double powerKw, Double energyKwh) {
+    }
+
+    private final ConcurrentMap<Long, SessionRing> rings = new ConcurrentHashMap<>();
+    private final AtomicInteger buffered = new AtomicInteger();
+
+    // sessionId -> phiên còn IN_PROGRESS? (tránh query DB cho mỗi reading)
+    private final LoadingCache<Long, Boolean> activeSessions = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofMinutes(1))
+            .maximumSize(20_000)
+            .build(this::isInProgress);
+
+    private volatile Thread writer;
+    private Counter acceptedCounter;
+    private Counter rejectedCounter;
+    private Counter droppedCounter;
+    private Timer flushTimer;
+
+    // =========================================================================
+    // LIFECYCLE
+    // =========================================================================
+
+    @PostConstruct
+    void start() {
+        acceptedCounter = meterRegistry.counter("telemetry.accepted");
+        rejectedCounter = meterRegistry.counter("telemetry.rejected");
+        droppedCounter = meterRegistry.counter("telemetry.dropped");
+        flushTimer = meterRegistry.timer("telemetry.flush");
+        meterRegistry.gauge("telemetry.buffered", buffered);
+
+        Thread t = new Thread(this::runLoop, "telemetry-writer");
+        t.setDaemon(true);
+        writer = t;
+        t.start();
+    }
+
+    /** Dừng thread ghi và ghi nốt phần còn trong buffer */
+    @PreDestroy
+    void stop() {
+        Thread t = writer;
+        writer = null;
+        if (t != null) {
+            LockSupport.unpark(t);
+            try {
+                t.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        flush();
+    }
+
+    // =========================================================================
+    // INGEST
+    // =========================================================================
+
+    /** Nhận 1 lô reading; reading của phiên không còn IN_PROGRESS hoặc khi buffer đầy sẽ bị từ chối */
+    public TelemetryIngestResponse ingest(List<MeterReadingRequest> readings) {
+        int accepted = 0;
+        int rejected = 0;
+        long receivedAt = System.currentTimeMillis();
+
+        for (MeterReadingRequest r : readings) {
+            if (!Boolean.TRUE.equals(activeSessions.get(r.getSessionId())) || buffered.get() >= maxBuffered) {
+                rejected++;
+                continue;
+            }
+            long measuredAt = r.getMeasuredAt() != null
+                    ? r.getMeasuredAt().atZone(TENANT_ZONE).toInstant().toEpochMilli()
+                    : receivedAt;
+
+            SessionRing ring = rings.computeIfAbsent(r.getSessionId(), id -> new SessionRing(ringSize));
+            if (ring.offer(measuredAt, r.getSoc(), r.getPowerKw(), r.getEnergyKwh())) {
+                droppedCounter.increment(); // ghi đè reading cũ nhất chưa kịp ghi DB
+            } else {
+                buffered.incrementAndGet();
+            }
+            if (r.getSoc() != null) sessionSocCache.put(r.getSessionId(), r.getSoc());
+            accepted++;
+        }
+
+        acceptedCounter.increment(accepted);
+        rejectedCounter.increment(rejected);
+        if (buffered.get() >= batchSize) {
+            Thread t = writer;
+            if (t != null) LockSupport.unpark(t); // đủ 1 batch → ghi sớm
+        }
+        return TelemetryIngestResponse.builder().accepted(accepted).rejected(rejected).build();
+    }
+
+    /**
+     * Reading mới nhất của phiên: ưu tiên bộ nhớ, không có thì đọc DB (telemetry do node khác nhận).
+     */
+    public Optional<MeterReading> latestReading(Long sessionId) {
+        SessionRing ring = rings.get(sessionId);
+        if (ring != null) {
+            MeterReading last = ring.last();
+            if (last != null) return Optional.of(last);
+        }
+        return meterValueRepository.findTopBySession_SessionIdOrderByMeasuredAtDesc(sessionId)
+                .map(mv -> new MeterReading(mv.getMeasuredAt(), mv.getSoc(), mv.getPowerKw(), mv.getEnergyKwh()));
+    }
+
+    private Boolean isInProgress(Long sessionId) {
+        return chargingSessionRepository.existsBySessionIdAndStatus(sessionId, ChargingSessionStatus.IN_PROGRESS);
+    }
+
+    /** Reading mới nhất còn trong bộ nhớ (không chạm DB) — dùng cho stream trạng thái live */
+    public Optional<MeterReading> latestBuffered(Long sessionId) {
+        SessionRing ring = rings.get(sessionId);
+        return ring == null ? Optional.empty() : Optional.ofNullable(ring.last());
+    }
+
+    /** Phiên đã dừng: không nhận thêm reading; ring được bỏ sau lần ghi kế tiếp */
+    public void closeSession(Long sessionId) {
+        activeSessions.put(sessionId, false);
+        SessionRing ring = rings.get(sessionId);
+        if (ring != null) ring.closed = true;
+    }
+
+    // =========================================================================
+    // WRITER
+    // =========================================================================
+
+    private void runLoop() {
+        while (writer == Thread.currentThread()) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(flushMs));
+            try {
+                flush();
+            } catch (Exception ex) {
+                log.error("[telemetry] flush failed: {}", ex.getMessage(), ex);
+            }
+        }
+    }
+
+    private synchronized void flush() {
+        List<Object[]> rows = new ArrayList<>(Math.min(buffered.get(), maxBuffered));
+        rings.forEach((sessionId, ring) -> {
+            int n = ring.drainTo(sessionId, rows);
+            if (n == 0 && ring.closed) rings.remove(sessionId, ring);
+        });
+        if (rows.isEmpty()) return;
+        buffered.addAndGet(-rows.size());
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows, batchSize, (ps, row) -> {
+                ps.setLong(1, (Long) row[0]);
+                ps.setTimestamp(2, (Timestamp) row[1]);
+                if (row[2] != null) ps.setInt(3, (Integer) row[2]); else ps.setNull(3, Types.INTEGER);
+                if (row[3] != null) ps.setDouble(4, (Double) row[3]); else ps.setNull(4, Types.DOUBLE);
+                if (row[4] != null) ps.setDouble(5, (Double) row[4]); else ps.setNull(5, Types.DOUBLE);
+            });
+        } catch (Exception ex) {
+            droppedCounter.increment(rows.size());
+            log.error("[telemetry] dropped {} readings: {}", rows.size(), ex.getMessage(), ex);
+            return;
+        } finally {
+            sample.stop(flushTimer);
+        }
+        log.debug("[telemetry] flushed {} readings", rows.size());
+    }
+
+    /**
+     * Ring buffer cố định cho 1 phiên: các mảng song song kiểu primitive.
+     * soc = -1 / NaN nghĩa là trụ không gửi giá trị đó.
+     */
+    private static final class SessionRing {
+        private final long[] measuredAt;
+        private final int[] soc;
+        private final double[] powerKw;
+        private final double[] energyKwh;
+        private int head;   // vị trí reading cũ nhất chưa ghi
+        private int size;   // số reading chưa ghi
+        // Giá trị mới nhất (giữ lại giá trị gần nhất nếu reading sau thiếu trường đó)
+        private long lastAt = -1;
+        private int lastSoc = -1;
+        private double lastKw = Double.NaN;
+        private double lastKwh = Double.NaN;
+        volatile boolean closed;
+
+        SessionRing(int capacity) {
+            measuredAt = new long[capacity];
+            soc = new int[capacity];
+            powerKw = new double[capacity];
+            energyKwh = new double[capacity];
+        }
+
+        /** @return true nếu phải ghi đè reading cũ nhất (ring đầy) */
+        synchronized boolean offer(long at, Integer s, Double kw, Double kwh) {
+            int cap = measuredAt.length;
+            boolean overwrite = size == cap;
+            int idx = overwrite ? head : (head + size) % cap;
+            measuredAt[idx] = at;
+            soc[idx] = s != null ? s : -1;
+            powerKw[idx] = kw != null ? kw : Double.NaN;
+            energyKwh[idx] = kwh != null ? kwh : Double.NaN;
+            if (overwrite) head = (head + 1) % cap; else size++;
+
+            if (at >= lastAt) {
+                lastAt = at;
+                if (s != null) lastSoc = s;
+                if (kw != null) lastKw = kw;
+                if (kwh != null) lastKwh = kwh;
+            }
+            return overwrite;
+        }
+
+        synchronized int drainTo(Long sessionId, List<Object[]> out) {
+            int n = size;
+            for (int i = 0; i < n; i++) {
+                int idx = (head + i) % measuredAt.length;
+                out.add(new Object[]{
+                        sessionId,
+                        Timestamp.valueOf(toLocal(measuredAt[idx])),
+                        soc[idx] >= 0 ? soc[idx] : null,
+                        Double.isNaN(powerKw[idx]) ? null : powerKw[idx],
+                        Double.isNaN(energyKwh[idx]) ? null : energyKwh[idx]
+                });
+            }
+            head = (head + n) % measuredAt.length;
+            size = 0;
+            return n;
+        }
+
+        synchronized MeterReading last() {
+            if (lastAt < 0) return null;
+            return new MeterReading(
+                    toLocal(lastAt),
+                    lastSoc >= 0 ? lastSoc : null,
+                    Double.isNaN(lastKw) ? null : lastKw,
+                    Double.isNaN(lastKwh) ? null : lastKwh);
+        }
+
+        private static LocalDateTime toLocal(long epochMillis) {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), TENANT_ZONE);
+        }
+    }
+}
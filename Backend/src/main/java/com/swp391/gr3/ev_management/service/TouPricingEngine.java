@@ -0,0 +1,253 @@
+package com.swp391.gr3.ev_management.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tính tiền 1 phiên sạc theo thời điểm sử dụng (time-of-use).
+ *
+ * - Cắt khoảng tính tiền theo các đoạn giá của TariffIndex (phiên vắt qua lúc đổi giá → mỗi phần 1 giá)
+ *   rồi cắt tiếp theo khung giờ trong ngày (app.pricing.tou.bands, VD "17:00-22:00=1.3,22:00-06:00=0.8":
+ *   hệ số nhân lên giá của tariff; không cấu hình = 1 khung hệ số 1.0 cả ngày).
+ * - Mỗi mảnh: tiền điện = điện năng trong mảnh (theo EnergyProfile của phiên) × giá kWh × hệ số,
+ *   tiền thời gian = số phút chiếm chỗ bị phạt nằm trong mảnh × giá phút × hệ số.
+ * - Tariff ghim (tariff chụp lúc start): đoạn của chính tariff đó dùng giá đã chụp (admin sửa giá giữa chừng
+ *   không ảnh hưởng phiên đang chạy), đoạn không có tariff cũng dùng nó; không có thì đoạn đó miễn phí.
+ * - Đường tính không cấp phát trừ khi xin bảng chi tiết (itemize) → tính lại hàng loạt hóa đơn nhanh
+ *   (reprice: InvoiceRebillService).
+ *
+ * Thời gian đều là giây epoch theo giờ địa phương (TariffIndex.epochSec).
+ */
+@Component
+@Slf4j
+public class TouPricingEngine {
+
+    private static final int DAY_SEC = 86_400;
+
+    private final TariffIndex tariffIndex;
+
+    // Khung giờ trong ngày: bandStart[i] (giây trong ngày, bandStart[0] = 0) → bandFactor[i] / bandName[i]
+    private final int[] bandStart;
+    private final double[] bandFactor;
+    private final String[] bandName;
+
+    public TouPricingEngine(TariffIndex tariffIndex,
+                            @Value("${app.pricing.tou.bands:}") String bands) {
+        this.tariffIndex = tariffIndex;
+        double[] factorAtMinute = parseBands(bands);
+
+        // Gộp các phút liền nhau cùng hệ số thành 1 khung
+        List<Integer> starts = new ArrayList<>();
+        for (int m = 0; m < factorAtMinute.length; m++) {
+            if (m == 0 || factorAtMinute[m] != factorAtMinute[m - 1]) starts.add(m);
+        }
+        int n = starts.size();
+        this.bandStart = new int[n];
+        this.bandFactor = new double[n];
+        this.bandName = new String[n];
+        for (int i = 0; i < n; i++) {
+            int from = starts.get(i);
+            int to = (i + 1 < n) ? starts.get(i + 1) : 24 * 60;
+            bandStart[i] = from * 60;
+            bandFactor[i] = factorAtMinute[from];
+            bandName[i] = (n == 1) ? null : hhmm(from) + "-" + hhmm(to);
+        }
+        if (n > 1) log.info("[tou] {} time-of-day bands: {}", n, describeBands());
+    }
+
+    /** Điện năng tích lũy (kWh) của phiên tới thời điểm {@code epochSec}; trước khi sạc = 0, sau khi dừng = tổng */
+    @FunctionalInterface
+    public interface EnergyProfile {
+        double cumulativeKWh(long epochSec);
+    }
+
+    /** 1 dòng chi tiết: 1 mảnh liên tục cùng tariff + cùng khung giờ */
+    public record Line(LocalDateTime from, LocalDateTime to, Long tariffId, String band, double factor,
+                       double pricePerKWh, double pricePerMin, double energyKWh, double billedMinutes,
+                       double energyCost, double timeCost) {
+    }
+
+    /** Kết quả: tổng (chưa làm tròn) + bảng chi tiết (rỗng nếu không itemize) */
+    public record Quote(boolean priced, String currency, double energyKWh, double energyCost,
+                        double billedMinutes, double timeCost, List<Line> lines) {
+
+        public double total() {
+            return energyCost + timeCost;
+        }
+
+        /** Giá kWh bình quân đã áp (để hiển thị) — 0 nếu không có điện năng */
+        public double averagePricePerKWh() {
+            return energyKWh > 0 ? energyCost / energyKWh : 0;
+        }
+    }
+
+    /**
+     * Tính tiền trên khoảng [fromSec, toSec).
+     *
+     * @param pinned      tariff chụp lúc start: thay cho chính nó trong index + cho đoạn không có tariff (null được)
+     * @param idleFromSec / idleToSec khoảng chiếm chỗ bị tính tiền thời gian (bằng nhau = không tính)
+     * @param itemize     true → trả bảng chi tiết từng mảnh
+     */
+    public Quote price(Long connectorTypeId, long fromSec, long toSec, EnergyProfile energy,
+                       long idleFromSec, long idleToSec, TariffIndex.ActiveTariff pinned, boolean itemize) {
+        return run(connectorTypeId, fromSec, toSec, new Acc(energy, idleFromSec, idleToSec, pinned, true,
+                itemize ? new ArrayList<>() : null));
+    }
+
+    /**
+     * Tính lại theo giá hiện hành của index (job tính lại hóa đơn sau khi sửa tariff): khác {@link #price},
+     * tariff chụp lúc start không giữ giá cho đoạn của nó mà chỉ lấp đoạn không có tariff ({@code gapFill}).
+     * Không itemize.
+     */
+    public Quote reprice(Long connectorTypeId, long fromSec, long toSec, EnergyProfile energy,
+                         long idleFromSec, long idleToSec, TariffIndex.ActiveTariff gapFill) {
+        return run(connectorTypeId, fromSec, toSec, new Acc(energy, idleFromSec, idleToSec, gapFill, false, null));
+    }
+
+    private Quote run(Long connectorTypeId, long fromSec, long toSec, Acc acc) {
+        tariffIndex.forEachSegment(connectorTypeId, fromSec, toSec, acc);
+        return new Quote(acc.currency != null, acc.currency, acc.energyKWh, acc.energyCost,
+                acc.billedSec / 60.0, acc.timeCost, acc.lines != null ? acc.lines : List.of());
+    }
+
+    /** Bộ cộng dồn của 1 lần tính: nhận đoạn giá từ TariffIndex rồi cắt theo khung giờ */
+    private final class Acc implements TariffIndex.SegmentVisitor {
+        final EnergyProfile energy;
+        final long idleFrom;
+        final long idleTo;
+        final TariffIndex.ActiveTariff pinned;
+        final boolean pinOwnPeriod;
+        final List<Line> lines;
+
+        String currency;
+        double energyKWh;
+        double energyCost;
+        long billedSec;
+        double timeCost;
+
+        Acc(EnergyProfile energy, long idleFrom, long idleTo, TariffIndex.ActiveTariff pinned, boolean pinOwnPeriod,
+            List<Line> lines) {
+            this.energy = energy;
+            this.idleFrom = idleFrom;
+            this.idleTo = idleTo;
+            this.pinned = pinned;
+            this.pinOwnPeriod = pinOwnPeriod;
+            this.lines = lines;
+        }
+
+        @Override
+        public void segment(long fromSec, long toSec, TariffIndex.ActiveTariff tariff) {
+            TariffIndex.ActiveTariff t = (tariff == null
+                    || (pinOwnPeriod && pinned != null && pinned.tariffId() == tariff.tariffId()))
+                    ? pinned : tariff;
+            if (t != null && currency == null) currency = t.currency();
+
+            long a = fromSec;
+            double eA = energy.cumulativeKWh(a);
+            while (a < toSec) {
+                int sod = (int) Math.floorMod(a, (long) DAY_SEC);
+                int band = bandAt(sod);
+                int bandEnd = (band + 1 < bandStart.length) ? bandStart[band + 1] : DAY_SEC;
+                long b = Math.min(toSec, a - sod + bandEnd);
+
+                double eB = energy.cumulativeKWh(b);
+                double kwh = Math.max(0, eB - eA);
+                long idle = Math.max(0, Math.min(b, idleTo) - Math.max(a, idleFrom));
+
+                double factor = bandFactor[band];
+                double eCost = 0;
+                double tCost = 0;
+                if (t != null) {
+                    eCost = kwh * t.pricePerKWh() * factor;
+                    tCost = idle / 60.0 * t.pricePerMin() * factor;
+                }
+                energyKWh += kwh;
+                energyCost += eCost;
+                billedSec += idle;
+                timeCost += tCost;
+
+                if (lines != null && (kwh > 0 || idle > 0)) {
+                    lines.add(new Line(toLocal(a), toLocal(b), t != null ? t.tariffId() : null, bandName[band], factor,
+                            t != null ? t.pricePerKWh() * factor : 0, t != null ? t.pricePerMin() * factor : 0,
+                            kwh, idle / 60.0, eCost, tCost));
+                }
+                a = b;
+                eA = eB;
+            }
+        }
+    }
+
+    private int bandAt(int secondOfDay) {
+        if (bandStart.length == 1) return 0;
+        int i = Arrays.binarySearch(bandStart, secondOfDay);
+        return (i >= 0) ? i : -i - 2;
+    }
+
+    /** Mô tả khung giờ đang áp dụng, VD "00:00-17:00×1.0, 17:00-22:00×1.3" */
+    public String describeBands() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < bandStart.length; i++) {
+            if (i > 0) sb.append(", ");
+            int to = (i + 1 < bandStart.length) ? bandStart[i + 1] / 60 : 24 * 60;
+            sb.append(hhmm(bandStart[i] / 60)).append('-').append(hhmm(to)).append('×').append(bandFactor[i]);
+        }
+        return sb.toString();
+    }
+
+    // =========================================================================
+    // CONFIG
+    // =========================================================================
+
+    /** "HH:mm-HH:mm=hệ số,..." → hệ số theo từng phút trong ngày (khung qua nửa đêm / cả ngày được hỗ trợ, mặc định 1.0) */
+    static double[] parseBands(String spec) {
+        double[] factor = new double[24 * 60];
+        Arrays.fill(factor, 1.0);
+        if (spec == null || spec.isBlank()) return factor;
+
+        for (String part : spec.split(",")) {
+            String p = part.trim();
+            if (p.isEmpty()) continue;
+            try {
+                String[] kv = p.split("=");
+                String[] range = kv[0].trim().split("-");
+                int from = minuteOf(range[0]);
+                int to = minuteOf(range[1]);
+                double f = Double.parseDouble(kv[1].trim());
+                if (f < 0) throw new IllegalArgumentException("negative factor");
+                // to < from: khung qua nửa đêm (VD 22:00-06:00); to == from: cả ngày (VD 00:00-24:00)
+                int m = from;
+                do {
+                    factor[m] = f;
+                    m = (m + 1) % (24 * 60);
+                } while (m != to);
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("Invalid app.pricing.tou.bands entry: '" + p + "'", e);
+            }
+        }
+        return factor;
+    }
+
+    private static int minuteOf(String hhmm) {
+        String[] x = hhmm.trim().split(":");
+        int h = Integer.parseInt(x[0]);
+        int m = (x.length > 1) ? Integer.parseInt(x[1]) : 0;
+        if (h == 24 && m == 0) return 0;
+        if (h < 0 || h > 23 || m < 0 || m > 59) throw new IllegalArgumentException("time out of range: " + hhmm);
+        return h * 60 + m;
+    }
+
+    private static String hhmm(int minuteOfDay) {
+        return String.format("%02d:%02d", minuteOfDay / 60, minuteOfDay % 60);
+    }
+
+    private static LocalDateTime toLocal(long epochSec) {
+        return LocalDateTime.ofEpochSecond(epochSec, 0, ZoneOffset.UTC);
+    }
+}
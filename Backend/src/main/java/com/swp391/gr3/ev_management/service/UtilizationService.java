@@ -0,0 +1,288 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.swp391.gr3.ev_management.dto.response.HourlyOccupancyDto;
+import com.swp391.gr3.ev_management.dto.response.StationUtilizationResponse;
+import com.swp391.gr3.ev_management.dto.response.UtilizationRowDto;
+import com.swp391.gr3.ev_management.entity.ChargingPoint;
+import com.swp391.gr3.ev_management.entity.ChargingStation;
+import com.swp391.gr3.ev_management.exception.ErrorException;
+import com.swp391.gr3.ev_management.repository.*;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static com.swp391.gr3.ev_management.util.TenantTime.TENANT_ZONE;
+
+/**
+ * Mức sử dụng thật của trụ / trạm từ khoảng start → end của các phiên sạc (thay cho ước lượng số phiên × 45 phút).
+ *
+ * - Quét hợp khoảng (interval-union sweep): phiên của cùng 1 trụ sắp theo start, gộp các khoảng chồng nhau
+ *   (dữ liệu trùng / 2 phiên cùng trụ) → không bao giờ vượt 100%; phiên đang chạy tính tới thời điểm quét.
+ * - Kết quả cắt theo giờ vào PointHourlyOccupancy (giây bị chiếm / trụ / giờ): dashboard và báo cáo chỉ cộng bucket.
+ * - Duy trì tăng dần: định kỳ (app.utilization.refresh-ms) dựng lại vài giờ gần nhất (app.utilization.lookback-hours,
+ *   bắt được phiên vừa dừng / auto-stop ghi endTime lùi); lịch sử dựng theo ngày (rebuild), tự chạy khi bảng trống.
+ * - Khoảng bất kỳ (ngày / tuần / tháng...) làm tròn ra biên giờ; dung lượng chỉ tính tới hiện tại.
+ */
+@Service
+@Slf4j
+public class UtilizationService {
+
+    private static final int HOUR_SEC = 3600;
+
+    private static final String INSERT_SQL =
+            "INSERT INTO point_hourly_occupancy (bucket_start, pointid, stationid, occupied_seconds, updated_at) "
+                    + "VALUES (?, ?, ?, ?, ?)";
+
+    private final PointHourlyOccupancyRepository occupancyRepository;
+    private final ChargingSessionRepository chargingSessionRepository;
+    private final ChargingPointRepository chargingPointRepository;
+    private final ChargingStationRepository chargingStationRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate txTemplate;
+
+    // Số giờ gần nhất được dựng lại mỗi lần refresh
+    @Value("${app.utilization.lookback-hours:6}")
+    private int lookbackHours;
+
+    // Tự dựng toàn bộ lịch sử khi khởi động nếu bảng còn trống
+    @Value("${app.utilization.rebuild-on-startup:true}")
+    private boolean rebuildOnStartup;
+
+    public UtilizationService(PointHourlyOccupancyRepository occupancyRepository,
+                              ChargingSessionRepository chargingSessionRepository,
+                              ChargingPointRepository chargingPointRepository,
+                              ChargingStationRepository chargingStationRepository,
+                              JdbcTemplate jdbcTemplate,
+                              PlatformTransactionManager transactionManager) {
+        this.occupancyRepository = occupancyRepository;
+        this.chargingSessionRepository = chargingSessionRepository;
+        this.chargingPointRepository = chargingPointRepository;
+        this.chargingStationRepository = chargingStationRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.txTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    // =========================================================================
+    // DỰNG BUCKET
+    // =========================================================================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIfEmpty() {
+        if (!rebuildOnStartup || occupancyRepository.count() > 0) return;
+        chargingSessionRepository.findMinStartTime().ifPresent(first -> {
+            long t0 = System.nanoTime();
+            int buckets = rebuild(first, LocalDateTime.now(TENANT_ZONE));
+            log.info("[utilization] initial rebuild from {}: {} buckets in {} ms",
+                    first, buckets, (System.nanoTime() - t0) / 1_000_000);
+        });
+    }
+
+    /** Dựng lại vài giờ gần nhất (giờ hiện tại tính tới bây giờ) */
+    @Scheduled(fixedDelayString = "${app.utilization.refresh-ms:300000}",
+            initialDelayString = "${app.utilization.refresh-ms:300000}")
+    public void refreshRecent() {
+        LocalDateTime now = LocalDateTime.now(TENANT_ZONE);
+        LocalDateTime hour = now.truncatedTo(ChronoUnit.HOURS);
+        rebuild(hour.minusHours(lookbackHours), hour.plusHours(1));
+    }
+
+    /** Dựng lại các bucket trong [from, to) (làm tròn ra biên giờ), mỗi ngày 1 transaction → số bucket đã ghi */
+    public synchronized int rebuild(LocalDateTime from, LocalDateTime to) {
+        LocalDateTime start = from.truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime end = ceilHour(to);
+        int buckets = 0;
+        for (LocalDateTime a = start; a.isBefore(end); ) {
+            LocalDateTime b = a.truncatedTo(ChronoUnit.DAYS).plusDays(1);
+            if (b.isAfter(end)) b = end;
+            LocalDateTime chunkFrom = a;
+            LocalDateTime chunkTo = b;
+            buckets += txTemplate.execute(s -> recompute(chunkFrom, chunkTo));
+            a = b;
+        }
+        return buckets;
+    }
+
+    /** Xóa rồi tính lại bucket trong [from, to) (biên giờ) bằng quét hợp khoảng theo từng trụ */
+    private int recompute(LocalDateTime from, LocalDateTime to) {
+        occupancyRepository.deleteBetween(from, to);
+
+        long fromSec = epochSec(from);
+        long toSec = epochSec(to);
+        long nowSec = epochSec(LocalDateTime.now(TENANT_ZONE));
+
+        List<SessionIntervalView> rows = new ArrayList<>(chargingSessionRepository.findIntervalsOverlapping(from, to));
+        rows.removeIf(r -> r.getPointId() == null || r.getStartTime() == null);
+        rows.sort(Comparator.comparing(SessionIntervalView::getPointId)
+                .thenComparing(SessionIntervalView::getStartTime));
+
+        // (đầu giờ, trụ) → giây bị chiếm; trụ → trạm
+        Map<Long, Map<Long, Integer>> secondsByPoint = new LinkedHashMap<>();
+        Map<Long, Long> stationByPoint = new HashMap<>();
+
+        Long point = null;
+        long curA = 0;
+        long curB = 0;
+        for (SessionIntervalView r : rows) {
+            long a = Math.max(epochSec(r.getStartTime()), fromSec);
+            long b = Math.min(r.getEndTime() != null ? epochSec(r.getEndTime()) : nowSec, toSec);
+            if (b <= a) continue;
+            stationByPoint.putIfAbsent(r.getPointId(), r.getStationId() != null ? r.getStationId() : 0L);
+
+            if (!r.getPointId().equals(point) || a > curB) {
+                if (point != null) addUnion(secondsByPoint, point, curA, curB);
+                point = r.getPointId();
+                curA = a;
+                curB = b;
+            } else {
+                curB = Math.max(curB, b); // chồng / nối tiếp khoảng đang gộp
+            }
+        }
+        if (point != null) addUnion(secondsByPoint, point, curA, curB);
+
+        Timestamp now = Timestamp.valueOf(LocalDateTime.now(TENANT_ZONE));
+        List<Object[]> args = new ArrayList<>();
+        secondsByPoint.forEach((p, byHour) -> byHour.forEach((hourSec, sec) -> args.add(new Object[]{
+                Timestamp.valueOf(LocalDateTime.ofEpochSecond(hourSec, 0, ZoneOffset.UTC)), p,
+                stationByPoint.get(p), sec, now})));
+        if (!args.isEmpty()) jdbcTemplate.batchUpdate(INSERT_SQL, args);
+        return args.size();
+    }
+
+    /** Cắt 1 khoảng hợp [a, b) của trụ theo giờ và cộng vào bucket */
+    private static void addUnion(Map<Long, Map<Long, Integer>> secondsByPoint, long point, long a, long b) {
+        Map<Long, Integer> byHour = secondsByPoint.computeIfAbsent(point, k -> new TreeMap<>());
+        for (long h = a - Math.floorMod(a, (long) HOUR_SEC); h < b; h += HOUR_SEC) {
+            int sec = (int) (Math.min(b, h + HOUR_SEC) - Math.max(a, h));
+            byHour.merge(h, sec, Integer::sum);
+        }
+    }
+
+    // =========================================================================
+    // ĐỌC
+    // =========================================================================
+
+    /** Mức sử dụng của tất cả trạm trong [from, to) */
+    public List<UtilizationRowDto> stations(LocalDateTime from, LocalDateTime to) {
+        Range range = range(from, to);
+        Map<Long, Long> occupied = occupancyRepository.sumGroupByStation(range.from(), range.to()).stream()
+                .collect(Collectors.toMap(StationOccupancyView::getStationId, StationOccupancyView::getOccupiedSeconds));
+        Map<Long, Long> points = chargingPointRepository.countGroupByStation().stream()
+                .collect(Collectors.toMap(StationPointCountView::getStationId, StationPointCountView::getPointCount));
+
+        return chargingStationRepository.findAll().stream()
+                .map(st -> row(st.getStationId(), st.getStationName(), points.getOrDefault(st.getStationId(), 0L),
+                        occupied.getOrDefault(st.getStationId(), 0L), range.capacitySeconds()))
+                .toList();
+    }
+
+    /** Mức sử dụng của 1 trạm trong [from, to): tổng, từng trụ, đường cong theo giờ trong ngày */
+    public StationUtilizationResponse station(Long stationId, LocalDateTime from, LocalDateTime to) {
+        ChargingStation st = chargingStationRepository.findById(stationId)
+                .orElseThrow(() -> new ErrorException("Station not found with id: " + stationId));
+        Range range = range(from, to);
+
+        List<ChargingPoint> points = chargingPointRepository.findByStation_StationId(stationId);
+        Map<Long, Long> occupied = occupancyRepository.sumGroupByPoint(stationId, range.from(), range.to()).stream()
+                .collect(Collectors.toMap(PointOccupancyView::getPointId, PointOccupancyView::getOccupiedSeconds));
+        long total = occupied.values().stream().mapToLong(Long::longValue).sum();
+
+        List<UtilizationRowDto> pointRows = points.stream()
+                .map(p -> row(p.getPointId(), p.getPointNumber(), 1,
+                        occupied.getOrDefault(p.getPointId(), 0L), range.capacitySeconds()))
+                .toList();
+        UtilizationRowDto stationRow = row(stationId, st.getStationName(), points.size(), total, range.capacitySeconds());
+
+        return StationUtilizationResponse.builder()
+                .stationId(stationId)
+                .stationName(st.getStationName())
+                .from(range.from())
+                .to(range.to())
+                .points(points.size())
+                .occupiedHours(stationRow.getOccupiedHours())
+                .utilizationPercent(stationRow.getUtilizationPercent())
+                .pointRows(pointRows)
+                .curve(curve(stationId, points.size(), range))
+                .build();
+    }
+
+    /** % trụ bị chiếm trung bình theo giờ trong ngày (0..23) */
+    private List<HourlyOccupancyDto> curve(Long stationId, long points, Range range) {
+        long[] occupied = new long[24];
+        occupancyRepository.sumGroupByHourOfDay(stationId, range.from(), range.to())
+                .forEach(v -> occupied[v.getHour()] += v.getOccupiedSeconds());
+
+        // Số giây khả dụng của mỗi giờ trong ngày trong khoảng (giờ hiện tại chỉ tính phần đã trôi qua)
+        long[] capacity = new long[24];
+        long end = epochSec(range.capacityEnd());
+        for (long h = epochSec(range.from()); h < end; h += HOUR_SEC) {
+            capacity[(int) (Math.floorMod(h, 86_400L) / HOUR_SEC)] += Math.min(HOUR_SEC, end - h);
+        }
+
+        List<HourlyOccupancyDto> curve = new ArrayList<>(24);
+        for (int h = 0; h < 24; h++) {
+            curve.add(new HourlyOccupancyDto(h, round1(percent(occupied[h], points, capacity[h]))));
+        }
+        return curve;
+    }
+
+    private static UtilizationRowDto row(Long id, String name, long points, long occupiedSeconds, long capacitySeconds) {
+        return UtilizationRowDto.builder()
+                .id(id)
+                .name(name)
+                .points(points)
+                .occupiedHours(round1(occupiedSeconds / 3600.0))
+                .utilizationPercent(round1(percent(occupiedSeconds, points, capacitySeconds)))
+                .build();
+    }
+
+    /** occupied / (số trụ × số giây khả dụng) × 100, kẹp về [0, 100] (trạm chưa có trụ → 0) */
+    public static double percent(long occupiedSeconds, long points, long capacitySeconds) {
+        if (points <= 0 || capacitySeconds <= 0) return 0.0;
+        double p = occupiedSeconds * 100.0 / ((double) points * capacitySeconds);
+        return Math.max(0.0, Math.min(100.0, p));
+    }
+
+    /** Khoảng đọc: biên giờ; capacityEnd = min(to, bây giờ) */
+    private record Range(LocalDateTime from, LocalDateTime to, LocalDateTime capacityEnd) {
+        long capacitySeconds() {
+            return Math.max(0, ChronoUnit.SECONDS.between(from, capacityEnd));
+        }
+    }
+
+    private static Range range(LocalDateTime from, LocalDateTime to) {
+        if (from == null || to == null || !from.isBefore(to)) {
+            throw new IllegalArgumentException("from must be before to");
+        }
+        LocalDateTime a = from.truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime b = ceilHour(to);
+        LocalDateTime now = LocalDateTime.now(TENANT_ZONE);
+        LocalDateTime capEnd = b.isAfter(now) ? (now.isAfter(a) ? now : a) : b;
+        return new Range(a, b, capEnd);
+    }
+
+    private static LocalDateTime ceilHour(LocalDateTime t) {
+        LocalDateTime h = t.truncatedTo(ChronoUnit.HOURS);
+        return h.equals(t) ? h : h.plusHours(1);
+    }
+
+    private static long epochSec(LocalDateTime t) {
+        return t.toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static double round1(double v) {
+        return Math.round(v * 10.0) / 10.0;
+    }
+}
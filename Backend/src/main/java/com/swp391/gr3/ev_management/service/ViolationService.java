@@ -5,7 +5,9 @@ import com.swp391.gr3.ev_management.dto.response.ViolationResponse;
 import com.swp391.gr3.ev_management.entity.Driver;
 import com.swp391.gr3.ev_management.entity.DriverViolation;
 import com.swp391.gr3.ev_management.enums.ViolationStatus;
+import com.swp391.gr3.ev_management.repository.BookingOverdueBatchView;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 public interface ViolationService {
@@ -23,4 +25,7 @@ public interface ViolationService {
     int countActiveViolations(Long userId);
 
     void attachViolationToTriplet(Driver driver, DriverViolation violation);
+
+    //Tạo violation no-show cho cả lô booking quá hạn (JDBC batch) và xét auto-ban 1 lần / driver
+    int createOverdueViolations(List<BookingOverdueBatchView> views, LocalDateTime occurredAt);
 }
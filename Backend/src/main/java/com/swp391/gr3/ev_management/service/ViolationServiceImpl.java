@@ -11,25 +11,25 @@ import com.swp391.gr3.ev_management.mapper.ViolationResponseMapper;
 import com.swp391.gr3.ev_management.repository.*;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationEventPublisher;            // ✅ Publish event khi có Noti
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.Timestamp;
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.ZoneId;
-import java.util.List;
-import java.util.Optional;
+import java.util.*;
 import java.util.stream.Collectors;
 
+import static com.swp391.gr3.ev_management.util.TenantTime.TENANT_ZONE;
+
 @Service // Đánh dấu đây là 1 Spring Service chứa nghiệp vụ xử lý Violation
 @RequiredArgsConstructor // Lombok tạo constructor cho các field final (DI)
 @Slf4j // Tự động tạo logger (log.info, log.warn, log.error, ...)
 public class ViolationServiceImpl implements ViolationService {
 
-    // Múi giờ dùng chung cho hệ thống (Việt Nam)
-    private static final ZoneId TENANT_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
-
     // ====== Dependencies được inject ======
     private final DriverViolationRepository violationRepository;                // CRUD cho DriverViolation (bản ghi vi phạm)
     private final DriverService driverService;                                  // Dùng để lấy Driver (tài xế)
@@ -38,10 +38,18 @@ public class ViolationServiceImpl implements ViolationService {
     private final BookingService bookingService;                                // Đọc Booking liên quan
     private final ChargingSessionService chargingSessionService;                // Kiểm tra phiên sạc có tồn tại không
     private final DriverViolationTripletService driverViolationTripletService;  // Gom nhóm 3 lỗi (Triplet)
-    private final TariffService tariffService;                                  // Lấy tariff để tính tiền phạt
+    private final TariffIndex tariffIndex;                                      // Giá / phút hiệu lực để tính tiền phạt
     private final ViolationResponseMapper violationResponseMapper;              // Map Entity -> ViolationResponse
     private final SlotAvailabilityService slotAvailabilityService;              // Lấy thông tin slot
     private final UserVehicleService userVehicleService;                        // Lấy thông tin vehicle
+    private final JdbcTemplate jdbcTemplate;                                    // Chèn violation theo lô (JDBC batch)
+
+    private static final String INSERT_VIOLATION_SQL =
+            "INSERT INTO driver_violation (driverid, occurred_at, status, description, penalty_amount) VALUES (?, ?, ?, ?, ?)";
+
+    // Số dòng mỗi batch JDBC khi chèn violation theo lô
+    @Value("${app.booking-expiry.chunk-size:200}")
+    private int batchSize;
 
     @Override
     public ViolationResponse createViolation(Long userId, ViolationRequest request) {
@@ -102,7 +110,7 @@ public class ViolationServiceImpl implements ViolationService {
        4) Load giá — query rất
        ======================================================= */
         Double pricePerMin =
-                tariffService.findPricePerMinActive(connectorTypeId, now)
+                tariffIndex.pricePerMinAt(connectorTypeId, now)
                         .orElse(0.0);
 
     /* =======================================================
@@ -147,23 +155,129 @@ public class ViolationServiceImpl implements ViolationService {
         return violationResponseMapper.toResponse(violation, wasAutoBanned);
     }
 
+    /**
+     * Tạo violation no-show cho cả lô booking vừa bị hủy do quá hạn.
+     *
+     * So với gọi createViolation() từng booking:
+     *  - Session hợp lệ + connectorType đã có sẵn trong view (1 query cho cả lô, phía BookingOverdueHandler)
+     *  - Giá/phút: 1 lần tra tariff cho mỗi connectorType
+     *  - DriverViolation: chèn bằng JDBC batch rồi đọc lại 1 query (kèm driver + user)
+     *  - Triplet: mỗi driver nạp triplet đang mở 1 lần
+     *  - Auto-ban: 1 query đếm (group by driver) cho cả lô, xét mỗi driver 1 lần
+     *
+     * @param occurredAt mốc thời gian chung của lô (cũng là khóa để đọc lại các violation vừa chèn)
+     * @return số violation đã tạo
+     */
+    @Override
+    @Transactional
+    public int createOverdueViolations(List<BookingOverdueBatchView> views, LocalDateTime occurredAt) {
+        if (views.isEmpty()) return 0;
+
+        // 1) Lọc booking đủ điều kiện phạt (đã qua giờ kết thúc, không có session hợp lệ, xác định được connector)
+        List<BookingOverdueBatchView> eligible = new ArrayList<>(views.size());
+        for (BookingOverdueBatchView v : views) {
+            if (v.getScheduledEndTime() == null || occurredAt.isBefore(v.getScheduledEndTime())) continue;
+            if (v.getValidSessionCount() != null && v.getValidSessionCount() > 0) {
+                log.info("[NO_SHOW] Skip: Valid session exists bookingId={}", v.getBookingId());
+                continue;
+            }
+            if (v.getConnectorTypeId() == null) {
+                log.warn("[NO_SHOW] Cannot determine ConnectorType for booking {}", v.getBookingId());
+                continue;
+            }
+            eligible.add(v);
+        }
+        if (eligible.isEmpty()) return 0;
+
+        // 2) Giá / phút: 1 lần tra cho mỗi connectorType
+        Map<Long, Double> pricePerMinByConnector = new HashMap<>();
+        for (BookingOverdueBatchView v : eligible) {
+            pricePerMinByConnector.computeIfAbsent(v.getConnectorTypeId(),
+                    ct -> tariffIndex.pricePerMinAt(ct, occurredAt).orElse(0.0));
+        }
+
+        // 3) Chèn DriverViolation bằng JDBC batch (theo thứ tự driver → các violation của 1 driver liền nhau)
+        eligible.sort(Comparator.comparing(BookingOverdueBatchView::getDriverId)
+                .thenComparing(BookingOverdueBatchView::getBookingId));
+        Timestamp occurredTs = Timestamp.valueOf(occurredAt);
+        String status = ViolationStatus.ACTIVE.name();
+        jdbcTemplate.batchUpdate(INSERT_VIOLATION_SQL, eligible, batchSize, (ps, v) -> {
+            long reservedSeconds = Duration.between(v.getScheduledStartTime(), v.getScheduledEndTime()).getSeconds();
+            long minutes = Math.max(1, (reservedSeconds + 59) / 60);
+            ps.setLong(1, v.getDriverId());
+            ps.setTimestamp(2, occurredTs);
+            ps.setString(3, status);
+            ps.setString(4, String.format("Booking #%d đã quá hạn và bị hủy tự động (đến %s tại trạm %s).",
+                    v.getBookingId(), v.getScheduledEndTime(), v.getStationName()));
+            ps.setDouble(5, pricePerMinByConnector.get(v.getConnectorTypeId()) * minutes);
+        });
+
+        // 4) Đọc lại violation vừa chèn (kèm driver + user), gom theo driver
+        Set<Long> driverIds = eligible.stream().map(BookingOverdueBatchView::getDriverId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        Map<Long, List<DriverViolation>> createdByDriver = violationRepository
+                .findBatchByDriverIdsAndOccurredAt(driverIds, occurredAt).stream()
+                .collect(Collectors.groupingBy(dv -> dv.getDriver().getDriverId(), LinkedHashMap::new, Collectors.toList()));
+
+        // 5) Triplet: mỗi driver 1 lần nạp triplet đang mở
+        createdByDriver.values().forEach(list -> attachViolationsToTriplets(list.get(0).getDriver(), list));
+
+        // 6) Auto-ban: 1 query đếm cho cả lô, mỗi driver xét 1 lần
+        Map<Long, Long> activeCounts = violationRepository
+                .countByDriverIdsAndStatus(createdByDriver.keySet(), ViolationStatus.ACTIVE).stream()
+                .collect(Collectors.toMap(DriverViolationCountView::getDriverId, DriverViolationCountView::getViolationCount));
+        int banned = 0;
+        for (List<DriverViolation> list : createdByDriver.values()) {
+            Driver driver = list.get(0).getDriver();
+            if (banIfOverLimit(driver, activeCounts.getOrDefault(driver.getDriverId(), 0L).intValue())) banned++;
+        }
+
+        int created = createdByDriver.values().stream().mapToInt(List::size).sum();
+        log.info("[NO_SHOW] Batch: {} bookings → {} violations for {} drivers ({} auto-banned)",
+                views.size(), created, createdByDriver.size(), banned);
+        return created;
+    }
 
     /**
-     * Helper: Lấy tariff đang active cho một connectorType tại thời điểm hiện tại.
-     * - Gọi TariffService.findActiveByConnectorType()
-     * - Nếu không tìm thấy -> trả về tariff tạm với pricePerMin = 0 (không đánh sập flow)
+     * Gắn nhiều violation (mới, cùng 1 driver) vào Triplet theo đúng quy tắc của attachViolationToTriplet,
+     * nhưng chỉ nạp triplet đang mở 1 lần.
      */
-    private Tariff resolveActiveTariff(Long connectorTypeId) {
-        var now = LocalDateTime.now(TENANT_ZONE);
-        return tariffService.findActiveByConnectorType(connectorTypeId, now)
-                .stream()
-                .findFirst()
-                .orElseGet(() -> {
-                    log.warn("[NO_SHOW] No active tariff for connectorTypeId={}, fallback pricePerMin=0", connectorTypeId);
-                    Tariff t = new Tariff();
-                    t.setPricePerMin(0.0);
-                    return t;
-                });
+    private void attachViolationsToTriplets(Driver driver, List<DriverViolation> violations) {
+        DriverViolationTriplet triplet = driverViolationTripletService.findOpenByDriver(driver.getDriverId())
+                .stream().findFirst().orElse(null);
+
+        for (DriverViolation violation : violations) {
+            if (triplet == null || triplet.getCountInGroup() >= 3) {
+                triplet = driverViolationTripletService.save(DriverViolationTriplet.builder()
+                        .driver(driver)
+                        .status(TripletStatus.IN_PROGRESS)
+                        .countInGroup(0)
+                        .totalPenalty(0)
+                        .createdAt(LocalDateTime.now(TENANT_ZONE))
+                        .build());
+            }
+
+            if (triplet.getCountInGroup() == 0) {
+                triplet.setV1(violation);
+                triplet.setWindowStartAt(violation.getOccurredAt());
+            } else if (triplet.getCountInGroup() == 1) {
+                triplet.setV2(violation);
+            } else {
+                triplet.setV3(violation);
+            }
+            triplet.setCountInGroup(triplet.getCountInGroup() + 1);
+            triplet.setTotalPenalty(triplet.getTotalPenalty() + violation.getPenaltyAmount());
+
+            if (triplet.getCountInGroup() == 3) {
+                triplet.setStatus(TripletStatus.OPEN);
+                triplet.setWindowEndAt(violation.getOccurredAt());
+                triplet.setClosedAt(LocalDateTime.now(TENANT_ZONE));
+                driverViolationTripletService.addDriverViolationTriplet(triplet);
+            }
+        }
+        if (triplet != null && triplet.getCountInGroup() < 3) {
+            driverViolationTripletService.addDriverViolationTriplet(triplet);
+        }
     }
 
     /**
@@ -178,7 +292,11 @@ public class ViolationServiceImpl implements ViolationService {
         // 1) Đếm số violation ACTIVE của driver
         int activeViolationCount = violationRepository.countByDriver_DriverIdAndStatus(
                 driver.getDriverId(), ViolationStatus.ACTIVE);
+        return banIfOverLimit(driver, activeViolationCount);
+    }
 
+    /** Phần xử lý BAN của autoCheckAndBanDriver, dùng lại khi đã có sẵn số violation ACTIVE (lô overdue) */
+    private boolean banIfOverLimit(Driver driver, int activeViolationCount) {
         log.info("Driver {} (userId={}) now has {} ACTIVE violations",
                 driver.getDriverId(), driver.getUser().getUserId(), activeViolationCount);
 
@@ -0,0 +1,213 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.swp391.gr3.ev_management.dto.response.SlotAvailabilityResponse;
+import com.swp391.gr3.ev_management.entity.ChargingPoint;
+import com.swp391.gr3.ev_management.entity.SlotTemplate;
+import com.swp391.gr3.ev_management.enums.SlotConfigStatus;
+import com.swp391.gr3.ev_management.enums.SlotStatus;
+import com.swp391.gr3.ev_management.exception.ConflictException;
+import com.swp391.gr3.ev_management.exception.ErrorException;
+import com.swp391.gr3.ev_management.mapper.SlotAvailabilityMapper;
+import com.swp391.gr3.ev_management.repository.ChargingPointRepository;
+import com.swp391.gr3.ev_management.repository.SlotAvailabilityRepository;
+import com.swp391.gr3.ev_management.repository.SlotOccupancyView;
+import com.swp391.gr3.ev_management.repository.SlotTemplateRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static com.swp391.gr3.ev_management.util.TenantTime.TENANT_ZONE;
+
+/**
+ * Chế độ "virtual slot" (app.slots.virtual=true).
+ *
+ * - Không sinh sẵn SlotAvailability cho mọi template × point mỗi ngày.
+ *   Availability được tính khi đọc: template của config ACTIVE × charging point của station,
+ *   chồng thêm các dòng SlotAvailability đã lưu (slot đã đặt / bị khóa / bảo trì).
+ * - Slot chưa có dòng trong DB được trả về với slotId âm = mã hóa (templateId, pointId).
+ *   Khi đặt chỗ / đổi trạng thái, {@link #materialize} tạo dòng thật rồi luồng cũ chạy như bình thường.
+ * - SlotAvailabilityResponse giữ nguyên (slotId, templateId, pointId, status, date).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class VirtualSlotService {
+
+    // 24 bit thấp cho pointId, phần còn lại cho templateId; lấy số âm để không trùng id thật (IDENTITY > 0)
+    private static final int POINT_BITS = 24;
+    private static final long POINT_MASK = (1L << POINT_BITS) - 1;
+
+    private final SlotTemplateRepository slotTemplateRepository;
+    private final ChargingPointRepository chargingPointRepository;
+    private final SlotAvailabilityRepository slotAvailabilityRepository;
+    private final SlotAvailabilityBulkWriter bulkWriter;
+    private final SlotOccupancyIndex occupancyIndex;
+    private final SlotAvailabilityMapper mapper;
+
+    @Value("${app.slots.virtual:false}")
+    private boolean enabled;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    // =========================================================================
+    // ID ẢO
+    // =========================================================================
+
+    public static boolean isVirtual(Long slotId) {
+        return slotId != null && slotId < 0;
+    }
+
+    static long encode(long templateId, long pointId) {
+        if (pointId > POINT_MASK) {
+            throw new IllegalStateException("pointId vượt quá giới hạn của virtual slot id: " + pointId);
+        }
+        return -((templateId << POINT_BITS) | pointId);
+    }
+
+    private static long templateOf(long virtualId) {
+        return (-virtualId) >>> POINT_BITS;
+    }
+
+    private static long pointOf(long virtualId) {
+        return (-virtualId) & POINT_MASK;
+    }
+
+    // =========================================================================
+    // ĐỌC
+    // =========================================================================
+
+    /** Slot của 1 charging point: các dòng đã lưu + slot ảo cho template (từ hôm nay) chưa có dòng */
+    @Transactional(readOnly = true)
+    public List<SlotAvailabilityResponse> findByPointId(Long pointId) {
+        LocalDateTime today = LocalDate.now(TENANT_ZONE).atStartOfDay();
+        List<SlotAvailabilityResponse> persisted = occupancyIndex.isReady()
+                ? occupancyIndex.findByPointId(pointId)
+                : slotAvailabilityRepository.findUpcomingByPointId(pointId, today).stream()
+                        .map(mapper::toResponse).toList();
+
+        Optional<ChargingPoint> point = chargingPointRepository.findById(pointId);
+        if (point.isEmpty()) return persisted;
+
+        List<SlotTemplate> templates = slotTemplateRepository.findOpenTemplates(
+                point.get().getStation().getStationId(), SlotConfigStatus.ACTIVE, today);
+        return merge(persisted, templates, Map.of(point.get().getStation().getStationId(), List.of(pointId)));
+    }
+
+    /** Toàn bộ slot (admin): các dòng đã lưu + slot ảo của mọi station có config ACTIVE */
+    @Transactional(readOnly = true)
+    public List<SlotAvailabilityResponse> findAll() {
+        LocalDateTime today = LocalDate.now(TENANT_ZONE).atStartOfDay();
+        List<SlotAvailabilityResponse> persisted = occupancyIndex.isReady()
+                ? occupancyIndex.findAll()
+                : slotAvailabilityRepository.findUpcoming(today).stream().map(mapper::toResponse).toList();
+
+        List<SlotTemplate> templates = slotTemplateRepository.findOpenTemplates(null, SlotConfigStatus.ACTIVE, today);
+        Map<Long, List<Long>> pointsByStation = chargingPointRepository.findAll().stream()
+                .collect(Collectors.groupingBy(cp -> cp.getStation().getStationId(),
+                        Collectors.mapping(ChargingPoint::getPointId, Collectors.toList())));
+        return merge(persisted, templates, pointsByStation);
+    }
+
+    private List<SlotAvailabilityResponse> merge(List<SlotAvailabilityResponse> persisted,
+                                                 List<SlotTemplate> templates,
+                                                 Map<Long, List<Long>> pointsByStation) {
+        Set<List<Long>> stored = new HashSet<>();
+        persisted.forEach(r -> stored.add(List.of(r.getTemplateId(), r.getPointId())));
+
+        List<SlotAvailabilityResponse> out = new ArrayList<>(persisted);
+        for (SlotTemplate t : templates) {
+            List<Long> pointIds = pointsByStation.getOrDefault(t.getConfig().getStation().getStationId(), List.of());
+            LocalDateTime day = t.getStartTime().toLocalDate().atStartOfDay();
+            for (Long pointId : pointIds) {
+                if (stored.contains(List.of(t.getTemplateId(), pointId))) continue;
+                out.add(SlotAvailabilityResponse.builder()
+                        .slotId(encode(t.getTemplateId(), pointId))
+                        .templateId(t.getTemplateId())
+                        .pointId(pointId)
+                        .status(SlotStatus.AVAILABLE)
+                        .date(day)
+                        .build());
+            }
+        }
+        out.sort(Comparator.comparing(SlotAvailabilityResponse::getDate, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(SlotAvailabilityResponse::getPointId, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(SlotAvailabilityResponse::getTemplateId, Comparator.nullsLast(Comparator.naturalOrder())));
+        return out;
+    }
+
+    // =========================================================================
+    // MATERIALIZE
+    // =========================================================================
+
+    /**
+     * Đổi các slotId ảo thành id thật (tạo dòng SlotAvailability AVAILABLE nếu chưa có), giữ nguyên thứ tự.
+     * Id thật được trả lại nguyên vẹn; không có id ảo thì không chạm DB.
+     *
+     * Phải chạy trong transaction của luồng đặt chỗ / đổi trạng thái: nếu 2 request cùng tạo 1 slot,
+     * unique (template, point, date) chặn bên thứ 2 → ConflictException (409).
+     */
+    @Transactional
+    public List<Long> materialize(List<Long> slotIds) {
+        List<Long> virtualIds = slotIds.stream().filter(VirtualSlotService::isVirtual).distinct().toList();
+        if (virtualIds.isEmpty()) return slotIds;
+
+        Map<Long, SlotTemplate> templates = slotTemplateRepository
+                .findAllById(virtualIds.stream().map(VirtualSlotService::templateOf).distinct().toList())
+                .stream().collect(Collectors.toMap(SlotTemplate::getTemplateId, Function.identity()));
+        Map<Long, ChargingPoint> points = chargingPointRepository
+                .findAllById(virtualIds.stream().map(VirtualSlotService::pointOf).distinct().toList())
+                .stream().collect(Collectors.toMap(ChargingPoint::getPointId, Function.identity()));
+
+        // Gom theo (config, ngày, point) → mỗi nhóm 1 lượt insert
+        Map<List<Object>, List<Long>> groups = new LinkedHashMap<>();
+        for (Long vid : virtualIds) {
+            SlotTemplate t = templates.get(templateOf(vid));
+            ChargingPoint cp = points.get(pointOf(vid));
+            if (t == null || cp == null
+                    || !Objects.equals(t.getConfig().getStation().getStationId(), cp.getStation().getStationId())) {
+                throw new ErrorException("Slot " + vid + " không tồn tại");
+            }
+            LocalDateTime day = t.getStartTime().toLocalDate().atStartOfDay();
+            groups.computeIfAbsent(List.of(t.getConfig().getConfigId(), day, cp.getPointId()), k -> new ArrayList<>())
+                    .add(t.getTemplateId());
+        }
+
+        Map<Long, Long> realIds = new HashMap<>();
+        try {
+            groups.forEach((key, templateIds) -> {
+                Long configId = (Long) key.get(0);
+                LocalDateTime day = (LocalDateTime) key.get(1);
+                Long pointId = (Long) key.get(2);
+                bulkWriter.insertMissing(configId, day, templateIds, List.of(pointId));
+                for (SlotOccupancyView v : slotAvailabilityRepository.findOccupancyViewsByConfigAndDate(configId, day)) {
+                    if (pointId.equals(v.getPointId()) && templateIds.contains(v.getTemplateId())) {
+                        realIds.put(encode(v.getTemplateId(), pointId), v.getSlotId());
+                    }
+                }
+            });
+        } catch (DataIntegrityViolationException e) {
+            log.info("[virtual-slot] concurrent materialize for {}: {}", virtualIds, e.getMessage());
+            throw new ConflictException("One or more slots were just booked by another request");
+        }
+
+        return slotIds.stream()
+                .map(id -> {
+                    if (!isVirtual(id)) return id;
+                    Long real = realIds.get(id);
+                    if (real == null) throw new ErrorException("Slot " + id + " không tồn tại");
+                    return real;
+                })
+                .toList();
+    }
+}
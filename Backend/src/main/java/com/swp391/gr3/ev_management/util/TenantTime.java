@@ -0,0 +1,14 @@
+package com.swp391.gr3.ev_management.util;
+
+import java.time.ZoneId;
+
+/**
+ * Múi giờ tenant (VN) dùng thống nhất cho mọi mốc thời gian nghiệp vụ (LocalDateTime lưu DB là giờ địa phương).
+ */
+public final class TenantTime {
+
+    public static final ZoneId TENANT_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+
+    private TenantTime() {
+    }
+}
@@ -0,0 +1,59 @@
+package com.swp391.gr3.ev_management.controller;
+
+import com.swp391.gr3.ev_management.exception.ErrorException;
+import com.swp391.gr3.ev_management.service.CsvExportService;
+import com.swp391.gr3.ev_management.service.StationStaffService;
+import com.swp391.gr3.ev_management.service.TokenService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+/**
+ * ExportController.resolveStation: admin lọc theo stationId tùy chọn; staff luôn bị giới hạn ở trạm được phân công,
+ * kể cả khi truyền stationId của trạm khác.
+ */
+class ExportControllerTest {
+
+    private final StationStaffService stationStaffService = mock(StationStaffService.class);
+    private final TokenService tokenService = mock(TokenService.class);
+    private final ExportController controller =
+            new ExportController(mock(CsvExportService.class), stationStaffService, tokenService);
+
+    @Test
+    void adminGetsTheRequestedStationOrAll() {
+        HttpServletRequest request = request("ADMIN");
+
+        assertThat(controller.resolveStation(request, 5L)).isEqualTo(5L);
+        assertThat(controller.resolveStation(request, null)).isNull();
+        verifyNoInteractions(tokenService, stationStaffService);
+    }
+
+    @Test
+    void staffIsLimitedToTheirOwnStation() {
+        HttpServletRequest request = request("STAFF");
+        when(tokenService.extractUserIdFromRequest(request)).thenReturn(42L);
+        when(stationStaffService.getStationIdByUserId(42L)).thenReturn(3L);
+
+        assertThat(controller.resolveStation(request, 9L)).isEqualTo(3L);
+        assertThat(controller.resolveStation(request, null)).isEqualTo(3L);
+    }
+
+    @Test
+    void unassignedStaffIsRejected() {
+        HttpServletRequest request = request("STAFF");
+        when(tokenService.extractUserIdFromRequest(request)).thenReturn(42L);
+        when(stationStaffService.getStationIdByUserId(42L))
+                .thenThrow(new ErrorException("Staff is not assigned to any active station"));
+
+        assertThatThrownBy(() -> controller.resolveStation(request, 9L)).isInstanceOf(ErrorException.class);
+    }
+
+    private static HttpServletRequest request(String role) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.isUserInRole(anyString())).thenAnswer(inv -> role.equals(inv.getArgument(0)));
+        return request;
+    }
+}
@@ -0,0 +1,90 @@
+package com.swp391.gr3.ev_management.service;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH: tra bảng của ChargingCurveEngine so với tích phân đường cong mỗi lần gọi.
+ *
+ * Chạy tay (không nằm trong mvn test):
+ *   mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.swp391.gr3.ev_management.service.ChargingCurveEngineBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ChargingCurveEngineBenchmark {
+
+    private static final int N = 1024;
+
+    private ChargingCurveEngine engine;
+    private ChargingCurveEngine.Curve curve;
+    private final double[] fromSoc = new double[N];
+    private final double[] minutes = new double[N];
+    private final double[] targetSoc = new double[N];
+    private int i;
+
+    @Setup
+    public void setup() {
+        engine = new ChargingCurveEngine();
+        curve = engine.curveFor(77.0, 150.0, "DC");
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        for (int k = 0; k < N; k++) {
+            fromSoc[k] = rnd.nextDouble(5, 60);
+            minutes[k] = rnd.nextDouble(0, 120);
+            targetSoc[k] = rnd.nextDouble(60, 100);
+        }
+    }
+
+    @Benchmark
+    public double socAfter() {
+        int k = (i++) & (N - 1);
+        return curve.socAfter(fromSoc[k], minutes[k]);
+    }
+
+    @Benchmark
+    public double minutesToReach() {
+        int k = (i++) & (N - 1);
+        return curve.minutesToReach(fromSoc[k], targetSoc[k]);
+    }
+
+    @Benchmark
+    public void lookupAndEstimate(Blackhole bh) {
+        // Đường đi của 1 lần ước lượng thật: lấy bảng (cache) rồi tra SoC + điện năng
+        int k = (i++) & (N - 1);
+        ChargingCurveEngine.Curve c = engine.curveFor(77.0, 150.0, "DC");
+        double soc = c.socAfter(fromSoc[k], minutes[k]);
+        bh.consume(soc);
+        bh.consume(c.energyBetween(fromSoc[k], soc));
+    }
+
+    /** Mốc so sánh: tích phân cùng mô hình taper theo bước 6 giây cho mỗi lần gọi */
+    @Benchmark
+    public double integratePerCall() {
+        int k = (i++) & (N - 1);
+        double soc = fromSoc[k];
+        double capacity = 77.0;
+        double maxKw = Math.min(150.0, capacity * 2.0);
+        int steps = (int) (minutes[k] * 10);
+        for (int s = 0; s < steps && soc < 100; s++) {
+            double factor = (soc <= 80) ? 1.0 : 1.0 - 0.9 * (soc - 80) / 20.0;
+            soc = Math.min(100, soc + maxKw * factor * ChargingCurveEngine.EFFICIENCY * (0.1 / 60.0) / capacity * 100.0);
+        }
+        return soc;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ChargingCurveEngineBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
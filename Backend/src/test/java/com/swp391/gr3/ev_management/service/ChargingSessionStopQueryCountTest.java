@@ -0,0 +1,179 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.swp391.gr3.ev_management.entity.*;
+import com.swp391.gr3.ev_management.enums.*;
+import com.swp391.gr3.ev_management.mapper.StopCharSessionResponseMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Stop phiên sạc (ChargingSessionTxHandler.stopSessionInternalTx) trên H2: phiên có snapshot billing chỉ đọc 1 dòng
+ * (findForStop) rồi tính trong bộ nhớ; phiên cũ chưa có snapshot phải đi booking → slot → trụ → connector → model xe
+ * (đếm statement qua Hibernate Statistics). 2 luồng cho cùng số tiền.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stop_queries;DB_CLOSE_DELAY=-1;NON_KEYWORDS=YEAR,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({ChargingSessionTxHandler.class, SessionBillingSnapshotService.class, TariffIndex.class, TouPricingEngine.class,
+        ChargingCurveEngine.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ChargingSessionStopQueryCountTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ChargingSessionStopQueryCountTest.class);
+
+    private static final LocalDateTime START = LocalDateTime.of(2026, 3, 10, 10, 0);
+    private static final LocalDateTime END = START.plusMinutes(150);
+    private static final int SLOTS = 3;
+
+    // Việc phụ sau khi tính tiền (bộ nhớ / outbox / thống kê): không thuộc phần được đếm
+    @MockitoBean private BookingService bookingService;
+    @MockitoBean private SessionSocCache sessionSocCache;
+    @MockitoBean private StopCharSessionResponseMapper stopResponseMapper;
+    @MockitoBean private SlotAvailabilityService slotAvailabilityService;
+    @MockitoBean private TelemetryIngestService telemetryIngestService;
+    @MockitoBean private SessionStatusHub sessionStatusHub;
+    @MockitoBean private ActiveSessionRegistry activeSessionRegistry;
+    @MockitoBean private OutboxPublisher outboxPublisher;
+    @MockitoBean private StatsRollupService statsRollupService;
+    @MockitoBean private SessionHistogramService sessionHistogramService;
+
+    @Autowired private ChargingSessionTxHandler txHandler;
+    @Autowired private SessionBillingSnapshotService billingSnapshotService;
+    @Autowired private TariffIndex tariffIndex;
+    @Autowired private EntityManager entityManager;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    @Test
+    void snapshotStopReadsOneRowWhileLegacyStopWalksTheBooking() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        long[] ids = tx.execute(s -> seed());
+        tariffIndex.reload();
+
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        stats.clear();
+        txHandler.stopSessionInternalTx(ids[0], 80, END, StopInitiator.SYSTEM_AUTO);
+        long snapshotStatements = stats.getPrepareStatementCount();
+        long snapshotFetches = stats.getEntityFetchCount() + stats.getCollectionFetchCount();
+
+        stats.clear();
+        txHandler.stopSessionInternalTx(ids[1], 80, END, StopInitiator.SYSTEM_AUTO);
+        long legacyStatements = stats.getPrepareStatementCount();
+        long legacyFetches = stats.getEntityFetchCount() + stats.getCollectionFetchCount();
+
+        log.info("[stop-queries] snapshot: {} statements / {} lazy fetches; no snapshot: {} statements / {} lazy fetches",
+                snapshotStatements, snapshotFetches, legacyStatements, legacyFetches);
+
+        // Có snapshot: không nạp lười gì thêm ngoài dòng của findForStop
+        assertThat(snapshotFetches).isZero();
+        // Chưa có snapshot: bookingSlots + từng slot + template + trụ + connector + model xe
+        assertThat(legacyFetches).isGreaterThanOrEqualTo(SLOTS + 3);
+        assertThat(legacyStatements - snapshotStatements).isGreaterThanOrEqualTo(SLOTS + 3);
+
+        // Cùng booking / tariff / SoC → cùng tiền, và phiên cũ được ghi snapshot lúc stop
+        List<Object[]> rows = entityManager.createQuery(
+                "select cs.cost, cs.status, cs.billing.connectorTypeId from ChargingSession cs "
+                        + "where cs.sessionId in :ids order by cs.sessionId", Object[].class)
+                .setParameter("ids", List.of(ids[0], ids[1]))
+                .getResultList();
+        assertThat(rows).hasSize(2);
+        assertThat((Double) rows.get(0)[0]).isPositive().isEqualTo((Double) rows.get(1)[0]);
+        assertThat(rows).allSatisfy(r -> {
+            assertThat(r[1]).isEqualTo(ChargingSessionStatus.COMPLETED);
+            assertThat(r[2]).isNotNull();
+        });
+    }
+
+    /** 2 booking giống hệt (3 slot liền nhau), phiên đầu có snapshot chụp lúc start, phiên sau thì không */
+    private long[] seed() {
+        ConnectorType ct = ConnectorType.builder().code("CCS2").mode("DC").displayName("CCS2")
+                .defaultMaxPowerKW(150).isDeprecated(false).build();
+        entityManager.persist(ct);
+        entityManager.persist(Tariff.builder().connectorType(ct)
+                .pricePerKWh(3_800).pricePerMin(500).currency("VND")
+                .effectiveFrom(START.minusMonths(1)).effectiveTo(START.plusMonths(1)).build());
+        VehicleModel model = VehicleModel.builder().brand("VinFast").model("VF8").imageUrl("x").imagePublicId("x")
+                .year(2024).batteryCapacityKWh(82.0).status(VehicleModelStatus.values()[0]).connectorType(ct).build();
+        entityManager.persist(model);
+
+        ChargingStation station = ChargingStation.builder().stationName("Station").address("Addr")
+                .latitude(10.0).longitude(106.0).operatingHours("00:00-24:00")
+                .status(ChargingStationStatus.ACTIVE).build();
+        entityManager.persist(station);
+        ChargingPoint point = ChargingPoint.builder().station(station).connectorType(ct)
+                .pointNumber("P1").serialNumber("SN-P1").status(ChargingPointStatus.AVAILABLE)
+                .installationDate(START.minusYears(1)).maxPowerKW(120).build();
+        entityManager.persist(point);
+        SlotConfig config = SlotConfig.builder().station(station).slotDurationMin(60)
+                .activeFrom(START.minusDays(1)).activeExpire(START.plusDays(30))
+                .isActive(SlotConfigStatus.ACTIVE).build();
+        entityManager.persist(config);
+
+        long[] ids = new long[2];
+        for (int n = 0; n < 2; n++) {
+            User user = User.builder().email("driver" + n + "@test.local").phoneNumber("090000000" + n)
+                    .passwordHash("{noop}x").name("Driver " + n).build();
+            entityManager.persist(user);
+            Driver driver = Driver.builder().user(user).status(DriverStatus.ACTIVE).build();
+            entityManager.persist(driver);
+            UserVehicle vehicle = UserVehicle.builder().driver(driver).vehiclePlate("51A-0000" + n)
+                    .status(UserVehicleStatus.ACTIVE).model(model).build();
+            entityManager.persist(vehicle);
+
+            Booking booking = Booking.builder().station(station).vehicle(vehicle).bookingTime(START.minusHours(1))
+                    .scheduledStartTime(START).scheduledEndTime(START.plusHours(SLOTS))
+                    .status(BookingStatus.CONFIRMED).build();
+            entityManager.persist(booking);
+            List<BookingSlot> bookingSlots = new ArrayList<>();
+            for (int i = 0; i < SLOTS; i++) {
+                SlotTemplate template = SlotTemplate.builder().config(config).slotIndex(n * SLOTS + i + 1)
+                        .startTime(START.plusHours(i)).endTime(START.plusHours(i + 1)).build();
+                entityManager.persist(template);
+                SlotAvailability slot = SlotAvailability.builder().template(template).chargingPoint(point)
+                        .status(SlotStatus.BOOKED).date(START).build();
+                entityManager.persist(slot);
+                BookingSlot bs = BookingSlot.builder().booking(booking).slot(slot).build();
+                entityManager.persist(bs);
+                bookingSlots.add(bs);
+            }
+            booking.setBookingSlots(bookingSlots);
+
+            ChargingSession cs = ChargingSession.builder().booking(booking).startTime(START)
+                    .billing(n == 0 ? billingSnapshotService.capture(booking, START) : null)
+                    .initialSoc(20).status(ChargingSessionStatus.IN_PROGRESS).build();
+            entityManager.persist(cs);
+            ids[n] = cs.getSessionId();
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,99 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.swp391.gr3.ev_management.enums.PaymentProvider;
+import com.swp391.gr3.ev_management.enums.PaymentType;
+import com.swp391.gr3.ev_management.enums.TransactionStatus;
+import com.swp391.gr3.ev_management.repository.ChargingSessionRepository;
+import com.swp391.gr3.ev_management.repository.InvoiceRepository;
+import com.swp391.gr3.ev_management.repository.TransactionExportRow;
+import com.swp391.gr3.ev_management.repository.TransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * CsvExportService: định dạng giá trị (số không ở dạng mũ, null rỗng), quote RFC 4180, chặn công thức Excel,
+ * tệp gzip UTF-8 có BOM và dòng kết thúc CRLF.
+ */
+class CsvExportServiceTest {
+
+    @Test
+    void formatRendersNumbersDatesAndEnumsPlain() {
+        assertThat(CsvExportService.format(null)).isEmpty();
+        assertThat(CsvExportService.format(12_500_000.0)).isEqualTo("12500000");
+        assertThat(CsvExportService.format(0.1 + 0.2)).isEqualTo("0.30000000000000004");
+        assertThat(CsvExportService.format(1e-7)).isEqualTo("0.00000010");
+        assertThat(CsvExportService.format(42L)).isEqualTo("42");
+        assertThat(CsvExportService.format(LocalDateTime.of(2026, 3, 10, 8, 5))).isEqualTo("2026-03-10T08:05");
+        assertThat(CsvExportService.format(TransactionStatus.COMPLETED)).isEqualTo("COMPLETED");
+        // Số / enum không đi qua quote → "-5" vẫn là số âm, không bị thêm '
+        assertThat(CsvExportService.format(-5)).isEqualTo("-5");
+    }
+
+    @Test
+    void quoteEscapesSeparatorsAndNeutralizesFormulas() {
+        assertThat(CsvExportService.quote("Trạm Quận 1")).isEqualTo("Trạm Quận 1");
+        assertThat(CsvExportService.quote("")).isEmpty();
+        assertThat(CsvExportService.quote("a,b")).isEqualTo("\"a,b\"");
+        assertThat(CsvExportService.quote("say \"hi\"")).isEqualTo("\"say \"\"hi\"\"\"");
+        assertThat(CsvExportService.quote("line1\nline2")).isEqualTo("\"line1\nline2\"");
+
+        assertThat(CsvExportService.quote("=SUM(A1:A2)")).isEqualTo("'=SUM(A1:A2)");
+        assertThat(CsvExportService.quote("+1")).isEqualTo("'+1");
+        assertThat(CsvExportService.quote("-1")).isEqualTo("'-1");
+        assertThat(CsvExportService.quote("@cmd")).isEqualTo("'@cmd");
+        assertThat(CsvExportService.quote("\t=1")).isEqualTo("'\t=1");
+        assertThat(CsvExportService.quote("\r=1")).isEqualTo("\"'\r=1\"");
+        assertThat(CsvExportService.quote("=HYPERLINK(\"x\",\"y\")")).isEqualTo("\"'=HYPERLINK(\"\"x\"\",\"\"y\"\")\"");
+        assertThat(CsvExportService.quote("a=b")).isEqualTo("a=b");
+    }
+
+    @Test
+    void exportWritesGzipWithBomHeaderAndCrlfRows() throws Exception {
+        TransactionRepository transactionRepository = mock(TransactionRepository.class);
+        TransactionExportRow row = mock(TransactionExportRow.class);
+        when(row.getTransactionId()).thenReturn(7L);
+        when(row.getCreatedAt()).thenReturn(LocalDateTime.of(2026, 3, 10, 9, 30));
+        when(row.getAmount()).thenReturn(10_000_000.0);
+        when(row.getCurrency()).thenReturn("VND");
+        when(row.getStatus()).thenReturn(TransactionStatus.COMPLETED);
+        when(row.getDescription()).thenReturn("=cmd|' /C calc'!A0");
+        when(row.getMethodType()).thenReturn(PaymentType.values()[0]);
+        when(row.getProvider()).thenReturn(PaymentProvider.values()[0]);
+        when(row.getInvoiceId()).thenReturn(null);
+        when(row.getSessionId()).thenReturn(null);
+        when(row.getStationId()).thenReturn(null);
+        when(row.getStationName()).thenReturn("Trạm A, Quận 1");
+        when(transactionRepository.streamForExport(any(), any(), eq(3L))).thenReturn(Stream.of(row));
+
+        CsvExportService service = new CsvExportService(transactionRepository, mock(ChargingSessionRepository.class),
+                mock(InvoiceRepository.class), mock(PlatformTransactionManager.class));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LocalDate day = LocalDate.of(2026, 3, 10);
+
+        assertThat(service.exportTransactions(day, day, 3L, out)).isEqualTo(1);
+
+        String csv;
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            csv = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        assertThat(csv).startsWith("\uFEFFTransactionID,CreatedAt,Amount,");
+        assertThat(csv).endsWith("\r\n");
+        assertThat(csv.split("\r\n")).hasSize(2);
+        assertThat(csv.split("\r\n")[1]).isEqualTo("7,2026-03-10T09:30,10000000,VND,COMPLETED,'=cmd|' /C calc'!A0,"
+                + PaymentType.values()[0] + "," + PaymentProvider.values()[0] + ",,,,\"Trạm A, Quận 1\"");
+    }
+}
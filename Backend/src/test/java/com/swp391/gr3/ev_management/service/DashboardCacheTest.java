@@ -0,0 +1,96 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.swp391.gr3.ev_management.enums.DashboardView;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+/**
+ * DashboardCache: request đồng thời chỉ tính 1 lần (single-flight), kết quả cũ được trả ngay trong lúc làm mới nền,
+ * invalidate làm mới sớm hơn chu kỳ.
+ */
+class DashboardCacheTest {
+
+    private final ExecutorService refreshPool = Executors.newFixedThreadPool(2);
+    private final ExecutorService callers = Executors.newFixedThreadPool(16);
+
+    @AfterEach
+    void shutdown() {
+        refreshPool.shutdownNow();
+        callers.shutdownNow();
+    }
+
+    private DashboardCache cache(long refreshMs) {
+        return new DashboardCache(refreshPool, mock(PlatformTransactionManager.class), new SimpleMeterRegistry(),
+                refreshMs, 0, 600_000);
+    }
+
+    @Test
+    void concurrentMissesShareOneComputation() throws Exception {
+        DashboardCache cache = cache(60_000);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<DashboardCache.Cached<Integer>>> results = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            results.add(callers.submit(() -> cache.get(DashboardView.ADMIN_DASHBOARD, () -> {
+                loads.incrementAndGet();
+                await(release);
+                return 42;
+            })));
+        }
+        Thread.sleep(200);
+        release.countDown();
+
+        for (Future<DashboardCache.Cached<Integer>> f : results) {
+            assertThat(f.get(5, TimeUnit.SECONDS).value()).isEqualTo(42);
+        }
+        assertThat(loads.get()).isEqualTo(1);
+    }
+
+    @Test
+    void staleValueIsServedWhileRefreshingAndInvalidateTriggersRefresh() throws Exception {
+        DashboardCache cache = cache(60_000);
+        AtomicInteger version = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        assertThat(cache.get(DashboardView.STAFF_STATS, version::incrementAndGet).status()).isEqualTo("MISS");
+        assertThat(cache.get(DashboardView.STAFF_STATS, version::incrementAndGet).status()).isEqualTo("FRESH");
+
+        // Dữ liệu đổi → request kế tiếp vẫn nhận ngay giá trị cũ, lần tính mới chạy nền
+        cache.invalidate(DashboardView.STAFF_STATS);
+        DashboardCache.Cached<Integer> stale = cache.get(DashboardView.STAFF_STATS, () -> {
+            await(release);
+            return version.incrementAndGet();
+        });
+        assertThat(stale.status()).isEqualTo("STALE");
+        assertThat(stale.value()).isEqualTo(1);
+        assertThat(stale.headers().getFirst("Age")).isEqualTo("0");
+
+        release.countDown();
+        long deadline = System.currentTimeMillis() + 5_000;
+        DashboardCache.Cached<Integer> next;
+        do {
+            Thread.sleep(20);
+            next = cache.get(DashboardView.STAFF_STATS, version::incrementAndGet);
+        } while (!"FRESH".equals(next.status()) && System.currentTimeMillis() < deadline);
+        assertThat(next.value()).isEqualTo(2);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
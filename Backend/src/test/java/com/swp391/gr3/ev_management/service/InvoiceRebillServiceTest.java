@@ -0,0 +1,240 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.swp391.gr3.ev_management.dto.request.RebillJobRequest;
+import com.swp391.gr3.ev_management.dto.response.RebillDiffResponse;
+import com.swp391.gr3.ev_management.dto.response.RebillJobResponse;
+import com.swp391.gr3.ev_management.entity.*;
+import com.swp391.gr3.ev_management.enums.ChargingSessionStatus;
+import com.swp391.gr3.ev_management.enums.InvoiceStatus;
+import com.swp391.gr3.ev_management.enums.RebillJobStatus;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * InvoiceRebillService trên H2: dry-run chỉ ghi báo cáo, apply bỏ qua hóa đơn đã thanh toán,
+ * resume từ checkpoint không điều chỉnh 1 phiên 2 lần; tính lại theo giá đã sửa + suy ra phút phạt cho phiên cũ.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:invoice_rebill;DB_CLOSE_DELAY=-1;NON_KEYWORDS=YEAR,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "app.rebill.chunk-size=2"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({InvoiceRebillServiceImpl.class, TariffIndex.class, ChargingCurveEngine.class, SimpleMeterRegistry.class,
+        InvoiceRebillServiceTest.Config.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class InvoiceRebillServiceTest {
+
+    private static final LocalDateTime DAY = LocalDateTime.of(2026, 3, 10, 0, 0);
+    private static final double OLD_PRICE_KWH = 3000;
+    private static final double NEW_PRICE_KWH = 4000;
+    private static final double PRICE_MIN = 500;
+    private static final double KWH = 10;
+
+    /** Chạy job ngay trên thread gọi + TouPricingEngine có thể "sập" 1 lần khi tính 1 phiên chỉ định */
+    @TestConfiguration
+    static class Config {
+        @Bean(name = "rebillExecutor")
+        Executor rebillExecutor() {
+            return Runnable::run;
+        }
+
+        @Bean
+        CrashOnceEngine touPricingEngine(TariffIndex tariffIndex, @Value("${app.pricing.tou.bands:}") String bands) {
+            return new CrashOnceEngine(tariffIndex, bands);
+        }
+    }
+
+    static class CrashOnceEngine extends TouPricingEngine {
+        final AtomicLong crashAtSec = new AtomicLong(-1);
+
+        CrashOnceEngine(TariffIndex tariffIndex, String bands) {
+            super(tariffIndex, bands);
+        }
+
+        @Override
+        public Quote reprice(Long connectorTypeId, long fromSec, long toSec, EnergyProfile energy,
+                             long idleFromSec, long idleToSec, TariffIndex.ActiveTariff gapFill) {
+            if (crashAtSec.compareAndSet(fromSec, -1)) {
+                throw new IllegalStateException("simulated crash");
+            }
+            return super.reprice(connectorTypeId, fromSec, toSec, energy, idleFromSec, idleToSec, gapFill);
+        }
+    }
+
+    @Autowired private InvoiceRebillService rebillService;
+    @Autowired private TariffIndex tariffIndex;
+    @Autowired private CrashOnceEngine engine;
+    @Autowired private EntityManager entityManager;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    private ConnectorType connectorType;
+    private final List<ChargingSession> sessions = new ArrayList<>();
+
+    // 4 phiên 10:00-11:00, 10 kWh, giá chụp lúc start 3000/kWh, tariff đã sửa thành 4000/kWh:
+    //  #0 UNPAID, 0 phút phạt             → 30 000 → 40 000
+    //  #1 UNPAID, phút phạt chưa lưu (cũ) → 35 000 (= 10 phút × 500) → 45 000
+    //  #2 PAID                            → 30 000 → 40 000 nhưng không được sửa
+    //  #3 UNPAID                          → 30 000 → 40 000
+    @BeforeEach
+    void seed() {
+        jdbcTemplate.update("DELETE FROM rebill_diff");
+        jdbcTemplate.update("DELETE FROM rebill_job");
+        jdbcTemplate.update("DELETE FROM invoices");
+        jdbcTemplate.update("DELETE FROM charging_session");
+        jdbcTemplate.update("DELETE FROM tariffs");
+        jdbcTemplate.update("DELETE FROM connector_type");
+        sessions.clear();
+        engine.crashAtSec.set(-1);
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(s -> {
+            connectorType = ConnectorType.builder().code("CCS2").mode("DC").displayName("CCS2")
+                    .defaultMaxPowerKW(150).isDeprecated(false).build();
+            entityManager.persist(connectorType);
+            Tariff tariff = Tariff.builder().connectorType(connectorType)
+                    .pricePerKWh(NEW_PRICE_KWH).pricePerMin(PRICE_MIN).currency("VND")
+                    .effectiveFrom(DAY.minusMonths(1)).effectiveTo(DAY.plusMonths(1)).build();
+            entityManager.persist(tariff);
+
+            sessions.add(session(tariff, 0, 0L, InvoiceStatus.UNPAID, 30_000));
+            sessions.add(session(tariff, 1, null, InvoiceStatus.UNPAID, 35_000));
+            sessions.add(session(tariff, 2, 0L, InvoiceStatus.PAID, 30_000));
+            sessions.add(session(tariff, 3, 0L, InvoiceStatus.UNPAID, 30_000));
+        });
+        tariffIndex.reload();
+    }
+
+    @Test
+    void dryRunOnlyWritesTheDiffReport() {
+        RebillJobResponse job = finished(rebillService.start(request(true), 1L).getJobId());
+
+        assertThat(job.getStatus()).isEqualTo(RebillJobStatus.COMPLETED);
+        assertThat(job.getProcessed()).isEqualTo(4);
+        assertThat(job.getChanged()).isEqualTo(3);
+        assertThat(job.getSkipped()).isEqualTo(1);
+        assertThat(job.getAmountDelta()).isEqualTo(30_000);
+
+        // Không sửa gì: hóa đơn + cost của phiên giữ nguyên
+        assertThat(invoiceAmounts()).containsExactly(30_000.0, 35_000.0, 30_000.0, 30_000.0);
+        assertThat(sessionCosts()).containsExactly(30_000.0, 35_000.0, 30_000.0, 30_000.0);
+
+        // Báo cáo: giá đã sửa (không phải giá chụp lúc start), phiên cũ suy ra 10 phút phạt
+        List<RebillDiffResponse> diff = diff(job.getJobId());
+        assertThat(diff).extracting(RebillDiffResponse::getNewAmount)
+                .containsExactly(40_000.0, 45_000.0, 40_000.0, 40_000.0);
+        assertThat(diff).noneMatch(RebillDiffResponse::isApplied);
+    }
+
+    @Test
+    void applyAdjustsUnpaidInvoicesAndSkipsPaidOnes() {
+        RebillJobResponse job = finished(rebillService.start(request(false), 1L).getJobId());
+
+        assertThat(job.getStatus()).isEqualTo(RebillJobStatus.COMPLETED);
+        assertThat(job.getChanged()).isEqualTo(3);
+        assertThat(job.getSkipped()).isEqualTo(1);
+        assertThat(job.getAmountDelta()).isEqualTo(30_000);
+
+        assertThat(invoiceAmounts()).containsExactly(40_000.0, 45_000.0, 30_000.0, 40_000.0);
+        assertThat(sessionCosts()).containsExactly(40_000.0, 45_000.0, 30_000.0, 40_000.0);
+        assertThat(diff(job.getJobId())).extracting(RebillDiffResponse::isApplied)
+                .containsExactly(true, true, false, true);
+    }
+
+    @Test
+    void resumeFromCheckpointDoesNotAdjustASessionTwice() {
+        // Lô 1 (#0, #1) ghi xong; lô 2 sập khi tính #2 → cả lô 2 rollback, checkpoint dừng ở #1
+        engine.crashAtSec.set(TariffIndex.epochSec(sessions.get(2).getStartTime()));
+        Long jobId = rebillService.start(request(false), 1L).getJobId();
+
+        RebillJobResponse failed = finished(jobId);
+        assertThat(failed.getStatus()).isEqualTo(RebillJobStatus.FAILED);
+        assertThat(failed.getCheckpointSessionId()).isEqualTo(sessions.get(1).getSessionId());
+        assertThat(failed.getProcessed()).isEqualTo(2);
+        assertThat(invoiceAmounts()).containsExactly(40_000.0, 45_000.0, 30_000.0, 30_000.0);
+
+        RebillJobResponse done = finished(rebillService.resume(jobId).getJobId());
+        assertThat(done.getStatus()).isEqualTo(RebillJobStatus.COMPLETED);
+        assertThat(done.getProcessed()).isEqualTo(4);
+        assertThat(done.getChanged()).isEqualTo(3);
+        assertThat(done.getSkipped()).isEqualTo(1);
+        assertThat(done.getAmountDelta()).isEqualTo(30_000);
+
+        // Mỗi phiên đúng 1 dòng báo cáo; #0, #1 không bị tính lại lần 2 (old vẫn là số tiền trước job)
+        List<RebillDiffResponse> diff = diff(jobId);
+        assertThat(diff).extracting(RebillDiffResponse::getSessionId)
+                .containsExactly(sessions.stream().map(ChargingSession::getSessionId).toArray(Long[]::new));
+        assertThat(diff).extracting(RebillDiffResponse::getOldAmount)
+                .containsExactly(30_000.0, 35_000.0, 30_000.0, 30_000.0);
+        assertThat(invoiceAmounts()).containsExactly(40_000.0, 45_000.0, 30_000.0, 40_000.0);
+    }
+
+    // =========================================================================
+    // HELPERS
+    // =========================================================================
+
+    private ChargingSession session(Tariff tariff, int dayOffset, Long idleMinutes, InvoiceStatus invoiceStatus,
+                                    double amount) {
+        LocalDateTime start = DAY.plusDays(dayOffset).withHour(10);
+        ChargingSession cs = ChargingSession.builder()
+                .billing(SessionBillingSnapshot.builder()
+                        .tariffId(tariff.getTariffId()).pricePerKWh(OLD_PRICE_KWH).pricePerMin(PRICE_MIN)
+                        .currency("VND").connectorTypeId(connectorType.getConnectorTypeId()).connectorMode("DC")
+                        .ratedKw(150.0).batteryCapacityKWh(60.0).idleMinutes(idleMinutes).build())
+                .startTime(start).endTime(start.plusHours(1))
+                .initialSoc(20).energyKWh(KWH).cost(amount).status(ChargingSessionStatus.COMPLETED).build();
+        entityManager.persist(cs);
+        entityManager.persist(Invoice.builder().session(cs).amount(amount).currency("VND")
+                .status(invoiceStatus).issuedAt(start.plusHours(1)).build());
+        return cs;
+    }
+
+    private static RebillJobRequest request(boolean dryRun) {
+        return RebillJobRequest.builder().from(DAY).to(DAY.plusDays(7)).dryRun(dryRun).build();
+    }
+
+    /** Executor chạy đồng bộ → job đã xong khi start / resume trả về; đọc lại trạng thái đã ghi */
+    private RebillJobResponse finished(Long jobId) {
+        return rebillService.get(jobId);
+    }
+
+    private List<RebillDiffResponse> diff(Long jobId) {
+        return rebillService.diff(jobId, PageRequest.of(0, 100)).getContent();
+    }
+
+    private List<Double> invoiceAmounts() {
+        return jdbcTemplate.queryForList("SELECT amount FROM invoices ORDER BY sessionid", Double.class);
+    }
+
+    private List<Double> sessionCosts() {
+        return jdbcTemplate.queryForList("SELECT cost FROM charging_session ORDER BY sessionid", Double.class);
+    }
+}
@@ -0,0 +1,190 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.swp391.gr3.ev_management.dto.response.SessionsPerHourResponse;
+import com.swp391.gr3.ev_management.entity.StationDayHistogram;
+import com.swp391.gr3.ev_management.repository.ChargingSessionRepository;
+import com.swp391.gr3.ev_management.repository.StationDayHistogramRepository;
+import com.swp391.gr3.ev_management.repository.StationHourCountView;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static com.swp391.gr3.ev_management.util.TenantTime.TENANT_ZONE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * SessionHistogramService: mã hóa / giải mã mảng theo giờ, cộng nhiều giờ vào 1 khung qua nhiều ngày / trạm,
+ * dựng 1 ngày chỉ 1 lần khi nhiều request đồng thời, trùng khóa với node khác thì đọc lại dòng đã lưu,
+ * ngày không có phiên lưu dòng đánh dấu để không bị dựng lại.
+ */
+class SessionHistogramServiceTest {
+
+    private static final LocalDate DAY = LocalDate.now(TENANT_ZONE).minusDays(3);
+
+    private final ChargingSessionRepository chargingSessionRepository = mock(ChargingSessionRepository.class);
+    private final StationDayHistogramRepository histogramRepository = mock(StationDayHistogramRepository.class);
+    private final SessionHistogramService service = new SessionHistogramService(
+            chargingSessionRepository, histogramRepository, mock(PlatformTransactionManager.class));
+    private final ExecutorService callers = Executors.newFixedThreadPool(8);
+
+    SessionHistogramServiceTest() {
+        ReflectionTestUtils.setField(service, "maxRangeDays", 366);
+    }
+
+    @AfterEach
+    void shutdown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    void encodedRowDecodesToTheSameHours() {
+        int[] sessions = new int[24];
+        double[] energy = new double[24];
+        for (int h = 0; h < 24; h++) {
+            sessions[h] = h * 1_000 + 7;
+            energy[h] = h * 1.25 + 0.1;
+        }
+        sessions[23] = Integer.MAX_VALUE;
+        energy[0] = -0.0;
+
+        SessionHistogramService.Hist h = SessionHistogramService.decode(row(DAY, 1L, sessions, energy));
+
+        assertThat(h.sessions).containsExactly(sessions);
+        assertThat(h.energyKwh).containsExactly(energy);
+        assertThat(SessionHistogramService.encode(sessions)).hasSize(24 * Integer.BYTES);
+        assertThat(SessionHistogramService.encode(energy)).hasSize(24 * Double.BYTES);
+    }
+
+    @Test
+    void bucketsSumEveryHourAcrossDaysAndStations() {
+        LocalDate next = DAY.plusDays(1);
+        when(histogramRepository.findByStatDateBetween(DAY, next)).thenReturn(List.of(
+                row(DAY, 1L, hours(0, 1, 3, 2, 23, 4), kwh(1, 1.004, 2, 2.002, 23, 10.0)),
+                row(DAY, 2L, hours(3, 5, 8, 1), kwh(3, 3.0, 8, 0.5)),
+                row(next, 1L, hours(0, 10, 20, 1), kwh(0, 0.5, 21, 4.0))));
+
+        List<SessionsPerHourResponse> all = service.sessionsPerHour(DAY, next, null, 4);
+        assertThat(all).extracting(SessionsPerHourResponse::getHour)
+                .containsExactly("00:00", "04:00", "08:00", "12:00", "16:00", "20:00");
+        assertThat(all).extracting(SessionsPerHourResponse::getCount)
+                .containsExactly(18L, 0L, 1L, 0L, 0L, 5L);
+        assertThat(all).extracting(SessionsPerHourResponse::getEnergyKwh)
+                .containsExactly(6.51, 0.0, 0.5, 0.0, 0.0, 14.0);
+
+        List<SessionsPerHourResponse> station1 = service.sessionsPerHour(DAY, next, 1L, 24);
+        assertThat(station1).singleElement().satisfies(r -> {
+            assertThat(r.getHour()).isEqualTo("00:00");
+            assertThat(r.getCount()).isEqualTo(18L);
+            assertThat(r.getEnergyKwh()).isEqualTo(17.51);
+        });
+        // Ngày đã nạp nằm trong bộ nhớ → lần đọc thứ 2 không truy vấn lại
+        verify(histogramRepository, times(1)).findByStatDateBetween(any(), any());
+
+        assertThatThrownBy(() -> service.sessionsPerHour(DAY, next, null, 5))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void concurrentReadsOfAnUnsavedDayBuildItOnce() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(histogramRepository.findByStatDateBetween(DAY, DAY)).thenReturn(List.of());
+        when(chargingSessionRepository.countStartedByHour(any(), any())).thenAnswer(inv -> {
+            release.await(5, TimeUnit.SECONDS);
+            return List.of(count(9, 1L, 3L));
+        });
+
+        List<Future<List<SessionsPerHourResponse>>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(callers.submit(() -> service.sessionsPerHour(DAY, DAY, null, 24)));
+        }
+        Thread.sleep(200);
+        release.countDown();
+
+        for (Future<List<SessionsPerHourResponse>> f : results) {
+            assertThat(f.get(5, TimeUnit.SECONDS).get(0).getCount()).isEqualTo(3L);
+        }
+        verify(chargingSessionRepository, times(1)).countStartedByHour(any(), any());
+        verify(histogramRepository, times(1)).deleteByStatDate(DAY);
+        verify(histogramRepository, times(1)).saveAll(any());
+    }
+
+    @Test
+    void uniqueViolationFromAnotherNodeUsesItsStoredRows() {
+        when(histogramRepository.findByStatDateBetween(DAY, DAY)).thenReturn(
+                List.of(),
+                List.of(row(DAY, 1L, hours(9, 4), kwh(10, 12.5))));
+        when(chargingSessionRepository.countStartedByHour(any(), any())).thenReturn(List.of(count(9, 1L, 3L)));
+        when(histogramRepository.saveAll(any())).thenThrow(new DataIntegrityViolationException("UX_StationDayHistogram_Day"));
+
+        SessionsPerHourResponse r = service.sessionsPerHour(DAY, DAY, 1L, 24).get(0);
+
+        assertThat(r.getCount()).isEqualTo(4L);
+        assertThat(r.getEnergyKwh()).isEqualTo(12.5);
+        verify(histogramRepository, times(2)).findByStatDateBetween(DAY, DAY);
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void emptyDayIsStoredAsMarkerAndNeverRecomputedAfterEviction() {
+        when(histogramRepository.findByStatDateBetween(DAY, DAY)).thenReturn(List.of());
+        ArgumentCaptor<List<StationDayHistogram>> saved = ArgumentCaptor.forClass(List.class);
+
+        assertThat(service.sessionsPerHour(DAY, DAY, null, 24).get(0).getCount()).isZero();
+        verify(histogramRepository).saveAll(saved.capture());
+        assertThat(saved.getValue()).singleElement()
+                .satisfies(r -> assertThat(r.getStationId()).isEqualTo(SessionHistogramService.EMPTY_DAY));
+
+        // Ngày đã rời bộ nhớ (node khác / sau cache-days): đọc dòng đánh dấu, không dựng + ghi lại
+        SessionHistogramService evicted = new SessionHistogramService(
+                chargingSessionRepository, histogramRepository, mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(evicted, "maxRangeDays", 366);
+        when(histogramRepository.findByStatDateBetween(DAY, DAY)).thenReturn(saved.getValue());
+
+        SessionsPerHourResponse r = evicted.sessionsPerHour(DAY, DAY, null, 24).get(0);
+        assertThat(r.getCount()).isZero();
+        assertThat(r.getEnergyKwh()).isZero();
+        verify(chargingSessionRepository, times(1)).countStartedByHour(any(), any());
+        verify(histogramRepository, times(1)).deleteByStatDate(DAY);
+        verify(histogramRepository, times(1)).saveAll(any());
+    }
+
+    private static StationDayHistogram row(LocalDate day, long stationId, int[] sessions, double[] energy) {
+        return StationDayHistogram.builder().statDate(day).stationId(stationId)
+                .sessions(SessionHistogramService.encode(sessions))
+                .energyKwh(SessionHistogramService.encode(energy))
+                .build();
+    }
+
+    /** Cặp (giờ, số phiên) → mảng 24 giờ */
+    private static int[] hours(int... hourValue) {
+        int[] out = new int[24];
+        for (int i = 0; i < hourValue.length; i += 2) out[hourValue[i]] = hourValue[i + 1];
+        return out;
+    }
+
+    /** Cặp (giờ, kWh) → mảng 24 giờ */
+    private static double[] kwh(double... hourValue) {
+        double[] out = new double[24];
+        for (int i = 0; i < hourValue.length; i += 2) out[(int) hourValue[i]] = hourValue[i + 1];
+        return out;
+    }
+
+    private static StationHourCountView count(int hour, long stationId, long sessions) {
+        return new StationHourCountView() {
+            @Override public Integer getHour() { return hour; }
+            @Override public Long getStationId() { return stationId; }
+            @Override public Long getSessions() { return sessions; }
+        };
+    }
+}
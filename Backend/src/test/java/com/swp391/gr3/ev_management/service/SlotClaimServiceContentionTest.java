@@ -0,0 +1,244 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.swp391.gr3.ev_management.entity.*;
+import com.swp391.gr3.ev_management.enums.*;
+import com.swp391.gr3.ev_management.exception.ConflictException;
+import com.swp391.gr3.ev_management.repository.BookingsRepository;
+import com.swp391.gr3.ev_management.repository.SlotAvailabilityRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Benchmark tranh chấp: nhiều thread cùng đặt các slot chồng lấn nhau.
+ * Kiểm tra không có slot nào bị đặt 2 lần và log throughput (booking/s) của luồng claim set-based;
+ * 2 request cùng qua bước kiểm tra trước rồi mới claim → bên thua bị chặn bởi số dòng UPDATE (409).
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:slot_claim;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000;NON_KEYWORDS=YEAR,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({SlotClaimService.class, SlotOccupancyIndex.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class SlotClaimServiceContentionTest {
+
+    private static final Logger log = LoggerFactory.getLogger(SlotClaimServiceContentionTest.class);
+
+    private static final int SLOT_COUNT = 24;
+    private static final int THREADS = 16;
+    private static final int ATTEMPTS_PER_THREAD = 20;
+
+    @Autowired private SlotClaimService slotClaimService;
+    @Autowired private SlotAvailabilityRepository slotAvailabilityRepository;
+    @Autowired private BookingsRepository bookingsRepository;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private EntityManager entityManager;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    /** Số lần claim() ném 409 vì UPDATE cập nhật ít dòng hơn số slot yêu cầu (khác với 409 ở bước kiểm tra trước) */
+    private final AtomicInteger claimConflicts = new AtomicInteger();
+    /** Mỗi test seed 1 station / connector / point riêng (DB H2 dùng chung trong context) */
+    private static final AtomicInteger seeds = new AtomicInteger();
+
+    @Test
+    void concurrentClaimsNeverDoubleBookASlot() throws Exception {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        List<Long> slotIds = tx.execute(status -> seedSlots());
+
+        AtomicInteger booked = new AtomicInteger();
+        AtomicInteger conflicts = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+
+        for (int t = 0; t < THREADS; t++) {
+            futures.add(pool.submit(() -> {
+                start.await();
+                ThreadLocalRandom rnd = ThreadLocalRandom.current();
+                for (int i = 0; i < ATTEMPTS_PER_THREAD; i++) {
+                    // 2 slot liền nhau → các request chồng lấn một phần với nhau
+                    int first = rnd.nextInt(SLOT_COUNT - 1);
+                    List<Long> wanted = List.of(slotIds.get(first), slotIds.get(first + 1));
+                    try {
+                        tx.executeWithoutResult(status -> book(wanted, () -> { }));
+                        booked.incrementAndGet();
+                    } catch (ConflictException e) {
+                        conflicts.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long t0 = System.nanoTime();
+        start.countDown();
+        for (Future<?> f : futures) {
+            f.get(60, TimeUnit.SECONDS);
+        }
+        long elapsedNs = System.nanoTime() - t0;
+        pool.shutdown();
+
+        int attempts = THREADS * ATTEMPTS_PER_THREAD;
+        log.info("[SlotClaim] threads={} attempts={} booked={} conflicts={} (claim={}) elapsed={}ms throughput={} req/s",
+                THREADS, attempts, booked.get(), conflicts.get(), claimConflicts.get(), elapsedNs / 1_000_000,
+                String.format("%.1f", attempts * 1e9 / elapsedNs));
+
+        Integer maxPerSlot = jdbcTemplate.queryForObject(
+                "SELECT COALESCE(MAX(c), 0) FROM (SELECT COUNT(*) c FROM booking_slots WHERE slotid BETWEEN ? AND ? GROUP BY slotid) x",
+                Integer.class, slotIds.get(0), slotIds.get(SLOT_COUNT - 1));
+        Integer mappedSlots = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM booking_slots WHERE slotid BETWEEN ? AND ?",
+                Integer.class, slotIds.get(0), slotIds.get(SLOT_COUNT - 1));
+        long bookedSlots = slotAvailabilityRepository.findAllById(slotIds).stream()
+                .filter(s -> s.getStatus() == SlotStatus.BOOKED)
+                .count();
+
+        assertThat(booked.get() + conflicts.get()).isEqualTo(attempts);
+        assertThat(booked.get()).isPositive();
+        assertThat(maxPerSlot).isLessThanOrEqualTo(1);
+        assertThat(mappedSlots).isEqualTo(booked.get() * 2);
+        assertThat(bookedSlots).isEqualTo(mappedSlots.longValue());
+    }
+
+    @Test
+    void requestsThatBothPassThePreCheckAreSettledByTheUpdateRowCount() throws Exception {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        List<Long> slotIds = tx.execute(status -> seedSlots());
+        List<Long> wanted = List.of(slotIds.get(0), slotIds.get(1));
+
+        // Cả 2 request đều đọc slot AVAILABLE (qua bước kiểm tra) rồi mới cùng claim
+        CyclicBarrier bothChecked = new CyclicBarrier(2);
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        List<Future<Boolean>> futures = new ArrayList<>();
+        for (int t = 0; t < 2; t++) {
+            futures.add(pool.submit(() -> {
+                try {
+                    tx.executeWithoutResult(status -> book(wanted, () -> await(bothChecked)));
+                    return true;
+                } catch (ConflictException e) {
+                    return false;
+                }
+            }));
+        }
+        int booked = 0;
+        for (Future<Boolean> f : futures) {
+            if (f.get(30, TimeUnit.SECONDS)) booked++;
+        }
+        pool.shutdown();
+
+        assertThat(booked).isEqualTo(1);
+        assertThat(claimConflicts.get()).isEqualTo(1);
+        assertThat(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM booking_slots WHERE slotid IN (?, ?)",
+                Integer.class, wanted.get(0), wanted.get(1))).isEqualTo(2);
+    }
+
+    /**
+     * Rút gọn luồng createBooking: load → kiểm tra (409) → claim (409 theo số dòng) → lưu Booking → batch BookingSlot.
+     * beforeClaim chạy giữa bước kiểm tra và bước claim.
+     */
+    private void book(List<Long> slotIds, Runnable beforeClaim) {
+        List<SlotAvailability> slots = slotClaimService.loadForClaim(slotIds);
+        if (slots.stream().anyMatch(s -> s.getStatus() != SlotStatus.AVAILABLE)) {
+            throw new ConflictException("Slot is not available");
+        }
+        beforeClaim.run();
+        try {
+            slotClaimService.claim(slots);
+        } catch (ConflictException e) {
+            claimConflicts.incrementAndGet();
+            throw e;
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        Booking booking = bookingsRepository.save(Booking.builder()
+                .station(slots.get(0).getTemplate().getConfig().getStation())
+                .bookingTime(now)
+                .scheduledStartTime(slots.get(0).getDate().with(slots.get(0).getTemplate().getStartTime()))
+                .scheduledEndTime(slots.get(1).getDate().with(slots.get(1).getTemplate().getEndTime()))
+                .status(BookingStatus.PENDING)
+                .build());
+        slotClaimService.insertBookingSlots(booking.getBookingId(), slotIds, now);
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await(10, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private List<Long> seedSlots() {
+        int n = seeds.incrementAndGet();
+        LocalDateTime day = LocalDate.now().plusDays(1).atStartOfDay();
+
+        ChargingStation station = ChargingStation.builder()
+                .stationName("Bench station").address("1 Bench St")
+                .latitude(10.0).longitude(106.0)
+                .operatingHours("00:00-24:00").status(ChargingStationStatus.ACTIVE)
+                .build();
+        entityManager.persist(station);
+
+        ConnectorType connectorType = ConnectorType.builder()
+                .code("BENCH-" + n).mode("DC").displayName("Bench connector")
+                .defaultMaxPowerKW(60).isDeprecated(false)
+                .build();
+        entityManager.persist(connectorType);
+
+        ChargingPoint point = ChargingPoint.builder()
+                .station(station).connectorType(connectorType)
+                .pointNumber("BENCH-" + n).serialNumber("BENCH-SN-" + n)
+                .status(ChargingPointStatus.AVAILABLE)
+                .installationDate(day.minusYears(1)).maxPowerKW(60)
+                .build();
+        entityManager.persist(point);
+
+        SlotConfig config = SlotConfig.builder()
+                .station(station).slotDurationMin(60)
+                .activeFrom(day.minusDays(1)).activeExpire(day.plusDays(30))
+                .isActive(SlotConfigStatus.ACTIVE)
+                .build();
+        entityManager.persist(config);
+
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < SLOT_COUNT; i++) {
+            SlotTemplate template = SlotTemplate.builder()
+                    .config(config).slotIndex(i + 1)
+                    .startTime(day.plusHours(i)).endTime(day.plusHours(i + 1))
+                    .build();
+            entityManager.persist(template);
+
+            SlotAvailability slot = SlotAvailability.builder()
+                    .template(template).chargingPoint(point)
+                    .status(SlotStatus.AVAILABLE).date(day)
+                    .build();
+            entityManager.persist(slot);
+            ids.add(slot.getSlotId());
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,151 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.swp391.gr3.ev_management.dto.response.DashboardStatsResponse;
+import com.swp391.gr3.ev_management.dto.response.StationKpiRowDto;
+import com.swp391.gr3.ev_management.dto.response.StatsRollupReconcileResponse;
+import com.swp391.gr3.ev_management.entity.*;
+import com.swp391.gr3.ev_management.enums.*;
+import com.swp391.gr3.ev_management.mapper.StatisticsResponseMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.test.context.bean.override.mockito.MockitoBean;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Dashboard admin: số query của getDashboard không phụ thuộc số trạm (đếm statement qua Hibernate Statistics),
+ * số liệu đọc từ bảng rollup theo giờ (dựng bằng backfill, khớp bảng gốc khi đối soát), utilization từ bảng chiếm trụ.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:dashboard_queries;DB_CLOSE_DELAY=-1;NON_KEYWORDS=YEAR,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({StatisticsServiceImpl.class, StatsRollupService.class, UtilizationService.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StatisticsServiceQueryCountTest {
+
+    // Chỉ getTotals dùng tới, getDashboard thì không
+    @MockitoBean private UserService userService;
+    @MockitoBean private DriverService driverService;
+    @MockitoBean private StaffService staffService;
+    @MockitoBean private StatisticsResponseMapper statisticsResponseMapper;
+
+    @Autowired private StatisticsService statisticsService;
+    @Autowired private StatsRollupService statsRollupService;
+    @Autowired private UtilizationService utilizationService;
+    @Autowired private EntityManager entityManager;
+    @Autowired private EntityManagerFactory entityManagerFactory;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    private final AtomicInteger seq = new AtomicInteger();
+
+    @Test
+    void dashboardQueryCountIsConstantInStationCount() {
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        ConnectorType ct = tx.execute(s -> {
+            ConnectorType c = ConnectorType.builder().code("CCS2").mode("DC").displayName("CCS2")
+                    .defaultMaxPowerKW(150).isDeprecated(false).build();
+            entityManager.persist(c);
+            return c;
+        });
+
+        tx.executeWithoutResult(s -> seedStations(ct, 2));
+        rebuildAggregates();
+        long small = countStatements();
+
+        tx.executeWithoutResult(s -> seedStations(ct, 40));
+        rebuildAggregates();
+        long large = countStatements();
+
+        assertThat(large).isEqualTo(small);
+        assertThat(small).isLessThanOrEqualTo(5);
+
+        LocalDate today = LocalDate.now();
+        List<StatsRollupReconcileResponse> reconcile = statsRollupService.reconcile(today, today, false);
+        assertThat(reconcile).allMatch(StatsRollupReconcileResponse::isMatched);
+
+        // Số liệu vẫn đúng: mỗi trạm 2 phiên hôm nay (cùng 1 trụ, trùng nhau 30 phút), mỗi phiên 1 hóa đơn đã thanh toán 10 000, 3 point
+        DashboardStatsResponse dashboard = statisticsService.getDashboard();
+        assertThat(dashboard.getStationRows()).hasSize(42);
+        assertThat(dashboard.getTotalSessions()).isEqualTo(84);
+        assertThat(dashboard.getDayRevenue().getAmount()).isEqualTo(840_000.0);
+        StationKpiRowDto row = dashboard.getStationRows().get(0);
+        assertThat(row.getDayRevenue().getAmount()).isEqualTo(20_000.0);
+        assertThat(row.getMonthRevenue().getAmount()).isEqualTo(20_000.0);
+        assertThat(row.getSessions()).isEqualTo(2);
+        // 2 phiên chồng nhau trên 1 trụ → chỉ tính 30 phút chiếm; 3 trụ × số giây từ đầu năm tới nay
+        LocalDateTime yearStart = LocalDate.now().withDayOfYear(1).atStartOfDay();
+        double expected = 1800 * 100.0 / (3.0 * Duration.between(yearStart, LocalDateTime.now()).getSeconds());
+        assertThat(row.getUtilization()).isCloseTo(expected, within(expected * 0.01));
+    }
+
+    private void rebuildAggregates() {
+        statsRollupService.backfill(null, null);
+        utilizationService.rebuild(LocalDateTime.now().minusDays(1), LocalDateTime.now().plusHours(1));
+    }
+
+    private long countStatements() {
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        stats.clear();
+        statisticsService.getDashboard();
+        return stats.getPrepareStatementCount();
+    }
+
+    private void seedStations(ConnectorType ct, int stations) {
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < stations; i++) {
+            int n = seq.incrementAndGet();
+            ChargingStation st = ChargingStation.builder().stationName("Station " + n).address("Addr " + n)
+                    .latitude(10.0).longitude(106.0).operatingHours("00:00-24:00")
+                    .status(ChargingStationStatus.ACTIVE).build();
+            entityManager.persist(st);
+
+            ChargingPoint first = null;
+            for (int p = 0; p < 3; p++) {
+                ChargingPoint cp = ChargingPoint.builder().station(st).connectorType(ct)
+                        .pointNumber("P" + n + "-" + p).serialNumber("SN" + n + "-" + p)
+                        .status(ChargingPointStatus.AVAILABLE).installationDate(now).maxPowerKW(150).build();
+                entityManager.persist(cp);
+                if (first == null) first = cp;
+            }
+
+            for (int k = 0; k < 2; k++) {
+                Booking b = Booking.builder().station(st).bookingTime(now).scheduledStartTime(now)
+                        .scheduledEndTime(now.plusHours(1)).status(BookingStatus.COMPLETED).build();
+                entityManager.persist(b);
+                ChargingSession cs = ChargingSession.builder().booking(b).startTime(now.minusMinutes(30)).endTime(now)
+                        .billing(SessionBillingSnapshot.builder().pointId(first.getPointId()).build())
+                        .initialSoc(20).energyKWh(5).cost(10_000).status(ChargingSessionStatus.COMPLETED).build();
+                entityManager.persist(cs);
+                entityManager.persist(Invoice.builder().session(cs).amount(10_000).currency("VND")
+                        .status(InvoiceStatus.PAID).issuedAt(now).build());
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.swp391.gr3.ev_management.dto.response.StatsRollupReconcileResponse;
+import com.swp391.gr3.ev_management.entity.*;
+import com.swp391.gr3.ev_management.enums.*;
+import com.swp391.gr3.ev_management.repository.ChargingSessionRepository;
+import com.swp391.gr3.ev_management.repository.InvoiceRepository;
+import com.swp391.gr3.ev_management.repository.StatsHourlyRollupRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * StatsRollupService cộng dồn ngay trong transaction nghiệp vụ (không backfill): UPDATE bucket đã có, chưa có thì INSERT,
+ * INSERT trùng khóa (luồng khác vừa chèn) thì UPDATE lại; cuối cùng đối soát khớp bảng gốc.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:stats_rollup;DB_CLOSE_DELAY=-1;NON_KEYWORDS=YEAR,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import({StatsRollupService.class, SimpleMeterRegistry.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class StatsRollupServiceTest {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 3, 10);
+
+    @Autowired private StatsRollupService statsRollupService;
+    @Autowired private StatsHourlyRollupRepository rollupRepository;
+    @Autowired private ChargingSessionRepository chargingSessionRepository;
+    @Autowired private InvoiceRepository invoiceRepository;
+    @Autowired private ApplicationEventPublisher eventPublisher;
+    @Autowired private EntityManager entityManager;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private DataSource dataSource;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    private final AtomicInteger seq = new AtomicInteger();
+
+    @Test
+    void incrementalUpdatesMatchTheSourceTablesWithoutBackfill() {
+        // Luồng "khác" chèn bucket ngay trước INSERT của mình → INSERT trùng khóa → phải UPDATE vào bucket đó
+        AtomicReference<ChargingSession> racer = new AtomicReference<>();
+        JdbcTemplate racingJdbc = new JdbcTemplate(dataSource) {
+            @Override
+            public int update(String sql, Object... args) {
+                ChargingSession other = sql.startsWith("INSERT") ? racer.getAndSet(null) : null;
+                if (other != null) {
+                    super.update(sql, args[0], args[1], args[2], 0.0, other.getEnergyKWh(), 1L,
+                            (long) other.getDurationMinutes(), args[7]);
+                }
+                return super.update(sql, args);
+            }
+        };
+        StatsRollupService racing = new StatsRollupService(rollupRepository, chargingSessionRepository,
+                invoiceRepository, racingJdbc, transactionManager, eventPublisher, new SimpleMeterRegistry());
+
+        new TransactionTemplate(transactionManager).executeWithoutResult(s -> {
+            ConnectorType ct = ConnectorType.builder().code("CCS2").mode("DC").displayName("CCS2")
+                    .defaultMaxPowerKW(150).isDeprecated(false).build();
+            entityManager.persist(ct);
+            ChargingStation st = ChargingStation.builder().stationName("Station").address("Addr")
+                    .latitude(10.0).longitude(106.0).operatingHours("00:00-24:00")
+                    .status(ChargingStationStatus.ACTIVE).build();
+            entityManager.persist(st);
+
+            // 10:00: phiên A (INSERT bucket mới), phiên B (UPDATE), hóa đơn A trả 10:50 (UPDATE)
+            ChargingSession a = session(st, ct, DAY.atTime(10, 10), 5.0, 30);
+            statsRollupService.sessionCompleted(a);
+            ChargingSession b = session(st, ct, DAY.atTime(10, 40), 7.0, 45);
+            statsRollupService.sessionCompleted(b);
+            statsRollupService.invoicePaid(paidInvoice(a, 20_000, DAY.atTime(10, 50)));
+            // 11:00: hóa đơn B trả 11:15 → bucket mới chỉ có doanh thu
+            statsRollupService.invoicePaid(paidInvoice(b, 30_000, DAY.atTime(11, 15)));
+
+            // 14:00: phiên D (luồng khác) chèn bucket trước, phiên C gặp trùng khóa → cộng vào bucket của D
+            ChargingSession c = session(st, ct, DAY.atTime(14, 5), 4.0, 20);
+            racer.set(session(st, ct, DAY.atTime(14, 30), 6.0, 25));
+            racing.sessionCompleted(c);
+        });
+
+        List<Map<String, Object>> rows = jdbcTemplate.queryForList(
+                "SELECT bucket_start, revenue, energy_kwh, sessions, charging_minutes FROM stats_hourly_rollup "
+                        + "ORDER BY bucket_start");
+        assertThat(rows).extracting(r -> ((Timestamp) r.get("BUCKET_START")).toLocalDateTime())
+                .containsExactly(DAY.atTime(10, 0), DAY.atTime(11, 0), DAY.atTime(14, 0));
+        assertBucket(rows.get(0), 20_000, 12.0, 2, 75);
+        assertBucket(rows.get(1), 30_000, 0.0, 0, 0);
+        assertBucket(rows.get(2), 0, 10.0, 2, 45);
+
+        List<StatsRollupReconcileResponse> reconcile = statsRollupService.reconcile(DAY, DAY, false);
+        assertThat(reconcile).singleElement().satisfies(r -> {
+            assertThat(r.isMatched()).isTrue();
+            assertThat(r.isRepaired()).isFalse();
+            assertThat(r.getRawSessions()).isEqualTo(4);
+            assertThat(r.getRawRevenue()).isEqualTo(50_000);
+        });
+    }
+
+    private static void assertBucket(Map<String, Object> row, double revenue, double energyKwh, long sessions,
+                                     long minutes) {
+        assertThat(((Number) row.get("REVENUE")).doubleValue()).isCloseTo(revenue, within(1e-6));
+        assertThat(((Number) row.get("ENERGY_KWH")).doubleValue()).isCloseTo(energyKwh, within(1e-6));
+        assertThat(((Number) row.get("SESSIONS")).longValue()).isEqualTo(sessions);
+        assertThat(((Number) row.get("CHARGING_MINUTES")).longValue()).isEqualTo(minutes);
+    }
+
+    private ChargingSession session(ChargingStation st, ConnectorType ct, LocalDateTime end, double kwh, int minutes) {
+        int n = seq.incrementAndGet();
+        LocalDateTime start = end.minusMinutes(minutes);
+        Booking booking = Booking.builder().station(st).bookingTime(start).scheduledStartTime(start)
+                .scheduledEndTime(end).status(BookingStatus.COMPLETED).build();
+        entityManager.persist(booking);
+        ChargingSession cs = ChargingSession.builder().booking(booking).startTime(start).endTime(end)
+                .billing(SessionBillingSnapshot.builder().connectorTypeId(ct.getConnectorTypeId())
+                        .pointNumber("P" + n).build())
+                .initialSoc(20).energyKWh(kwh).durationMinutes(minutes)
+                .status(ChargingSessionStatus.COMPLETED).build();
+        entityManager.persist(cs);
+        return cs;
+    }
+
+    private Invoice paidInvoice(ChargingSession cs, double amount, LocalDateTime paidAt) {
+        Invoice invoice = Invoice.builder().session(cs).amount(amount).currency("VND")
+                .status(InvoiceStatus.PAID).issuedAt(cs.getEndTime()).paidAt(paidAt).build();
+        entityManager.persist(invoice);
+        return invoice;
+    }
+}
@@ -0,0 +1,102 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.swp391.gr3.ev_management.entity.ConnectorType;
+import com.swp391.gr3.ev_management.entity.Tariff;
+import com.swp391.gr3.ev_management.repository.TariffRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.mockito.Mockito;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH: tính tiền 1 phiên qua TouPricingEngine (12 tariff / năm + 3 khung giờ) — đường tính lại hóa đơn hàng loạt
+ * (không itemize) và đường dừng phiên (itemize).
+ *
+ * Chạy tay (không nằm trong mvn test):
+ *   mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.swp391.gr3.ev_management.service.TouPricingEngineBenchmark
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TouPricingEngineBenchmark {
+
+    private static final int N = 1024;
+    private static final long CONNECTOR = 1L;
+
+    private TouPricingEngine engine;
+    private ChargingCurveEngine.Curve curve;
+    private final long[] startSec = new long[N];
+    private final long[] endSec = new long[N];
+    private final double[] energy = new double[N];
+    private final TouPricingEngine.EnergyProfile[] profiles = new TouPricingEngine.EnergyProfile[N];
+    private int i;
+
+    @Setup
+    public void setup() {
+        // Mỗi tháng 1 tariff mới (đổi giá đầu tháng)
+        ConnectorType ct = new ConnectorType();
+        ct.setConnectorTypeId(CONNECTOR);
+        List<Tariff> tariffs = new ArrayList<>();
+        for (int m = 1; m <= 12; m++) {
+            LocalDateTime from = LocalDateTime.of(2026, m, 1, 0, 0);
+            tariffs.add(Tariff.builder().tariffId((long) m).connectorType(ct)
+                    .pricePerKWh(3000 + 100 * m).pricePerMin(500).currency("VND")
+                    .effectiveFrom(from).effectiveTo(from.plusMonths(1).minusSeconds(1)).build());
+        }
+        TariffRepository repo = Mockito.mock(TariffRepository.class);
+        Mockito.when(repo.findAllWithConnectorType()).thenReturn(tariffs);
+        TariffIndex index = new TariffIndex(repo, new SimpleMeterRegistry());
+        index.reload();
+
+        engine = new TouPricingEngine(index, "17:00-22:00=1.3,22:00-06:00=0.8");
+        curve = new ChargingCurveEngine().curveFor(77.0, 150.0, "DC");
+
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        long yearStart = TariffIndex.epochSec(LocalDateTime.of(2026, 1, 1, 0, 0));
+        for (int k = 0; k < N; k++) {
+            startSec[k] = yearStart + rnd.nextLong(360L * 86_400);
+            endSec[k] = startSec[k] + rnd.nextLong(15, 240) * 60;
+            energy[k] = rnd.nextDouble(5, 60);
+            profiles[k] = ChargingSessionTxHandler.energyProfile(curve, 20, energy[k], startSec[k], endSec[k]);
+        }
+    }
+
+    @Benchmark
+    public double rebill() {
+        int k = (i++) & (N - 1);
+        return engine.price(CONNECTOR, startSec[k], endSec[k] + 1800, profiles[k],
+                endSec[k], endSec[k] + 1800, null, false).total();
+    }
+
+    @Benchmark
+    public int stopItemized() {
+        int k = (i++) & (N - 1);
+        return engine.price(CONNECTOR, startSec[k], endSec[k] + 1800, profiles[k],
+                endSec[k], endSec[k] + 1800, null, true).lines().size();
+    }
+
+    /** Mốc so sánh: 1 giá cho cả phiên (cách tính cũ, không cắt đoạn) */
+    @Benchmark
+    public double flatSinglePrice() {
+        int k = (i++) & (N - 1);
+        return energy[k] * 3500 + 30 * 500;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TouPricingEngineBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
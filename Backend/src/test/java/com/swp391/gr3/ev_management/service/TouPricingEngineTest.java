@@ -0,0 +1,261 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.swp391.gr3.ev_management.entity.ConnectorType;
+import com.swp391.gr3.ev_management.entity.Tariff;
+import com.swp391.gr3.ev_management.repository.TariffRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * TouPricingEngine: giữ giá tariff chụp lúc start, lấp đoạn không có tariff, cắt theo lúc đổi giá / khung giờ / khoảng phạt,
+ * cấu hình khung giờ, và độ trễ p99 của phần itemize tiền trong bộ nhớ (số truy vấn của stop: ChargingSessionStopQueryCountTest).
+ */
+class TouPricingEngineTest {
+
+    private static final Logger log = LoggerFactory.getLogger(TouPricingEngineTest.class);
+
+    private static final long CONNECTOR = 1L;
+    private static final LocalDateTime DAY = LocalDateTime.of(2026, 3, 10, 0, 0);
+
+    // =========================================================================
+    // TARIFF GHIM LÚC START
+    // =========================================================================
+
+    @Test
+    void stopKeepsStartTimePriceWhileThatTariffIsStillTheActiveOne() {
+        // Tariff 1 lúc start giá 3000, admin đã sửa thành 5000; từ 12:00 tariff 2 (4000) thay thế
+        TouPricingEngine engine = engine("", List.of(
+                tariff(1, 5000, 500, DAY.withHour(0), DAY.withHour(12)),
+                tariff(2, 4000, 500, DAY.withHour(12), DAY.plusDays(1))));
+        TariffIndex.ActiveTariff pinned = pinned(1, 3000, 500);
+
+        long start = sec(DAY.withHour(11));
+        long end = sec(DAY.withHour(13));
+        TouPricingEngine.Quote q = engine.price(CONNECTOR, start, end, linear(start, end, 20.0),
+                end, end, pinned, true);
+
+        // 11:00-12:00: giá đã chụp 3000 (không phải 5000 đã sửa); 12:00-13:00: tariff mới 4000
+        assertThat(q.priced()).isTrue();
+        assertThat(q.energyCost()).isCloseTo(10 * 3000 + 10 * 4000, within(1e-6));
+        assertThat(q.lines()).extracting(TouPricingEngine.Line::tariffId).containsExactly(1L, 2L);
+        assertThat(q.lines().get(0).pricePerKWh()).isEqualTo(3000);
+    }
+
+    @Test
+    void pinnedTariffFillsPeriodsWithoutAnyTariff() {
+        // Chỉ có tariff 2 từ 12:00; 11:00-12:00 không có tariff → dùng tariff ghim nếu có, không thì miễn phí
+        TouPricingEngine engine = engine("", List.of(tariff(2, 4000, 500, DAY.withHour(12), DAY.plusDays(1))));
+        long start = sec(DAY.withHour(11));
+        long end = sec(DAY.withHour(13));
+
+        TouPricingEngine.Quote filled = engine.price(CONNECTOR, start, end, linear(start, end, 20.0),
+                end, end, pinned(1, 3000, 500), true);
+        assertThat(filled.energyCost()).isCloseTo(10 * 3000 + 10 * 4000, within(1e-6));
+        assertThat(filled.lines()).extracting(TouPricingEngine.Line::tariffId).containsExactly(1L, 2L);
+
+        TouPricingEngine.Quote unpinned = engine.price(CONNECTOR, start, end, linear(start, end, 20.0),
+                end, end, null, true);
+        assertThat(unpinned.energyKWh()).isCloseTo(20.0, within(1e-9));
+        assertThat(unpinned.energyCost()).isCloseTo(10 * 4000, within(1e-6));
+        assertThat(unpinned.lines().get(0).tariffId()).isNull();
+        assertThat(unpinned.lines().get(0).energyCost()).isZero();
+    }
+
+    @Test
+    void repriceUsesTheEditedPriceButStillFillsGapsWithThePinnedTariff() {
+        // Tariff 1 đã sửa 3000 → 5000 và chỉ hiệu lực tới 12:00; 12:00-13:00 không có tariff
+        TouPricingEngine engine = engine("", List.of(tariff(1, 5000, 500, DAY.withHour(0), DAY.withHour(12))));
+        long start = sec(DAY.withHour(11));
+        long end = sec(DAY.withHour(13));
+
+        TouPricingEngine.Quote q = engine.reprice(CONNECTOR, start, end, linear(start, end, 20.0),
+                end, end, pinned(1, 3000, 500));
+
+        assertThat(q.energyCost()).isCloseTo(10 * 5000 + 10 * 3000, within(1e-6));
+        assertThat(q.lines()).isEmpty();
+    }
+
+    // =========================================================================
+    // PHIÊN VẮT QUA LÚC ĐỔI GIÁ / KHUNG GIỜ
+    // =========================================================================
+
+    @Test
+    void sessionSpanningTwoTariffsIsSplitAtTheChange() {
+        TouPricingEngine engine = engine("", List.of(
+                tariff(1, 3000, 500, DAY.withHour(0), DAY.withHour(12)),
+                tariff(2, 4000, 500, DAY.withHour(12), DAY.plusDays(1))));
+        long start = sec(DAY.withHour(11));
+        long end = sec(DAY.withHour(13));
+
+        TouPricingEngine.Quote q = engine.price(CONNECTOR, start, end, linear(start, end, 20.0), end, end, null, true);
+
+        assertThat(q.currency()).isEqualTo("VND");
+        assertThat(q.energyCost()).isCloseTo(10 * 3000 + 10 * 4000, within(1e-6));
+        assertThat(q.averagePricePerKWh()).isCloseTo(3500, within(1e-6));
+        assertThat(q.lines()).extracting(TouPricingEngine.Line::tariffId).containsExactly(1L, 2L);
+        assertThat(q.lines().get(0).to()).isEqualTo(DAY.withHour(12));
+        assertThat(q.lines().get(1).from()).isEqualTo(DAY.withHour(12));
+    }
+
+    @Test
+    void bandFactorMultipliesEnergyAndTimePrices() {
+        TouPricingEngine engine = engine("17:00-22:00=1.5",
+                List.of(tariff(1, 3000, 500, DAY.withHour(0), DAY.plusDays(1))));
+        long start = sec(DAY.withHour(16));
+        long end = sec(DAY.withHour(18));
+        long idleFrom = sec(DAY.withHour(16).withMinute(30));
+        long idleTo = sec(DAY.withHour(17).withMinute(30));
+
+        TouPricingEngine.Quote q = engine.price(CONNECTOR, start, end, linear(start, end, 20.0),
+                idleFrom, idleTo, null, true);
+
+        // 16:00-17:00 hệ số 1.0, 17:00-18:00 hệ số 1.5
+        assertThat(q.energyCost()).isCloseTo(10 * 3000 + 10 * 3000 * 1.5, within(1e-6));
+        assertThat(q.billedMinutes()).isCloseTo(60, within(1e-9));
+        assertThat(q.timeCost()).isCloseTo(30 * 500 + 30 * 500 * 1.5, within(1e-6));
+        assertThat(q.lines()).extracting(TouPricingEngine.Line::band).containsExactly("00:00-17:00", "17:00-22:00");
+        assertThat(q.lines().get(1).pricePerKWh()).isEqualTo(4500);
+        assertThat(q.lines().get(1).pricePerMin()).isEqualTo(750);
+    }
+
+    @Test
+    void idlePenaltyIsSlicedByTariffAndBand() {
+        // Sạc 10:00-11:30, chiếm chỗ bị phạt 11:30-13:00; đổi giá phút lúc 12:00, khung ×2 từ 12:30
+        TouPricingEngine engine = engine("12:30-13:00=2", List.of(
+                tariff(1, 3000, 500, DAY.withHour(0), DAY.withHour(12)),
+                tariff(2, 3000, 1000, DAY.withHour(12), DAY.plusDays(1))));
+        long start = sec(DAY.withHour(10));
+        long idleFrom = sec(DAY.withHour(11).withMinute(30));
+        long end = sec(DAY.withHour(13));
+
+        TouPricingEngine.Quote q = engine.price(CONNECTOR, start, end, linear(start, idleFrom, 10.0),
+                idleFrom, end, null, true);
+
+        assertThat(q.energyCost()).isCloseTo(10 * 3000, within(1e-6));
+        assertThat(q.billedMinutes()).isCloseTo(90, within(1e-9));
+        assertThat(q.timeCost()).isCloseTo(30 * 500 + 30 * 1000 + 30 * 1000 * 2, within(1e-6));
+        assertThat(q.total()).isCloseTo(q.energyCost() + q.timeCost(), within(1e-9));
+        assertThat(q.lines()).extracting(TouPricingEngine.Line::billedMinutes)
+                .containsExactly(30.0, 30.0, 30.0);
+    }
+
+    // =========================================================================
+    // CẤU HÌNH KHUNG GIỜ
+    // =========================================================================
+
+    @Test
+    void bandWithSameStartAndEndCoversTheWholeDay() {
+        assertThat(TouPricingEngine.parseBands("00:00-24:00=1.2")).containsOnly(1.2);
+        assertThat(TouPricingEngine.parseBands("08:00-08:00=0.5")).containsOnly(0.5);
+
+        TouPricingEngine engine = engine("00:00-24:00=1.2",
+                List.of(tariff(1, 3000, 500, DAY.withHour(0), DAY.plusDays(1))));
+        assertThat(engine.describeBands()).isEqualTo("00:00-24:00×1.2");
+        long start = sec(DAY.withHour(9));
+        long end = sec(DAY.withHour(10));
+        TouPricingEngine.Quote q = engine.price(CONNECTOR, start, end, linear(start, end, 10.0), end, end, null, false);
+        assertThat(q.energyCost()).isCloseTo(10 * 3000 * 1.2, within(1e-6));
+    }
+
+    @Test
+    void bandCrossingMidnightWrapsAround() {
+        double[] factor = TouPricingEngine.parseBands("22:00-06:00=0.8");
+
+        assertThat(factor[21 * 60 + 59]).isEqualTo(1.0);
+        assertThat(factor[22 * 60]).isEqualTo(0.8);
+        assertThat(factor[0]).isEqualTo(0.8);
+        assertThat(factor[5 * 60 + 59]).isEqualTo(0.8);
+        assertThat(factor[6 * 60]).isEqualTo(1.0);
+    }
+
+    // =========================================================================
+    // ĐỘ TRỄ
+    // =========================================================================
+
+    @Test
+    void itemizedPricingP99StaysUnderOneMillisecond() {
+        // 12 tariff / năm (đổi giá đầu tháng) + 3 khung giờ, itemize như lúc stop
+        List<Tariff> tariffs = new ArrayList<>();
+        for (int m = 1; m <= 12; m++) {
+            LocalDateTime from = LocalDateTime.of(2026, m, 1, 0, 0);
+            tariffs.add(tariff(m, 3000 + 100 * m, 500, from, from.plusMonths(1)));
+        }
+        TouPricingEngine engine = engine("17:00-22:00=1.3,22:00-06:00=0.8", tariffs);
+        ChargingCurveEngine.Curve curve = new ChargingCurveEngine().curveFor(77.0, 150.0, "DC");
+
+        Random rnd = new Random(42);
+        long yearStart = sec(LocalDateTime.of(2026, 1, 1, 0, 0));
+        int warmup = 20_000;
+        int runs = 20_000;
+        long[] nanos = new long[runs];
+        double sink = 0;
+        for (int k = 0; k < warmup + runs; k++) {
+            long start = yearStart + (long) (rnd.nextDouble() * 360 * 86_400);
+            long end = start + (15 + rnd.nextInt(225)) * 60L;
+            TouPricingEngine.EnergyProfile profile =
+                    ChargingSessionTxHandler.energyProfile(curve, 20, 5 + rnd.nextDouble() * 55, start, end);
+
+            long t0 = System.nanoTime();
+            TouPricingEngine.Quote q = engine.price(CONNECTOR, start, end + 1800, profile,
+                    end, end + 1800, null, true);
+            long elapsed = System.nanoTime() - t0;
+
+            sink += q.total();
+            if (k >= warmup) nanos[k - warmup] = elapsed;
+        }
+        Arrays.sort(nanos);
+        long p50 = nanos[runs / 2];
+        long p99 = nanos[(int) Math.ceil(runs * 0.99) - 1];
+        log.info("[stop-pricing] runs={} p50={} µs p99={} µs max={} µs (checksum {})",
+                runs, p50 / 1_000.0, p99 / 1_000.0, nanos[runs - 1] / 1_000.0, Math.round(sink));
+
+        assertThat(sink).isPositive();
+        assertThat(p99).isLessThan(1_000_000L);
+    }
+
+    // =========================================================================
+    // HELPERS
+    // =========================================================================
+
+    static TouPricingEngine engine(String bands, List<Tariff> tariffs) {
+        TariffRepository repo = mock(TariffRepository.class);
+        when(repo.findAllWithConnectorType()).thenReturn(tariffs);
+        TariffIndex index = new TariffIndex(repo, new SimpleMeterRegistry());
+        index.reload();
+        return new TouPricingEngine(index, bands);
+    }
+
+    static Tariff tariff(long id, double pricePerKWh, double pricePerMin, LocalDateTime from, LocalDateTime to) {
+        ConnectorType ct = new ConnectorType();
+        ct.setConnectorTypeId(CONNECTOR);
+        return Tariff.builder().tariffId(id).connectorType(ct)
+                .pricePerKWh(pricePerKWh).pricePerMin(pricePerMin).currency("VND")
+                .effectiveFrom(from).effectiveTo(to).build();
+    }
+
+    static TariffIndex.ActiveTariff pinned(long id, double pricePerKWh, double pricePerMin) {
+        return new TariffIndex.ActiveTariff(id, CONNECTOR, pricePerKWh, pricePerMin, "VND", null, null);
+    }
+
+    /** Điện năng tăng đều từ 0 ở start tới totalKWh ở end */
+    static TouPricingEngine.EnergyProfile linear(long start, long end, double totalKWh) {
+        return s -> totalKWh * Math.min(1.0, Math.max(0.0, (double) (s - start) / (end - start)));
+    }
+
+    static long sec(LocalDateTime t) {
+        return TariffIndex.epochSec(t);
+    }
+}
@@ -0,0 +1,219 @@
+package com.swp391.gr3.ev_management.service;
+
+import com.swp391.gr3.ev_management.dto.response.HourlyOccupancyDto;
+import com.swp391.gr3.ev_management.dto.response.StationUtilizationResponse;
+import com.swp391.gr3.ev_management.dto.response.UtilizationRowDto;
+import com.swp391.gr3.ev_management.entity.*;
+import com.swp391.gr3.ev_management.enums.*;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.*;
+
+import static com.swp391.gr3.ev_management.util.TenantTime.TENANT_ZONE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.assertj.core.api.Assertions.tuple;
+
+/**
+ * UtilizationService: quét hợp khoảng theo trụ (phiên trùng / chồng / nối tiếp chỉ tính 1 lần), cắt bucket theo giờ
+ * qua nhiều giờ / nhiều ngày, phiên IN_PROGRESS tính tới hiện tại, refreshRecent chỉ dựng lại cửa sổ lookback,
+ * rebuild đồng thời không ghi trùng bucket, đường cong chia đúng dung lượng của từng giờ trong ngày.
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:utilization;DB_CLOSE_DELAY=-1;NON_KEYWORDS=YEAR,VALUE",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false",
+        "app.utilization.lookback-hours=6",
+        "app.utilization.rebuild-on-startup=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(UtilizationService.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class UtilizationServiceTest {
+
+    private static final LocalDate DAY = LocalDate.of(2026, 3, 10);
+
+    @Autowired private UtilizationService utilizationService;
+    @Autowired private EntityManager entityManager;
+    @Autowired private JdbcTemplate jdbcTemplate;
+    @Autowired private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate tx;
+    private ChargingStation station;
+    private ChargingPoint p1;
+    private ChargingPoint p2;
+
+    @BeforeEach
+    void seedStation() {
+        tx = new TransactionTemplate(transactionManager);
+        tx.executeWithoutResult(s -> {
+            jdbcTemplate.update("DELETE FROM point_hourly_occupancy");
+            jdbcTemplate.update("DELETE FROM charging_session");
+            jdbcTemplate.update("DELETE FROM bookings");
+            jdbcTemplate.update("DELETE FROM charging_points");
+            jdbcTemplate.update("DELETE FROM charging_stations");
+            jdbcTemplate.update("DELETE FROM connector_type");
+
+            ConnectorType ct = ConnectorType.builder().code("CCS2").mode("DC").displayName("CCS2")
+                    .defaultMaxPowerKW(60).isDeprecated(false).build();
+            entityManager.persist(ct);
+            station = ChargingStation.builder().stationName("Station").address("Addr")
+                    .latitude(10.0).longitude(106.0).operatingHours("00:00-24:00")
+                    .status(ChargingStationStatus.ACTIVE).build();
+            entityManager.persist(station);
+            p1 = point(ct, "P1");
+            p2 = point(ct, "P2");
+        });
+    }
+
+    @Test
+    void overlappingDuplicateAndMultiDaySessionsAreCountedOncePerHour() throws Exception {
+        tx.executeWithoutResult(s -> {
+            // P1: 2 phiên trùng hệt, 1 phiên chồng, 1 phiên nối tiếp → hợp [10:00, 12:30); phiên rời [14:00, 14:20)
+            session(p1, DAY.atTime(10, 0), DAY.atTime(11, 30));
+            session(p1, DAY.atTime(10, 0), DAY.atTime(11, 30));
+            session(p1, DAY.atTime(11, 0), DAY.atTime(12, 15));
+            session(p1, DAY.atTime(12, 15), DAY.atTime(12, 30));
+            session(p1, DAY.atTime(14, 0), DAY.atTime(14, 20));
+            // P2: qua nửa đêm → 2 chunk ngày
+            session(p2, DAY.atTime(22, 30), DAY.plusDays(1).atTime(1, 15));
+        });
+
+        // Nhiều rebuild cùng lúc trên cùng khoảng (synchronized): không trùng UX_PointHourlyOccupancy_Bucket
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        List<Future<Integer>> runs = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            runs.add(pool.submit(() -> utilizationService.rebuild(DAY.atStartOfDay(), DAY.plusDays(2).atStartOfDay())));
+        }
+        for (Future<Integer> f : runs) {
+            assertThat(f.get(30, TimeUnit.SECONDS)).isEqualTo(8);
+        }
+        pool.shutdown();
+
+        assertThat(buckets(p1)).containsExactly(
+                entry(DAY.atTime(10, 0), 3600), entry(DAY.atTime(11, 0), 3600),
+                entry(DAY.atTime(12, 0), 1800), entry(DAY.atTime(14, 0), 1200));
+        assertThat(buckets(p2)).containsExactly(
+                entry(DAY.atTime(22, 0), 1800), entry(DAY.atTime(23, 0), 3600),
+                entry(DAY.plusDays(1).atTime(0, 0), 3600), entry(DAY.plusDays(1).atTime(1, 0), 900));
+
+        // 1 ngày: mỗi giờ trong ngày có 3600 s khả dụng / trụ, 2 trụ
+        StationUtilizationResponse day = utilizationService.station(station.getStationId(),
+                DAY.atStartOfDay(), DAY.plusDays(1).atStartOfDay());
+        assertThat(day.getPoints()).isEqualTo(2);
+        assertThat(day.getOccupiedHours()).isEqualTo(4.3); // (10200 + 5400) s
+        assertThat(day.getUtilizationPercent()).isEqualTo(9.0);
+        assertThat(day.getPointRows()).extracting(UtilizationRowDto::getName, UtilizationRowDto::getUtilizationPercent)
+                .containsExactlyInAnyOrder(tuple("P1", 11.8), tuple("P2", 6.3));
+        Map<Integer, Double> dayCurve = curve(day);
+        assertThat(dayCurve).containsEntry(10, 50.0).containsEntry(12, 25.0).containsEntry(14, 16.7)
+                .containsEntry(22, 25.0).containsEntry(23, 50.0).containsEntry(0, 0.0).containsEntry(3, 0.0);
+
+        // 2 ngày: mỗi giờ trong ngày xuất hiện 2 lần → dung lượng gấp đôi
+        Map<Integer, Double> twoDays = curve(utilizationService.station(station.getStationId(),
+                DAY.atStartOfDay(), DAY.plusDays(2).atStartOfDay()));
+        assertThat(twoDays).containsEntry(0, 25.0).containsEntry(1, 6.3).containsEntry(10, 25.0)
+                .containsEntry(23, 25.0);
+
+        // Danh sách trạm dùng cùng bucket
+        assertThat(utilizationService.stations(DAY.atStartOfDay(), DAY.plusDays(1).atStartOfDay()))
+                .singleElement().satisfies(r -> assertThat(r.getUtilizationPercent()).isEqualTo(9.0));
+    }
+
+    @Test
+    void refreshRecentRebuildsOnlyTheLookbackAndCountsInProgressUpToNow() {
+        LocalDateTime hour = LocalDateTime.now(TENANT_ZONE).truncatedTo(ChronoUnit.HOURS);
+        LocalDateTime running = LocalDateTime.now(TENANT_ZONE).truncatedTo(ChronoUnit.SECONDS).minusHours(2);
+        tx.executeWithoutResult(s -> {
+            // Phiên đang chạy (không có endTime) → tính tới lúc quét
+            ChargingSession live = session(p1, running, null);
+            live.setStatus(ChargingSessionStatus.IN_PROGRESS);
+            // Trong cửa sổ 6 giờ
+            session(p2, hour.minusHours(3), hour.minusHours(2));
+            // Ngoài cửa sổ: refreshRecent không đụng tới
+            session(p2, hour.minusHours(9), hour.minusHours(8));
+        });
+        // Bucket cũ sai trong cửa sổ (bị thay) và ngoài cửa sổ (giữ nguyên)
+        insertBucket(p2, hour.minusHours(1), 999);
+        insertBucket(p2, hour.minusHours(9), 777);
+
+        utilizationService.refreshRecent();
+
+        Map<LocalDateTime, Integer> p1Buckets = buckets(p1);
+        int p1Seconds = p1Buckets.values().stream().mapToInt(Integer::intValue).sum();
+        long sinceStart = ChronoUnit.SECONDS.between(running, LocalDateTime.now(TENANT_ZONE));
+        assertThat(p1Seconds).isBetween(7200, (int) sinceStart);
+        assertThat(p1Buckets).allSatisfy((bucket, sec) -> assertThat(sec).isBetween(1, 3600));
+
+        assertThat(buckets(p2)).containsExactly(
+                entry(hour.minusHours(9), 777),
+                entry(hour.minusHours(3), 3600));
+    }
+
+    private ChargingPoint point(ConnectorType ct, String number) {
+        ChargingPoint p = ChargingPoint.builder().station(station).connectorType(ct)
+                .pointNumber(number).serialNumber("SN-" + number)
+                .status(ChargingPointStatus.AVAILABLE)
+                .installationDate(DAY.atStartOfDay().minusYears(1)).maxPowerKW(60)
+                .build();
+        entityManager.persist(p);
+        return p;
+    }
+
+    private ChargingSession session(ChargingPoint p, LocalDateTime start, LocalDateTime end) {
+        Booking booking = Booking.builder().station(station).bookingTime(start).scheduledStartTime(start)
+                .scheduledEndTime(end != null ? end : start.plusHours(4)).status(BookingStatus.COMPLETED).build();
+        entityManager.persist(booking);
+        ChargingSession cs = ChargingSession.builder().booking(booking).startTime(start).endTime(end)
+                .billing(SessionBillingSnapshot.builder().pointId(p.getPointId())
+                        .pointNumber(p.getPointNumber()).build())
+                .initialSoc(20).energyKWh(0.0).durationMinutes(0)
+                .status(ChargingSessionStatus.COMPLETED).build();
+        entityManager.persist(cs);
+        return cs;
+    }
+
+    private void insertBucket(ChargingPoint p, LocalDateTime bucket, int seconds) {
+        jdbcTemplate.update("INSERT INTO point_hourly_occupancy (bucket_start, pointid, stationid, occupied_seconds, "
+                        + "updated_at) VALUES (?, ?, ?, ?, ?)", Timestamp.valueOf(bucket), p.getPointId(),
+                station.getStationId(), seconds, Timestamp.valueOf(bucket));
+    }
+
+    private Map<LocalDateTime, Integer> buckets(ChargingPoint p) {
+        Map<LocalDateTime, Integer> out = new TreeMap<>();
+        jdbcTemplate.query("SELECT bucket_start, occupied_seconds FROM point_hourly_occupancy WHERE pointid = ?",
+                rs -> {
+                    out.put(rs.getTimestamp(1).toLocalDateTime(), rs.getInt(2));
+                }, p.getPointId());
+        return out;
+    }
+
+    private static Map<Integer, Double> curve(StationUtilizationResponse r) {
+        Map<Integer, Double> out = new TreeMap<>();
+        for (HourlyOccupancyDto h : r.getCurve()) out.put(h.getHour(), h.getOccupancyPercent());
+        return out;
+    }
+}
@@ -0,0 +1,67 @@
+package com.swp391.gr3.ev_management.simulator;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Số liệu theo endpoint của FleetSimulator: số lời gọi, số lỗi (HTTP >= 400 / exception), độ trễ.
+ * Độ trễ giữ nguyên (µs) rồi sắp xếp lúc báo cáo — đủ nhanh cho vài trăm nghìn lời gọi.
+ */
+class EndpointStats {
+
+    private static final class Series {
+        final LongAdder calls = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final ConcurrentLinkedQueue<Long> micros = new ConcurrentLinkedQueue<>();
+        final Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+    }
+
+    private final Map<String, Series> byEndpoint = new ConcurrentHashMap<>();
+
+    void record(String endpoint, int status, long nanos) {
+        Series s = byEndpoint.computeIfAbsent(endpoint, k -> new Series());
+        s.calls.increment();
+        if (status <= 0 || status >= 400) s.errors.increment();
+        s.micros.add(nanos / 1_000);
+        s.statuses.computeIfAbsent(status, k -> new LongAdder()).increment();
+    }
+
+    long totalCalls() {
+        return byEndpoint.values().stream().mapToLong(s -> s.calls.sum()).sum();
+    }
+
+    long totalErrors() {
+        return byEndpoint.values().stream().mapToLong(s -> s.errors.sum()).sum();
+    }
+
+    /** Bảng báo cáo: throughput (req/s), p50 / p90 / p99 / max (ms), tỉ lệ lỗi, phân bố status */
+    String report(double seconds) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-22s %8s %9s %9s %9s %9s %9s %8s  %s%n",
+                "endpoint", "calls", "req/s", "p50 ms", "p90 ms", "p99 ms", "max ms", "err %", "status"));
+        byEndpoint.entrySet().stream()
+                .sorted(Map.Entry.comparingByKey())
+                .forEach(e -> {
+                    Series s = e.getValue();
+                    long[] lat = s.micros.stream().mapToLong(Long::longValue).toArray();
+                    Arrays.sort(lat);
+                    long calls = s.calls.sum();
+                    sb.append(String.format("%-22s %8d %9.1f %9.1f %9.1f %9.1f %9.1f %8.2f  %s%n",
+                            e.getKey(), calls, calls / seconds,
+                            pct(lat, 0.50), pct(lat, 0.90), pct(lat, 0.99),
+                            lat.length == 0 ? 0 : lat[lat.length - 1] / 1000.0,
+                            calls == 0 ? 0 : 100.0 * s.errors.sum() / calls,
+                            s.statuses));
+                });
+        return sb.toString();
+    }
+
+    private static double pct(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int i = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, i)] / 1000.0;
+    }
+}
@@ -0,0 +1,151 @@
+package com.swp391.gr3.ev_management.simulator;
+
+import com.swp391.gr3.ev_management.entity.*;
+import com.swp391.gr3.ev_management.enums.*;
+import com.swp391.gr3.ev_management.repository.*;
+import com.swp391.gr3.ev_management.service.TokenService;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Dựng dữ liệu cho FleetSimulator (chạy sau DataInitializer: đã có role, connector, model xe, tariff, payment method).
+ *
+ * - 1 trạm "SIM Station" với N trụ, mỗi trụ K slot có khung giờ bao trùm lúc chạy (bắt đầu sạc được ngay).
+ * - M driver (user + driver + xe) và 1 staff; token JWT ký trực tiếp bằng TokenService (không đi qua /login).
+ */
+class FleetSeeder {
+
+    private static final ZoneId TENANT_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+
+    /** Driver giả lập: token + xe dùng để đặt chỗ */
+    record SimDriver(Long userId, Long vehicleId, String token) { }
+
+    /** Dữ liệu đã seed */
+    record Fleet(List<SimDriver> drivers, String staffToken, ConcurrentLinkedQueue<Long> freeSlots, Long evmMethodId) { }
+
+    static Fleet seed(ConfigurableApplicationContext ctx, int points, int slotsPerPoint, int drivers, long windowMinutes) {
+        TransactionTemplate tx = ctx.getBean(TransactionTemplate.class);
+        TokenService tokenService = ctx.getBean(TokenService.class);
+
+        return tx.execute(status -> {
+            var roleRepo = ctx.getBean(RoleRepository.class);
+            var userRepo = ctx.getBean(UserRepository.class);
+            var driverRepo = ctx.getBean(DriverRepository.class);
+            var vehicleRepo = ctx.getBean(UserVehicleRepository.class);
+            var modelRepo = ctx.getBean(VehicleModelRepository.class);
+            var stationRepo = ctx.getBean(ChargingStationRepository.class);
+            var pointRepo = ctx.getBean(ChargingPointRepository.class);
+            var configRepo = ctx.getBean(SlotConfigRepository.class);
+            var templateRepo = ctx.getBean(SlotTemplateRepository.class);
+            var slotRepo = ctx.getBean(SlotAvailabilityRepository.class);
+            var methodRepo = ctx.getBean(PaymentMethodRepository.class);
+
+            VehicleModel model = modelRepo.findAll().stream()
+                    .filter(m -> m.getConnectorType() != null && "CCS2".equals(m.getConnectorType().getCode()))
+                    .findFirst()
+                    .or(() -> modelRepo.findAll().stream().filter(m -> m.getConnectorType() != null).findFirst())
+                    .orElseThrow(() -> new IllegalStateException("No vehicle model seeded (DataInitializer disabled?)"));
+            ConnectorType connector = model.getConnectorType();
+
+            // ===== TRẠM + TRỤ =====
+            LocalDateTime now = LocalDateTime.now(TENANT_ZONE);
+            ChargingStation station = stationRepo.save(ChargingStation.builder()
+                    .stationName("SIM Station")
+                    .address("Simulator")
+                    .latitude(10.77)
+                    .longitude(106.70)
+                    .operatingHours("00:00-24:00")
+                    .status(ChargingStationStatus.ACTIVE)
+                    .build());
+
+            List<ChargingPoint> cps = new ArrayList<>(points);
+            for (int i = 1; i <= points; i++) {
+                cps.add(pointRepo.save(ChargingPoint.builder()
+                        .station(station)
+                        .connectorType(connector)
+                        .pointNumber("SIM-" + i)
+                        .serialNumber("SIM-SN-" + i)
+                        .status(ChargingPointStatus.AVAILABLE)
+                        .installationDate(now)
+                        .maxPowerKW(150)
+                        .build()));
+            }
+
+            // ===== SLOT: mỗi trụ K slot, khung giờ [now - 5', now + windowMinutes] =====
+            SlotConfig config = configRepo.save(SlotConfig.builder()
+                    .station(station)
+                    .slotDurationMin((int) windowMinutes)
+                    .activeFrom(now.minusDays(1))
+                    .activeExpire(now.plusDays(1))
+                    .isActive(SlotConfigStatus.ACTIVE)
+                    .build());
+
+            ConcurrentLinkedQueue<Long> freeSlots = new ConcurrentLinkedQueue<>();
+            List<SlotAvailability> slots = new ArrayList<>(points * slotsPerPoint);
+            for (int k = 0; k < slotsPerPoint; k++) {
+                SlotTemplate t = templateRepo.save(SlotTemplate.builder()
+                        .config(config)
+                        .slotIndex(k + 1)
+                        .startTime(now.minusMinutes(5))
+                        .endTime(now.plusMinutes(windowMinutes))
+                        .build());
+                for (ChargingPoint cp : cps) {
+                    slots.add(SlotAvailability.builder()
+                            .template(t)
+                            .chargingPoint(cp)
+                            .status(SlotStatus.AVAILABLE)
+                            .date(now.minusMinutes(5))
+                            .build());
+                }
+            }
+            slotRepo.saveAll(slots).forEach(s -> freeSlots.add(s.getSlotId()));
+
+            // ===== DRIVER + STAFF =====
+            Role driverRole = roleRepo.findByRoleName("DRIVER");
+            Role staffRole = roleRepo.findByRoleName("STAFF");
+
+            List<SimDriver> simDrivers = new ArrayList<>(drivers);
+            for (int i = 1; i <= drivers; i++) {
+                User u = userRepo.save(User.builder()
+                        .email("sim.driver" + i + "@sim.local")
+                        .phoneNumber(String.format("087%07d", i))
+                        .passwordHash("{noop}sim")
+                        .name("Sim Driver " + i)
+                        .role(driverRole)
+                        .build());
+                Driver d = driverRepo.save(Driver.builder()
+                        .user(u)
+                        .status(DriverStatus.ACTIVE)
+                        .lastActiveAt(now)
+                        .build());
+                UserVehicle v = vehicleRepo.save(UserVehicle.builder()
+                        .driver(d)
+                        .vehiclePlate(String.format("SIM-%05d", i))
+                        .status(UserVehicleStatus.ACTIVE)
+                        .model(model)
+                        .build());
+                simDrivers.add(new SimDriver(u.getUserId(), v.getVehicleId(), tokenService.generateToken(u)));
+            }
+
+            User staff = userRepo.save(User.builder()
+                    .email("sim.staff@sim.local")
+                    .phoneNumber("0869999999")
+                    .passwordHash("{noop}sim")
+                    .name("Sim Staff")
+                    .role(staffRole)
+                    .build());
+
+            Long evmMethodId = methodRepo.findByProvider(PaymentProvider.EVM)
+                    .map(PaymentMethod::getMethodId)
+                    .orElseThrow(() -> new IllegalStateException("No EVM payment method seeded"));
+
+            return new Fleet(simDrivers, tokenService.generateToken(staff), freeSlots, evmMethodId);
+        });
+    }
+}
@@ -0,0 +1,288 @@
+package com.swp391.gr3.ev_management.simulator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.swp391.gr3.ev_management.EvManagementApplication;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Giả lập cục bộ N trụ sạc + M driver, chạy trọn luồng qua HTTP trên app thật (H2 trong bộ nhớ):
+ *   đặt chỗ → xác nhận → staff bắt đầu sạc → gửi telemetry → driver dừng → thanh toán EVM
+ *   (hóa đơn được outbox tạo bất đồng bộ → bước thanh toán chờ / thử lại tới khi có hóa đơn).
+ *
+ * Luồng mới tới theo phân phối Poisson (sim.arrival-rate luồng / giây); mỗi luồng dùng 1 slot + 1 driver rảnh,
+ * hết slot / driver rảnh thì luồng bị bỏ (đếm "dropped"). Cuối cùng log throughput, p50 / p90 / p99 / max
+ * và tỉ lệ lỗi theo endpoint; tỉ lệ lỗi tổng > sim.max-error-rate → exit code 1.
+ *
+ * Chạy tay (không nằm trong mvn test):
+ *   mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *       -Dexec.mainClass=com.swp391.gr3.ev_management.simulator.FleetSimulator \
+ *       -Dsim.points=20 -Dsim.drivers=200 -Dsim.arrival-rate=10 -Dsim.duration-s=60
+ *
+ * Tham số (-D): sim.points, sim.slots-per-point, sim.drivers, sim.arrival-rate, sim.duration-s,
+ * sim.telemetry-per-session, sim.telemetry-interval-ms, sim.concurrency, sim.pool-size, sim.max-error-rate.
+ */
+@Slf4j
+public class FleetSimulator {
+
+    private static final ZoneId TENANT_ZONE = ZoneId.of("Asia/Ho_Chi_Minh");
+
+    // Thanh toán: chờ outbox tạo hóa đơn (404 = chưa có hóa đơn)
+    private static final int PAY_ATTEMPTS = 50;
+    private static final long PAY_BACKOFF_MS = 100;
+
+    private final HttpClient http = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(5))
+            .executor(Executors.newCachedThreadPool())
+            .build();
+    private final ObjectMapper json = JsonMapper.builder().addModule(new JavaTimeModule()).build();
+    private final EndpointStats stats = new EndpointStats();
+    private final LongAdder flowsDone = new LongAdder();
+    private final LongAdder flowsFailed = new LongAdder();
+    private final LongAdder flowsDropped = new LongAdder();
+    private final LongAdder payRetries = new LongAdder();
+
+    private final String baseUrl;
+    private final FleetSeeder.Fleet fleet;
+    private final BlockingQueue<FleetSeeder.SimDriver> idleDrivers;
+    private final int telemetryPerSession;
+    private final long telemetryIntervalMs;
+
+    private FleetSimulator(String baseUrl, FleetSeeder.Fleet fleet, int telemetryPerSession, long telemetryIntervalMs) {
+        this.baseUrl = baseUrl;
+        this.fleet = fleet;
+        this.idleDrivers = new LinkedBlockingQueue<>(fleet.drivers());
+        this.telemetryPerSession = telemetryPerSession;
+        this.telemetryIntervalMs = telemetryIntervalMs;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int points = Integer.getInteger("sim.points", 20);
+        int slotsPerPoint = Integer.getInteger("sim.slots-per-point", 50);
+        int drivers = Integer.getInteger("sim.drivers", 200);
+        double arrivalRate = Double.parseDouble(System.getProperty("sim.arrival-rate", "10"));
+        int durationS = Integer.getInteger("sim.duration-s", 60);
+        int telemetryPerSession = Integer.getInteger("sim.telemetry-per-session", 5);
+        long telemetryIntervalMs = Long.getLong("sim.telemetry-interval-ms", 200L);
+        int concurrency = Integer.getInteger("sim.concurrency", 64);
+        double maxErrorRate = Double.parseDouble(System.getProperty("sim.max-error-rate", "0.01"));
+
+        // Mỗi request giữ 1 connection (open-in-view); listener email chạy ở luồng mail nên không giữ thêm
+        // → mặc định 1 connection / luồng + 10 cho các job nền (outbox, telemetry, auto-stop, ...)
+        int poolSize = Integer.getInteger("sim.pool-size", concurrency + 10);
+
+        ConfigurableApplicationContext ctx = boot(poolSize);
+        int exit;
+        try {
+            String baseUrl = "http://localhost:" + ctx.getEnvironment().getProperty("local.server.port");
+            long t0 = System.nanoTime();
+            FleetSeeder.Fleet fleet = FleetSeeder.seed(ctx, points, slotsPerPoint, drivers, 120);
+            log.info("[sim] seeded {} points, {} slots, {} drivers in {} ms",
+                    points, fleet.freeSlots().size(), drivers, (System.nanoTime() - t0) / 1_000_000);
+
+            FleetSimulator sim = new FleetSimulator(baseUrl, fleet, telemetryPerSession, telemetryIntervalMs);
+            double seconds = sim.run(arrivalRate, durationS, concurrency);
+
+            log.info("[sim] results\n{}", sim.stats.report(seconds));
+            long calls = sim.stats.totalCalls();
+            double errorRate = calls == 0 ? 0 : (double) sim.stats.totalErrors() / calls;
+            log.info("[sim] flows done={} failed={} dropped={} ({} flows/s), pay retries={}, error rate={} (max {})",
+                    sim.flowsDone.sum(), sim.flowsFailed.sum(), sim.flowsDropped.sum(),
+                    String.format("%.1f", sim.flowsDone.sum() / seconds), sim.payRetries.sum(),
+                    String.format("%.4f", errorRate), String.format("%.4f", maxErrorRate));
+            exit = errorRate > maxErrorRate ? 1 : 0;
+        } finally {
+            ctx.close();
+        }
+        System.exit(exit);
+    }
+
+    /** Khởi động app với H2 trong bộ nhớ, cổng ngẫu nhiên, không phụ thuộc dịch vụ ngoài */
+    private static ConfigurableApplicationContext boot(int poolSize) {
+        SpringApplication app = new SpringApplication(EvManagementApplication.class);
+        return app.run(
+                "--server.port=0",
+                "--spring.datasource.url=jdbc:h2:mem:sim;DB_CLOSE_DELAY=-1;NON_KEYWORDS=YEAR,VALUE",
+                "--spring.datasource.driver-class-name=org.h2.Driver",
+                "--spring.datasource.username=sa",
+                "--spring.datasource.password=",
+                "--spring.datasource.hikari.maximum-pool-size=" + poolSize,
+                "--spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+                "--spring.jpa.hibernate.ddl-auto=create-drop",
+                "--spring.jpa.show-sql=false",
+                // OAuth2 Google: giá trị giả + provider "sim" với endpoint tường minh (không gọi issuer discovery)
+                "--spring.security.oauth2.client.registration.google.client-id=sim",
+                "--spring.security.oauth2.client.registration.google.client-secret=sim",
+                "--spring.security.oauth2.client.registration.google.provider=sim",
+                "--spring.security.oauth2.client.registration.google.authorization-grant-type=authorization_code",
+                "--spring.security.oauth2.client.provider.sim.authorization-uri=https://accounts.google.com/o/oauth2/v2/auth",
+                "--spring.security.oauth2.client.provider.sim.token-uri=https://oauth2.googleapis.com/token",
+                "--spring.security.oauth2.client.provider.sim.jwk-set-uri=https://www.googleapis.com/oauth2/v3/certs",
+                "--spring.security.oauth2.client.provider.sim.user-info-uri=https://openidconnect.googleapis.com/v1/userinfo",
+                "--spring.security.oauth2.client.provider.sim.user-name-attribute=sub",
+                // Email: trỏ về cổng đóng → gửi lỗi ngay (chạy nền, không ảnh hưởng luồng chính)
+                "--spring.mail.host=127.0.0.1",
+                "--spring.mail.port=1",
+                "--logging.level.root=WARN",
+                "--logging.level.org.hibernate.SQL=WARN",
+                "--logging.level.com.swp391.gr3.ev_management.service.EmailServiceImpl=OFF"
+        );
+    }
+
+    // =========================================================================
+    // LOAD
+    // =========================================================================
+
+    /** Phát luồng theo Poisson trong durationS giây, chờ các luồng đang chạy xong; trả về số giây đo */
+    private double run(double arrivalRate, int durationS, int concurrency) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(concurrency);
+        Semaphore inFlight = new Semaphore(concurrency);
+        long start = System.nanoTime();
+        long end = start + TimeUnit.SECONDS.toNanos(durationS);
+        long next = start;
+
+        while (next < end) {
+            // Khoảng cách giữa 2 lần tới ~ Exp(arrivalRate)
+            next += (long) (-Math.log(1 - ThreadLocalRandom.current().nextDouble()) / arrivalRate * 1e9);
+            long wait = next - System.nanoTime();
+            if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+
+            FleetSeeder.SimDriver driver = idleDrivers.poll();
+            Long slotId = (driver == null) ? null : fleet.freeSlots().poll();
+            if (driver == null || slotId == null || !inFlight.tryAcquire()) {
+                if (driver != null) idleDrivers.add(driver);
+                if (slotId != null) fleet.freeSlots().add(slotId);
+                flowsDropped.increment();
+                continue;
+            }
+            pool.execute(() -> {
+                try {
+                    if (flow(driver, slotId)) flowsDone.increment();
+                    else flowsFailed.increment();
+                } catch (Exception e) {
+                    flowsFailed.increment();
+                } finally {
+                    idleDrivers.add(driver);
+                    inFlight.release();
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(10, TimeUnit.MINUTES);
+        return (System.nanoTime() - start) / 1e9;
+    }
+
+    /** 1 luồng trọn vẹn của 1 driver; false = dừng giữa chừng do lỗi */
+    private boolean flow(FleetSeeder.SimDriver driver, Long slotId) throws Exception {
+        // 1) Đặt chỗ
+        JsonNode booking = call("booking.create", post("/api/bookings/create", driver.token(),
+                Map.of("vehicleId", driver.vehicleId(), "slotIds", List.of(slotId))));
+        if (booking == null) return false;
+        long bookingId = booking.path("bookingId").asLong();
+
+        // 2) Xác nhận (trả về ảnh QR)
+        if (call("booking.confirm", HttpRequest.newBuilder(uri("/api/bookings/" + bookingId + "/confirm"))
+                .header("Authorization", "Bearer " + driver.token())
+                .PUT(HttpRequest.BodyPublishers.noBody())) == null) return false;
+
+        // 3) Staff bắt đầu phiên sạc
+        JsonNode started = call("session.start", post("/api/charging-sessions/start", fleet.staffToken(),
+                Map.of("bookingId", bookingId)));
+        if (started == null) return false;
+        long sessionId = started.path("sessionId").asLong();
+        int soc = started.path("initialSoc").asInt(20);
+
+        // 4) Telemetry từ trụ (mỗi lần 1 batch 1 điểm đo)
+        double energy = 0;
+        for (int i = 0; i < telemetryPerSession; i++) {
+            Thread.sleep(telemetryIntervalMs);
+            soc = Math.min(100, soc + 1);
+            energy += 0.5;
+            List<Map<String, Object>> batch = new ArrayList<>(1);
+            batch.add(Map.of("sessionId", sessionId,
+                    "measuredAt", LocalDateTime.now(TENANT_ZONE),
+                    "soc", soc, "powerKw", 60.0, "energyKwh", energy));
+            call("session.telemetry", post("/api/charging-sessions/telemetry", fleet.staffToken(), batch));
+        }
+
+        // 5) Driver dừng phiên
+        if (call("session.driver-stop", post("/api/charging-sessions/driver-stop", driver.token(),
+                Map.of("sessionId", sessionId, "finalSoc", soc))) == null) return false;
+
+        // 6) Thanh toán EVM — hóa đơn do outbox tạo sau commit, 404 = chưa có → chờ rồi thử lại
+        HttpRequest.Builder pay = HttpRequest.newBuilder(uri("/api/payment/vnpay/create?sessionId=" + sessionId
+                        + "&paymentMethodId=" + fleet.evmMethodId()))
+                .header("Authorization", "Bearer " + driver.token())
+                .POST(HttpRequest.BodyPublishers.noBody());
+        long t0 = System.nanoTime();
+        for (int attempt = 1; ; attempt++) {
+            HttpResponse<String> res = send(pay.build());
+            int status = res == null ? 0 : res.statusCode();
+            if (status == 404 && attempt < PAY_ATTEMPTS) {
+                payRetries.increment();
+                Thread.sleep(PAY_BACKOFF_MS);
+                continue;
+            }
+            // Độ trễ thanh toán tính cả thời gian chờ hóa đơn
+            stats.record("payment.evm", status, System.nanoTime() - t0);
+            return status >= 200 && status < 300;
+        }
+    }
+
+    // =========================================================================
+    // HTTP
+    // =========================================================================
+
+    private HttpRequest.Builder post(String path, String token, Object body) throws Exception {
+        return HttpRequest.newBuilder(uri(path))
+                .header("Authorization", "Bearer " + token)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(json.writeValueAsString(body)));
+    }
+
+    private URI uri(String path) {
+        return URI.create(baseUrl + path);
+    }
+
+    /** Gửi + ghi số liệu; trả về body JSON (rỗng nếu không phải JSON) khi 2xx, null khi lỗi */
+    private JsonNode call(String endpoint, HttpRequest.Builder req) {
+        long t0 = System.nanoTime();
+        HttpResponse<String> res = send(req.timeout(Duration.ofSeconds(30)).build());
+        int status = res == null ? 0 : res.statusCode();
+        stats.record(endpoint, status, System.nanoTime() - t0);
+        if (status < 200 || status >= 300) return null;
+        try {
+            return json.readTree(res.body());
+        } catch (Exception e) {
+            return json.createObjectNode();
+        }
+    }
+
+    private HttpResponse<String> send(HttpRequest req) {
+        try {
+            return http.send(req, HttpResponse.BodyHandlers.ofString());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}